@@ -0,0 +1,69 @@
+package com.yellowcat.backend;
+
+import com.yellowcat.backend.model.Quytacgia;
+import com.yellowcat.backend.service.BangGia;
+import com.yellowcat.backend.service.YeuCauBaoGia;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thời gian và bộ nhớ cấp phát của một lần tính giá trên bảng giá có đủ bốn loại quy tắc.
+ * Chạy với profiler gc (xem build.gradle), gc.alloc.rate.norm của tinhGia phải bằng 0.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BangGiaBenchmark {
+
+    private static final int SO_DICH_VU = 200;
+
+    private BangGia bangGia;
+    private YeuCauBaoGia yeuCau;
+    private int[] dichVuCungNgay;
+    private int lan;
+
+    @Setup
+    public void setup() {
+        List<Quytacgia> danhSach = new ArrayList<>();
+        for (int id = 1; id <= SO_DICH_VU; id++) {
+            danhSach.add(quyTac(Quytacgia.GIAM_DICH_VU, id, null, null, null, null, id % 20, 0));
+            danhSach.add(quyTac(Quytacgia.COMBO, id, id % SO_DICH_VU + 1, null, null, null, 5, 0));
+            danhSach.add(quyTac(Quytacgia.PHU_PHI_CAN_NANG, id, null, 10.0, 20.0, null, 5, 20_000));
+        }
+        danhSach.add(quyTac(Quytacgia.PHU_PHI_CAN_NANG, null, null, 20.0, null, null, 10, 50_000));
+        for (int nguong = 5; nguong <= 50; nguong += 5) {
+            danhSach.add(quyTac(Quytacgia.HANG_THAN_THIET, null, null, null, null, nguong, nguong / 5, 0));
+        }
+        bangGia = BangGia.bienDich(danhSach);
+        yeuCau = new YeuCauBaoGia();
+        dichVuCungNgay = new int[]{3, 7, 11};
+    }
+
+    @Benchmark
+    public long tinhGia() {
+        int idDichVu = lan++ % SO_DICH_VU + 1;
+        yeuCau.datLai(idDichVu, 150_000);
+        yeuCau.setCanNang(idDichVu % 30);
+        yeuCau.setSoLanDat(idDichVu % 60);
+        yeuCau.setDichVuCungNgay(dichVuCungNgay);
+        yeuCau.setPhanTramGiamDot(10);
+        return bangGia.tinh(yeuCau);
+    }
+
+    private static Quytacgia quyTac(String loai, Integer idDichVu, Integer idDichVuKem, Double canNangTu,
+                                    Double canNangDen, Integer soLanDat, int phanTram, int soTien) {
+        Quytacgia q = new Quytacgia();
+        q.setLoai(loai);
+        q.setIddichvu(idDichVu);
+        q.setIddichvukem(idDichVuKem);
+        q.setCannangtu(canNangTu);
+        q.setCannangden(canNangDen);
+        q.setSolandat(soLanDat);
+        q.setPhantram(phanTram);
+        q.setSotien(soTien);
+        return q;
+    }
+}
@@ -0,0 +1,22 @@
+package com.yellowcat.backend.DTO.response;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Bản tóm tắt chỉ-đọc của một lịch hẹn cho các danh sách: chỉ các cột màn hình danh sách hiển thị,
+ * được dựng trực tiếp trong câu truy vấn nên không nạp entity và không kéo theo liên kết.
+ */
+public record LichHenTomTat(Integer id,
+                            String idkhachhang,
+                            String emailNguoiDat,
+                            LocalDate date,
+                            Integer trangthai,
+                            Boolean trangthaica,
+                            Integer idDichVu,
+                            String tenDichVu,
+                            Integer idThuCung,
+                            String tenThuCung,
+                            Integer idCaLichHen,
+                            LocalTime thoiGianCa) {
+}
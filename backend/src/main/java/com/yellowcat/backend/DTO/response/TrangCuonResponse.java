@@ -0,0 +1,39 @@
+package com.yellowcat.backend.DTO.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Một trang của danh sách phân trang theo con trỏ (keyset).
+ * conTroTiep là chuỗi mờ để lấy trang sau, null nếu đã hết; tongSo chỉ có khi client yêu cầu đếm.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TrangCuonResponse<T> {
+    List<T> noiDung;
+    String conTroTiep;
+    Long tongSo;
+
+    // dong được truy vấn với kichThuoc + 1 phần tử, phần tử thừa chỉ dùng để biết còn trang sau hay không
+    public static <T> TrangCuonResponse<T> tu(List<T> dong, int kichThuoc, Function<T, String> conTro, Long tongSo) {
+        boolean conTiep = dong.size() > kichThuoc;
+        List<T> noiDung = conTiep ? dong.subList(0, kichThuoc) : dong;
+        return TrangCuonResponse.<T>builder()
+                .noiDung(noiDung)
+                .conTroTiep(conTiep ? conTro.apply(noiDung.get(noiDung.size() - 1)) : null)
+                .tongSo(tongSo)
+                .build();
+    }
+}
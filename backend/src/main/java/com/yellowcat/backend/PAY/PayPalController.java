@@ -89,8 +89,7 @@ public class PayPalController {
                     hoadon.setNgaythanhtoan(LocalDateTime.now());
                     hoaDonService.addOrUpdate(hoadon);
                     // Trả về phản hồi thành công
-                    lichhen.setTrangthai(6);
-                    lichHenService.addOrUpdate(lichhen);
+                    lichHenService.doiTrangThai(lichhen, 6);
 
 //                    Gửi hóa đơn khi thanh toán thành công
                     // Tạo file PDF hóa đơn
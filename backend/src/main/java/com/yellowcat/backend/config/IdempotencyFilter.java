@@ -0,0 +1,126 @@
+package com.yellowcat.backend.config;
+
+import com.yellowcat.backend.service.IdempotencyService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Chống xử lý trùng khi client gửi lại yêu cầu ghi với cùng header Idempotency-Key.
+ * Lần đầu controller chạy bình thường và phản hồi được lưu; các lần gửi lại trả về đúng phản hồi đó
+ * mà không chạy lại controller. Khóa được gắn với người dùng, phương thức và đường dẫn.
+ * Filter đứng sau Spring Security (thứ tự mặc định) nên đã biết người dùng hiện tại.
+ */
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String HEADER_TRA_LAI = "Idempotent-Replayed";
+
+    private final IdempotencyService idempotencyService;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    // Mỗi phần tử có dạng "<METHOD> <mẫu đường dẫn>"
+    private final List<String[]> duongDanApDung;
+
+    public IdempotencyFilter(IdempotencyService idempotencyService,
+                             @Value("${idempotency.duong-dan:PUT /api/dat-lich/xac-nhan-dat," +
+                                     "PUT /api/dat-lich/huy-lich/**," +
+                                     "PUT /api/dat-lich/thay-doi-thoi-gian/**," +
+                                     "POST /api/payPal/payment/create}") List<String> duongDan) {
+        this.idempotencyService = idempotencyService;
+        this.duongDanApDung = duongDan.stream().map(s -> s.trim().split("\\s+", 2)).toList();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String khoa = request.getHeader(HEADER);
+        if (khoa == null || khoa.isBlank()) {
+            return true;
+        }
+        String uri = request.getRequestURI().substring(request.getContextPath().length());
+        return duongDanApDung.stream().noneMatch(mau ->
+                mau[0].equalsIgnoreCase(request.getMethod()) && pathMatcher.match(mau[1], uri));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String khoa = bamKhoa(request);
+
+        Optional<IdempotencyService.PhanHoiDaLuu> daLuu = idempotencyService.timPhanHoi(khoa);
+        if (daLuu.isPresent()) {
+            traLai(daLuu.get(), response);
+            return;
+        }
+        if (!idempotencyService.batDauXuLy(khoa)) {
+            // Yêu cầu trước có thể vừa xong giữa hai bước trên
+            daLuu = idempotencyService.timPhanHoi(khoa);
+            if (daLuu.isPresent()) {
+                traLai(daLuu.get(), response);
+            } else {
+                response.sendError(HttpStatus.CONFLICT.value(), "Yêu cầu với Idempotency-Key này đang được xử lý.");
+            }
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean daLuuPhanHoi = false;
+        try {
+            filterChain.doFilter(request, wrapper);
+            // Lỗi phía server không được lưu để client có thể thử lại
+            if (wrapper.getStatus() < 500) {
+                idempotencyService.luuPhanHoi(khoa, wrapper.getStatus(), wrapper.getContentType(),
+                        wrapper.getContentAsByteArray());
+                daLuuPhanHoi = true;
+            }
+        } finally {
+            if (!daLuuPhanHoi) {
+                idempotencyService.huyXuLy(khoa);
+            }
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private void traLai(IdempotencyService.PhanHoiDaLuu phanHoi, HttpServletResponse response) throws IOException {
+        response.setStatus(phanHoi.maHttp());
+        response.setHeader(HEADER_TRA_LAI, "true");
+        if (phanHoi.loaiNoiDung() != null) {
+            response.setContentType(phanHoi.loaiNoiDung());
+        }
+        if (phanHoi.noiDung() != null) {
+            response.setContentLength(phanHoi.noiDung().length);
+            response.getOutputStream().write(phanHoi.noiDung());
+        }
+    }
+
+    // Băm để khóa lưu trong DB có độ dài cố định và không lộ giá trị client gửi lên
+    private String bamKhoa(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String nguoiDung = authentication != null ? authentication.getName() : "";
+        String nguon = nguoiDung + '\n' + request.getMethod() + '\n' + request.getRequestURI() + '\n'
+                + request.getHeader(HEADER);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(nguon.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
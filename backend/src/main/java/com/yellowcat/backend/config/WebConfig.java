@@ -2,18 +2,29 @@ package com.yellowcat.backend.config;
 
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.web.config.EnableSpringDataWebSupport;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import static org.springframework.data.web.config.EnableSpringDataWebSupport.PageSerializationMode.VIA_DTO;
 
 @Configuration
 @EnableSpringDataWebSupport(pageSerializationMode = VIA_DTO)
 public class WebConfig implements WebMvcConfigurer {
+
+    // Endpoint trả StreamingResponseBody đặt thuộc tính này (mili giây, kiểu Long) để dùng hạn chờ riêng
+    // thay cho hạn chờ bất đồng bộ mặc định của Spring MVC
+    public static final String HAN_CHO_BAT_DONG_BO = WebConfig.class.getName() + ".hanChoBatDongBo";
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/**")
@@ -23,4 +34,18 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowCredentials(true);
 
     }
+
+    // Hạn chờ được đặt ngay trước khi request chuyển sang bất đồng bộ, lúc AsyncContext chưa được tạo
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                if (request instanceof AsyncWebRequest asyncWebRequest
+                        && request.getAttribute(HAN_CHO_BAT_DONG_BO, RequestAttributes.SCOPE_REQUEST) instanceof Long hanCho) {
+                    asyncWebRequest.setTimeout(hanCho);
+                }
+            }
+        });
+    }
 }
@@ -2,7 +2,9 @@ package com.yellowcat.backend.controller;
 
 import com.yellowcat.backend.model.Calichhen;
 import com.yellowcat.backend.service.CaLichHenService;
+import com.yellowcat.backend.service.DanhMucCache;
 import com.yellowcat.backend.service.LichHenService;
+import com.yellowcat.backend.service.SlotAvailabilityIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
@@ -10,6 +12,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
+import java.util.Map;
 
 @RestController
 @RequestMapping(("/api/ca-lich-hen"))
@@ -18,6 +21,12 @@ public class CaLichHenController {
     @Autowired
     private CaLichHenService caLichHenService;
 
+    @Autowired
+    private SlotAvailabilityIndex slotAvailabilityIndex;
+
+    @Autowired
+    private DanhMucCache danhMucCache;
+
 
 //-----------------------------------------------------------
     @PostMapping("/add")
@@ -51,6 +60,37 @@ public class CaLichHenController {
         return ResponseEntity.ok().build();
     }
 
+    // Đổi số lịch tối đa của một ca trong một ngày (ví dụ thêm nhân viên trực); không thấp hơn số lịch đã đặt
+    @PreAuthorize("hasAnyRole('admin', 'manager')")
+    @PutMapping("/suc-chua-ngay")
+    public ResponseEntity<?> capNhatSucChuaNgay(@RequestParam("idCaLichHen") int idCaLichHen,
+                                                @RequestParam("ngay") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate ngay,
+                                                @RequestParam("sucChua") int sucChua) {
+        if (sucChua < 0) {
+            return ResponseEntity.badRequest().body("Sức chứa không hợp lệ.");
+        }
+        caLichHenService.capNhatSucChuaNgay(idCaLichHen, ngay, sucChua);
+        return ResponseEntity.ok().build();
+    }
+
+    // Tình trạng cache danh mục trên node này: kênh thông báo thay đổi còn sống không, số lần trúng / trượt / xóa
+    @PreAuthorize("hasAnyRole('admin', 'manager')")
+    @GetMapping("/cache-danh-muc")
+    public ResponseEntity<Map<String, Object>> thongKeCacheDanhMuc() {
+        return ResponseEntity.ok(danhMucCache.thongKe());
+    }
 
+    // Tình trạng chỉ mục ca trống: số ngày đang giữ và số ca lệch so với DB ở các lần đối chiếu
+    @PreAuthorize("hasAnyRole('admin', 'manager')")
+    @GetMapping("/chi-so-trong")
+    public ResponseEntity<Map<String, Object>> thongKeChiSoTrong() {
+        return ResponseEntity.ok(slotAvailabilityIndex.thongKe());
+    }
 
+    @PreAuthorize("hasAnyRole('admin', 'manager')")
+    @PostMapping("/chi-so-trong/kiem-tra")
+    public ResponseEntity<Map<String, Object>> kiemTraChiSoTrong() {
+        slotAvailabilityIndex.kiemTraNhatQuan();
+        return ResponseEntity.ok(slotAvailabilityIndex.thongKe());
+    }
 }
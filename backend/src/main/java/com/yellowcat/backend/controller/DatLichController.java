@@ -1,5 +1,7 @@
 package com.yellowcat.backend.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yellowcat.backend.DTO.DatLichDTO;
 import com.yellowcat.backend.DTO.DoiLichDTO;
 import com.yellowcat.backend.model.*;
@@ -9,20 +11,25 @@ import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.Transactional;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/dat-lich")
@@ -42,91 +49,183 @@ public class DatLichController {
     @Autowired
     private HoaDonService hoaDonService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ParallelReadAggregator parallelReadAggregator;
+
+    @Autowired
+    private GiuChoService giuChoService;
+
+    @Autowired
+    private DanhSachChoService danhSachChoService;
+
+    @Value("${lichhen.lich-trong.so-ngay-toi-da:62}")
+    private int soNgayToiDaLichTrong;
+
     @GetMapping("/dat-lich-info")
     public ResponseEntity<Map<String, Object>> getDatLichInfo(@RequestParam("ngay") LocalDate ngay) {
-        Map<String, Object> response = new HashMap<>();
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         String idUser = auth.getName();
 
-        // Lấy danh sách dịch vụ
-        List<Dichvu> danhSachDichVu = dichVuService.getListTrangThaiTrue();
-        response.put("dichVu", danhSachDichVu);
+        // Ba nguồn độc lập nên chạy song song; nguồn nào quá hạn thì trả về phần còn lại kèm khóa "loi"
+        Map<String, Supplier<?>> nguon = new LinkedHashMap<>();
+        nguon.put("dichVu", () -> dichVuService.getListTrangThaiTrue());
+        nguon.put("CaLichHen", () -> caLichHenService.getAllByDate(ngay));
+        nguon.put("ListThuCung", () -> thuCungService.findListThuCungByidChu(idUser));
 
-        // Lấy các ca có thể đặt
-        List<Calichhen> CaLichHen = caLichHenService.getAllByDate(ngay);
-        response.put("CaLichHen", CaLichHen);
+        return ResponseEntity.ok(parallelReadAggregator.tongHop(nguon));
+    }
 
-        List<Thucung> listThuCung = thuCungService.findListThuCungByidChu(idUser);
-        response.put("ListThuCung", listThuCung);
+    // Lịch trống cho cả một khoảng ngày (ví dụ một tháng) trong một lần gọi.
+    // Danh sách ca chỉ trả một lần, mỗi ngày chỉ kèm id các ca còn trống.
+    @GetMapping("/lich-trong")
+    public ResponseEntity<StreamingResponseBody> getLichTrongTheoKhoangNgay(
+            @RequestParam("tuNgay") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate tuNgay,
+            @RequestParam("denNgay") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate denNgay) {
+        if (denNgay.isBefore(tuNgay) || tuNgay.plusDays(soNgayToiDaLichTrong - 1L).isBefore(denNgay)) {
+            return ResponseEntity.badRequest().build();
+        }
+        String idUser = SecurityContextHolder.getContext().getAuthentication().getName();
 
-        return ResponseEntity.ok(response);
+        // Đọc dữ liệu trước khi ghi response vì luồng ghi không có security context
+        List<Dichvu> danhSachDichVu = dichVuService.getListTrangThaiTrue();
+        List<Thucung> listThuCung = thuCungService.findListThuCungByidChu(idUser);
+        List<Calichhen> danhSachCa = caLichHenService.findAll();
+        Map<LocalDate, List<Integer>> caTrong = caLichHenService.getCaTrongTheoKhoangNgay(tuNgay, denNgay);
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+                gen.writeStartObject();
+                gen.writeObjectField("dichVu", danhSachDichVu);
+                gen.writeObjectField("ListThuCung", listThuCung);
+                gen.writeObjectField("CaLichHen", danhSachCa);
+                gen.writeObjectFieldStart("CaTrong");
+                for (Map.Entry<LocalDate, List<Integer>> ngay : caTrong.entrySet()) {
+                    gen.writeArrayFieldStart(ngay.getKey().toString());
+                    for (Integer idCa : ngay.getValue()) {
+                        gen.writeNumber(idCa);
+                    }
+                    gen.writeEndArray();
+                }
+                gen.writeEndObject();
+                gen.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
-    // API tạo lịch hẹn khi khách hàng ấn nút xác nhận
-    @PutMapping("/xac-nhan-dat")
-    public ResponseEntity<Lichhen> createLichhen(
-           @Valid @RequestBody DatLichDTO datLichDTO ) {
+    // Giữ chỗ tạm thời trong lúc khách điền form và thanh toán, hết hạn thì ca tự được trả lại
+    @PutMapping("/giu-cho")
+    public ResponseEntity<?> giuCho(@RequestParam("ngay") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate ngay,
+                                    @RequestParam("idCaLichHen") Integer idCaLichHen) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         Jwt jwt = (Jwt) authentication.getPrincipal();
+        String idUser = authentication.getName();
+        if (!caLichHenService.isCaAvailable(idCaLichHen, ngay)) {
+            return ResponseEntity.badRequest().body("Không được giữ ca trong quá khứ.");
+        }
 
-        String idUser = authentication.getName(); // Đây là idUser
-        String email = jwt.getClaimAsString("email");
-        Optional<Lichhen> lichhenOptional = lichHenService.getLichHenByDateandCa(LocalDate.parse(datLichDTO.getDate()),datLichDTO.getIdcalichhen());
+        Optional<Lichhen> lichOptional = giuChoService.giuCho(ngay, idCaLichHen, idUser, jwt.getClaimAsString("email"));
+        if (lichOptional.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Ca đã kín chỗ.");
+        }
 
-        Thucung thucung = datLichDTO.getIdThuCung();
-        thucung.setIdtaikhoan(idUser);
-        thuCungService.saveOrUpdate(thucung);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("idLichHen", lichOptional.get().getId());
+        response.put("hetHanGiu", lichOptional.get().getHethangiu());
+        return ResponseEntity.ok(response);
+    }
 
-        Optional<Dichvu> dichvuOptional = dichVuService.findById(datLichDTO.getIdDichVu());
-        Dichvu dichvu = dichvuOptional.get();
+    @PutMapping("/bo-giu-cho/{id}")
+    public ResponseEntity<?> boGiuCho(@PathVariable Integer id) {
+        String idUser = SecurityContextHolder.getContext().getAuthentication().getName();
+        if (!giuChoService.boGiuCho(id, idUser)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Không có lượt giữ chỗ nào của bạn cho lịch này.");
+        }
+        return ResponseEntity.ok().build();
+    }
 
-        if (!lichhenOptional.isPresent()) {
-            System.out.println("lịch không tồn tại");
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    // Đăng ký chờ một ca đã kín; khi ca được trả lại, người chờ đầu tiên được giữ chỗ và nhận email
+    @PostMapping("/danh-sach-cho")
+    public ResponseEntity<?> dangKyDanhSachCho(@RequestParam("ngay") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate ngay,
+                                               @RequestParam("idCaLichHen") Integer idCaLichHen) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Jwt jwt = (Jwt) authentication.getPrincipal();
+        if (!caLichHenService.isCaAvailable(idCaLichHen, ngay)) {
+            return ResponseEntity.badRequest().body("Không được chờ ca trong quá khứ.");
         }
-//        Check xem có lịch đã được đặt chưa
-        if (lichhenOptional.get().getTrangthai()!=5){
-            System.out.println("Lịch đã được đặt trước rồi , vui lòng chọn thời gian khác");
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+
+        Optional<Danhsachcho> luotChoOptional = danhSachChoService.dangKy(
+                ngay, idCaLichHen, authentication.getName(), jwt.getClaimAsString("email"));
+        if (luotChoOptional.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Ca đang trống hoặc bạn đã có trong danh sách chờ.");
         }
-//        Check không cho đặt ca trong quá khứ
-        if (!caLichHenService.isCaAvailable(datLichDTO.getIdcalichhen(),LocalDate.parse(datLichDTO.getDate()))){
-            System.out.println("Không được đặt ca trong quá khứ");
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("idDanhSachCho", luotChoOptional.get().getId());
+        response.put("viTri", danhSachChoService.viTri(luotChoOptional.get()));
+        return new ResponseEntity<>(response, HttpStatus.CREATED);
+    }
+
+    @GetMapping("/danh-sach-cho")
+    public ResponseEntity<List<Danhsachcho>> getDanhSachChoCuaToi() {
+        String idUser = SecurityContextHolder.getContext().getAuthentication().getName();
+        return ResponseEntity.ok(danhSachChoService.findCuaKhach(idUser));
+    }
+
+    @DeleteMapping("/danh-sach-cho/{id}")
+    public ResponseEntity<?> roiDanhSachCho(@PathVariable Long id) {
+        String idUser = SecurityContextHolder.getContext().getAuthentication().getName();
+        if (!danhSachChoService.roiDanhSach(id, idUser)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Không tìm thấy lượt chờ của bạn.");
         }
+        return ResponseEntity.ok().build();
+    }
 
+    // API tạo lịch hẹn khi khách hàng ấn nút xác nhận
+    @PutMapping("/xac-nhan-dat")
+    public ResponseEntity<Lichhen> createLichhen(
+           @Valid @RequestBody DatLichDTO datLichDTO ) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Jwt jwt = (Jwt) authentication.getPrincipal();
 
-        Lichhen lichhen = lichhenOptional.get();
-        System.out.println(lichhen);
-        lichhen.setIdkhachhang(idUser);
-        lichhen.setEmailNguoiDat(email);
-        lichhen.setTrangthai(4);
-        lichhen.setThucung(thucung);
-        lichhen.setDate(LocalDate.parse(datLichDTO.getDate()));
-        lichhen.setDichvu(dichvu);
-        if(!lichhen.getTrangthaica()){
-            lichhen.setTrangthaica(true);
-        }else {
+        String idUser = authentication.getName(); // Đây là idUser
+        String email = jwt.getClaimAsString("email");
+        LocalDate ngay = LocalDate.parse(datLichDTO.getDate());
+//        Check không cho đặt ca trong quá khứ
+        if (!caLichHenService.isCaAvailable(datLichDTO.getIdcalichhen(),ngay)){
+            System.out.println("Không được đặt ca trong quá khứ");
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
 
+        Optional<Dichvu> dichvuOptional = dichVuService.findByIdTuCache(datLichDTO.getIdDichVu());
+        Dichvu dichvu = dichvuOptional.get();
 
+        Thucung thucung = datLichDTO.getIdThuCung();
+        thucung.setIdtaikhoan(idUser);
 
+//        Tính tiền trước khi giữ chỗ để transaction đặt lịch ngắn nhất có thể
         Hoadon hoadon = new Hoadon();
         hoadon.setDate(LocalDateTime.now());
-        hoadon.setIdlichhen(lichhen);
         hoadon.setPhuongthucthanhtoan("Offline");
         hoadon.setTrangthai(1);
-        Double SoTien = hoaDonService.TinhGiaTien(datLichDTO.getIdDichVu(),hoadon);
+        Double SoTien = hoaDonService.TinhGiaTien(datLichDTO.getIdDichVu(), hoadon, idUser, thucung, ngay);
         hoadon.setSotien(SoTien);
         hoadon.setMagiaodich(hoaDonService.MaGiaoDichRandom());
-        hoaDonService.addOrUpdate(hoadon);
 
-        Lichhen createLich = lichHenService.addOrUpdate(lichhen);
+//        Chiếm chỗ nguyên tử, số lịch đặt thành công không vượt quá sức chứa của ca
+        Optional<Lichhen> datLichOptional = lichHenService.xacNhanDatLich(
+                ngay, datLichDTO.getIdcalichhen(), idUser, email, thucung, dichvu, hoadon);
+        if (!datLichOptional.isPresent()) {
+            System.out.println("Ca đã kín chỗ, vui lòng chọn thời gian khác");
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
 
-        lichHenService.sendEmailWithActions(createLich);
+        Lichhen createLich = datLichOptional.get();
 
-        lichHenService.scheduleTrangThaiChange(createLich.getId());
+        lichHenService.sendEmailWithActions(createLich);
 
         return new ResponseEntity<>(createLich, HttpStatus.CREATED);
     }
@@ -148,37 +247,13 @@ public class DatLichController {
         }
 
         if (lichhen.getTrangthai() == 4 || lichhen.getTrangthai() == 6 ) {
-            // Tạo bản ghi lưu lại lịch sử đặt với trạng thái hủy
-            lichhen.setSolanthaydoi(lichhen.getSolanthaydoi()+1);
-
-            Lichhen lichhenNew = new Lichhen();
-            lichhenNew.setSolanthaydoi(lichhen.getSolanthaydoi());
-            lichhenNew.setEmailNguoiDat(lichhen.getEmailNguoiDat());
-            lichhenNew.setIdkhachhang(lichhen.getIdkhachhang());
-            lichhenNew.setTrangthai(2); // Đặt trạng thái là "Đã hủy"
-            lichhenNew.setIdcalichhen(lichhen.getIdcalichhen());
-            lichhenNew.setThoigianhuy(LocalDateTime.now());
-            lichhenNew.setThucung(lichhen.getThucung());
-            lichhenNew.setDichvu(lichhen.getDichvu());
-            lichhenNew.setDate(lichhen.getDate());
-            lichhenNew.setTrangthaica(true);
-            lichHenService.addOrUpdate(lichhenNew);
-
 //           Hủy hóa đơn chờ
             Hoadon hoadonNew = hoadonOptional.get();
             hoaDonService.deleteHoadonById(hoadonNew.getId());
 
-            // Cập nhật lịch gốc với trạng thái đã hủy
-            lichhen.setIdkhachhang("demo");
-            lichhen.setTrangthai(5);
-            lichhen.setEmailNguoiDat("default-email@example.com");
-            if (lichhen.getTrangthaica()) {
-                lichhen.setTrangthaica(false);
-            } else {
-                return ResponseEntity.ok("Lỗi ca");
-            }
-            lichHenService.addOrUpdate(lichhen);
-            lichHenService.cancelScheduleChange();
+            // Lịch được giữ lại với trạng thái đã hủy, chỗ của ca được trả lại
+            lichHenService.huyLich(lichhen);
+            lichHenService.cancelScheduleChange(id);
             return ResponseEntity.ok("Lịch hẹn đã được hủy thành công.");
         }
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Lịch hẹn không thể hủy vì trạng thái không hợp lệ.");
@@ -188,7 +263,6 @@ public class DatLichController {
     @PutMapping("/thay-doi-thoi-gian/{id}")
     public ResponseEntity<?> thayDoiThoiGian(@PathVariable Integer id,@Valid @RequestBody DoiLichDTO doiLichDTO) {
         Lichhen lichhen = lichHenService.findById(id);
-        Lichhen lichhenNew = new Lichhen();
         Optional<Hoadon> hoadonOptional = hoaDonService.finHoadonByIdLich(id);
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String idUser = authentication.getName();
@@ -208,53 +282,15 @@ public class DatLichController {
 
         if (lichhen != null && lichhen.getTrangthai() == 4 || lichhen.getTrangthai() == 6) {
 
-//          Thay đổi thời gian và ca lịch
-            Optional<Lichhen> lichhenDoiOptional = lichHenService.getLichHenByDateandCa(LocalDate.parse(doiLichDTO.getDate()),Integer.parseInt(doiLichDTO.getIdcalichhen()));
+            // Chiếm chỗ ở ca mới và trả chỗ cũ; ngày, ca cũ được ghi vào nhật ký sự kiện của lịch
+            Optional<Lichhen> lichhenDoiOptional = lichHenService.doiLich(lichhen,
+                    LocalDate.parse(doiLichDTO.getDate()), Integer.parseInt(doiLichDTO.getIdcalichhen()));
             if (!lichhenDoiOptional.isPresent()) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Lịch lỗi.");
             }
 
             Lichhen lichDoi = lichhenDoiOptional.get();
-            lichDoi.setEmailNguoiDat(lichhen.getEmailNguoiDat());
-            lichDoi.setIdkhachhang(lichhen.getIdkhachhang());
-            lichDoi.setTrangthai(3); // Đặt trạng thái là "Chờ thanh toán"
-            lichDoi.setThoigianthaydoi(LocalDateTime.now());
-            lichDoi.setThucung(lichhen.getThucung());
-            lichDoi.setDichvu(lichhen.getDichvu());
-            lichDoi.setTrangthaica(true);
-            lichDoi.setSolanthaydoi(lichhen.getSolanthaydoi());
-            lichHenService.addOrUpdate(lichDoi);
-
-//            Cập nhập lại hóa đơn chờ
-            Hoadon hoadon = hoadonOptional.get();
-            hoadon.setIdlichhen(lichDoi);
-            hoaDonService.addOrUpdate(hoadon);
-
-//            Cập nhập số lần thay đổi
-            lichhen.setSolanthaydoi(lichhen.getSolanthaydoi()+1);
-
-//            Tạo bản ghi lưu trừ lịch đổi
-            lichhenNew.setEmailNguoiDat(lichhen.getEmailNguoiDat());
-            lichhenNew.setIdkhachhang(lichhen.getIdkhachhang());
-            lichhenNew.setTrangthai(1); // Đặt trạng thái là "Thất bại"
-            lichhenNew.setIdcalichhen(lichhen.getIdcalichhen());
-            lichhenNew.setThoigianthaydoi(LocalDateTime.now());
-            lichhenNew.setThucung(lichhen.getThucung());
-            lichhenNew.setDichvu(lichhen.getDichvu());
-            lichhenNew.setDate(lichhen.getDate());
-            lichhenNew.setTrangthaica(true);
-            lichhenNew.setSolanthaydoi(lichhen.getSolanthaydoi());
-            lichHenService.addOrUpdate(lichhenNew);
-
-            lichhen.setTrangthai(5);
-            lichhen.setEmailNguoiDat("default-email@example.com");
-            if (lichhen.getTrangthaica()){
-                lichhen.setTrangthaica(false);
-            }else {
-                return ResponseEntity.ok("Lỗi ca");
-            }
-            lichHenService.cancelScheduleChange();
-            lichHenService.addOrUpdate(lichhen);
+            lichHenService.cancelScheduleChange(id);
             return new ResponseEntity<>(lichDoi, HttpStatus.OK);
         }
         return new ResponseEntity<>(HttpStatus.NOT_FOUND);
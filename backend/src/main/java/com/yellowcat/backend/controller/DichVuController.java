@@ -4,11 +4,13 @@ package com.yellowcat.backend.controller;
 import com.cloudinary.Cloudinary;
 import com.yellowcat.backend.model.Dichvu;
 import com.yellowcat.backend.service.CloudinaryService;
+import com.yellowcat.backend.service.DichVuCatalog;
 import com.yellowcat.backend.service.DichVuService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -18,6 +20,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 
 import java.io.File;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Optional;
 
@@ -29,15 +32,32 @@ public class DichVuController {
 
     private final DichVuService dichVuService;
 
+    // Client / proxy được dùng lại bản đã lưu trong chừng này giây; 0 là luôn hỏi lại bằng If-None-Match
+    @Value("${dich-vu.cache-control.max-age-giay:0}")
+    private long maxAgeGiay;
+
     public DichVuController(CloudinaryService cloudinaryService, DichVuService dichVuService) {
         this.cloudinaryService = cloudinaryService;
         this.dichVuService = dichVuService;
     }
 
+    // Đọc từ ảnh chụp danh mục trong bộ nhớ. ETag theo phiên bản danh mục và trang:
+    // request có If-None-Match trùng nhận 304 không body, không truy vấn DB và không serialize JSON
     @RequestMapping("/all")
-    public Page<Dichvu> getAllDichVu(@RequestParam(defaultValue = "0") int page) {
+    public ResponseEntity<Page<Dichvu>> getAllDichVu(@RequestParam(defaultValue = "0") int page) {
         Pageable pageable = PageRequest.of(page, 10); // 10 items per page
-        return dichVuService.getAllDichVu(pageable);
+        DichVuCatalog catalog = dichVuService.getCatalog();
+        return ResponseEntity.ok()
+                .eTag(catalog.etag("all|" + page))
+                .cacheControl(cacheControlDanhMuc())
+                .body(catalog.trang(pageable));
+    }
+
+    private CacheControl cacheControlDanhMuc() {
+        if (maxAgeGiay > 0) {
+            return CacheControl.maxAge(Duration.ofSeconds(maxAgeGiay)).cachePublic();
+        }
+        return CacheControl.noCache().cachePublic();
     }
 
     //Hàm kiểm tra tên file
@@ -182,8 +202,11 @@ public class DichVuController {
     @GetMapping("/find")
     public ResponseEntity<Page<Dichvu>> findDichVu(@RequestParam String namedv,@RequestParam(defaultValue = "0") Integer page) {
         Pageable pageable = PageRequest.of(page,10);
-        Page<Dichvu> dichvus = dichVuService.FindByNameDV(namedv,pageable);
-        return ResponseEntity.ok(dichvus);
+        DichVuCatalog catalog = dichVuService.getCatalog();
+        return ResponseEntity.ok()
+                .eTag(catalog.etag("find|" + namedv + "|" + page))
+                .cacheControl(cacheControlDanhMuc())
+                .body(catalog.timTheoTen(namedv, pageable));
     }
 
     @PreAuthorize("hasAnyRole('admin', 'manager')")
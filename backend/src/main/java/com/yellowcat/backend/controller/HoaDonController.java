@@ -1,11 +1,17 @@
 package com.yellowcat.backend.controller;
 
+import com.yellowcat.backend.DTO.response.TrangCuonResponse;
+import com.yellowcat.backend.config.WebConfig;
 import com.yellowcat.backend.model.Hoadon;
 import com.yellowcat.backend.model.Lichhen;
 import com.yellowcat.backend.service.HoaDonService;
 import com.yellowcat.backend.service.LichHenService;
 import com.yellowcat.backend.service.PdfExportService;
+import com.yellowcat.backend.service.XuatHoaDonService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -16,7 +22,10 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -31,6 +40,11 @@ public class HoaDonController {
     PdfExportService pdfExportService;
     @Autowired
     LichHenService lichHenService;
+    @Autowired
+    XuatHoaDonService xuatHoaDonService;
+    // Xuất toàn bộ hóa đơn có thể lâu hơn nhiều so với hạn chờ bất đồng bộ mặc định của server
+    @Value("${hoa-don.xuat.han-cho-ms:1800000}")
+    long hanChoXuatMs;
 
     @PreAuthorize("hasAnyRole('admin', 'manager')")
     @GetMapping("/all-chuaTT")
@@ -46,6 +60,28 @@ public class HoaDonController {
         return listHdChuaTT;
     }
 
+    // Xuất toàn bộ hóa đơn theo luồng (NDJSON hoặc CSV), bộ nhớ không tăng theo số hóa đơn
+    @PreAuthorize("hasAnyRole('admin')")
+    @GetMapping("/all/xuat")
+    public ResponseEntity<StreamingResponseBody> xuatHoaDon(
+            @RequestParam(defaultValue = "NDJSON") XuatHoaDonService.DinhDang dinhDang,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate tuNgay,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate denNgay,
+            @RequestParam(required = false) Integer trangThai,
+            HttpServletRequest request) {
+        if (tuNgay != null && denNgay != null && denNgay.isBefore(tuNgay)) {
+            return ResponseEntity.badRequest().build();
+        }
+        request.setAttribute(WebConfig.HAN_CHO_BAT_DONG_BO, hanChoXuatMs);
+        StreamingResponseBody body = out -> xuatHoaDonService.xuat(out, dinhDang, tuNgay, denNgay, trangThai);
+
+        boolean csv = dinhDang == XuatHoaDonService.DinhDang.CSV;
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=hoa-don." + (csv ? "csv" : "ndjson"))
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8) : MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
     @PreAuthorize("hasAnyRole('admin', 'manager')")
     @GetMapping("/Lich-su-thanh-toan-nhan-vien")
     public List<Hoadon> getAllHoaDonTheoTK(){
@@ -56,6 +92,34 @@ public class HoaDonController {
         return lichSuThanhToanHoaDon;
     }
 
+    // Phân trang theo con trỏ: gửi lại conTroTiep của trang trước để lấy trang sau
+    @PreAuthorize("hasAnyRole('admin', 'manager')")
+    @GetMapping("/cuon/all-chuaTT")
+    public TrangCuonResponse<Hoadon> cuonHoaDonChuaThanhToan(@RequestParam(required = false) String conTro,
+                                                             @RequestParam(defaultValue = "10") int kichThuoc,
+                                                             @RequestParam(defaultValue = "false") boolean demTong) {
+        return hoaDonService.cuonHoaDonTheoTrangThai(1, conTro, kichThuoc, demTong);
+    }
+
+    @PreAuthorize("hasAnyRole('admin')")
+    @GetMapping("/cuon/all")
+    public TrangCuonResponse<Hoadon> cuonAllHoaDon(@RequestParam(required = false) String conTro,
+                                                   @RequestParam(defaultValue = "10") int kichThuoc,
+                                                   @RequestParam(defaultValue = "false") boolean demTong) {
+        return hoaDonService.cuonTatCa(conTro, kichThuoc, demTong);
+    }
+
+    @PreAuthorize("hasAnyRole('admin', 'manager')")
+    @GetMapping("/cuon/Lich-su-thanh-toan-nhan-vien")
+    public TrangCuonResponse<Hoadon> cuonHoaDonTheoTK(@RequestParam(required = false) String conTro,
+                                                      @RequestParam(defaultValue = "10") int kichThuoc,
+                                                      @RequestParam(defaultValue = "false") boolean demTong) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Jwt jwt = (Jwt) authentication.getPrincipal();
+        String email = jwt.getClaimAsString("email");
+        return hoaDonService.cuonLichSuThanhToanTheoTaiKhoan(email, conTro, kichThuoc, demTong);
+    }
+
     @GetMapping("/chi-tiet-hd")
     public ResponseEntity<Hoadon> getHoaDonChiTietHd(
             @RequestParam Integer id
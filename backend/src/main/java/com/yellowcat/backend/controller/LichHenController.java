@@ -2,11 +2,14 @@ package com.yellowcat.backend.controller;
 
 import com.yellowcat.backend.DTO.DatLichDTO;
 import com.yellowcat.backend.DTO.DoiLichDTO;
+import com.yellowcat.backend.DTO.response.LichHenTomTat;
+import com.yellowcat.backend.DTO.response.TrangCuonResponse;
 import com.yellowcat.backend.model.Hoadon;
 import com.yellowcat.backend.model.Lichhen;
 import com.yellowcat.backend.service.HoaDonService;
 import com.yellowcat.backend.service.LichHenService;
 import com.yellowcat.backend.service.PdfExportService;
+import com.yellowcat.backend.service.TacVuCumService;
 import jakarta.validation.Valid;
 import org.hibernate.annotations.Parameter;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -39,6 +42,16 @@ public class LichHenController {
     @Autowired
     private PdfExportService pdfExportService;
 
+    @Autowired
+    private TacVuCumService tacVuCumService;
+
+    // Số lần chạy / bỏ qua / lỗi / lỡ của các tác vụ định kỳ trên node này và khóa tác vụ của cả cụm
+    @PreAuthorize("hasRole('admin')")
+    @GetMapping("/tac-vu-dinh-ky")
+    public ResponseEntity<Map<String, Object>> thongKeTacVuDinhKy() {
+        return ResponseEntity.ok(tacVuCumService.thongKe());
+    }
+
     @PreAuthorize("hasRole('admin')")
     @GetMapping("/all")
     public Page<Lichhen> getAllLichHen(@RequestParam(defaultValue = "0") int page) {
@@ -73,6 +86,43 @@ public class LichHenController {
         return ListDoi;
     }
 
+    // Phân trang theo con trỏ: gửi lại conTroTiep của trang trước để lấy trang sau
+    @PreAuthorize("hasRole('admin')")
+    @GetMapping("/cuon/all")
+    public TrangCuonResponse<LichHenTomTat> cuonAllLichHen(@RequestParam(required = false) String conTro,
+                                                     @RequestParam(defaultValue = "10") int kichThuoc,
+                                                     @RequestParam(defaultValue = "false") boolean demTong) {
+        return lichHenService.cuonTatCa(conTro, kichThuoc, demTong);
+    }
+
+    @PreAuthorize("hasRole('user')")
+    @GetMapping("/cuon/findByIdUser")
+    public TrangCuonResponse<LichHenTomTat> cuonFindByIdUser(@RequestParam(required = false) String conTro,
+                                                       @RequestParam(defaultValue = "10") int kichThuoc,
+                                                       @RequestParam(defaultValue = "false") boolean demTong) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String idUser = authentication.getName();
+
+        return lichHenService.cuonTheoIdUser(idUser, conTro, kichThuoc, demTong);
+    }
+
+    @PreAuthorize("hasAnyRole('admin', 'manager')")
+    @GetMapping("/cuon/findByUserEmail")
+    public TrangCuonResponse<LichHenTomTat> cuonFindByUserEmail(@RequestParam("email") String email,
+                                                          @RequestParam(required = false) String conTro,
+                                                          @RequestParam(defaultValue = "10") int kichThuoc,
+                                                          @RequestParam(defaultValue = "false") boolean demTong) {
+        return lichHenService.cuonTheoEmailNguoiDat(email, conTro, kichThuoc, demTong);
+    }
+
+    @PreAuthorize("hasAnyRole('admin', 'manager')")
+    @GetMapping("/cuon/getListDoiTrangThai")
+    public TrangCuonResponse<LichHenTomTat> cuonListDoi(@RequestParam(required = false) String conTro,
+                                                  @RequestParam(defaultValue = "10") int kichThuoc,
+                                                  @RequestParam(defaultValue = "false") boolean demTong) {
+        return lichHenService.cuonLichWithTrangThai(true, LocalDate.now(), conTro, kichThuoc, demTong);
+    }
+
     @PreAuthorize("hasAnyRole('admin', 'manager')")
     @PutMapping("/updateTrangThai/{id}/{idTT}")
     public ResponseEntity<Lichhen> updateMore(@PathVariable int id, @PathVariable int idTT) {
@@ -88,8 +138,7 @@ public class LichHenController {
         }
 
         // Cập nhật trạng thái
-        datLaiLich.setTrangthai(idTT);
-        Lichhen updateLich = lichHenService.addOrUpdate(datLaiLich);
+        Lichhen updateLich = lichHenService.doiTrangThai(datLaiLich, idTT);
 
         return new ResponseEntity<>(updateLich, HttpStatus.OK); // Trả về 200 OK
     }
@@ -98,66 +147,42 @@ public class LichHenController {
     @PutMapping("/update-time/{id}")
     public ResponseEntity<?> doiTimeQuyenAdmin(@PathVariable Integer id,@Valid @RequestBody DoiLichDTO doiLichDTO) {
         Lichhen lichhen = lichHenService.findById(id);
-        Lichhen lichhenNew = new Lichhen();
-        Optional<Hoadon> hoadonOptional = hoaDonService.finHoadonByIdLich(id);
         if (lichhen == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Lịch hẹn không tồn tại.");
         }
 
         if (lichhen != null && lichhen.getTrangthai() == 4) {
 //          Thay đổi thời gian và ca lịch
-            Optional<Lichhen> lichhenDoiOptional = lichHenService.getLichHenByDateandCa(LocalDate.parse(doiLichDTO.getDate()),Integer.parseInt(doiLichDTO.getIdcalichhen()));
+            Optional<Lichhen> lichhenDoiOptional = lichHenService.doiLich(lichhen,
+                    LocalDate.parse(doiLichDTO.getDate()), Integer.parseInt(doiLichDTO.getIdcalichhen()));
             if (!lichhenDoiOptional.isPresent()) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Lịch lỗi.");
             }
 
-            Lichhen lichDoi = lichhenDoiOptional.get();
-            lichDoi.setEmailNguoiDat(lichhen.getEmailNguoiDat());
-            lichDoi.setIdkhachhang(lichhen.getIdkhachhang());
-            lichDoi.setTrangthai(3); // Đặt trạng thái là "Chờ thanh toán"
-            lichDoi.setThoigianthaydoi(LocalDateTime.now());
-            lichDoi.setThucung(lichhen.getThucung());
-            lichDoi.setDichvu(lichhen.getDichvu());
-            lichDoi.setTrangthaica(true);
-            lichDoi.setSolanthaydoi(lichhen.getSolanthaydoi());
-            lichHenService.addOrUpdate(lichDoi);
-
-            Hoadon hoadon = hoadonOptional.get();
-            hoadon.setIdlichhen(lichDoi);
-            hoaDonService.addOrUpdate(hoadon);
-
-//            Cập nhập số lần thay đổi
-            lichhen.setSolanthaydoi(lichhen.getSolanthaydoi()+1);
-
-//            Tạo bản ghi lưu trừ lịch đổi
-            lichhenNew.setEmailNguoiDat(lichhen.getEmailNguoiDat());
-            lichhenNew.setIdkhachhang(lichhen.getIdkhachhang());
-            lichhenNew.setTrangthai(1); // Đặt trạng thái là "Thất bại"
-            lichhenNew.setIdcalichhen(lichhen.getIdcalichhen());
-            lichhenNew.setThoigianthaydoi(LocalDateTime.now());
-            lichhenNew.setThucung(lichhen.getThucung());
-            lichhenNew.setDichvu(lichhen.getDichvu());
-            lichhenNew.setDate(lichhen.getDate());
-            lichhenNew.setTrangthaica(true);
-            lichhenNew.setSolanthaydoi(lichhen.getSolanthaydoi());
-            lichHenService.addOrUpdate(lichhenNew);
-
-            lichhen.setTrangthai(5);
-            lichhen.setEmailNguoiDat("default-email@example.com");
-            if (lichhen.getTrangthaica()){
-                lichhen.setTrangthaica(false);
-            }else {
-                return ResponseEntity.ok("Lỗi ca");
-            }
-            lichHenService.addOrUpdate(lichhen);
             return ResponseEntity.ok("Thời gian của lịch hẹn đã được cập nhật.");
         }
         return new ResponseEntity<>(HttpStatus.NOT_FOUND);
     }
 
+    // Lịch sử thay đổi của lịch hẹn, lấy từ nhật ký sự kiện
+    @GetMapping("/lich-su/{id}")
+    public ResponseEntity<?> lichSu(@PathVariable Integer id) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Lichhen lichhen = lichHenService.findById(id);
+        if (lichhen == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Lịch hẹn không tồn tại.");
+        }
+        boolean laQuanLy = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_admin") || a.getAuthority().equals("ROLE_manager"));
+        if (!laQuanLy && !lichhen.getIdkhachhang().equalsIgnoreCase(authentication.getName())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Bạn không phải là chủ lịch hẹn này.");
+        }
+        return ResponseEntity.ok(lichHenService.getLichSu(id));
+    }
+
     @GetMapping("/findById/{id}")
     public ResponseEntity<?> findById(@PathVariable Integer id) {
-        Lichhen lichhen = lichHenService.findById(id);
+        Lichhen lichhen = lichHenService.findChiTietById(id);
         return ResponseEntity.ok(lichhen);
     }
 
@@ -186,8 +211,7 @@ public class LichHenController {
             if (lichhen == null) {
                 return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
             }
-            lichhen.setTrangthai(0);
-            lichHenService.addOrUpdate(lichhen);
+            lichHenService.doiTrangThai(lichhen, 0);
 
             hoadon.setNgaythanhtoan(LocalDateTime.now());
             hoadon.setTrangthai(2);
@@ -0,0 +1,53 @@
+package com.yellowcat.backend.controller;
+
+import com.yellowcat.backend.model.Quytacgia;
+import com.yellowcat.backend.service.QuyTacGiaService;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/quy-tac-gia")
+@PreAuthorize("hasRole('admin')")
+public class QuyTacGiaController {
+    @Autowired
+    private QuyTacGiaService quyTacGiaService;
+
+    @GetMapping("/all")
+    public List<Quytacgia> getAll() {
+        return quyTacGiaService.getAll();
+    }
+
+    @PostMapping("/add")
+    public ResponseEntity<Quytacgia> create(@Valid @RequestBody Quytacgia quytacgia) {
+        quytacgia.setId(null);
+        return new ResponseEntity<>(quyTacGiaService.addOrUpdate(quytacgia), HttpStatus.CREATED);
+    }
+
+    @PutMapping("/update/{id}")
+    public ResponseEntity<Quytacgia> update(@PathVariable int id, @Valid @RequestBody Quytacgia quytacgia) {
+        if (quyTacGiaService.findById(id).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        quytacgia.setId(id);
+        return ResponseEntity.ok(quyTacGiaService.addOrUpdate(quytacgia));
+    }
+
+    @DeleteMapping("/delete/{id}")
+    public ResponseEntity<String> delete(@PathVariable int id) {
+        quyTacGiaService.remove(id);
+        return ResponseEntity.status(HttpStatus.OK).body("xoa thanh cong");
+    }
+
+    // Số quy tắc đang có hiệu lực trong bảng giá đã biên dịch trên node này
+    @GetMapping("/bang-gia")
+    public Map<String, Object> bangGia() {
+        return Map.of("soQuyTac", quyTacGiaService.getBangGia().getSoQuyTac());
+    }
+}
@@ -2,8 +2,8 @@ package com.yellowcat.backend.controller;
 
 import com.yellowcat.backend.DTO.request.AccountRequest;
 import com.yellowcat.backend.DTO.response.ApiResponse;
-import com.yellowcat.backend.model.Thucung;
 import com.yellowcat.backend.service.KeycloakUserService;
+import com.yellowcat.backend.service.ParallelReadAggregator;
 import com.yellowcat.backend.service.ProfileService;
 import com.yellowcat.backend.service.ThuCungService;
 import jakarta.validation.Valid;
@@ -20,9 +20,9 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 @RestController
 @CrossOrigin(origins = "http://localhost:3000")
@@ -36,6 +36,9 @@ public class UserController {
     @Autowired
     ThuCungService thuCungService;
 
+    @Autowired
+    ParallelReadAggregator parallelReadAggregator;
+
     /**
      * API để lấy thông tin người dùng hiện tại (từ JWT token).
      * Trả về các thông tin về người dùng và thú cưng.
@@ -62,15 +65,15 @@ public class UserController {
             username = jwt.getClaimAsString("email");
         }
 
-        // Lấy danh sách thú cưng của người dùng
-        List<Thucung> thucungList = thuCungService.findListThuCungByidChu(idUser);
+        // Lấy danh sách thú cưng của người dùng qua lớp tổng hợp để có hạn chót;
+        // nếu quá hạn thì vẫn trả thông tin từ token kèm khóa "loi"
+        Map<String, Supplier<?>> nguon = Map.of("listThuCung", () -> thuCungService.findListThuCungByidChu(idUser));
+        Map<String, Object> response = parallelReadAggregator.tongHop(nguon);
 
         // Tạo response trả về
-        Map<String, Object> response = new HashMap<>();
         response.put("roles", petHavenRoles);
         response.put("idUser", idUser);
         response.put("username", username);
-        response.put("listThuCung", thucungList);
 
         return response;
     }
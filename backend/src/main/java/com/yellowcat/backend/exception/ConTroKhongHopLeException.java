@@ -0,0 +1,7 @@
+package com.yellowcat.backend.exception;
+
+public class ConTroKhongHopLeException extends RuntimeException {
+    public ConTroKhongHopLeException(String message) {
+        super(message);
+    }
+}
@@ -22,6 +22,16 @@ public class GlobalExceptionHandler {
                 .body(errorResponse);
     }
 
+    @ExceptionHandler(ConTroKhongHopLeException.class)
+    public ResponseEntity<Map<String, Object>> handleConTroKhongHopLe(ConTroKhongHopLeException e) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("code", HttpStatus.BAD_REQUEST.value());
+        errorResponse.put("message", e.getMessage());
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(errorResponse);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleException(Exception e) {
         Map<String, Object> errorResponse = new HashMap<>();
@@ -1,5 +1,6 @@
 package com.yellowcat.backend.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -14,6 +15,7 @@ import java.time.LocalTime;
 
 @Entity
 @Table(name = "calichhen")
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Calichhen {
     @Id
     @ColumnDefault("nextval('calichhen_id_seq'::regclass)")
@@ -36,6 +38,13 @@ public class Calichhen {
     @Column(name = "trangthai")
     private Boolean trangthai;
 
+    // Số lịch hẹn tối đa của ca trong một ngày, dùng làm giá trị mặc định cho SucChuaNgay
+    @JsonProperty
+    @NotNull
+    @ColumnDefault("1")
+    @Column(name = "succhua", nullable = false)
+    private Integer succhua = 1;
+
     public Integer getId() {
         return id;
     }
@@ -67,4 +76,12 @@ public class Calichhen {
     public void setTrangthai(Boolean trangthai) {
         this.trangthai = trangthai;
     }
-}
\ No newline at end of file
+
+    public Integer getSucchua() {
+        return succhua;
+    }
+
+    public void setSucchua(Integer succhua) {
+        this.succhua = succhua;
+    }
+}
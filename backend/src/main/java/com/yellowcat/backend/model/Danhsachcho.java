@@ -0,0 +1,117 @@
+package com.yellowcat.backend.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "danhsachcho")
+public class Danhsachcho {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "danhsachcho_id_gen")
+    @SequenceGenerator(name = "danhsachcho_id_gen", sequenceName = "danhsachcho_id_seq", allocationSize = 1)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @Size(max = 255)
+    @NotNull
+    @Column(name = "idkhachhang", nullable = false)
+    private String idkhachhang;
+
+    @Size(max = 255)
+    @NotNull
+    @Column(name = "email", nullable = false)
+    private String email;
+
+    @NotNull
+    @Column(name = "date", nullable = false)
+    private LocalDate date;
+
+    @NotNull
+    @Column(name = "idcalichhen", nullable = false)
+    private Integer idcalichhen;
+
+    @NotNull
+    @Column(name = "trangthai", nullable = false)
+    private Integer trangthai;
+
+    @Column(name = "idlichhen")
+    private Integer idlichhen;
+
+    @Column(name = "hethandenghi")
+    private LocalDateTime hethandenghi;
+
+    @Column(name = "ngaytao", insertable = false, updatable = false)
+    private LocalDateTime ngaytao;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getIdkhachhang() {
+        return idkhachhang;
+    }
+
+    public void setIdkhachhang(String idkhachhang) {
+        this.idkhachhang = idkhachhang;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
+
+    public Integer getIdcalichhen() {
+        return idcalichhen;
+    }
+
+    public void setIdcalichhen(Integer idcalichhen) {
+        this.idcalichhen = idcalichhen;
+    }
+
+    public Integer getTrangthai() {
+        return trangthai;
+    }
+
+    public void setTrangthai(Integer trangthai) {
+        this.trangthai = trangthai;
+    }
+
+    public Integer getIdlichhen() {
+        return idlichhen;
+    }
+
+    public void setIdlichhen(Integer idlichhen) {
+        this.idlichhen = idlichhen;
+    }
+
+    public LocalDateTime getHethandenghi() {
+        return hethandenghi;
+    }
+
+    public void setHethandenghi(LocalDateTime hethandenghi) {
+        this.hethandenghi = hethandenghi;
+    }
+
+    public LocalDateTime getNgaytao() {
+        return ngaytao;
+    }
+}
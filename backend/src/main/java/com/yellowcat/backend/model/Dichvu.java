@@ -1,11 +1,13 @@
 package com.yellowcat.backend.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 
 @Entity
 @Table(name = "dichvu")
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Dichvu {
     @Id
     @JsonProperty
@@ -9,7 +9,17 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "hoadon")
+@NamedEntityGraph(name = Hoadon.CHI_TIET, attributeNodes = {
+        @NamedAttributeNode("idgiamgia"),
+        @NamedAttributeNode(value = "idlichhen", subgraph = "lichhen")
+}, subgraphs = @NamedSubgraph(name = "lichhen", attributeNodes = {
+        @NamedAttributeNode("thucung"),
+        @NamedAttributeNode("dichvu"),
+        @NamedAttributeNode("idcalichhen")
+}))
 public class Hoadon {
+    public static final String CHI_TIET = "Hoadon.chiTiet";
+
     @Id
     @JsonProperty
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "hoadon_id_gen")
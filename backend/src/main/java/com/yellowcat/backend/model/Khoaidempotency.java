@@ -0,0 +1,89 @@
+package com.yellowcat.backend.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "khoaidempotency")
+public class Khoaidempotency {
+    @Id
+    @Size(max = 64)
+    @Column(name = "khoa", nullable = false, length = 64)
+    private String khoa;
+
+    @NotNull
+    @Column(name = "trangthai", nullable = false)
+    private Short trangthai;
+
+    @Column(name = "mahttp")
+    private Integer mahttp;
+
+    @Size(max = 255)
+    @Column(name = "loainoidung")
+    private String loainoidung;
+
+    @Column(name = "noidung")
+    private byte[] noidung;
+
+    @Column(name = "ngaytao", insertable = false, updatable = false)
+    private LocalDateTime ngaytao;
+
+    @NotNull
+    @Column(name = "hethan", nullable = false)
+    private LocalDateTime hethan;
+
+    public String getKhoa() {
+        return khoa;
+    }
+
+    public void setKhoa(String khoa) {
+        this.khoa = khoa;
+    }
+
+    public Short getTrangthai() {
+        return trangthai;
+    }
+
+    public void setTrangthai(Short trangthai) {
+        this.trangthai = trangthai;
+    }
+
+    public Integer getMahttp() {
+        return mahttp;
+    }
+
+    public void setMahttp(Integer mahttp) {
+        this.mahttp = mahttp;
+    }
+
+    public String getLoainoidung() {
+        return loainoidung;
+    }
+
+    public void setLoainoidung(String loainoidung) {
+        this.loainoidung = loainoidung;
+    }
+
+    public byte[] getNoidung() {
+        return noidung;
+    }
+
+    public void setNoidung(byte[] noidung) {
+        this.noidung = noidung;
+    }
+
+    public LocalDateTime getNgaytao() {
+        return ngaytao;
+    }
+
+    public LocalDateTime getHethan() {
+        return hethan;
+    }
+
+    public void setHethan(LocalDateTime hethan) {
+        this.hethan = hethan;
+    }
+}
@@ -0,0 +1,71 @@
+package com.yellowcat.backend.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "khoatacvu")
+public class Khoatacvu {
+    @Id
+    @Size(max = 100)
+    @Column(name = "ten", nullable = false, length = 100)
+    private String ten;
+
+    @Size(max = 255)
+    @NotNull
+    @Column(name = "nguoigiu", nullable = false)
+    private String nguoigiu;
+
+    @NotNull
+    @Column(name = "hethan", nullable = false)
+    private LocalDateTime hethan;
+
+    @Column(name = "batdaucuoi")
+    private LocalDateTime batdaucuoi;
+
+    @Column(name = "ketthuccuoi")
+    private LocalDateTime ketthuccuoi;
+
+    public String getTen() {
+        return ten;
+    }
+
+    public void setTen(String ten) {
+        this.ten = ten;
+    }
+
+    public String getNguoigiu() {
+        return nguoigiu;
+    }
+
+    public void setNguoigiu(String nguoigiu) {
+        this.nguoigiu = nguoigiu;
+    }
+
+    public LocalDateTime getHethan() {
+        return hethan;
+    }
+
+    public void setHethan(LocalDateTime hethan) {
+        this.hethan = hethan;
+    }
+
+    public LocalDateTime getBatdaucuoi() {
+        return batdaucuoi;
+    }
+
+    public void setBatdaucuoi(LocalDateTime batdaucuoi) {
+        this.batdaucuoi = batdaucuoi;
+    }
+
+    public LocalDateTime getKetthuccuoi() {
+        return ketthuccuoi;
+    }
+
+    public void setKetthuccuoi(LocalDateTime ketthuccuoi) {
+        this.ketthuccuoi = ketthuccuoi;
+    }
+}
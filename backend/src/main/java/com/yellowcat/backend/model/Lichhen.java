@@ -11,9 +11,17 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 
+// Các liên kết được nạp lười; màn hình nào cần hiển thị đủ thì dùng entity graph này để nạp trong cùng một câu JOIN
 @Entity
 @Table(name = "lichhen")
+@NamedEntityGraph(name = Lichhen.CHI_TIET, attributeNodes = {
+        @NamedAttributeNode("thucung"),
+        @NamedAttributeNode("dichvu"),
+        @NamedAttributeNode("idcalichhen")
+})
 public class Lichhen {
+    public static final String CHI_TIET = "Lichhen.chiTiet";
+
     @Id
     @JsonProperty
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "lichhen_id_gen")
@@ -27,14 +35,14 @@ public class Lichhen {
     @Column(name = "idkhachhang", nullable = false)
     private String idkhachhang;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @NotNull
     @JoinColumn(name = "idthucung")
     private Thucung thucung;
 
     @JsonProperty
     @NotNull
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "iddichvu")
     private Dichvu dichvu;
 
@@ -53,7 +61,7 @@ public class Lichhen {
     @Column(name = "trangthai", nullable = false)
     private Integer trangthai ;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @NotNull
     @JoinColumn(name = "idcalichhen")
     private Calichhen idcalichhen;
@@ -76,6 +84,29 @@ public class Lichhen {
     @Column(name = "solannhacnho", nullable = false)
     private Integer solannhacnho;
 
+    @Size(max = 255)
+    @Column(name = "nguoigiu")
+    private String nguoigiu;
+
+    @Column(name = "hethangiu")
+    private LocalDateTime hethangiu;
+
+    public String getNguoigiu() {
+        return nguoigiu;
+    }
+
+    public void setNguoigiu(String nguoigiu) {
+        this.nguoigiu = nguoigiu;
+    }
+
+    public LocalDateTime getHethangiu() {
+        return hethangiu;
+    }
+
+    public void setHethangiu(LocalDateTime hethangiu) {
+        this.hethangiu = hethangiu;
+    }
+
     public Integer getSolannhacnho() {
         return solannhacnho;
     }
@@ -0,0 +1,132 @@
+package com.yellowcat.backend.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "lichhensukien")
+public class Lichhensukien {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "lichhensukien_id_gen")
+    @SequenceGenerator(name = "lichhensukien_id_gen", sequenceName = "lichhensukien_id_seq", allocationSize = 1)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @NotNull
+    @Column(name = "idlichhen", nullable = false, updatable = false)
+    private Integer idlichhen;
+
+    @Size(max = 30)
+    @NotNull
+    @Column(name = "loaisukien", nullable = false, length = 30, updatable = false)
+    private String loaisukien;
+
+    @Column(name = "ngaycu", updatable = false)
+    private LocalDate ngaycu;
+
+    @Column(name = "idcacu", updatable = false)
+    private Integer idcacu;
+
+    @Column(name = "ngaymoi", updatable = false)
+    private LocalDate ngaymoi;
+
+    @Column(name = "idcamoi", updatable = false)
+    private Integer idcamoi;
+
+    @Column(name = "trangthaicu", updatable = false)
+    private Integer trangthaicu;
+
+    @Column(name = "trangthaimoi", updatable = false)
+    private Integer trangthaimoi;
+
+    @Size(max = 255)
+    @Column(name = "nguoithuchien", updatable = false)
+    private String nguoithuchien;
+
+    @Column(name = "thoigian", insertable = false, updatable = false)
+    private LocalDateTime thoigian;
+
+    public Long getId() {
+        return id;
+    }
+
+    public Integer getIdlichhen() {
+        return idlichhen;
+    }
+
+    public void setIdlichhen(Integer idlichhen) {
+        this.idlichhen = idlichhen;
+    }
+
+    public String getLoaisukien() {
+        return loaisukien;
+    }
+
+    public void setLoaisukien(String loaisukien) {
+        this.loaisukien = loaisukien;
+    }
+
+    public LocalDate getNgaycu() {
+        return ngaycu;
+    }
+
+    public void setNgaycu(LocalDate ngaycu) {
+        this.ngaycu = ngaycu;
+    }
+
+    public Integer getIdcacu() {
+        return idcacu;
+    }
+
+    public void setIdcacu(Integer idcacu) {
+        this.idcacu = idcacu;
+    }
+
+    public LocalDate getNgaymoi() {
+        return ngaymoi;
+    }
+
+    public void setNgaymoi(LocalDate ngaymoi) {
+        this.ngaymoi = ngaymoi;
+    }
+
+    public Integer getIdcamoi() {
+        return idcamoi;
+    }
+
+    public void setIdcamoi(Integer idcamoi) {
+        this.idcamoi = idcamoi;
+    }
+
+    public Integer getTrangthaicu() {
+        return trangthaicu;
+    }
+
+    public void setTrangthaicu(Integer trangthaicu) {
+        this.trangthaicu = trangthaicu;
+    }
+
+    public Integer getTrangthaimoi() {
+        return trangthaimoi;
+    }
+
+    public void setTrangthaimoi(Integer trangthaimoi) {
+        this.trangthaimoi = trangthaimoi;
+    }
+
+    public String getNguoithuchien() {
+        return nguoithuchien;
+    }
+
+    public void setNguoithuchien(String nguoithuchien) {
+        this.nguoithuchien = nguoithuchien;
+    }
+
+    public LocalDateTime getThoigian() {
+        return thoigian;
+    }
+}
@@ -0,0 +1,74 @@
+package com.yellowcat.backend.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "nhacnho")
+public class Nhacnho {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "nhacnho_id_gen")
+    @SequenceGenerator(name = "nhacnho_id_gen", sequenceName = "nhacnho_id_seq", allocationSize = 1)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @NotNull
+    @Column(name = "idlichhen", nullable = false)
+    private Integer idlichhen;
+
+    @NotNull
+    @Column(name = "thoidiemnhac", nullable = false)
+    private LocalDateTime thoidiemnhac;
+
+    @NotNull
+    @Column(name = "thoidiemhen", nullable = false)
+    private LocalDateTime thoidiemhen;
+
+    @NotNull
+    @ColumnDefault("false")
+    @Column(name = "dagui", nullable = false)
+    private Boolean dagui = false;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Integer getIdlichhen() {
+        return idlichhen;
+    }
+
+    public void setIdlichhen(Integer idlichhen) {
+        this.idlichhen = idlichhen;
+    }
+
+    public LocalDateTime getThoidiemnhac() {
+        return thoidiemnhac;
+    }
+
+    public void setThoidiemnhac(LocalDateTime thoidiemnhac) {
+        this.thoidiemnhac = thoidiemnhac;
+    }
+
+    public LocalDateTime getThoidiemhen() {
+        return thoidiemhen;
+    }
+
+    public void setThoidiemhen(LocalDateTime thoidiemhen) {
+        this.thoidiemhen = thoidiemhen;
+    }
+
+    public Boolean getDagui() {
+        return dagui;
+    }
+
+    public void setDagui(Boolean dagui) {
+        this.dagui = dagui;
+    }
+}
@@ -0,0 +1,145 @@
+package com.yellowcat.backend.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import org.hibernate.annotations.ColumnDefault;
+
+@Entity
+@Table(name = "quytacgia")
+public class Quytacgia {
+    public static final String GIAM_DICH_VU = "GIAM_DICH_VU";
+    public static final String COMBO = "COMBO";
+    public static final String PHU_PHI_CAN_NANG = "PHU_PHI_CAN_NANG";
+    public static final String HANG_THAN_THIET = "HANG_THAN_THIET";
+
+    @Id
+    @JsonProperty
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "quytacgia_id_gen")
+    @SequenceGenerator(name = "quytacgia_id_gen", sequenceName = "quytacgia_id_seq", allocationSize = 1)
+    @Column(name = "id", nullable = false)
+    private Integer id;
+
+    @NotNull
+    @JsonProperty
+    @Column(name = "loai", nullable = false, length = 30)
+    private String loai;
+
+    @JsonProperty
+    @Column(name = "iddichvu")
+    private Integer iddichvu;
+
+    @JsonProperty
+    @Column(name = "iddichvukem")
+    private Integer iddichvukem;
+
+    @JsonProperty
+    @Column(name = "cannangtu")
+    private Double cannangtu;
+
+    @JsonProperty
+    @Column(name = "cannangden")
+    private Double cannangden;
+
+    @JsonProperty
+    @Column(name = "solandat")
+    private Integer solandat;
+
+    @NotNull
+    @JsonProperty
+    @ColumnDefault("0")
+    @Column(name = "phantram", nullable = false)
+    private Integer phantram = 0;
+
+    @NotNull
+    @JsonProperty
+    @ColumnDefault("0")
+    @Column(name = "sotien", nullable = false)
+    private Integer sotien = 0;
+
+    @NotNull
+    @JsonProperty
+    @ColumnDefault("true")
+    @Column(name = "trangthai", nullable = false)
+    private Boolean trangthai = true;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getLoai() {
+        return loai;
+    }
+
+    public void setLoai(String loai) {
+        this.loai = loai;
+    }
+
+    public Integer getIddichvu() {
+        return iddichvu;
+    }
+
+    public void setIddichvu(Integer iddichvu) {
+        this.iddichvu = iddichvu;
+    }
+
+    public Integer getIddichvukem() {
+        return iddichvukem;
+    }
+
+    public void setIddichvukem(Integer iddichvukem) {
+        this.iddichvukem = iddichvukem;
+    }
+
+    public Double getCannangtu() {
+        return cannangtu;
+    }
+
+    public void setCannangtu(Double cannangtu) {
+        this.cannangtu = cannangtu;
+    }
+
+    public Double getCannangden() {
+        return cannangden;
+    }
+
+    public void setCannangden(Double cannangden) {
+        this.cannangden = cannangden;
+    }
+
+    public Integer getSolandat() {
+        return solandat;
+    }
+
+    public void setSolandat(Integer solandat) {
+        this.solandat = solandat;
+    }
+
+    public Integer getPhantram() {
+        return phantram;
+    }
+
+    public void setPhantram(Integer phantram) {
+        this.phantram = phantram;
+    }
+
+    public Integer getSotien() {
+        return sotien;
+    }
+
+    public void setSotien(Integer sotien) {
+        this.sotien = sotien;
+    }
+
+    public Boolean getTrangthai() {
+        return trangthai;
+    }
+
+    public void setTrangthai(Boolean trangthai) {
+        this.trangthai = trangthai;
+    }
+}
@@ -0,0 +1,72 @@
+package com.yellowcat.backend.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "succhuangay")
+public class Succhuangay {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "succhuangay_id_gen")
+    @SequenceGenerator(name = "succhuangay_id_gen", sequenceName = "succhuangay_id_seq", allocationSize = 1)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @NotNull
+    @Column(name = "date", nullable = false)
+    private LocalDate date;
+
+    @NotNull
+    @Column(name = "idcalichhen", nullable = false)
+    private Integer idcalichhen;
+
+    @NotNull
+    @Column(name = "succhua", nullable = false)
+    private Integer succhua;
+
+    @NotNull
+    @Column(name = "dadat", nullable = false)
+    private Integer dadat;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
+
+    public Integer getIdcalichhen() {
+        return idcalichhen;
+    }
+
+    public void setIdcalichhen(Integer idcalichhen) {
+        this.idcalichhen = idcalichhen;
+    }
+
+    public Integer getSucchua() {
+        return succhua;
+    }
+
+    public void setSucchua(Integer succhua) {
+        this.succhua = succhua;
+    }
+
+    public Integer getDadat() {
+        return dadat;
+    }
+
+    public void setDadat(Integer dadat) {
+        this.dadat = dadat;
+    }
+}
@@ -0,0 +1,91 @@
+package com.yellowcat.backend.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "tacvuhengio")
+public class Tacvuhengio {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tacvuhengio_id_gen")
+    @SequenceGenerator(name = "tacvuhengio_id_gen", sequenceName = "tacvuhengio_id_seq", allocationSize = 1)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @Column(name = "idlichhen")
+    private Integer idlichhen;
+
+    @Size(max = 50)
+    @NotNull
+    @Column(name = "loaitacvu", nullable = false, length = 50)
+    private String loaitacvu;
+
+    @NotNull
+    @Column(name = "thoigianden", nullable = false)
+    private LocalDateTime thoigianden;
+
+    @Column(name = "ngaytao", insertable = false, updatable = false)
+    private LocalDateTime ngaytao;
+
+    @Size(max = 255)
+    @Column(name = "nguoigiu")
+    private String nguoigiu;
+
+    @Column(name = "hethangiu")
+    private LocalDateTime hethangiu;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Integer getIdlichhen() {
+        return idlichhen;
+    }
+
+    public void setIdlichhen(Integer idlichhen) {
+        this.idlichhen = idlichhen;
+    }
+
+    public String getLoaitacvu() {
+        return loaitacvu;
+    }
+
+    public void setLoaitacvu(String loaitacvu) {
+        this.loaitacvu = loaitacvu;
+    }
+
+    public LocalDateTime getThoigianden() {
+        return thoigianden;
+    }
+
+    public void setThoigianden(LocalDateTime thoigianden) {
+        this.thoigianden = thoigianden;
+    }
+
+    public LocalDateTime getNgaytao() {
+        return ngaytao;
+    }
+
+    public String getNguoigiu() {
+        return nguoigiu;
+    }
+
+    public void setNguoigiu(String nguoigiu) {
+        this.nguoigiu = nguoigiu;
+    }
+
+    public LocalDateTime getHethangiu() {
+        return hethangiu;
+    }
+
+    public void setHethangiu(LocalDateTime hethangiu) {
+        this.hethangiu = hethangiu;
+    }
+}
@@ -1,11 +1,13 @@
 package com.yellowcat.backend.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 
 @Entity
 @Table(name = "thucung")
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Thucung {
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "thucung_id_gen")
@@ -32,12 +32,22 @@ public interface CalichhenRepository extends JpaRepository<Calichhen, Integer> {
                                     @Param("ngay") LocalDate ngay,
                                     @Param("trangThai") boolean trangThai);
 
+    @Query("SELECT c.succhua FROM Calichhen c WHERE c.id = :id")
+    Optional<Integer> findSucChuaById(@Param("id") Integer id);
+
     // Truy vấn để lấy tất cả các trạng thái của các ca trong một ngày
-    @Query("SELECT c FROM Calichhen c JOIN Lichhen l ON c.id = l.idcalichhen.id " +
-            "WHERE l.date = :ngay AND l.trangthaica = false " +
-            "AND (l.date <> CURRENT_DATE OR c.thoigianca >= CURRENT_TIME)")
+    @Query("SELECT c FROM Calichhen c JOIN Succhuangay s ON c.id = s.idcalichhen " +
+            "WHERE s.date = :ngay AND s.dadat < s.succhua " +
+            "AND (s.date <> CURRENT_DATE OR c.thoigianca >= CURRENT_TIME)")
     List<Calichhen> findAllCaAndStatusByDateaAndTrangthaiFalse(@Param("ngay") LocalDate ngay);
 
+    // Các cặp (ngày, id ca) còn trống trong một khoảng ngày, lấy bằng một truy vấn duy nhất
+    @Query("SELECT s.date, c.id FROM Calichhen c JOIN Succhuangay s ON c.id = s.idcalichhen " +
+            "WHERE s.date BETWEEN :tuNgay AND :denNgay AND s.dadat < s.succhua " +
+            "AND (s.date <> CURRENT_DATE OR c.thoigianca >= CURRENT_TIME) " +
+            "ORDER BY s.date, c.thoigianca")
+    List<Object[]> findCaTrongTheoKhoangNgay(@Param("tuNgay") LocalDate tuNgay, @Param("denNgay") LocalDate denNgay);
+
 
 //    Đổi trang thai ca khi dat lich thanh cong
 //    @Modifying
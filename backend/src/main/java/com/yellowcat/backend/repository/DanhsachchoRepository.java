@@ -0,0 +1,48 @@
+package com.yellowcat.backend.repository;
+
+import com.yellowcat.backend.model.Danhsachcho;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DanhsachchoRepository extends JpaRepository<Danhsachcho, Long> {
+    List<Danhsachcho> findByIdkhachhangAndTrangthaiInOrderByIdDesc(String idkhachhang, Collection<Integer> trangthai);
+
+    // Số người đang chờ đứng trước một lượt chờ trong cùng (ngày, ca)
+    long countByDateAndIdcalichhenAndTrangthaiAndIdLessThan(LocalDate date, Integer idcalichhen, Integer trangthai, Long id);
+
+    boolean existsByDateAndIdcalichhenAndTrangthai(LocalDate date, Integer idcalichhen, Integer trangthai);
+
+    // Khóa người chờ đầu tiên của (ngày, ca). Giao dịch khác đang đề nghị cho cùng hàng đợi phải đợi dòng này
+    // thay vì bỏ qua, nên không thể chiếm chỗ cho người đứng sau trước người đứng đầu.
+    // Dòng đợi được mà đã rời trạng thái 0 thì bị bỏ qua và câu này lấy người kế tiếp trong ảnh chụp lúc bắt đầu câu;
+    // người đăng ký sau ảnh chụp đó không được thấy, nên có thể trả về rỗng dù hàng đợi vẫn còn người (xem DanhSachChoService)
+    @Query(value = "SELECT * FROM danhsachcho WHERE date = :ngay AND idcalichhen = :idCa AND trangthai = 0 " +
+            "ORDER BY id LIMIT 1 FOR UPDATE",
+            nativeQuery = true)
+    Optional<Danhsachcho> khoaNguoiChoDauTien(@Param("ngay") LocalDate ngay, @Param("idCa") Integer idCa);
+
+    // Đề nghị gắn với các lượt giữ chỗ sắp bị xóa (hết hạn hoặc bỏ giữ) không còn hiệu lực
+    @Modifying
+    @Query("UPDATE Danhsachcho d SET d.trangthai = 2 WHERE d.idlichhen IN :idLichHen AND d.trangthai = 1")
+    int hetHanDeNghi(@Param("idLichHen") Collection<Integer> idLichHen);
+
+    @Modifying
+    @Query("UPDATE Danhsachcho d SET d.trangthai = 3 WHERE d.idlichhen = :idLichHen " +
+            "AND d.idkhachhang = :idKhachHang AND d.trangthai = 1")
+    int danhDauDaNhan(@Param("idLichHen") Integer idLichHen, @Param("idKhachHang") String idKhachHang);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Danhsachcho d SET d.trangthai = 2 WHERE d.id = :id AND d.idkhachhang = :idKhachHang AND d.trangthai = 0")
+    int roiDanhSach(@Param("id") Long id, @Param("idKhachHang") String idKhachHang);
+}
@@ -2,6 +2,8 @@ package com.yellowcat.backend.repository;
 
 import com.yellowcat.backend.model.Hoadon;
 import com.yellowcat.backend.model.Lichhen;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.List;
@@ -9,11 +11,33 @@ import java.util.Optional;
 
 public interface HoadonRepository extends JpaRepository<Hoadon, Integer> {
 
+    // Danh sách hóa đơn trả kèm lịch hẹn và các liên kết của lịch: nạp cả cây trong một câu JOIN thay vì từng dòng một
+    @Override
+    @EntityGraph(Hoadon.CHI_TIET)
+    List<Hoadon> findAll();
+
+    @EntityGraph(Hoadon.CHI_TIET)
     List<Hoadon> findByTrangthai(Integer trangthai);
 
+    @EntityGraph(Hoadon.CHI_TIET)
     List<Hoadon> findByNguoithanhtoanAndPhuongthucthanhtoan(String email,String phuongThuc);
 
     Optional<Hoadon> findByIdlichhen_IdAndTrangthai(Integer idlichhen,int trangthai);
 
     Optional<Hoadon> findByMagiaodich(String idPayMent);
+
+    long countByTrangthai(Integer trangthai);
+
+    long countByNguoithanhtoanAndPhuongthucthanhtoan(String email, String phuongThuc);
+
+    // Phân trang keyset theo id giảm dần (id tăng theo thời điểm tạo hóa đơn)
+    @EntityGraph(Hoadon.CHI_TIET)
+    List<Hoadon> findByIdLessThanOrderByIdDesc(Integer id, Limit limit);
+
+    @EntityGraph(Hoadon.CHI_TIET)
+    List<Hoadon> findByTrangthaiAndIdLessThanOrderByIdDesc(Integer trangthai, Integer id, Limit limit);
+
+    @EntityGraph(Hoadon.CHI_TIET)
+    List<Hoadon> findByNguoithanhtoanAndPhuongthucthanhtoanAndIdLessThanOrderByIdDesc(String email, String phuongThuc,
+                                                                                      Integer id, Limit limit);
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+package com.yellowcat.backend.repository;
+
+import com.yellowcat.backend.model.Khoaidempotency;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface KhoaidempotencyRepository extends JpaRepository<Khoaidempotency, String> {
+
+    @Query("SELECT k FROM Khoaidempotency k WHERE k.khoa = :khoa AND k.trangthai = 1 AND k.hethan > :now")
+    Optional<Khoaidempotency> findPhanHoi(@Param("khoa") String khoa, @Param("now") LocalDateTime now);
+
+    // Nhận quyền xử lý khóa bằng một câu lệnh: khóa mới, khóa đã hết hạn,
+    // hoặc khóa đang xử lý quá lâu (node xử lý trước đó đã chết). Trả về 0 nếu khóa đang thuộc yêu cầu khác.
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO khoaidempotency (khoa, trangthai, ngaytao, hethan) VALUES (:khoa, 0, :now, :hetHan) " +
+            "ON CONFLICT (khoa) DO UPDATE SET trangthai = 0, mahttp = NULL, loainoidung = NULL, noidung = NULL, " +
+            "ngaytao = EXCLUDED.ngaytao, hethan = EXCLUDED.hethan " +
+            "WHERE khoaidempotency.hethan <= :now " +
+            "OR (khoaidempotency.trangthai = 0 AND khoaidempotency.ngaytao < :xuLyTruoc)",
+            nativeQuery = true)
+    int nhanXuLy(@Param("khoa") String khoa,
+                 @Param("now") LocalDateTime now,
+                 @Param("hetHan") LocalDateTime hetHan,
+                 @Param("xuLyTruoc") LocalDateTime xuLyTruoc);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Khoaidempotency k SET k.trangthai = 1, k.mahttp = :maHttp, k.loainoidung = :loaiNoiDung, " +
+            "k.noidung = :noiDung WHERE k.khoa = :khoa AND k.trangthai = 0")
+    int luuPhanHoi(@Param("khoa") String khoa,
+                   @Param("maHttp") int maHttp,
+                   @Param("loaiNoiDung") String loaiNoiDung,
+                   @Param("noiDung") byte[] noiDung);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Khoaidempotency k WHERE k.khoa = :khoa AND k.trangthai = 0")
+    int huyXuLy(@Param("khoa") String khoa);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM khoaidempotency WHERE khoa IN (SELECT khoa FROM khoaidempotency " +
+            "WHERE hethan < :now LIMIT :soLuong)",
+            nativeQuery = true)
+    int xoaHetHanTheoLo(@Param("now") LocalDateTime now, @Param("soLuong") int soLuong);
+}
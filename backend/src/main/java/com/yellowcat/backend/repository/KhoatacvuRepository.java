@@ -0,0 +1,58 @@
+package com.yellowcat.backend.repository;
+
+import com.yellowcat.backend.model.Khoatacvu;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface KhoatacvuRepository extends JpaRepository<Khoatacvu, String> {
+
+    @Query("SELECT k.batdaucuoi FROM Khoatacvu k WHERE k.ten = :ten")
+    Optional<LocalDateTime> findBatDauCuoi(@Param("ten") String ten);
+
+    // Nhận khóa bằng một câu lệnh: khóa mới hoặc khóa đã hết hạn. Trả về 0 nếu node khác đang giữ.
+    // Thời gian lấy theo đồng hồ của DB để các node lệch giờ vẫn thấy cùng một hạn khóa.
+    // Luôn chạy trong transaction riêng để khóa được thấy ngay bởi các node khác.
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query(value = "INSERT INTO khoatacvu (ten, nguoigiu, hethan, batdaucuoi) " +
+            "VALUES (:ten, :nguoiGiu, LOCALTIMESTAMP + :giuToiDaMs * INTERVAL '1 millisecond', LOCALTIMESTAMP) " +
+            "ON CONFLICT (ten) DO UPDATE SET nguoigiu = EXCLUDED.nguoigiu, hethan = EXCLUDED.hethan, " +
+            "batdaucuoi = EXCLUDED.batdaucuoi " +
+            "WHERE khoatacvu.hethan <= LOCALTIMESTAMP",
+            nativeQuery = true)
+    int nhanKhoa(@Param("ten") String ten,
+                 @Param("nguoiGiu") String nguoiGiu,
+                 @Param("giuToiDaMs") long giuToiDaMs);
+
+    // Gia hạn khóa của lượt đang chạy. Lượt đã trả khóa (KetThucCuoi không trước BatDauCuoi) không được gia hạn nữa,
+    // kể cả khi lần gia hạn chạy sau traKhoa. Trả về 0 nếu khóa đã mất hoặc đã trả.
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query(value = "UPDATE khoatacvu SET hethan = LOCALTIMESTAMP + :giuToiDaMs * INTERVAL '1 millisecond' " +
+            "WHERE ten = :ten AND nguoigiu = :nguoiGiu AND (ketthuccuoi IS NULL OR ketthuccuoi < batdaucuoi)",
+            nativeQuery = true)
+    int giaHanKhoa(@Param("ten") String ten,
+                   @Param("nguoiGiu") String nguoiGiu,
+                   @Param("giuToiDaMs") long giuToiDaMs);
+
+    // Trả khóa sau khi chạy xong nhưng vẫn giữ tới ít nhất giuToiThieuMs kể từ lúc bắt đầu,
+    // để node khác kích hoạt trễ vài giây không chạy lại cùng lượt
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query(value = "UPDATE khoatacvu SET ketthuccuoi = LOCALTIMESTAMP, " +
+            "hethan = GREATEST(LOCALTIMESTAMP, batdaucuoi + :giuToiThieuMs * INTERVAL '1 millisecond') " +
+            "WHERE ten = :ten AND nguoigiu = :nguoiGiu",
+            nativeQuery = true)
+    int traKhoa(@Param("ten") String ten,
+                @Param("nguoiGiu") String nguoiGiu,
+                @Param("giuToiThieuMs") long giuToiThieuMs);
+}
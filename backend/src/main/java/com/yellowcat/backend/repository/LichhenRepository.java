@@ -1,29 +1,156 @@
 package com.yellowcat.backend.repository;
 
+import com.yellowcat.backend.DTO.response.LichHenTomTat;
 import com.yellowcat.backend.model.Lichhen;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface LichhenRepository extends JpaRepository<Lichhen, Integer> {
+    // Danh sách dựng bản tóm tắt ngay trong câu truy vấn, một câu SELECT cho cả trang
+    String TOM_TAT = "SELECT new com.yellowcat.backend.DTO.response.LichHenTomTat(" +
+            "l.id, l.idkhachhang, l.emailNguoiDat, l.date, l.trangthai, l.trangthaica, " +
+            "d.id, d.tendichvu, t.id, t.ten, c.id, c.thoigianca) " +
+            "FROM Lichhen l LEFT JOIN l.dichvu d LEFT JOIN l.thucung t LEFT JOIN l.idcalichhen c ";
+
+    // Các finder trả entity cho màn hình hiển thị đủ thông tin nạp liên kết bằng entity graph,
+    // tránh mỗi dòng thêm một câu SELECT cho thú cưng, dịch vụ và ca
+    @Override
+    @EntityGraph(Lichhen.CHI_TIET)
+    List<Lichhen> findAll();
+
+    @Override
+    @EntityGraph(Lichhen.CHI_TIET)
+    Page<Lichhen> findAll(Pageable pageable);
+
+    @EntityGraph(Lichhen.CHI_TIET)
+    Optional<Lichhen> findChiTietById(Integer id);
+
+    @EntityGraph(Lichhen.CHI_TIET)
     Page<Lichhen> findByIdkhachhang(String idKhachHang, Pageable pageable);
 
+    @EntityGraph(Lichhen.CHI_TIET)
     Page<Lichhen> findByEmailNguoiDat(String idKhachHang, Pageable pageable);
 
     boolean existsByDateAndIdcalichhen_Id(LocalDate date, int idCaLichHen);
 
     List<Lichhen> findByEmailNguoiDatAndDateBefore(String emailNguoiDat, LocalDate date);
 
-    Optional<Lichhen> findByDateAndIdcalichhen_IdAndTrangthai(LocalDate date, int idCaLichHen, int trangthai);
-
+    @EntityGraph(Lichhen.CHI_TIET)
     Page<Lichhen> findByTrangthaicaAndDateAfter(boolean trangthaica, LocalDate date, Pageable pageable);
 
+    @EntityGraph(Lichhen.CHI_TIET)
     List<Lichhen> findByDate(LocalDate date);
 
-}
\ No newline at end of file
+    long countByIdkhachhang(String idKhachHang);
+
+    // Số lịch đã thanh toán của khách (0: tại quầy, 6: qua PayPal), dùng cho quy tắc giá hạng thân thiết
+    @Query("SELECT COUNT(l) FROM Lichhen l WHERE l.idkhachhang = :idKhachHang AND l.trangthai IN (0, 6)")
+    long countLichDaThanhToan(@Param("idKhachHang") String idKhachHang);
+
+    // Dịch vụ khách đã đặt trong ngày (trừ lịch đã hủy), dùng cho quy tắc giá combo
+    @Query("SELECT DISTINCT l.dichvu.id FROM Lichhen l " +
+            "WHERE l.idkhachhang = :idKhachHang AND l.date = :ngay AND l.trangthai <> 2")
+    List<Integer> findIdDichVuTrongNgay(@Param("idKhachHang") String idKhachHang, @Param("ngay") LocalDate ngay);
+
+    // Gộp hai câu trên khi bảng giá cần cả hai. Mỗi dòng: (số lịch đã thanh toán, id dịch vụ trong ngày hoặc null)
+    @Query(value = "SELECT t.so_lan, d.iddichvu FROM " +
+            "(SELECT COUNT(*) AS so_lan FROM lichhen WHERE idkhachhang = :idKhachHang AND trangthai IN (0, 6)) t " +
+            "LEFT JOIN (SELECT DISTINCT iddichvu FROM lichhen " +
+            "WHERE idkhachhang = :idKhachHang AND date = :ngay AND trangthai <> 2) d ON TRUE",
+            nativeQuery = true)
+    List<Object[]> findThongTinBaoGia(@Param("idKhachHang") String idKhachHang, @Param("ngay") LocalDate ngay);
+
+    long countByEmailNguoiDat(String emailNguoiDat);
+
+    long countByTrangthaicaAndDateAfter(boolean trangthaica, LocalDate date);
+
+    // Phân trang keyset theo (date, id) giảm dần: chỉ đọc soLuong dòng sau con trỏ trên index, không OFFSET, không COUNT.
+    // Điều kiện date <= :ngay là khoảng quét trên index, phần OR chỉ loại các dòng cùng ngày đã trả ở trang trước.
+    @Query(TOM_TAT + "WHERE l.date <= :ngay AND (l.date < :ngay OR l.id < :id) " +
+            "ORDER BY l.date DESC, l.id DESC")
+    List<LichHenTomTat> cuonTatCa(@Param("ngay") LocalDate ngay, @Param("id") int id, Limit limit);
+
+    @Query(TOM_TAT + "WHERE l.idkhachhang = :idKhachHang " +
+            "AND l.date <= :ngay AND (l.date < :ngay OR l.id < :id) " +
+            "ORDER BY l.date DESC, l.id DESC")
+    List<LichHenTomTat> cuonTheoKhachHang(@Param("idKhachHang") String idKhachHang,
+                                          @Param("ngay") LocalDate ngay, @Param("id") int id, Limit limit);
+
+    @Query(TOM_TAT + "WHERE l.emailNguoiDat = :email " +
+            "AND l.date <= :ngay AND (l.date < :ngay OR l.id < :id) " +
+            "ORDER BY l.date DESC, l.id DESC")
+    List<LichHenTomTat> cuonTheoEmail(@Param("email") String email,
+                                      @Param("ngay") LocalDate ngay, @Param("id") int id, Limit limit);
+
+    // Lịch sắp tới theo (date, id) tăng dần
+    @Query(TOM_TAT + "WHERE l.trangthaica = :trangThaiCa AND l.date > :sauNgay " +
+            "AND l.date >= :ngay AND (l.date > :ngay OR l.id > :id) " +
+            "ORDER BY l.date, l.id")
+    List<LichHenTomTat> cuonTheoTrangThaiCaSauNgay(@Param("trangThaiCa") boolean trangThaiCa, @Param("sauNgay") LocalDate sauNgay,
+                                                   @Param("ngay") LocalDate ngay, @Param("id") int id, Limit limit);
+
+    // Lượt giữ chỗ (7) của một khách cho ca trong ngày
+    @Query("SELECT l FROM Lichhen l WHERE l.date = :ngay AND l.idcalichhen.id = :idCa " +
+            "AND l.trangthai = 7 AND l.nguoigiu = :nguoiGiu")
+    Optional<Lichhen> findGiuChoCuaKhach(@Param("ngay") LocalDate ngay,
+                                         @Param("idCa") Integer idCa,
+                                         @Param("nguoiGiu") String nguoiGiu);
+
+    // Chuyển lượt giữ chỗ còn hạn của chính khách thành lịch chờ xác nhận (4).
+    // Trả về 0 nếu lượt giữ đã hết hạn hoặc không thuộc khách này.
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Lichhen l SET l.trangthai = 4, l.trangthaica = true, " +
+            "l.idkhachhang = :idKhachHang, l.emailNguoiDat = :email, l.nguoigiu = null, l.hethangiu = null " +
+            "WHERE l.id = :id AND l.trangthai = 7 AND l.nguoigiu = :idKhachHang AND l.hethangiu >= :now")
+    int xacNhanGiuCho(@Param("id") Integer id,
+                      @Param("idKhachHang") String idKhachHang,
+                      @Param("email") String email,
+                      @Param("now") LocalDateTime now);
+
+    // Gia hạn lượt giữ chỗ của chính người giữ
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Lichhen l SET l.hethangiu = :hetHan WHERE l.id = :id AND l.trangthai = 7 AND l.nguoigiu = :nguoiGiu")
+    int giaHanGiuCho(@Param("id") Integer id, @Param("nguoiGiu") String nguoiGiu, @Param("hetHan") LocalDateTime hetHan);
+
+    // Người giữ tự bỏ giữ chỗ trước khi hết hạn
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Lichhen l WHERE l.id = :id AND l.trangthai = 7 AND l.nguoigiu = :nguoiGiu")
+    int xoaGiuCho(@Param("id") Integer id, @Param("nguoiGiu") String nguoiGiu);
+
+    // Khóa một lô lượt giữ chỗ đã hết hạn (id, ngày, id ca); các node khác bỏ qua dòng đang bị khóa
+    @Query(value = "SELECT id, date, idcalichhen FROM lichhen " +
+            "WHERE trangthai = 7 AND hethangiu < :now " +
+            "ORDER BY hethangiu LIMIT :soLuong FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<Object[]> khoaGiuChoHetHan(@Param("now") LocalDateTime now, @Param("soLuong") int soLuong);
+
+    // Xóa các lượt giữ chỗ đã khóa ở trên
+    @Modifying
+    @Query("DELETE FROM Lichhen l WHERE l.id IN :ids AND l.trangthai = 7")
+    int xoaGiuChoTheoId(@Param("ids") Collection<Integer> ids);
+
+    // Chuyển theo lô các lịch còn chờ xác nhận (4) sang chờ thanh toán (3)
+    @Modifying
+    @Query("UPDATE Lichhen l SET l.trangthai = 3 WHERE l.id IN :ids AND l.trangthai = 4")
+    int chuyenSangChoThanhToan(@Param("ids") Collection<Integer> ids);
+
+    // Tăng số lần nhắc nhở theo lô cho các lịch vừa được nhắc
+    @Modifying
+    @Query("UPDATE Lichhen l SET l.solannhacnho = l.solannhacnho + 1 WHERE l.id IN :ids")
+    int tangSoLanNhacNho(@Param("ids") Collection<Integer> ids);
+
+}
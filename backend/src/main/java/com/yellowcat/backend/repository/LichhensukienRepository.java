@@ -0,0 +1,27 @@
+package com.yellowcat.backend.repository;
+
+import com.yellowcat.backend.model.Lichhensukien;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface LichhensukienRepository extends JpaRepository<Lichhensukien, Long> {
+    List<Lichhensukien> findByIdlichhenOrderByIdAsc(Integer idlichhen);
+
+    // Ghi sự kiện đổi trạng thái theo lô cho các lịch còn ở trạng thái cũ, chạy trước câu UPDATE chuyển trạng thái
+    @Modifying
+    @Query(value = "INSERT INTO lichhensukien (idlichhen, loaisukien, trangthaicu, trangthaimoi, nguoithuchien) " +
+            "SELECT id, 'DOI_TRANG_THAI', trangthai, :trangThaiMoi, :nguoiThucHien FROM lichhen " +
+            "WHERE id IN :ids AND trangthai = :trangThaiCu",
+            nativeQuery = true)
+    int ghiDoiTrangThaiTheoLo(@Param("ids") Collection<Integer> ids,
+                              @Param("trangThaiCu") int trangThaiCu,
+                              @Param("trangThaiMoi") int trangThaiMoi,
+                              @Param("nguoiThucHien") String nguoiThucHien);
+}
@@ -0,0 +1,40 @@
+package com.yellowcat.backend.repository;
+
+import com.yellowcat.backend.model.Nhacnho;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface NhacnhoRepository extends JpaRepository<Nhacnho, Long> {
+
+    // Khóa một lô nhắc nhở đến hạn chưa gửi thuộc phần phan (id % soPhan = phan) của lượt quét
+    // (id nhắc nhở, id lịch, email, trạng thái lịch, thời điểm hẹn).
+    // Chỉ đi qua index idx_nhacnho_den_han; dòng đang bị khóa (phần bị nhận lại khi khóa phần hết hạn) được bỏ qua.
+    @Query(value = "SELECT n.id, n.idlichhen, l.emailnguoidat, l.trangthai, n.thoidiemhen " +
+            "FROM nhacnho n JOIN lichhen l ON l.id = n.idlichhen " +
+            "WHERE n.dagui = false AND n.thoidiemnhac <= :now AND n.id % :soPhan = :phan " +
+            "ORDER BY n.thoidiemnhac LIMIT :soLuong FOR UPDATE OF n SKIP LOCKED",
+            nativeQuery = true)
+    List<Object[]> khoaNhacNhoDenHan(@Param("now") LocalDateTime now, @Param("soPhan") int soPhan,
+                                     @Param("phan") int phan, @Param("soLuong") int soLuong);
+
+    @Modifying
+    @Query("UPDATE Nhacnho n SET n.dagui = true WHERE n.id IN :ids")
+    int danhDauDaGui(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM Nhacnho n WHERE n.idlichhen = :idLichHen AND n.dagui = false")
+    int xoaChuaGuiTheoLichHen(@Param("idLichHen") Integer idLichHen);
+
+    // Nhắc nhở đã gửi không còn cần sau khi qua giờ hẹn
+    @Modifying
+    @Query("DELETE FROM Nhacnho n WHERE n.dagui = true AND n.thoidiemhen < :truoc")
+    int xoaDaGuiTruoc(@Param("truoc") LocalDateTime truoc);
+}
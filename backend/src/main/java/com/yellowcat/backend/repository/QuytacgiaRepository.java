@@ -0,0 +1,10 @@
+package com.yellowcat.backend.repository;
+
+import com.yellowcat.backend.model.Quytacgia;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface QuytacgiaRepository extends JpaRepository<Quytacgia, Integer> {
+    List<Quytacgia> findByTrangthaiTrue();
+}
@@ -0,0 +1,80 @@
+package com.yellowcat.backend.repository;
+
+import com.yellowcat.backend.model.Succhuangay;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SucchuangayRepository extends JpaRepository<Succhuangay, Long> {
+    Optional<Succhuangay> findByDateAndIdcalichhen(LocalDate date, Integer idcalichhen);
+
+    // Chiếm một chỗ trong ca bằng một lần tăng có điều kiện. Trả về 0 nếu ca đã đủ người.
+    @Modifying
+    @Query("UPDATE Succhuangay s SET s.dadat = s.dadat + 1 " +
+            "WHERE s.date = :ngay AND s.idcalichhen = :idCa AND s.dadat < s.succhua")
+    int tangDaDat(@Param("ngay") LocalDate ngay, @Param("idCa") Integer idCa);
+
+    // Trả lại soLuong chỗ của ca, không để bộ đếm âm
+    @Modifying
+    @Query("UPDATE Succhuangay s SET s.dadat = s.dadat - :soLuong " +
+            "WHERE s.date = :ngay AND s.idcalichhen = :idCa AND s.dadat >= :soLuong")
+    int giamDaDat(@Param("ngay") LocalDate ngay, @Param("idCa") Integer idCa, @Param("soLuong") int soLuong);
+
+    @Query("SELECT COUNT(s) > 0 FROM Succhuangay s " +
+            "WHERE s.date = :ngay AND s.idcalichhen = :idCa AND s.dadat < s.succhua")
+    boolean conCho(@Param("ngay") LocalDate ngay, @Param("idCa") Integer idCa);
+
+    // Các cặp (ngày, id ca) còn chỗ từ một ngày trở đi, dùng để dựng chỉ mục ca trống
+    @Query("SELECT s.date, s.idcalichhen FROM Succhuangay s WHERE s.dadat < s.succhua AND s.date >= :tuNgay")
+    List<Object[]> findConChoTuNgay(@Param("tuNgay") LocalDate tuNgay);
+
+    // Id các ca còn chỗ trong một ngày, dùng để đối chiếu lại từng ngày bị lệch
+    @Query("SELECT s.idcalichhen FROM Succhuangay s WHERE s.dadat < s.succhua AND s.date = :ngay")
+    List<Integer> findIdCaConChoTheoNgay(@Param("ngay") LocalDate ngay);
+
+    // Tạo bộ đếm còn thiếu cho mọi cặp (ngày, ca) trong khoảng ngày bằng một câu INSERT ... SELECT,
+    // sức chứa lấy theo mặc định của ca
+    @Modifying
+    @Query(value = "INSERT INTO succhuangay (date, idcalichhen, succhua, dadat) " +
+            "SELECT CAST(ngay AS date), c.id, c.succhua, 0 " +
+            "FROM generate_series(CAST(:tuNgay AS date), CAST(:denNgay AS date), INTERVAL '1 day') AS ngay " +
+            "CROSS JOIN calichhen c " +
+            "ON CONFLICT (date, idcalichhen) DO NOTHING",
+            nativeQuery = true)
+    int taoTheoKhoangNgay(@Param("tuNgay") LocalDate tuNgay, @Param("denNgay") LocalDate denNgay);
+
+    // Đổi sức chứa của ca trong một ngày; không hạ thấp hơn số lịch đã đặt
+    @Modifying
+    @Query(value = "UPDATE succhuangay SET succhua = GREATEST(:sucChua, dadat) " +
+            "WHERE date = :ngay AND idcalichhen = :idCa",
+            nativeQuery = true)
+    int capNhatSucChua(@Param("ngay") LocalDate ngay, @Param("idCa") Integer idCa, @Param("sucChua") int sucChua);
+
+    // Đổi sức chứa mặc định của ca cho các ngày từ tuNgay trở đi còn giữ mặc định cũ;
+    // ngày đã được chỉnh riêng (sức chứa khác mặc định cũ) giữ nguyên
+    @Modifying
+    @Query(value = "UPDATE succhuangay SET succhua = GREATEST(:sucChuaMoi, dadat) " +
+            "WHERE idcalichhen = :idCa AND date >= :tuNgay AND succhua = :sucChuaCu",
+            nativeQuery = true)
+    int capNhatSucChuaMacDinhTuNgay(@Param("idCa") Integer idCa, @Param("tuNgay") LocalDate tuNgay,
+                                    @Param("sucChuaCu") int sucChuaCu, @Param("sucChuaMoi") int sucChuaMoi);
+
+    // Xóa hàng loạt bộ đếm đã qua ngày
+    @Modifying
+    @Query("DELETE FROM Succhuangay s WHERE s.date < :ngay")
+    int xoaTruocNgay(@Param("ngay") LocalDate ngay);
+
+    // Xóa tối đa soLuong bộ đếm đã qua ngày, mỗi lô là một transaction ngắn
+    @Modifying
+    @Query(value = "DELETE FROM succhuangay WHERE id IN (SELECT id FROM succhuangay " +
+            "WHERE date < :ngay LIMIT :soLuong)",
+            nativeQuery = true)
+    int xoaTruocNgayTheoLo(@Param("ngay") LocalDate ngay, @Param("soLuong") int soLuong);
+}
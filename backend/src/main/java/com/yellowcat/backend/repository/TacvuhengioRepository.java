@@ -0,0 +1,60 @@
+package com.yellowcat.backend.repository;
+
+import com.yellowcat.backend.model.Tacvuhengio;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface TacvuhengioRepository extends JpaRepository<Tacvuhengio, Long> {
+
+    // Khóa các tác vụ chưa có node nào giữ còn hạn (node giữ đã chết), hoặc của chính node này khi gomCuaNode
+    // (node khởi động lại với cùng tên). Dòng node khác đang nhận dở được bỏ qua nhờ SKIP LOCKED.
+    // Duyệt theo id (sauId) để các dòng vừa nhận không bị nhận lại trong cùng lượt.
+    // Thời gian lấy theo đồng hồ của DB như KhoaTacVu.
+    @Query(value = "SELECT * FROM tacvuhengio " +
+            "WHERE loaitacvu = :loai AND (hethangiu IS NULL OR hethangiu <= LOCALTIMESTAMP " +
+            "OR (:gomCuaNode AND nguoigiu = :nguoiGiu)) AND id > :sauId " +
+            "ORDER BY id LIMIT :soLuong FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<Tacvuhengio> khoaTacVuChuaCoNguoiGiu(@Param("loai") String loai,
+                                              @Param("nguoiGiu") String nguoiGiu,
+                                              @Param("gomCuaNode") boolean gomCuaNode,
+                                              @Param("sauId") long sauId,
+                                              @Param("soLuong") int soLuong);
+
+    @Modifying
+    @Query(value = "UPDATE tacvuhengio SET nguoigiu = :nguoiGiu, " +
+            "hethangiu = LOCALTIMESTAMP + :giuMs * INTERVAL '1 millisecond' WHERE id IN :ids",
+            nativeQuery = true)
+    int nhanTacVu(@Param("ids") Collection<Long> ids, @Param("nguoiGiu") String nguoiGiu, @Param("giuMs") long giuMs);
+
+    // Gia hạn mọi tác vụ node này đang hẹn giờ
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE tacvuhengio SET hethangiu = LOCALTIMESTAMP + :giuMs * INTERVAL '1 millisecond' " +
+            "WHERE nguoigiu = :nguoiGiu",
+            nativeQuery = true)
+    int giaHanTacVu(@Param("nguoiGiu") String nguoiGiu, @Param("giuMs") long giuMs);
+
+    // Khóa các tác vụ đến hạn mà node này còn giữ. Tác vụ đã bị xóa (lịch bị hủy) hoặc đã được node khác
+    // nhận lại khi node này lỡ gia hạn thì không có trong kết quả.
+    @Query(value = "SELECT id FROM tacvuhengio WHERE id IN :ids AND nguoigiu = :nguoiGiu FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<Long> khoaTacVuCuaNode(@Param("ids") Collection<Long> ids, @Param("nguoiGiu") String nguoiGiu);
+
+    @Modifying
+    @Query("DELETE FROM Tacvuhengio t WHERE t.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Tacvuhengio t WHERE t.idlichhen = :idLichHen AND t.loaitacvu = :loai")
+    int deleteByIdlichhenAndLoaitacvu(@Param("idLichHen") Integer idLichHen, @Param("loai") String loai);
+}
@@ -0,0 +1,45 @@
+package com.yellowcat.backend.scheduler;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sổ đăng ký các tác vụ đang chờ theo khóa (ví dụ id lịch hẹn).
+ * Hủy theo khóa là O(1) và chỉ ảnh hưởng đúng tác vụ của khóa đó;
+ * mục đăng ký tự bị xóa khi tác vụ đến hạn hoặc bị hủy nên bộ nhớ không tăng mãi.
+ */
+public class CancellationRegistry<K, T> {
+
+    private final ConcurrentHashMap<K, HashedTimingWheel.Timeout<T>> handles = new ConcurrentHashMap<>();
+
+    /**
+     * Đăng ký tác vụ cho khóa, tác vụ cũ của cùng khóa (nếu còn) bị hủy.
+     */
+    public void register(K key, HashedTimingWheel.Timeout<T> timeout) {
+        HashedTimingWheel.Timeout<T> cu = handles.put(key, timeout);
+        if (cu != null && cu != timeout) {
+            cu.cancel();
+        }
+    }
+
+    /**
+     * Hủy tác vụ đang chờ của khóa. Trả về tác vụ vừa hủy, hoặc null nếu không có tác vụ nào để hủy.
+     */
+    public HashedTimingWheel.Timeout<T> cancel(K key) {
+        HashedTimingWheel.Timeout<T> timeout = handles.remove(key);
+        if (timeout != null && timeout.cancel()) {
+            return timeout;
+        }
+        return null;
+    }
+
+    /**
+     * Gỡ đăng ký khi tác vụ mang payload này đã đến hạn. Không gỡ nếu khóa đã được đăng ký lại bằng tác vụ khác.
+     */
+    public void complete(K key, T payload) {
+        handles.computeIfPresent(key, (k, timeout) -> timeout.getPayload() == payload ? null : timeout);
+    }
+
+    public int size() {
+        return handles.size();
+    }
+}
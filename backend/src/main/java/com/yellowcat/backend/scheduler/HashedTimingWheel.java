@@ -0,0 +1,186 @@
+package com.yellowcat.backend.scheduler;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Bánh xe thời gian (hashed timing wheel) cho các tác vụ hẹn giờ.
+ * Mọi tác vụ dùng chung một luồng tick, nên hàng nghìn tác vụ đang chờ không chiếm thêm luồng nào.
+ * Các tác vụ đến hạn trong cùng một tick được gom thành một lô và giao cho hàm xử lý một lần.
+ */
+@Slf4j
+public class HashedTimingWheel<T> {
+
+    private static final int CHO = 0;
+    private static final int DA_HUY = 1;
+    private static final int DEN_HAN = 2;
+
+    private final String ten;
+    private final long tickNanos;
+    private final int mask;
+    private final ArrayDeque<Timeout<T>>[] buckets;
+    private final Queue<Timeout<T>> choThem = new ConcurrentLinkedQueue<>();
+    private final Consumer<List<T>> xuLyLo;
+    private final AtomicInteger soTacVuCho = new AtomicInteger();
+    private final long startNanos = System.nanoTime();
+
+    // Chỉ luồng tick đọc và ghi
+    private long tick;
+
+    private ScheduledExecutorService ticker;
+
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(String ten, long tickMillis, int soO, Consumer<List<T>> xuLyLo) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis phải lớn hơn 0");
+        }
+        if (soO <= 0 || Integer.bitCount(soO) != 1) {
+            throw new IllegalArgumentException("soO phải là lũy thừa của 2");
+        }
+        this.ten = ten;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.mask = soO - 1;
+        this.buckets = new ArrayDeque[soO];
+        for (int i = 0; i < soO; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.xuLyLo = xuLyLo;
+    }
+
+    public synchronized void start() {
+        if (ticker != null) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, ten);
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+
+    /**
+     * Hẹn giờ một tác vụ. Có thể gọi từ bất kỳ luồng nào, không khóa.
+     */
+    public Timeout<T> schedule(T payload, long delayMillis) {
+        long deadline = System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        Timeout<T> timeout = new Timeout<>(payload, deadline);
+        soTacVuCho.incrementAndGet();
+        choThem.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Số tác vụ chưa đến hạn (có thể gồm cả tác vụ đã hủy nhưng chưa được dọn khỏi ô).
+     */
+    public int size() {
+        return soTacVuCho.get();
+    }
+
+    private void tick() {
+        List<T> denHan = new ArrayList<>();
+        try {
+            long now = System.nanoTime() - startNanos;
+            // Nếu luồng tick bị trễ thì xử lý bù các ô đã qua
+            while ((tick + 1) * tickNanos <= now) {
+                chuyenTacVuMoi();
+                xuLyO(buckets[(int) (tick & mask)], denHan);
+                tick++;
+            }
+        } catch (Throwable e) {
+            log.error("Lỗi khi quay bánh xe thời gian {}: {}", ten, e.getMessage(), e);
+        }
+
+        if (!denHan.isEmpty()) {
+            try {
+                xuLyLo.accept(denHan);
+            } catch (Throwable e) {
+                log.error("Lỗi khi xử lý {} tác vụ đến hạn của {}: {}", denHan.size(), ten, e.getMessage(), e);
+            }
+        }
+    }
+
+    private void chuyenTacVuMoi() {
+        Timeout<T> timeout;
+        while ((timeout = choThem.poll()) != null) {
+            if (timeout.isCancelled()) {
+                soTacVuCho.decrementAndGet();
+                continue;
+            }
+            long ticks = Math.max(timeout.deadline / tickNanos, tick);
+            timeout.rounds = (ticks - tick) / buckets.length;
+            buckets[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void xuLyO(ArrayDeque<Timeout<T>> bucket, List<T> denHan) {
+        Iterator<Timeout<T>> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Timeout<T> timeout = iterator.next();
+            if (timeout.isCancelled()) {
+                iterator.remove();
+                soTacVuCho.decrementAndGet();
+            } else if (timeout.rounds <= 0) {
+                iterator.remove();
+                soTacVuCho.decrementAndGet();
+                if (timeout.state.compareAndSet(CHO, DEN_HAN)) {
+                    denHan.add(timeout.payload);
+                }
+            } else {
+                timeout.rounds--;
+            }
+        }
+    }
+
+    /**
+     * Tay cầm của một tác vụ đã hẹn giờ, dùng để hủy tác vụ.
+     */
+    public static final class Timeout<T> {
+        private final T payload;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(CHO);
+        private long rounds;
+
+        private Timeout(T payload, long deadline) {
+            this.payload = payload;
+            this.deadline = deadline;
+        }
+
+        public T getPayload() {
+            return payload;
+        }
+
+        /**
+         * Hủy tác vụ nếu chưa đến hạn. O(1), không khóa; tác vụ sẽ được dọn khỏi ô ở lần quay kế tiếp.
+         */
+        public boolean cancel() {
+            return state.compareAndSet(CHO, DA_HUY);
+        }
+
+        public boolean isCancelled() {
+            return state.get() == DA_HUY;
+        }
+
+        public boolean isExpired() {
+            return state.get() == DEN_HAN;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.yellowcat.backend.service;
+
+import com.yellowcat.backend.model.Quytacgia;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Bảng giá đã biên dịch từ các quy tắc đang bật (xem V14__Quy_tac_gia.sql): một dãy bước bất biến,
+ * mỗi loại quy tắc có ít nhất một dòng thì thành một bước, tra theo mảng đánh chỉ số bằng id dịch vụ
+ * hoặc tìm nhị phân. Đổi quy tắc thì biên dịch bảng mới và thay cả bảng (xem {@link QuyTacGiaService}).
+ * Tính giá chỉ đọc mảng và số nguyên thủy, không cấp phát bộ nhớ.
+ *
+ * Thứ tự tính, bắt đầu từ giá niêm yết của dịch vụ:
+ * <ol>
+ *     <li>GIAM_DICH_VU: giảm theo dịch vụ, nhiều dòng cho cùng dịch vụ thì lấy mức cao nhất</li>
+ *     <li>COMBO: giảm khi khách có lịch dịch vụ kèm cùng ngày, nhiều combo khớp thì lấy mức cao nhất</li>
+ *     <li>PHU_PHI_CAN_NANG: cộng số tiền và phần trăm giá niêm yết theo khoảng cân nặng,
+ *         các khoảng chồng nhau (kể cả khoảng chung cho mọi dịch vụ) được cộng dồn</li>
+ *     <li>HANG_THAN_THIET: giảm theo số lịch thành công, lấy mức cao nhất trong các hạng đã đạt</li>
+ *     <li>Đợt giảm giá đang áp dụng (Giamgia)</li>
+ * </ol>
+ * Kết quả làm tròn tới đồng và không âm.
+ */
+@Slf4j
+public final class BangGia {
+
+    // Một bước trong dãy tính giá
+    interface Buoc {
+        double apDung(double gia, YeuCauBaoGia yeuCau);
+    }
+
+    private final Buoc[] cacBuoc;
+    private final boolean canSoLanDat;
+    private final boolean canDichVuCungNgay;
+    private final int soQuyTac;
+
+    private BangGia(Buoc[] cacBuoc, boolean canSoLanDat, boolean canDichVuCungNgay, int soQuyTac) {
+        this.cacBuoc = cacBuoc;
+        this.canSoLanDat = canSoLanDat;
+        this.canDichVuCungNgay = canDichVuCungNgay;
+        this.soQuyTac = soQuyTac;
+    }
+
+    public static BangGia bienDich(List<Quytacgia> danhSach) {
+        Map<String, List<Quytacgia>> theoLoai = new HashMap<>();
+        int soQuyTac = 0;
+        for (Quytacgia q : danhSach) {
+            if (!Boolean.TRUE.equals(q.getTrangthai())) {
+                continue;
+            }
+            if (!hopLe(q)) {
+                log.warn("Bỏ qua quy tắc giá {} ({}) thiếu thông tin.", q.getId(), q.getLoai());
+                continue;
+            }
+            theoLoai.computeIfAbsent(q.getLoai(), k -> new ArrayList<>()).add(q);
+            soQuyTac++;
+        }
+
+        List<Buoc> cacBuoc = new ArrayList<>();
+        List<Quytacgia> giamDichVu = theoLoai.get(Quytacgia.GIAM_DICH_VU);
+        if (giamDichVu != null) {
+            cacBuoc.add(GiamTheoDichVu.tao(giamDichVu));
+        }
+        List<Quytacgia> combo = theoLoai.get(Quytacgia.COMBO);
+        if (combo != null) {
+            cacBuoc.add(Combo.tao(combo));
+        }
+        List<Quytacgia> phuPhi = theoLoai.get(Quytacgia.PHU_PHI_CAN_NANG);
+        if (phuPhi != null) {
+            cacBuoc.add(PhuPhiCanNang.tao(phuPhi));
+        }
+        List<Quytacgia> hang = theoLoai.get(Quytacgia.HANG_THAN_THIET);
+        if (hang != null) {
+            cacBuoc.add(HangThanThiet.tao(hang));
+        }
+        return new BangGia(cacBuoc.toArray(new Buoc[0]), hang != null, combo != null, soQuyTac);
+    }
+
+    public long tinh(YeuCauBaoGia yeuCau) {
+        double gia = yeuCau.getGiaNiemYet();
+        for (Buoc buoc : cacBuoc) {
+            gia = buoc.apDung(gia, yeuCau);
+        }
+        gia = giam(gia, yeuCau.getPhanTramGiamDot());
+        return Math.max(0, Math.round(gia));
+    }
+
+    // Có quy tắc hạng thân thiết: người gọi cần điền số lịch thành công của khách
+    public boolean isCanSoLanDat() {
+        return canSoLanDat;
+    }
+
+    // Có quy tắc combo: người gọi cần điền các dịch vụ khách đã đặt cùng ngày
+    public boolean isCanDichVuCungNgay() {
+        return canDichVuCungNgay;
+    }
+
+    public int getSoQuyTac() {
+        return soQuyTac;
+    }
+
+    private static boolean hopLe(Quytacgia q) {
+        if (q.getLoai() == null || q.getPhantram() == null || q.getSotien() == null) {
+            return false;
+        }
+        return switch (q.getLoai()) {
+            case Quytacgia.GIAM_DICH_VU -> q.getIddichvu() != null;
+            case Quytacgia.COMBO -> q.getIddichvu() != null && q.getIddichvukem() != null;
+            case Quytacgia.PHU_PHI_CAN_NANG -> q.getCannangden() == null
+                    || BangCanNang.tu(q) < q.getCannangden();
+            case Quytacgia.HANG_THAN_THIET -> q.getSolandat() != null;
+            default -> false;
+        };
+    }
+
+    private static double giam(double gia, int phanTram) {
+        return phanTram == 0 ? gia : gia * (100 - phanTram) / 100;
+    }
+
+    private static int maxId(List<Quytacgia> danhSach) {
+        return danhSach.stream().mapToInt(Quytacgia::getIddichvu).max().orElse(0);
+    }
+
+    // Phần trăm giảm theo id dịch vụ
+    static final class GiamTheoDichVu implements Buoc {
+        private final int[] phanTramTheoId;
+
+        private GiamTheoDichVu(int[] phanTramTheoId) {
+            this.phanTramTheoId = phanTramTheoId;
+        }
+
+        static GiamTheoDichVu tao(List<Quytacgia> danhSach) {
+            int[] phanTram = new int[maxId(danhSach) + 1];
+            for (Quytacgia q : danhSach) {
+                phanTram[q.getIddichvu()] = Math.max(phanTram[q.getIddichvu()], q.getPhantram());
+            }
+            return new GiamTheoDichVu(phanTram);
+        }
+
+        @Override
+        public double apDung(double gia, YeuCauBaoGia yeuCau) {
+            int id = yeuCau.getIdDichVu();
+            return id >= 0 && id < phanTramTheoId.length ? giam(gia, phanTramTheoId[id]) : gia;
+        }
+    }
+
+    // Theo id dịch vụ: các dịch vụ kèm và phần trăm giảm tương ứng
+    static final class Combo implements Buoc {
+        private final int[][] kemTheoId;
+        private final int[][] phanTramTheoId;
+
+        private Combo(int[][] kemTheoId, int[][] phanTramTheoId) {
+            this.kemTheoId = kemTheoId;
+            this.phanTramTheoId = phanTramTheoId;
+        }
+
+        static Combo tao(List<Quytacgia> danhSach) {
+            int n = maxId(danhSach) + 1;
+            int[][] kem = new int[n][];
+            int[][] phanTram = new int[n][];
+            for (Quytacgia q : danhSach) {
+                int id = q.getIddichvu();
+                int cu = kem[id] == null ? 0 : kem[id].length;
+                kem[id] = kem[id] == null ? new int[1] : Arrays.copyOf(kem[id], cu + 1);
+                phanTram[id] = phanTram[id] == null ? new int[1] : Arrays.copyOf(phanTram[id], cu + 1);
+                kem[id][cu] = q.getIddichvukem();
+                phanTram[id][cu] = q.getPhantram();
+            }
+            return new Combo(kem, phanTram);
+        }
+
+        @Override
+        public double apDung(double gia, YeuCauBaoGia yeuCau) {
+            int id = yeuCau.getIdDichVu();
+            if (id < 0 || id >= kemTheoId.length || kemTheoId[id] == null) {
+                return gia;
+            }
+            int[] kem = kemTheoId[id];
+            int[] cungNgay = yeuCau.getDichVuCungNgay();
+            int toiDa = 0;
+            for (int i = 0; i < kem.length; i++) {
+                for (int daDat : cungNgay) {
+                    if (daDat == kem[i]) {
+                        toiDa = Math.max(toiDa, phanTramTheoId[id][i]);
+                        break;
+                    }
+                }
+            }
+            return giam(gia, toiDa);
+        }
+    }
+
+    // Các đoạn cân nặng [moc[i], moc[i + 1]) với tổng phụ phí của các quy tắc phủ đoạn đó
+    static final class PhuPhiCanNang implements Buoc {
+        private final BangCanNang chung;
+        private final BangCanNang[] theoId;
+
+        private PhuPhiCanNang(BangCanNang chung, BangCanNang[] theoId) {
+            this.chung = chung;
+            this.theoId = theoId;
+        }
+
+        static PhuPhiCanNang tao(List<Quytacgia> danhSach) {
+            List<Quytacgia> chung = danhSach.stream().filter(q -> q.getIddichvu() == null).toList();
+            TreeMap<Integer, List<Quytacgia>> theoDichVu = new TreeMap<>();
+            for (Quytacgia q : danhSach) {
+                if (q.getIddichvu() != null) {
+                    theoDichVu.computeIfAbsent(q.getIddichvu(), k -> new ArrayList<>(chung)).add(q);
+                }
+            }
+            int n = theoDichVu.isEmpty() ? 0 : theoDichVu.lastKey() + 1;
+            BangCanNang[] theoId = new BangCanNang[n];
+            theoDichVu.forEach((id, ds) -> theoId[id] = BangCanNang.tao(ds));
+            return new PhuPhiCanNang(BangCanNang.tao(chung), theoId);
+        }
+
+        @Override
+        public double apDung(double gia, YeuCauBaoGia yeuCau) {
+            double canNang = yeuCau.getCanNang();
+            if (Double.isNaN(canNang)) {
+                return gia;
+            }
+            int id = yeuCau.getIdDichVu();
+            BangCanNang bang = id >= 0 && id < theoId.length && theoId[id] != null ? theoId[id] : chung;
+            return bang.congPhuPhi(gia, yeuCau.getGiaNiemYet(), canNang);
+        }
+    }
+
+    static final class BangCanNang {
+        private final double[] moc;
+        private final double[] soTien;
+        private final double[] phanTram;
+
+        private BangCanNang(double[] moc, double[] soTien, double[] phanTram) {
+            this.moc = moc;
+            this.soTien = soTien;
+            this.phanTram = phanTram;
+        }
+
+        static BangCanNang tao(List<Quytacgia> danhSach) {
+            TreeSet<Double> cacMoc = new TreeSet<>();
+            for (Quytacgia q : danhSach) {
+                cacMoc.add(tu(q));
+                if (q.getCannangden() != null) {
+                    cacMoc.add(q.getCannangden());
+                }
+            }
+            double[] moc = cacMoc.stream().mapToDouble(Double::doubleValue).toArray();
+            double[] soTien = new double[moc.length];
+            double[] phanTram = new double[moc.length];
+            for (int i = 0; i < moc.length; i++) {
+                for (Quytacgia q : danhSach) {
+                    if (tu(q) <= moc[i] && (q.getCannangden() == null || moc[i] < q.getCannangden())) {
+                        soTien[i] += q.getSotien();
+                        phanTram[i] += q.getPhantram();
+                    }
+                }
+            }
+            return new BangCanNang(moc, soTien, phanTram);
+        }
+
+        private static double tu(Quytacgia q) {
+            return q.getCannangtu() == null ? 0 : q.getCannangtu();
+        }
+
+        double congPhuPhi(double gia, double giaNiemYet, double canNang) {
+            int i = Arrays.binarySearch(moc, canNang);
+            int doan = i >= 0 ? i : -i - 2;
+            if (doan < 0) {
+                return gia;
+            }
+            return gia + soTien[doan] + giaNiemYet * phanTram[doan] / 100;
+        }
+    }
+
+    // Ngưỡng số lịch thành công tăng dần, phần trăm giảm cao nhất trong các hạng đã đạt
+    static final class HangThanThiet implements Buoc {
+        private final int[] nguong;
+        private final int[] phanTram;
+
+        private HangThanThiet(int[] nguong, int[] phanTram) {
+            this.nguong = nguong;
+            this.phanTram = phanTram;
+        }
+
+        static HangThanThiet tao(List<Quytacgia> danhSach) {
+            TreeMap<Integer, Integer> theoNguong = new TreeMap<>();
+            for (Quytacgia q : danhSach) {
+                theoNguong.merge(q.getSolandat(), q.getPhantram(), Math::max);
+            }
+            int[] nguong = new int[theoNguong.size()];
+            int[] phanTram = new int[theoNguong.size()];
+            int i = 0;
+            int toiDa = 0;
+            for (Map.Entry<Integer, Integer> e : theoNguong.entrySet()) {
+                toiDa = Math.max(toiDa, e.getValue());
+                nguong[i] = e.getKey();
+                phanTram[i] = toiDa;
+                i++;
+            }
+            return new HangThanThiet(nguong, phanTram);
+        }
+
+        @Override
+        public double apDung(double gia, YeuCauBaoGia yeuCau) {
+            int i = Arrays.binarySearch(nguong, yeuCau.getSoLanDat());
+            int hang = i >= 0 ? i : -i - 2;
+            return hang < 0 ? gia : giam(gia, phanTram[hang]);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.yellowcat.backend.service;
+
+import java.time.LocalDate;
+
+/**
+ * Phát ra khi một ca trong ngày trở lại trạng thái trống (hủy lịch, đổi lịch, hết hạn giữ chỗ).
+ */
+public record CaDuocTraLaiEvent(LocalDate ngay, Integer idCaLichHen) {
+}
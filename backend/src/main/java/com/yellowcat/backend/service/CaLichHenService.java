@@ -4,11 +4,15 @@ import com.yellowcat.backend.model.Calichhen;
 import com.yellowcat.backend.repository.CalichhenRepository;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 
@@ -17,32 +21,80 @@ public class CaLichHenService {
     @Autowired
     private CalichhenRepository caLichHenRepository;
 
+    @Autowired
+    private SlotAvailabilityIndex slotAvailabilityIndex;
+
+    @Autowired
+    private SucChuaService sucChuaService;
+
+    @Autowired
+    private DanhMucCache danhMucCache;
+
+    @Value("${lichhen.suc-chua.so-ngay:7}")
+    private int soNgayMoSucChua;
+
     public void UpdateNgayNghi(LocalDate ngay){
         caLichHenRepository.updateNgayNghi(ngay);
+        danhMucCache.xoaSauCommit(DanhMucCache.CA_LICH_HEN, null);
     }
 
+    // Lưu ca; ca mới được mở ngay cho các ngày tới. Khi sức chứa mặc định đổi, chỉ các ngày đã mở từ hôm nay
+    // còn giữ mặc định cũ mới theo mặc định mới, ngày đã được chỉnh riêng qua /suc-chua-ngay giữ nguyên
+    @Transactional
     public void addOrUpdate(Calichhen calichhen){
-        caLichHenRepository.save(calichhen);
+        Integer sucChuaCu = calichhen.getId() == null ? null
+                : caLichHenRepository.findSucChuaById(calichhen.getId()).orElse(null);
+        Calichhen daLuu = caLichHenRepository.save(calichhen);
+        LocalDate homNay = LocalDate.now();
+        sucChuaService.taoTheoKhoangNgay(homNay, homNay.plusDays(soNgayMoSucChua));
+        if (sucChuaCu != null && !sucChuaCu.equals(daLuu.getSucchua())) {
+            sucChuaService.capNhatSucChuaMacDinhTuNgay(daLuu.getId(), homNay, sucChuaCu, daLuu.getSucchua());
+        }
+        slotAvailabilityIndex.napLaiSauCommit();
+        danhMucCache.xoaSauCommit(DanhMucCache.CA_LICH_HEN, daLuu.getId());
     }
 
+    @Transactional
+    public void capNhatSucChuaNgay(int idCaLichHen, LocalDate ngay, int sucChua){
+        sucChuaService.capNhatSucChua(ngay, idCaLichHen, sucChua);
+    }
+
+    // Bản trong cache, chỉ được đọc
     public Optional<Calichhen> findById (Integer id){
-        return caLichHenRepository.findById(id)
-    ;}
+        return danhMucCache.lay(DanhMucCache.CA_LICH_HEN, String.valueOf(id), () -> caLichHenRepository.findById(id));
+    }
 
     public void DoiTrangthaiCaTrongNgay(int idCaLichHen, LocalDate ngay, boolean trangThai){
         caLichHenRepository.updateTrangThaiCaTrongNgay(idCaLichHen, ngay, trangThai);
+        danhMucCache.xoaSauCommit(DanhMucCache.CA_LICH_HEN, idCaLichHen);
     }
 
+    // Đọc từ chỉ mục ca trống trong bộ nhớ, chỉ truy vấn DB khi chỉ mục chưa được dựng xong
     public List<Calichhen> getAllByDate(LocalDate date){
+        if (slotAvailabilityIndex.isSanSang()) {
+            return slotAvailabilityIndex.getCaTrong(date);
+        }
         return caLichHenRepository.findAllCaAndStatusByDateaAndTrangthaiFalse(date);
     }
 
+    // Lịch trống nhiều ngày: lấy từ chỉ mục nếu đã sẵn sàng, nếu chưa thì dùng một truy vấn gom theo ngày
+    public Map<LocalDate, List<Integer>> getCaTrongTheoKhoangNgay(LocalDate tuNgay, LocalDate denNgay){
+        if (slotAvailabilityIndex.isSanSang()) {
+            return slotAvailabilityIndex.getCaTrong(tuNgay, denNgay);
+        }
+        Map<LocalDate, List<Integer>> ketQua = new LinkedHashMap<>();
+        for (Object[] dong : caLichHenRepository.findCaTrongTheoKhoangNgay(tuNgay, denNgay)) {
+            ketQua.computeIfAbsent((LocalDate) dong[0], d -> new ArrayList<>()).add((Integer) dong[1]);
+        }
+        return ketQua;
+    }
+
     public List<Calichhen> findAll(){
-        return caLichHenRepository.findAll();
+        return danhMucCache.lay(DanhMucCache.CA_LICH_HEN, "tat-ca", () -> List.copyOf(caLichHenRepository.findAll()));
     }
 
     public boolean isCaAvailable(Integer caId,LocalDate date) {
-        Optional<Calichhen> caOptional = caLichHenRepository.findById(caId);
+        Optional<Calichhen> caOptional = findById(caId);
         if (caOptional.isPresent()) {
             Calichhen ca = caOptional.get();
 
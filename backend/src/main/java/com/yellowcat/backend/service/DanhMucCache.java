@@ -0,0 +1,174 @@
+package com.yellowcat.backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache trong bộ nhớ của dữ liệu danh mục (dịch vụ, giảm giá, ca lịch hẹn, quy tắc giá) trên mỗi node.
+ * Khóa theo từng id ("dichvu", "12") hoặc theo danh sách ("dichvu", "dang-ban"); khi một dòng thay đổi,
+ * mục của id đó và các danh sách cùng loại bị xóa. Thay đổi ở node khác đến qua {@link KenhThayDoiDanhMuc};
+ * khi mất kênh thông báo, các mục chỉ sống theo ttl ngắn để dữ liệu cũ không tồn tại lâu.
+ */
+@Service
+@Slf4j
+public class DanhMucCache {
+
+    public static final String DICH_VU = "dichvu";
+    public static final String GIAM_GIA = "giamgia";
+    public static final String CA_LICH_HEN = "calichhen";
+    public static final String QUY_TAC_GIA = "quytacgia";
+
+    private final Duration ttl;
+    private final Duration ttlMatKenh;
+    private final ConcurrentHashMap<Khoa, Muc> theoKhoa = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Khoa, CompletableFuture<Object>> theoKhoaDangNap = new ConcurrentHashMap<>();
+    // Tăng mỗi lần một loại bị xóa, giá trị nạp từ DB trước thời điểm đó không được lưu vào cache
+    private final ConcurrentHashMap<String, AtomicLong> phienBan = new ConcurrentHashMap<>();
+    private volatile boolean kenhHoatDong;
+
+    private final AtomicLong soLanTrung = new AtomicLong();
+    private final AtomicLong soLanTruot = new AtomicLong();
+    private final AtomicLong soLanXoa = new AtomicLong();
+    private final AtomicLong soThongBao = new AtomicLong();
+    private volatile LocalDateTime thongBaoCuoi;
+
+    public DanhMucCache(@Value("${danh-muc.cache.ttl-giay:600}") long ttlGiay,
+                        @Value("${danh-muc.cache.ttl-mat-kenh-giay:30}") long ttlMatKenhGiay) {
+        this.ttl = Duration.ofSeconds(ttlGiay);
+        this.ttlMatKenh = Duration.ofSeconds(ttlMatKenhGiay);
+    }
+
+    // Lấy từ cache, chưa có hoặc đã hết hạn thì nạp bằng nap và lưu lại.
+    // Nhiều request cùng trượt một khóa thì chỉ một request nạp, các request khác chờ dùng chung kết quả.
+    @SuppressWarnings("unchecked")
+    public <T> T lay(String loai, String khoa, Supplier<T> nap) {
+        Khoa k = new Khoa(loai, khoa);
+        Muc muc = theoKhoa.get(k);
+        if (muc != null && muc.hetHan() - System.nanoTime() > 0) {
+            soLanTrung.incrementAndGet();
+            return (T) muc.giaTri();
+        }
+        soLanTruot.incrementAndGet();
+
+        CompletableFuture<Object> lanNap = new CompletableFuture<>();
+        CompletableFuture<Object> dangNap = theoKhoaDangNap.putIfAbsent(k, lanNap);
+        if (dangNap != null) {
+            try {
+                return (T) dangNap.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException r ? r : e;
+            }
+        }
+        try {
+            AtomicLong phien = phienBan(loai);
+            long phienTruocKhiNap = phien.get();
+            T giaTri = nap.get();
+            long han = (kenhHoatDong ? ttl : ttlMatKenh).toNanos();
+            Muc moi = new Muc(giaTri, System.nanoTime() + han);
+            if (phien.get() == phienTruocKhiNap) {
+                theoKhoa.put(k, moi);
+                // Bị xóa ngay trong lúc lưu thì bỏ giá trị vừa lưu
+                if (phien.get() != phienTruocKhiNap) {
+                    theoKhoa.remove(k, moi);
+                }
+            }
+            lanNap.complete(giaTri);
+            return giaTri;
+        } catch (RuntimeException e) {
+            lanNap.completeExceptionally(e);
+            throw e;
+        } finally {
+            theoKhoaDangNap.remove(k, lanNap);
+        }
+    }
+
+    // Xóa mục của id và các danh sách cùng loại; id null là xóa toàn bộ loại đó
+    public void xoa(String loai, String id) {
+        phienBan(loai).incrementAndGet();
+        theoKhoa.keySet().removeIf(k -> k.loai().equals(loai) && (id == null || k.khoa().equals(id) || !laId(k.khoa())));
+        soLanXoa.incrementAndGet();
+    }
+
+    // Xóa trên node này ngay khi transaction ghi commit, không chờ thông báo quay về qua kênh
+    public void xoaSauCommit(String loai, Integer id) {
+        String khoa = id == null ? null : String.valueOf(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    xoa(loai, khoa);
+                }
+            });
+        } else {
+            xoa(loai, khoa);
+        }
+    }
+
+    public void xoaTatCa() {
+        phienBan.values().forEach(AtomicLong::incrementAndGet);
+        theoKhoa.clear();
+        soLanXoa.incrementAndGet();
+    }
+
+    // Nhận một thông báo "loai:id" từ kênh
+    public void nhanThongBao(String payload) {
+        soThongBao.incrementAndGet();
+        thongBaoCuoi = LocalDateTime.now();
+        int viTri = payload.indexOf(':');
+        if (viTri < 0) {
+            log.warn("Bỏ qua thông báo thay đổi không hợp lệ: {}", payload);
+            return;
+        }
+        xoa(payload.substring(0, viTri), payload.substring(viTri + 1));
+    }
+
+    // Có thể đã lỡ thông báo trong lúc đổi trạng thái kênh nên bỏ toàn bộ cache
+    public void datKenhHoatDong(boolean hoatDong) {
+        kenhHoatDong = hoatDong;
+        xoaTatCa();
+    }
+
+    public boolean isKenhHoatDong() {
+        return kenhHoatDong;
+    }
+
+    public Map<String, Object> thongKe() {
+        Map<String, Object> ketQua = new LinkedHashMap<>();
+        ketQua.put("kenhHoatDong", kenhHoatDong);
+        ketQua.put("ttlGiay", (kenhHoatDong ? ttl : ttlMatKenh).toSeconds());
+        ketQua.put("soMuc", theoKhoa.size());
+        ketQua.put("soLanTrung", soLanTrung.get());
+        ketQua.put("soLanTruot", soLanTruot.get());
+        ketQua.put("soLanXoa", soLanXoa.get());
+        ketQua.put("soThongBao", soThongBao.get());
+        ketQua.put("thongBaoCuoi", thongBaoCuoi);
+        return ketQua;
+    }
+
+    private AtomicLong phienBan(String loai) {
+        return phienBan.computeIfAbsent(loai, k -> new AtomicLong());
+    }
+
+    private static boolean laId(String khoa) {
+        return !khoa.isEmpty() && khoa.chars().allMatch(Character::isDigit);
+    }
+
+    private record Khoa(String loai, String khoa) {
+    }
+
+    private record Muc(Object giaTri, long hetHan) {
+    }
+}
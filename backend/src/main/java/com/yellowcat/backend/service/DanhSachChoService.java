@@ -0,0 +1,151 @@
+package com.yellowcat.backend.service;
+
+import com.yellowcat.backend.model.Danhsachcho;
+import com.yellowcat.backend.model.Lichhen;
+import com.yellowcat.backend.repository.DanhsachchoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Danh sách chờ theo (ngày, ca), ưu tiên ai đăng ký trước.
+ * Khi ca được trả lại, người chờ đầu tiên được đề nghị bằng một lượt giữ chỗ có hạn (xem {@link GiuChoService})
+ * và nhận email; hết hạn mà không xác nhận thì ca được trả lại và đề nghị cho người kế tiếp.
+ */
+@Service
+@Slf4j
+public class DanhSachChoService {
+
+    public static final int DANG_CHO = 0;
+    public static final int DA_DE_NGHI = 1;
+
+    private final DanhsachchoRepository danhsachchoRepository;
+    private final GiuChoService giuChoService;
+    private final SlotAvailabilityIndex slotAvailabilityIndex;
+    private final EmailService emailService;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration thoiGianDeNghi;
+
+    public DanhSachChoService(DanhsachchoRepository danhsachchoRepository,
+                              GiuChoService giuChoService,
+                              SlotAvailabilityIndex slotAvailabilityIndex,
+                              EmailService emailService,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${lichhen.danh-sach-cho.phut-de-nghi:30}") long phutDeNghi) {
+        this.danhsachchoRepository = danhsachchoRepository;
+        this.giuChoService = giuChoService;
+        this.slotAvailabilityIndex = slotAvailabilityIndex;
+        this.emailService = emailService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.thoiGianDeNghi = Duration.ofMinutes(phutDeNghi);
+    }
+
+    // Đăng ký chờ một ca đã kín. Trả về rỗng nếu ca đang trống hoặc khách đã có lượt chờ cho ca này.
+    public Optional<Danhsachcho> dangKy(LocalDate ngay, Integer idCa, String idUser, String email) {
+        if (slotAvailabilityIndex.isTrong(ngay, idCa)) {
+            return Optional.empty();
+        }
+        Danhsachcho luotCho = new Danhsachcho();
+        luotCho.setIdkhachhang(idUser);
+        luotCho.setEmail(email);
+        luotCho.setDate(ngay);
+        luotCho.setIdcalichhen(idCa);
+        luotCho.setTrangthai(DANG_CHO);
+        try {
+            return Optional.of(danhsachchoRepository.save(luotCho));
+        } catch (DataIntegrityViolationException e) {
+            return Optional.empty();
+        }
+    }
+
+    public long viTri(Danhsachcho luotCho) {
+        return danhsachchoRepository.countByDateAndIdcalichhenAndTrangthaiAndIdLessThan(
+                luotCho.getDate(), luotCho.getIdcalichhen(), DANG_CHO, luotCho.getId()) + 1;
+    }
+
+    public List<Danhsachcho> findCuaKhach(String idUser) {
+        return danhsachchoRepository.findByIdkhachhangAndTrangthaiInOrderByIdDesc(idUser, List.of(DANG_CHO, DA_DE_NGHI));
+    }
+
+    public boolean roiDanhSach(Long id, String idUser) {
+        return danhsachchoRepository.roiDanhSach(id, idUser) > 0;
+    }
+
+    // Chạy sau khi transaction trả ca đã commit, trên luồng nền để không làm chậm request hủy lịch
+    @Async
+    @TransactionalEventListener(fallbackExecution = true)
+    public void khiCaDuocTraLai(CaDuocTraLaiEvent event) {
+        deNghiChoNguoiDauTien(event.ngay(), event.idCaLichHen());
+    }
+
+    /**
+     * Đề nghị ca cho người chờ đầu tiên. An toàn khi nhiều lần hủy chạy đồng thời:
+     * các lần đề nghị cho cùng ca xếp hàng trên dòng của người chờ đầu tiên (giữ đúng thứ tự đăng ký), lần đợi xong thì
+     * chuyển sang người kế tiếp, và chỗ chỉ được chiếm bằng một lần tăng bộ đếm có điều kiện,
+     * nên mỗi chỗ được trả lại có tối đa một đề nghị và không bị bỏ trống khi hàng đợi vẫn còn người.
+     */
+    public Optional<Danhsachcho> deNghiChoNguoiDauTien(LocalDate ngay, Integer idCa) {
+        Optional<Danhsachcho> deNghi = transactionTemplate.execute(status -> {
+            Optional<Danhsachcho> nguoiChoOptional = khoaNguoiChoDauTien(ngay, idCa);
+            if (nguoiChoOptional.isEmpty()) {
+                return Optional.<Danhsachcho>empty();
+            }
+
+            Danhsachcho nguoiCho = nguoiChoOptional.get();
+            Optional<Lichhen> giuChoOptional = giuChoService.giuCho(ngay, idCa,
+                    nguoiCho.getIdkhachhang(), nguoiCho.getEmail(), thoiGianDeNghi);
+            if (giuChoOptional.isEmpty()) {
+                // Chỗ trống đã bị người khác chiếm trước
+                return Optional.<Danhsachcho>empty();
+            }
+
+            Lichhen giuCho = giuChoOptional.get();
+            nguoiCho.setTrangthai(DA_DE_NGHI);
+            nguoiCho.setIdlichhen(giuCho.getId());
+            nguoiCho.setHethandenghi(giuCho.getHethangiu());
+            return Optional.of(danhsachchoRepository.save(nguoiCho));
+        });
+
+        deNghi.ifPresent(this::guiEmailDeNghi);
+        return deNghi;
+    }
+
+    // Câu khóa chỉ thấy người chờ có trong ảnh chụp lúc nó bắt đầu: nếu mọi người trong đó được đề nghị trong lúc
+    // giao dịch này đợi khóa mà có người đăng ký thêm, câu khóa trả về rỗng dù hàng đợi vẫn còn người.
+    // Chọn lại (ảnh chụp mới) tới khi khóa được người chờ hoặc hàng đợi trống, để chỗ vừa trả không bị bỏ trống.
+    // Kiểm tra hàng đợi trước khi khóa nên ca không có ai chờ (trường hợp thường gặp khi hủy lịch) chỉ tốn một câu
+    private Optional<Danhsachcho> khoaNguoiChoDauTien(LocalDate ngay, Integer idCa) {
+        while (danhsachchoRepository.existsByDateAndIdcalichhenAndTrangthai(ngay, idCa, DANG_CHO)) {
+            Optional<Danhsachcho> nguoiCho = danhsachchoRepository.khoaNguoiChoDauTien(ngay, idCa);
+            if (nguoiCho.isPresent()) {
+                return nguoiCho;
+            }
+        }
+        return Optional.empty();
+    }
+
+    private void guiEmailDeNghi(Danhsachcho nguoiCho) {
+        try {
+            String message = "Chào bạn,\n\n"
+                    + "Ca bạn đang chờ ngày " + nguoiCho.getDate() + " đã có chỗ trống và đang được giữ cho bạn"
+                    + " đến " + nguoiCho.getHethandenghi() + ".\n"
+                    + "Hãy xác nhận đặt lịch trước thời điểm này, sau đó ca sẽ được chuyển cho người chờ tiếp theo.\n\n"
+                    + "Đặt lịch: http://localhost:3000/dat-lich\n\n"
+                    + "Trân trọng,\n"
+                    + "Đội ngũ hỗ trợ";
+            emailService.sendEmail(nguoiCho.getEmail(), "Ca bạn chờ đã có chỗ", message);
+        } catch (Exception e) {
+            log.error("Gửi email đề nghị cho lượt chờ {} thất bại: {}", nguoiCho.getId(), e.getMessage());
+        }
+    }
+}
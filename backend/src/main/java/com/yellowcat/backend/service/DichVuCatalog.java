@@ -0,0 +1,83 @@
+package com.yellowcat.backend.service;
+
+import com.yellowcat.backend.model.Dichvu;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Ảnh chụp bất biến của toàn bộ danh mục dịch vụ, sắp theo id. Được dựng lại nguyên khối khi có dịch vụ thêm / sửa / xóa
+ * (xem {@link DichVuService#getCatalog()}), nên một request luôn đọc trọn một phiên bản.
+ * phienBan là băm nội dung, giống nhau trên mọi node có cùng dữ liệu, dùng làm ETag.
+ */
+public final class DichVuCatalog {
+
+    private final List<Dichvu> tatCa;
+    private final List<Dichvu> dangBan;
+    private final String phienBan;
+
+    private DichVuCatalog(List<Dichvu> tatCa, String phienBan) {
+        this.tatCa = tatCa;
+        this.dangBan = tatCa.stream().filter(d -> Boolean.TRUE.equals(d.getTrangthai())).toList();
+        this.phienBan = phienBan;
+    }
+
+    public static DichVuCatalog tao(List<Dichvu> danhSach) {
+        List<Dichvu> tatCa = danhSach.stream().sorted(Comparator.comparing(Dichvu::getId)).toList();
+        return new DichVuCatalog(tatCa, bam(tatCa));
+    }
+
+    public Page<Dichvu> trang(Pageable pageable) {
+        return catTrang(tatCa, pageable);
+    }
+
+    // Giống findByTendichvuContainingIgnoreCase: tên chứa chuỗi tìm, không phân biệt hoa thường
+    public Page<Dichvu> timTheoTen(String ten, Pageable pageable) {
+        String canTim = ten.toLowerCase(Locale.ROOT);
+        List<Dichvu> khop = tatCa.stream()
+                .filter(d -> d.getTendichvu() != null && d.getTendichvu().toLowerCase(Locale.ROOT).contains(canTim))
+                .toList();
+        return catTrang(khop, pageable);
+    }
+
+    public List<Dichvu> getDangBan() {
+        return dangBan;
+    }
+
+    public String getPhienBan() {
+        return phienBan;
+    }
+
+    // ETag mạnh cho một cách xem danh mục (trang, từ khóa), đổi khi danh mục đổi
+    public String etag(String cachXem) {
+        return "\"" + phienBan + "-" + Integer.toHexString(cachXem.hashCode()) + "\"";
+    }
+
+    private static Page<Dichvu> catTrang(List<Dichvu> danhSach, Pageable pageable) {
+        int tu = (int) Math.min(pageable.getOffset(), danhSach.size());
+        int den = Math.min(tu + pageable.getPageSize(), danhSach.size());
+        return new PageImpl<>(danhSach.subList(tu, den), pageable, danhSach.size());
+    }
+
+    private static String bam(List<Dichvu> tatCa) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            for (Dichvu d : tatCa) {
+                String dong = d.getId() + "\u0000" + d.getTendichvu() + "\u0000" + d.getMota() + "\u0000" + d.getAnh()
+                        + "\u0000" + d.getGiatien() + "\u0000" + d.getTrangthai() + "\n";
+                sha.update(dong.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(sha.digest(), 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -14,14 +14,23 @@ import java.util.Optional;
 public class DichVuService {
 
     private final DichvuRepository dichvuRepository;
+    private final DanhMucCache danhMucCache;
 
-    public DichVuService(DichvuRepository dichvuRepository) {
+    public DichVuService(DichvuRepository dichvuRepository, DanhMucCache danhMucCache) {
         this.dichvuRepository = dichvuRepository;
+        this.danhMucCache = danhMucCache;
     }
 
 
+    // Đọc từ ảnh chụp danh mục trong bộ nhớ, không truy vấn DB khi danh mục chưa đổi
     public Page<Dichvu> getAllDichVu(Pageable pageable) {
-        return dichvuRepository.findAll(pageable);
+        return getCatalog().trang(pageable);
+    }
+
+    // Ảnh chụp danh mục hiện tại; mọi thay đổi dịch vụ (trên node này hoặc node khác) xóa ảnh chụp cũ,
+    // lần đọc sau dựng lại ảnh chụp mới từ một truy vấn duy nhất
+    public DichVuCatalog getCatalog() {
+        return danhMucCache.lay(DanhMucCache.DICH_VU, "catalog", () -> DichVuCatalog.tao(dichvuRepository.findAll()));
     }
 
     public List<Dichvu> getAll(){
@@ -29,18 +38,28 @@ public class DichVuService {
     }
 
     public Dichvu addOrUpdateDichVu(Dichvu dichvu) {
-        return dichvuRepository.save(dichvu);
+        Dichvu daLuu = dichvuRepository.save(dichvu);
+        danhMucCache.xoaSauCommit(DanhMucCache.DICH_VU, daLuu.getId());
+        return daLuu;
     }
     public Optional<Dichvu> findById(int id) {
         return dichvuRepository.findById((long) id);
     }
 
+    // Bản trong cache, dùng chung giữa các request nên chỉ được đọc; cần sửa thì lấy bằng findById
+    public Optional<Dichvu> findByIdTuCache(int id) {
+        return danhMucCache.lay(DanhMucCache.DICH_VU, String.valueOf(id), () -> findById(id));
+    }
+
     public void deleteDichVu(int id) {
         dichvuRepository.deleteById((long) id);
+        danhMucCache.xoaSauCommit(DanhMucCache.DICH_VU, id);
     }
 
     public Page<Dichvu> FindByNameDV(String tenDV,Pageable pageable){
-        return dichvuRepository.findByTendichvuContainingIgnoreCase(tenDV,pageable);
+        return getCatalog().timTheoTen(tenDV, pageable);
+    }
+    public List<Dichvu> getListTrangThaiTrue(){
+        return getCatalog().getDangBan();
     }
-    public List<Dichvu> getListTrangThaiTrue(){return dichvuRepository.findByTrangthaiTrue();}
 }
@@ -0,0 +1,83 @@
+package com.yellowcat.backend.service;
+
+import com.yellowcat.backend.model.Giamgia;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeSet;
+
+/**
+ * Chỉ mục khoảng thời gian của các đợt giảm giá đang bật: trục ngày được cắt tại mọi ngày bắt đầu và ngày sau ngày kết thúc,
+ * trong mỗi đoạn tập giảm giá hiệu lực không đổi nên được tính sẵn. Tra một ngày là tìm nhị phân đoạn chứa nó, O(log n).
+ *
+ * Nhiều đợt cùng hiệu lực thì đợt được áp dụng là đợt giảm nhiều nhất; bằng nhau thì đợt bắt đầu muộn hơn,
+ * rồi đợt có id lớn hơn (tạo sau).
+ */
+public final class GiamGiaIndex {
+
+    // Thứ tự ưu tiên khi các đợt chồng nhau, đợt đầu danh sách được áp dụng
+    static final Comparator<Giamgia> UU_TIEN = Comparator.comparing(Giamgia::getPhantramgiam)
+            .thenComparing(Giamgia::getNgaybatdau)
+            .thenComparing(Giamgia::getId)
+            .reversed();
+
+    private static final GiamGiaIndex RONG = new GiamGiaIndex(new LocalDate[0], List.of());
+
+    // Đoạn i là [moc[i], moc[i + 1]), đoạn cuối kéo tới vô cùng
+    private final LocalDate[] moc;
+    private final List<List<Giamgia>> hieuLucTheoDoan;
+
+    private GiamGiaIndex(LocalDate[] moc, List<List<Giamgia>> hieuLucTheoDoan) {
+        this.moc = moc;
+        this.hieuLucTheoDoan = hieuLucTheoDoan;
+    }
+
+    public static GiamGiaIndex tao(List<Giamgia> danhSach) {
+        List<Giamgia> dangBat = danhSach.stream()
+                .filter(g -> Boolean.TRUE.equals(g.getTrangthai()))
+                .filter(g -> g.getNgaybatdau() != null && g.getNgayketthuc() != null
+                        && !g.getNgayketthuc().isBefore(g.getNgaybatdau()))
+                .toList();
+        if (dangBat.isEmpty()) {
+            return RONG;
+        }
+
+        TreeSet<LocalDate> cacMoc = new TreeSet<>();
+        for (Giamgia g : dangBat) {
+            cacMoc.add(g.getNgaybatdau());
+            cacMoc.add(g.getNgayketthuc().plusDays(1));
+        }
+        LocalDate[] moc = cacMoc.toArray(new LocalDate[0]);
+
+        List<List<Giamgia>> hieuLucTheoDoan = new ArrayList<>(moc.length);
+        for (LocalDate batDauDoan : moc) {
+            hieuLucTheoDoan.add(dangBat.stream()
+                    .filter(g -> !g.getNgaybatdau().isAfter(batDauDoan) && !g.getNgayketthuc().isBefore(batDauDoan))
+                    .sorted(UU_TIEN)
+                    .toList());
+        }
+        return new GiamGiaIndex(moc, hieuLucTheoDoan);
+    }
+
+    // Các đợt hiệu lực trong ngày, theo thứ tự ưu tiên
+    public List<Giamgia> hieuLuc(LocalDate ngay) {
+        int doan = timDoan(ngay);
+        return doan < 0 ? List.of() : hieuLucTheoDoan.get(doan);
+    }
+
+    // Đợt được áp dụng trong ngày
+    public Optional<Giamgia> apDung(LocalDate ngay) {
+        List<Giamgia> ds = hieuLuc(ngay);
+        return ds.isEmpty() ? Optional.empty() : Optional.of(ds.get(0));
+    }
+
+    // Chỉ số đoạn chứa ngày, -1 nếu ngày trước mốc đầu tiên
+    private int timDoan(LocalDate ngay) {
+        int i = Arrays.binarySearch(moc, ngay);
+        return i >= 0 ? i : -i - 2;
+    }
+}
@@ -1,9 +1,7 @@
 package com.yellowcat.backend.service;
 
-import com.yellowcat.backend.model.Dichvu;
 import com.yellowcat.backend.model.Giamgia;
 import com.yellowcat.backend.repository.GiamgiaRepository;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -14,30 +12,39 @@ import java.util.Optional;
 
 @Service
 public class GiamGiaService {
-    @Autowired
-    GiamgiaRepository giamgiaRepository;
+    private final GiamgiaRepository giamgiaRepository;
+    private final DanhMucCache danhMucCache;
 
-    public GiamGiaService(GiamgiaRepository giamgiaRepository) {
+    public GiamGiaService(GiamgiaRepository giamgiaRepository, DanhMucCache danhMucCache) {
         this.giamgiaRepository = giamgiaRepository;
+        this.danhMucCache = danhMucCache;
     }
 
-
-
     public Page<Giamgia> getGiamgia(Pageable pageable) {
         return giamgiaRepository.findAll(pageable);
     }
 
     public Giamgia addOrUpdate(Giamgia giamgia){
-        return giamgiaRepository.save(giamgia);
+        Giamgia daLuu = giamgiaRepository.save(giamgia);
+        danhMucCache.xoaSauCommit(DanhMucCache.GIAM_GIA, daLuu.getId());
+        return daLuu;
     }
 
     public String removeGiamgia(Integer id){
         giamgiaRepository.deleteById(id);
+        danhMucCache.xoaSauCommit(DanhMucCache.GIAM_GIA, id);
         return "ok";
     }
 
+    // Đợt giảm giá áp dụng hôm nay, tra trong chỉ mục nên không truy vấn DB; các đợt chồng nhau xem GiamGiaIndex
     public Optional<Giamgia> findGiamGiaTheoNgayHienTai(){
-        return giamgiaRepository.findByNgaybatdauLessThanEqualAndNgayketthucGreaterThanEqualAndTrangthai(LocalDate.now(),LocalDate.now(),true);
+        return getChiMuc().apDung(LocalDate.now());
+    }
+
+    // Chỉ mục các đợt đang bật, dựng lại khi có đợt giảm giá thay đổi. Chỉ mục tra được mọi ngày
+    // nên khi sang mốc bắt đầu / kết thúc của một đợt không cần dựng lại
+    public GiamGiaIndex getChiMuc(){
+        return danhMucCache.lay(DanhMucCache.GIAM_GIA, "chi-muc", () -> GiamGiaIndex.tao(giamgiaRepository.findAll()));
     }
 
     public Optional<Giamgia> findById(Integer id){
@@ -0,0 +1,152 @@
+package com.yellowcat.backend.service;
+
+import com.yellowcat.backend.model.Calichhen;
+import com.yellowcat.backend.model.Lichhen;
+import com.yellowcat.backend.repository.CalichhenRepository;
+import com.yellowcat.backend.repository.DanhsachchoRepository;
+import com.yellowcat.backend.repository.LichhenRepository;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Giữ chỗ tạm thời cho khách đang điền form đặt lịch và thanh toán.
+ * Lượt giữ là một dòng Lichhen ở trạng thái 7 (người giữ, thời điểm hết hạn) và chiếm một chỗ trong bộ đếm sức chứa;
+ * hết hạn thì một lượt quét định kỳ xóa lượt giữ và trả chỗ theo lô, không cần luồng riêng cho từng lượt giữ.
+ */
+@Service
+@Slf4j
+public class GiuChoService {
+
+    public static final int TRANG_THAI_GIU_CHO = 7;
+
+    private final LichhenRepository lichhenRepository;
+    private final DanhsachchoRepository danhsachchoRepository;
+    private final CalichhenRepository calichhenRepository;
+    private final SucChuaService sucChuaService;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration thoiGianGiu;
+    private final int kichThuocLo;
+
+    public GiuChoService(LichhenRepository lichhenRepository,
+                         DanhsachchoRepository danhsachchoRepository,
+                         CalichhenRepository calichhenRepository,
+                         SucChuaService sucChuaService,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${lichhen.giu-cho.phut:10}") long phutGiu,
+                         @Value("${lichhen.giu-cho.kich-thuoc-lo:500}") int kichThuocLo) {
+        this.lichhenRepository = lichhenRepository;
+        this.danhsachchoRepository = danhsachchoRepository;
+        this.calichhenRepository = calichhenRepository;
+        this.sucChuaService = sucChuaService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.thoiGianGiu = Duration.ofMinutes(phutGiu);
+        this.kichThuocLo = kichThuocLo;
+    }
+
+    // Giữ (hoặc gia hạn) một chỗ trong ca cho khách. Trả về rỗng nếu ca đã đủ người.
+    @Transactional
+    public Optional<Lichhen> giuCho(LocalDate ngay, Integer idCa, String idUser, String email) {
+        return giuCho(ngay, idCa, idUser, email, thoiGianGiu);
+    }
+
+    // Phải được gọi trong transaction
+    Optional<Lichhen> giuCho(LocalDate ngay, Integer idCa, String idUser, String email, Duration thoiGian) {
+        LocalDateTime hetHan = LocalDateTime.now().plus(thoiGian);
+        Optional<Lichhen> dangGiu = lichhenRepository.findGiuChoCuaKhach(ngay, idCa, idUser);
+        if (dangGiu.isPresent() && lichhenRepository.giaHanGiuCho(dangGiu.get().getId(), idUser, hetHan) > 0) {
+            return lichhenRepository.findById(dangGiu.get().getId());
+        }
+
+        Optional<Calichhen> caOptional = calichhenRepository.findById(idCa);
+        if (caOptional.isEmpty() || !sucChuaService.chiemCho(ngay, idCa)) {
+            return Optional.empty();
+        }
+        Lichhen lichhen = new Lichhen();
+        lichhen.setIdkhachhang(idUser);
+        lichhen.setEmailNguoiDat(email);
+        lichhen.setDate(ngay);
+        lichhen.setIdcalichhen(caOptional.get());
+        lichhen.setTrangthai(TRANG_THAI_GIU_CHO);
+        lichhen.setTrangthaica(true);
+        lichhen.setSolanthaydoi(0);
+        lichhen.setSolannhacnho(0);
+        lichhen.setNguoigiu(idUser);
+        lichhen.setHethangiu(hetHan);
+        return Optional.of(lichhenRepository.save(lichhen));
+    }
+
+    // Khách tự bỏ giữ chỗ, chỗ được trả lại ngay
+    @Transactional
+    public boolean boGiuCho(Integer idLichHen, String idUser) {
+        Optional<Lichhen> lichOptional = lichhenRepository.findById(idLichHen);
+        if (lichOptional.isEmpty()) {
+            return false;
+        }
+        Lichhen lichhen = lichOptional.get();
+        // Chỉ người giữ mới được bỏ giữ; kiểm tra trước khi đụng tới đề nghị của danh sách chờ.
+        // Đề nghị phải hết hạn trước khi xóa vì trigger xóa lịch bỏ liên kết idLichHen của lượt chờ
+        if (!Integer.valueOf(TRANG_THAI_GIU_CHO).equals(lichhen.getTrangthai()) || !idUser.equals(lichhen.getNguoigiu())) {
+            return false;
+        }
+        danhsachchoRepository.hetHanDeNghi(List.of(idLichHen));
+        if (lichhenRepository.xoaGiuCho(idLichHen, idUser) == 0) {
+            return false;
+        }
+        sucChuaService.traCho(lichhen.getDate(), lichhen.getIdcalichhen().getId());
+        return true;
+    }
+
+    // Quét các lượt giữ đã hết hạn, mỗi lô một transaction ngắn
+    @Scheduled(fixedDelayString = "${lichhen.giu-cho.quet-ms:15000}")
+    public void quetGiuChoHetHan() {
+        int tong = 0;
+        int daTraLai;
+        do {
+            daTraLai = transactionTemplate.execute(status -> traLaiMotLo(LocalDateTime.now()));
+            tong += daTraLai;
+        } while (daTraLai == kichThuocLo);
+
+        if (tong > 0) {
+            log.info("Đã trả lại {} chỗ có lượt giữ hết hạn.", tong);
+        }
+    }
+
+    private int traLaiMotLo(LocalDateTime now) {
+        List<Object[]> hetHan = lichhenRepository.khoaGiuChoHetHan(now, kichThuocLo);
+        if (hetHan.isEmpty()) {
+            return 0;
+        }
+
+        List<Integer> ids = new ArrayList<>(hetHan.size());
+        Map<LocalDate, Map<Integer, Integer>> soChoTheoCa = new HashMap<>();
+        for (Object[] dong : hetHan) {
+            ids.add(((Number) dong[0]).intValue());
+            LocalDate ngay = dong[1] instanceof Date date ? date.toLocalDate() : (LocalDate) dong[1];
+            soChoTheoCa.computeIfAbsent(ngay, d -> new HashMap<>())
+                    .merge(((Number) dong[2]).intValue(), 1, Integer::sum);
+        }
+        // Các dòng đã bị khóa nên câu DELETE xóa đúng cả lô
+        danhsachchoRepository.hetHanDeNghi(ids);
+        lichhenRepository.xoaGiuChoTheoId(ids);
+
+        // Mỗi (ngày, ca) chỉ cần một lần giảm bộ đếm
+        soChoTheoCa.forEach((ngay, theoCa) ->
+                theoCa.forEach((idCa, soCho) -> sucChuaService.traCho(ngay, idCa, soCho)));
+        return hetHan.size();
+    }
+}
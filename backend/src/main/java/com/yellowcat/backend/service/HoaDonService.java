@@ -1,12 +1,15 @@
 package com.yellowcat.backend.service;
 
+import com.yellowcat.backend.DTO.response.TrangCuonResponse;
 import com.yellowcat.backend.model.Giamgia;
 import com.yellowcat.backend.model.Hoadon;
 import com.yellowcat.backend.model.Lichhen;
+import com.yellowcat.backend.model.Thucung;
 import com.yellowcat.backend.repository.HoadonRepository;
 import jakarta.mail.internet.MimeMessage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.data.domain.Limit;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
@@ -31,25 +34,36 @@ public class HoaDonService {
     @Autowired
     EmailService emailService;
 
+    @Autowired
+    QuyTacGiaService quyTacGiaService;
+
     private static final String CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
     private static final int LENGTH = 17;
     private static final SecureRandom RANDOM = new SecureRandom();
+    // Mỗi luồng dùng lại một YeuCauBaoGia, đặt lại trước mỗi lần tính (bảng giá không giữ tham chiếu tới nó)
+    private static final ThreadLocal<YeuCauBaoGia> YEU_CAU_BAO_GIA = ThreadLocal.withInitial(YeuCauBaoGia::new);
 
     public void addOrUpdate(Hoadon hoadon){hoadonRepository.save(hoadon);}
 
     public Double TinhGiaTien(Integer idDichVu,Hoadon hoadon){
-        float giaDichVu = dichVuService.findById(idDichVu).get().getGiatien();
+        return TinhGiaTien(idDichVu, hoadon, null, null, null);
+    }
+
+    // Giá qua bảng quy tắc giá (giảm theo dịch vụ, combo, phụ phí cân nặng, hạng thân thiết, xem BangGia)
+    // rồi trừ đợt giảm giá đang áp dụng. Dịch vụ, giảm giá và bảng giá đều lấy từ bộ nhớ
+    public Double TinhGiaTien(Integer idDichVu, Hoadon hoadon, String idKhachHang, Thucung thucung, LocalDate ngay){
+        float giaDichVu = dichVuService.findByIdTuCache(idDichVu).get().getGiatien();
         Optional<Giamgia> giamgiaOptional = giamGiaService.findGiamGiaTheoNgayHienTai();
-        Giamgia giamgia = giamgiaOptional.get();
-        float phanTramGiam;
-        if(!giamgiaOptional.isPresent()){
-            phanTramGiam = 0;
-        }
-        else {
-            phanTramGiam = giamgiaOptional.get().getPhantramgiam();
+
+        YeuCauBaoGia yeuCau = YEU_CAU_BAO_GIA.get();
+        yeuCau.datLai(idDichVu, giaDichVu);
+        if (thucung != null && thucung.getCannang() != null) {
+            yeuCau.setCanNang(thucung.getCannang());
         }
-        Double giaTien = (double) (giaDichVu - giaDichVu*phanTramGiam/100);
-        hoadon.setIdgiamgia(giamgia);
+        giamgiaOptional.ifPresent(giamgia -> yeuCau.setPhanTramGiamDot(giamgia.getPhantramgiam()));
+
+        Double giaTien = (double) quyTacGiaService.baoGia(yeuCau, idKhachHang, ngay);
+        hoadon.setIdgiamgia(giamgiaOptional.orElse(null));
         return giaTien;
     }
     public List<Hoadon> getAllHoaDonChuaThanhToan(int idTT){
@@ -62,6 +76,38 @@ public class HoaDonService {
 
     public List<Hoadon> LichSuThanhToanHoaDonTheoTaiKhoan(String email){return hoadonRepository.findByNguoithanhtoanAndPhuongthucthanhtoan(email,"Offline");}
 
+    // Phân trang theo con trỏ, sắp xếp theo id giảm dần (Date của hóa đơn có thể null nên không dùng làm khóa)
+    public TrangCuonResponse<Hoadon> cuonHoaDonTheoTrangThai(int idTT, String conTro, int kichThuoc, boolean demTong) {
+        int soDong = KeysetCursor.kichThuocHopLe(kichThuoc);
+        return TrangCuonResponse.tu(
+                hoadonRepository.findByTrangthaiAndIdLessThanOrderByIdDesc(idTT, idSauConTro(conTro), Limit.of(soDong + 1)),
+                soDong, HoaDonService::conTroCua, demTong ? hoadonRepository.countByTrangthai(idTT) : null);
+    }
+
+    public TrangCuonResponse<Hoadon> cuonTatCa(String conTro, int kichThuoc, boolean demTong) {
+        int soDong = KeysetCursor.kichThuocHopLe(kichThuoc);
+        return TrangCuonResponse.tu(
+                hoadonRepository.findByIdLessThanOrderByIdDesc(idSauConTro(conTro), Limit.of(soDong + 1)),
+                soDong, HoaDonService::conTroCua, demTong ? hoadonRepository.count() : null);
+    }
+
+    public TrangCuonResponse<Hoadon> cuonLichSuThanhToanTheoTaiKhoan(String email, String conTro, int kichThuoc, boolean demTong) {
+        int soDong = KeysetCursor.kichThuocHopLe(kichThuoc);
+        return TrangCuonResponse.tu(
+                hoadonRepository.findByNguoithanhtoanAndPhuongthucthanhtoanAndIdLessThanOrderByIdDesc(
+                        email, "Offline", idSauConTro(conTro), Limit.of(soDong + 1)),
+                soDong, HoaDonService::conTroCua,
+                demTong ? hoadonRepository.countByNguoithanhtoanAndPhuongthucthanhtoan(email, "Offline") : null);
+    }
+
+    private static int idSauConTro(String conTro) {
+        return conTro == null || conTro.isBlank() ? Integer.MAX_VALUE : KeysetCursor.decode(conTro).id();
+    }
+
+    private static String conTroCua(Hoadon hoadon) {
+        return KeysetCursor.encode("", hoadon.getId());
+    }
+
     public Optional<Hoadon> finHoadonByIdLich(Integer id){return hoadonRepository.findByIdlichhen_IdAndTrangthai(id,1);}
 
     public  Optional<Hoadon> findHoaDonOnline(String idPayPal)
@@ -0,0 +1,108 @@
+package com.yellowcat.backend.service;
+
+import com.yellowcat.backend.repository.KhoaidempotencyRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Lưu phản hồi đầu tiên của mỗi Idempotency-Key để trả lại khi client gửi lại cùng yêu cầu.
+ * Bảng khoaidempotency là nguồn chính (dùng chung giữa các node); phản hồi đã hoàn tất được giữ thêm
+ * trong một LRU nhỏ trong bộ nhớ để lần gửi lại phổ biến nhất không cần truy vấn DB.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    private final KhoaidempotencyRepository khoaidempotencyRepository;
+    private final Duration thoiGianLuu;
+    private final Duration xuLyToiDa;
+    private final int kichThuocLoXoa;
+    private final Map<String, PhanHoiDaLuu> lru;
+
+    public IdempotencyService(KhoaidempotencyRepository khoaidempotencyRepository,
+                              @Value("${idempotency.thoi-gian-luu-gio:24}") long gioLuu,
+                              @Value("${idempotency.xu-ly-toi-da-giay:60}") long giayXuLyToiDa,
+                              @Value("${idempotency.lru:10000}") int kichThuocLru,
+                              @Value("${idempotency.kich-thuoc-lo-xoa:5000}") int kichThuocLoXoa) {
+        this.khoaidempotencyRepository = khoaidempotencyRepository;
+        this.thoiGianLuu = Duration.ofHours(gioLuu);
+        this.xuLyToiDa = Duration.ofSeconds(giayXuLyToiDa);
+        this.kichThuocLoXoa = kichThuocLoXoa;
+        this.lru = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PhanHoiDaLuu> eldest) {
+                return size() > kichThuocLru;
+            }
+        };
+    }
+
+    // Phản hồi đã lưu của khóa (còn hạn), tìm trong LRU trước rồi mới đến DB
+    public Optional<PhanHoiDaLuu> timPhanHoi(String khoa) {
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (lru) {
+            PhanHoiDaLuu phanHoi = lru.get(khoa);
+            if (phanHoi != null) {
+                if (phanHoi.hetHan().isAfter(now)) {
+                    return Optional.of(phanHoi);
+                }
+                lru.remove(khoa);
+            }
+        }
+        Optional<PhanHoiDaLuu> tuDb = khoaidempotencyRepository.findPhanHoi(khoa, now)
+                .map(k -> new PhanHoiDaLuu(k.getMahttp(), k.getLoainoidung(), k.getNoidung(), k.getHethan()));
+        tuDb.ifPresent(phanHoi -> ghiLru(khoa, phanHoi));
+        return tuDb;
+    }
+
+    // Nhận quyền xử lý khóa. Trả về false nếu một yêu cầu khác với cùng khóa đang xử lý hoặc đã xong.
+    public boolean batDauXuLy(String khoa) {
+        LocalDateTime now = LocalDateTime.now();
+        return khoaidempotencyRepository.nhanXuLy(khoa, now, now.plus(thoiGianLuu), now.minus(xuLyToiDa)) > 0;
+    }
+
+    public void luuPhanHoi(String khoa, int maHttp, String loaiNoiDung, byte[] noiDung) {
+        if (khoaidempotencyRepository.luuPhanHoi(khoa, maHttp, loaiNoiDung, noiDung) > 0) {
+            ghiLru(khoa, new PhanHoiDaLuu(maHttp, loaiNoiDung, noiDung, LocalDateTime.now().plus(thoiGianLuu)));
+        }
+    }
+
+    // Bỏ khóa đang xử lý khi yêu cầu lỗi, để client có thể thử lại với cùng khóa
+    public void huyXuLy(String khoa) {
+        khoaidempotencyRepository.huyXuLy(khoa);
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.don-dep-ms:3600000}")
+    public void xoaKhoaHetHan() {
+        LocalDateTime now = LocalDateTime.now();
+        int tong = 0;
+        int daXoa;
+        do {
+            daXoa = khoaidempotencyRepository.xoaHetHanTheoLo(now, kichThuocLoXoa);
+            tong += daXoa;
+        } while (daXoa == kichThuocLoXoa);
+
+        synchronized (lru) {
+            lru.values().removeIf(phanHoi -> !phanHoi.hetHan().isAfter(now));
+        }
+        if (tong > 0) {
+            log.info("Đã xóa {} khóa idempotency hết hạn.", tong);
+        }
+    }
+
+    private void ghiLru(String khoa, PhanHoiDaLuu phanHoi) {
+        synchronized (lru) {
+            lru.put(khoa, phanHoi);
+        }
+    }
+
+    public record PhanHoiDaLuu(int maHttp, String loaiNoiDung, byte[] noiDung, LocalDateTime hetHan) {
+    }
+}
@@ -0,0 +1,183 @@
+package com.yellowcat.backend.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Nghe kênh thay_doi_danh_muc (xem V13__Thong_bao_thay_doi_danh_muc.sql) trên một kết nối riêng ngoài pool,
+ * vì LISTEN gắn với phiên và kết nối trong pool có thể bị đóng hoặc dùng cho việc khác bất cứ lúc nào.
+ * Mỗi thông báo xóa mục tương ứng trong {@link DanhMucCache}; thay đổi ca lịch hẹn thì dựng lại chỉ mục ca trống,
+ * ca chuyển giữa còn chỗ và hết chỗ (V16, đặt / hủy ở node nào cũng vậy) thì cập nhật bit của ca trong chỉ mục.
+ * Mất kết nối thì cache chuyển sang ttl ngắn và luồng kết nối lại với thời gian chờ tăng dần.
+ */
+@Service
+@Slf4j
+public class KenhThayDoiDanhMuc {
+
+    static final String KENH = "thay_doi_danh_muc";
+    static final String SUC_CHUA_NGAY = "succhuangay";
+
+    private final DanhMucCache danhMucCache;
+    private final SlotAvailabilityIndex slotAvailabilityIndex;
+    private final String url;
+    private final Properties thongTinKetNoi = new Properties();
+    private final int choMs;
+    private final long choKetNoiLaiToiDaMs;
+
+    private volatile boolean dangChay;
+    private volatile Connection ketNoi;
+    private Thread luong;
+    private final AtomicLong soLanKetNoi = new AtomicLong();
+
+    public KenhThayDoiDanhMuc(DanhMucCache danhMucCache,
+                              SlotAvailabilityIndex slotAvailabilityIndex,
+                              @Value("${spring.datasource.url}") String url,
+                              @Value("${spring.datasource.username}") String username,
+                              @Value("${spring.datasource.password}") String password,
+                              @Value("${danh-muc.kenh.cho-ms:10000}") int choMs,
+                              @Value("${danh-muc.kenh.ket-noi-lai-toi-da-ms:30000}") long choKetNoiLaiToiDaMs) {
+        this.danhMucCache = danhMucCache;
+        this.slotAvailabilityIndex = slotAvailabilityIndex;
+        this.url = url;
+        this.choMs = choMs;
+        this.choKetNoiLaiToiDaMs = choKetNoiLaiToiDaMs;
+        thongTinKetNoi.setProperty("user", username);
+        thongTinKetNoi.setProperty("password", password);
+        thongTinKetNoi.setProperty("ApplicationName", "kenh-thay-doi-danh-muc");
+        thongTinKetNoi.setProperty("tcpKeepAlive", "true");
+        // Kết nối chết mà không báo lỗi thì câu kiểm tra bị timeout thay vì treo mãi
+        thongTinKetNoi.setProperty("socketTimeout", String.valueOf(Math.max(1, choMs * 3 / 1000)));
+    }
+
+    @PostConstruct
+    public void batDau() {
+        dangChay = true;
+        luong = new Thread(this::vongLap, "kenh-thay-doi-danh-muc");
+        luong.setDaemon(true);
+        luong.start();
+    }
+
+    @PreDestroy
+    public void dung() {
+        dangChay = false;
+        luong.interrupt();
+        Connection c = ketNoi;
+        if (c != null) {
+            try {
+                c.close();
+            } catch (SQLException e) {
+                log.debug("Đóng kết nối kênh thay đổi danh mục: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void vongLap() {
+        long choKetNoiLai = 500;
+        while (dangChay) {
+            try (Connection c = DriverManager.getConnection(url, thongTinKetNoi)) {
+                ketNoi = c;
+                try (Statement st = c.createStatement()) {
+                    st.execute("LISTEN " + KENH);
+                }
+                PGConnection pg = c.unwrap(PGConnection.class);
+                danhMucCache.datKenhHoatDong(true);
+                if (soLanKetNoi.incrementAndGet() > 1) {
+                    // Thay đổi ca lịch hẹn và sức chứa trong lúc mất kênh không được báo
+                    napLaiChiMucCa();
+                }
+                log.info("Đang nghe kênh {}.", KENH);
+                choKetNoiLai = 500;
+
+                while (dangChay) {
+                    PGNotification[] thongBao = pg.getNotifications(choMs);
+                    if (thongBao == null || thongBao.length == 0) {
+                        // Không có thông báo: kiểm tra kết nối còn sống
+                        try (Statement st = c.createStatement()) {
+                            st.execute("SELECT 1");
+                        }
+                        continue;
+                    }
+                    xuLy(thongBao);
+                }
+            } catch (SQLException e) {
+                if (!dangChay) {
+                    break;
+                }
+                danhMucCache.datKenhHoatDong(false);
+                log.warn("Mất kênh {}, cache danh mục dùng ttl ngắn, kết nối lại sau {} ms: {}",
+                        KENH, choKetNoiLai, e.getMessage());
+                try {
+                    Thread.sleep(choKetNoiLai);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                choKetNoiLai = Math.min(choKetNoiLai * 2, choKetNoiLaiToiDaMs);
+            } finally {
+                ketNoi = null;
+            }
+        }
+        danhMucCache.datKenhHoatDong(false);
+    }
+
+    private void xuLy(PGNotification[] thongBao) {
+        boolean coCaLichHen = false;
+        for (PGNotification tb : thongBao) {
+            String payload = tb.getParameter();
+            if (payload.startsWith(SUC_CHUA_NGAY + ":")) {
+                capNhatCaTrong(payload);
+                continue;
+            }
+            danhMucCache.nhanThongBao(payload);
+            coCaLichHen |= payload.startsWith(DanhMucCache.CA_LICH_HEN + ":");
+        }
+        if (coCaLichHen) {
+            napLaiChiMucCa();
+        }
+    }
+
+    // "succhuangay:ngày:idCa:1|0:thời điểm", áp thẳng lên chỉ mục không cần đọc DB
+    private void capNhatCaTrong(String payload) {
+        String[] phan = payload.split(":", 5);
+        if (phan.length < 4) {
+            log.warn("Bỏ qua thông báo sức chứa không hợp lệ: {}", payload);
+            return;
+        }
+        LocalDate ngay = LocalDate.parse(phan[1]);
+        int idCa = Integer.parseInt(phan[2]);
+        if ("1".equals(phan[3])) {
+            slotAvailabilityIndex.danhDauTrong(ngay, idCa);
+        } else {
+            slotAvailabilityIndex.danhDauDaDat(ngay, idCa);
+        }
+    }
+
+    // Gộp mọi thay đổi ca trong cùng một lần nhận thành một lần dựng lại
+    private void napLaiChiMucCa() {
+        if (!slotAvailabilityIndex.isSanSang()) {
+            return;
+        }
+        try {
+            slotAvailabilityIndex.napLai();
+        } catch (RuntimeException e) {
+            log.error("Không dựng lại được chỉ mục ca trống sau thay đổi ca: {}", e.getMessage(), e);
+        }
+    }
+
+    public long getSoLanKetNoi() {
+        return soLanKetNoi.get();
+    }
+}
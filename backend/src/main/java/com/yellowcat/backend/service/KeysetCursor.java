@@ -0,0 +1,48 @@
+package com.yellowcat.backend.service;
+
+import com.yellowcat.backend.exception.ConTroKhongHopLeException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Con trỏ phân trang keyset: cặp (khóa sắp xếp, id) của dòng cuối trang trước, mã hóa base64url
+ * để client chỉ coi là một chuỗi mờ và gửi lại nguyên vẹn.
+ */
+public record KeysetCursor(String khoa, int id) {
+
+    // Trước mọi ngày hợp lệ / sau mọi ngày hợp lệ, dùng cho trang đầu
+    public static final LocalDate NGAY_NHO_NHAT = LocalDate.of(1, 1, 1);
+    public static final LocalDate NGAY_LON_NHAT = LocalDate.of(9999, 12, 31);
+
+    public static final int KICH_THUOC_TOI_DA = 100;
+
+    public static String encode(Object khoa, int id) {
+        String raw = khoa + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static KeysetCursor decode(String conTro) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(conTro), StandardCharsets.UTF_8);
+            int tach = raw.lastIndexOf('|');
+            return new KeysetCursor(raw.substring(0, tach), Integer.parseInt(raw.substring(tach + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new ConTroKhongHopLeException("Con trỏ phân trang không hợp lệ.");
+        }
+    }
+
+    public LocalDate khoaNgay() {
+        try {
+            return LocalDate.parse(khoa);
+        } catch (DateTimeParseException e) {
+            throw new ConTroKhongHopLeException("Con trỏ phân trang không hợp lệ.");
+        }
+    }
+
+    public static int kichThuocHopLe(int kichThuoc) {
+        return Math.max(1, Math.min(kichThuoc, KICH_THUOC_TOI_DA));
+    }
+}
@@ -1,14 +1,22 @@
 package com.yellowcat.backend.service;
 
+import com.yellowcat.backend.DTO.response.LichHenTomTat;
+import com.yellowcat.backend.DTO.response.TrangCuonResponse;
 import com.yellowcat.backend.model.Calichhen;
+import com.yellowcat.backend.model.Dichvu;
+import com.yellowcat.backend.model.Hoadon;
 import com.yellowcat.backend.model.Lichhen;
+import com.yellowcat.backend.model.Lichhensukien;
+import com.yellowcat.backend.model.Thucung;
+import com.yellowcat.backend.repository.DanhsachchoRepository;
 import com.yellowcat.backend.repository.LichhenRepository;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
+import com.yellowcat.backend.repository.SucchuangayRepository;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Async;
@@ -18,14 +26,14 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 
 @Service
@@ -41,6 +49,47 @@ public class LichHenService {
     @Autowired
     private EmailService emailService;
 
+    @Autowired
+    private ThuCungService thuCungService;
+
+    @Autowired
+    private HoaDonService hoaDonService;
+
+    @Autowired
+    private TacVuHenGioService tacVuHenGioService;
+
+    @Autowired
+    private SlotAvailabilityIndex slotAvailabilityIndex;
+
+    @Autowired
+    private DanhsachchoRepository danhsachchoRepository;
+
+    @Autowired
+    private SucChuaService sucChuaService;
+
+    @Autowired
+    private NhacNhoService nhacNhoService;
+
+    @Autowired
+    private LichSuLichHenService lichSuLichHenService;
+
+    @Autowired
+    private SucchuangayRepository succhuangayRepository;
+
+    // Số ngày tới cần mở sẵn sức chứa để khách đặt
+    @Value("${lichhen.suc-chua.so-ngay:7}")
+    private int soNgayMoSucChua;
+
+    // Số bộ đếm cũ xóa trong mỗi lô, 0 để xóa tất cả bằng một câu DELETE
+    @Value("${lichhen.suc-chua.kich-thuoc-lo-xoa:5000}")
+    private int kichThuocLoXoa;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private TacVuCumService tacVuCumService;
+
     public LichHenService(LichhenRepository lichhenRepository) {
         this.lichhenRepository = lichhenRepository;
     }
@@ -52,10 +101,6 @@ public class LichHenService {
         return lichhenRepository.findAll(pageable);
     }
 
-    public Optional<Lichhen> getLichHenByDateandCa(LocalDate date,Integer idCa){
-        return lichhenRepository.findByDateAndIdcalichhen_IdAndTrangthai(date,idCa,5);
-    }
-
     public List<Lichhen> listLichHomNay(){
         return lichhenRepository.findByDate(LocalDate.now());
     }
@@ -68,6 +113,52 @@ public class LichHenService {
         return lichhenRepository.findByEmailNguoiDat(userName, pageable);
     }
 
+    // Các bản phân trang theo con trỏ: sắp xếp (date, id) giảm dần, chỉ đếm tổng khi được yêu cầu
+    public TrangCuonResponse<LichHenTomTat> cuonTatCa(String conTro, int kichThuoc, boolean demTong) {
+        KeysetCursor viTri = viTriGiamDan(conTro);
+        int soDong = KeysetCursor.kichThuocHopLe(kichThuoc);
+        return TrangCuonResponse.tu(
+                lichhenRepository.cuonTatCa(viTri.khoaNgay(), viTri.id(), Limit.of(soDong + 1)),
+                soDong, LichHenService::conTroCua, demTong ? lichhenRepository.count() : null);
+    }
+
+    public TrangCuonResponse<LichHenTomTat> cuonTheoIdUser(String idUser, String conTro, int kichThuoc, boolean demTong) {
+        KeysetCursor viTri = viTriGiamDan(conTro);
+        int soDong = KeysetCursor.kichThuocHopLe(kichThuoc);
+        return TrangCuonResponse.tu(
+                lichhenRepository.cuonTheoKhachHang(idUser, viTri.khoaNgay(), viTri.id(), Limit.of(soDong + 1)),
+                soDong, LichHenService::conTroCua, demTong ? lichhenRepository.countByIdkhachhang(idUser) : null);
+    }
+
+    public TrangCuonResponse<LichHenTomTat> cuonTheoEmailNguoiDat(String email, String conTro, int kichThuoc, boolean demTong) {
+        KeysetCursor viTri = viTriGiamDan(conTro);
+        int soDong = KeysetCursor.kichThuocHopLe(kichThuoc);
+        return TrangCuonResponse.tu(
+                lichhenRepository.cuonTheoEmail(email, viTri.khoaNgay(), viTri.id(), Limit.of(soDong + 1)),
+                soDong, LichHenService::conTroCua, demTong ? lichhenRepository.countByEmailNguoiDat(email) : null);
+    }
+
+    // Lịch sắp tới cần đổi trạng thái, sắp xếp (date, id) tăng dần
+    public TrangCuonResponse<LichHenTomTat> cuonLichWithTrangThai(boolean tt, LocalDate date, String conTro, int kichThuoc, boolean demTong) {
+        KeysetCursor viTri = conTro == null || conTro.isBlank()
+                ? new KeysetCursor(KeysetCursor.NGAY_NHO_NHAT.toString(), 0)
+                : KeysetCursor.decode(conTro);
+        int soDong = KeysetCursor.kichThuocHopLe(kichThuoc);
+        return TrangCuonResponse.tu(
+                lichhenRepository.cuonTheoTrangThaiCaSauNgay(tt, date, viTri.khoaNgay(), viTri.id(), Limit.of(soDong + 1)),
+                soDong, LichHenService::conTroCua, demTong ? lichhenRepository.countByTrangthaicaAndDateAfter(tt, date) : null);
+    }
+
+    private static KeysetCursor viTriGiamDan(String conTro) {
+        return conTro == null || conTro.isBlank()
+                ? new KeysetCursor(KeysetCursor.NGAY_LON_NHAT.toString(), Integer.MAX_VALUE)
+                : KeysetCursor.decode(conTro);
+    }
+
+    private static String conTroCua(LichHenTomTat lichhen) {
+        return KeysetCursor.encode(lichhen.date(), lichhen.id());
+    }
+
     // Kiểm tra ca đã có trong ngày chưa
     public boolean isCaTrungTrongNgay(LocalDate ngay, int idCaLichHen) {
         return lichhenRepository.existsByDateAndIdcalichhen_Id(ngay, idCaLichHen);
@@ -77,83 +168,183 @@ public class LichHenService {
         return lichhenRepository.save(lichhen);
     }
 
+    // Xác nhận đặt lịch trong một transaction ngắn. Nếu khách đang giữ chỗ ca này thì chuyển lượt giữ thành lịch,
+    // nếu không thì chiếm một chỗ bằng bộ đếm sức chứa và tạo lịch mới. Trả về rỗng nếu ca đã đủ người.
+    @Transactional
+    public Optional<Lichhen> xacNhanDatLich(LocalDate ngay, Integer idCa, String idUser, String email,
+                                            Thucung thucung, Dichvu dichvu, Hoadon hoadon) {
+        Lichhen lichhen;
+        Optional<Lichhen> giuChoOptional = lichhenRepository.findGiuChoCuaKhach(ngay, idCa, idUser);
+        if (giuChoOptional.isPresent()
+                && lichhenRepository.xacNhanGiuCho(giuChoOptional.get().getId(), idUser, email, LocalDateTime.now()) > 0) {
+            // Nếu lượt giữ đến từ danh sách chờ thì đánh dấu lượt chờ đã nhận
+            danhsachchoRepository.danhDauDaNhan(giuChoOptional.get().getId(), idUser);
+            // Nạp kèm ca, dịch vụ, thú cưng: lịch trả về được dùng ngoài transaction (email gửi bất đồng bộ)
+            lichhen = lichhenRepository.findChiTietById(giuChoOptional.get().getId()).orElseThrow();
+        } else {
+            if (!sucChuaService.chiemCho(ngay, idCa)) {
+                return Optional.empty();
+            }
+            lichhen = new Lichhen();
+            lichhen.setIdkhachhang(idUser);
+            lichhen.setEmailNguoiDat(email);
+            lichhen.setDate(ngay);
+            lichhen.setIdcalichhen(caLichHenService.findById(idCa).orElseThrow());
+            lichhen.setTrangthai(4);
+            lichhen.setTrangthaica(true);
+            lichhen.setSolanthaydoi(0);
+            lichhen.setSolannhacnho(0);
+        }
+
+        lichhen.setThucung(thuCungService.saveOrUpdate(thucung));
+        lichhen.setDichvu(dichvu);
+        lichhen = lichhenRepository.save(lichhen);
+
+        hoadon.setIdlichhen(lichhen);
+        hoaDonService.addOrUpdate(hoadon);
+        nhacNhoService.lenLich(lichhen);
+        lichSuLichHenService.ghiDat(lichhen);
+        // Tác vụ chuyển sang chờ thanh toán được ghi cùng transaction để lịch đã đặt không thiếu tác vụ
+        tacVuHenGioService.henGioChoThanhToan(lichhen.getId());
+        return Optional.of(lichhen);
+    }
+
+    // Hủy lịch: dòng lịch chuyển sang trạng thái đã hủy (2), chỗ của ca được trả lại và sự kiện được ghi vào nhật ký
+    @Transactional
+    public Lichhen huyLich(Lichhen lichhen) {
+        Integer trangThaiCu = lichhen.getTrangthai();
+        lichhen.setSolanthaydoi(lichhen.getSolanthaydoi() + 1);
+        lichhen.setTrangthai(2);
+        lichhen.setThoigianhuy(LocalDateTime.now());
+        Lichhen daHuy = lichhenRepository.save(lichhen);
+        sucChuaService.traCho(daHuy.getDate(), daHuy.getIdcalichhen().getId());
+        lichSuLichHenService.ghiDoiTrangThai(daHuy, LichSuLichHenService.HUY, trangThaiCu);
+        return daHuy;
+    }
+
+    // Đổi lịch sang (ngày, ca) khác ngay trên dòng lịch hiện tại: chiếm chỗ ở ca mới, trả chỗ cũ,
+    // chuyển sang chờ thanh toán (3). Ngày và ca cũ chỉ được lưu trong nhật ký sự kiện, không chép dòng lịch.
+    // Trả về rỗng nếu ca mới đã đủ người.
+    @Transactional
+    public Optional<Lichhen> doiLich(Lichhen lichhen, LocalDate ngayMoi, Integer idCaMoi) {
+        Optional<Calichhen> caMoiOptional = caLichHenService.findById(idCaMoi);
+        if (caMoiOptional.isEmpty() || !sucChuaService.chiemCho(ngayMoi, idCaMoi)) {
+            return Optional.empty();
+        }
+
+        LocalDate ngayCu = lichhen.getDate();
+        Integer idCaCu = lichhen.getIdcalichhen().getId();
+        Integer trangThaiCu = lichhen.getTrangthai();
+
+        lichhen.setDate(ngayMoi);
+        lichhen.setIdcalichhen(caMoiOptional.get());
+        lichhen.setTrangthai(3); // Đặt trạng thái là "Chờ thanh toán"
+        lichhen.setThoigianthaydoi(LocalDateTime.now());
+        lichhen.setSolanthaydoi(lichhen.getSolanthaydoi() + 1);
+        lichhen.setSolannhacnho(0);
+        Lichhen lichDoi = lichhenRepository.save(lichhen);
+
+        sucChuaService.traCho(ngayCu, idCaCu);
+        nhacNhoService.lenLich(lichDoi);
+        lichSuLichHenService.ghiDoiLich(lichDoi, ngayCu, idCaCu, trangThaiCu);
+        return Optional.of(lichDoi);
+    }
+
+    // Đổi trạng thái lịch (thanh toán, xác nhận, ...) và ghi sự kiện vào nhật ký
+    @Transactional
+    public Lichhen doiTrangThai(Lichhen lichhen, int trangThaiMoi) {
+        Integer trangThaiCu = lichhen.getTrangthai();
+        lichhen.setTrangthai(trangThaiMoi);
+        Lichhen daLuu = lichhenRepository.save(lichhen);
+        lichSuLichHenService.ghiDoiTrangThai(daLuu, LichSuLichHenService.DOI_TRANG_THAI, trangThaiCu);
+        return daLuu;
+    }
+
+    public List<Lichhensukien> getLichSu(Integer idLichHen) {
+        return lichSuLichHenService.getLichSu(idLichHen);
+    }
+
     public Lichhen findById(Integer id){
         return lichhenRepository.findById(id).orElse(null);
     }
 
+    // Lịch kèm thú cưng, dịch vụ và ca trong một câu truy vấn, dùng khi trả lịch cho client
+    public Lichhen findChiTietById(Integer id){
+        return lichhenRepository.findChiTietById(id).orElse(null);
+    }
+
     public Page<Lichhen> findAllLichWithTrangThai(Pageable pageable,boolean tt,LocalDate date){
         return lichhenRepository.findByTrangthaicaAndDateAfter(tt,date,pageable);
     }
 
-    // Hàm tự động chạy khi ứng dụng khởi động
+    // Các tác vụ định kỳ chạy trên mọi replica nhưng phần ghi DB chỉ một node chạy mỗi lượt (xem TacVuCumService)
+    private static final String TAC_VU_TAO_SUC_CHUA = "tao-suc-chua";
+    private static final String TAC_VU_XOA_SUC_CHUA_CU = "xoa-suc-chua-cu";
+
     @Scheduled(cron = "0 0 0 * * ?") // Chạy vào 0:00 mỗi ngày
-    @Transactional
-    public void taoLichHenRongMoiNgay() {
-        taoLichHenRong();
-        System.out.println("Đã tạo lịch hẹn rỗng mới cho 7 ngày tới vào lúc 0:00.");
+    public void taoSucChuaMoiNgay() {
+        // Node không nhận khóa thấy các ngày mới trong chỉ mục ca trống qua thông báo của SucChuaNgay (V16)
+        tacVuCumService.chay(TAC_VU_TAO_SUC_CHUA, Duration.ofDays(1), () -> {
+            int soDong = moSucChua();
+            System.out.println("Đã mở " + soDong + " ca mới cho " + soNgayMoSucChua + " ngày tới vào lúc 0:00.");
+        });
     }
 
-    @EventListener(ContextRefreshedEvent.class) // Chạy khi ứng dụng khởi động
-    @Transactional
-    public void taoLichHenRongKhiKhoiDong() {
-        taoLichHenRong();
-        System.out.println("Đã tạo lịch hẹn rỗng mới cho 7 ngày tới khi khởi động.");
+    // Chạy nền sau khi ứng dụng khởi động xong để không làm chậm quá trình khởi động
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void taoSucChuaKhiKhoiDong() {
+        tacVuCumService.chay(TAC_VU_TAO_SUC_CHUA, Duration.ofDays(1), () -> {
+            int soDong = moSucChua();
+            System.out.println("Đã mở " + soDong + " ca mới cho " + soNgayMoSucChua + " ngày tới khi khởi động.");
+        });
     }
 
-    private void taoLichHenRong() {
-        // Lấy tất cả các ca từ bảng calichhen
-        List<Calichhen> danhSachCa = caLichHenService.findAll();
-
+    // Tạo toàn bộ bộ đếm sức chứa còn thiếu cho các ngày tới bằng một câu lệnh duy nhất.
+    // Chạy ngay trên node gọi, không qua khóa tác vụ: câu lệnh bỏ qua bộ đếm đã có nên chạy lặp vẫn an toàn.
+    public int moSucChua() {
         LocalDate startDate = LocalDate.now();
-        LocalDate endDate = startDate.plusDays(7); // Tạo cho 7 ngày tới
-
-        while (!startDate.isAfter(endDate)) {
-            for (Calichhen ca : danhSachCa) {
-                // Kiểm tra xem lịch hẹn rỗng đã tồn tại chưa, tránh thêm trùng
-                if (!lichhenRepository.existsByDateAndIdcalichhen_Id(startDate, ca.getId())) {
-                    Lichhen lichHenRong = new Lichhen();
-                    lichHenRong.setDate(startDate); // Chỉ thiết lập ngày
-                    lichHenRong.setTrangthai(5); // Gán trạng thái là "Rỗng"
-                    lichHenRong.setIdcalichhen(ca); // Gắn ID ca lịch hẹn để liên kết
-                    lichHenRong.setEmailNguoiDat("default-email@example.com"); // Giá trị mặc định
-                    lichHenRong.setIdkhachhang("demo");
-                    lichHenRong.setTrangthaica(false);
-                    lichHenRong.setSolanthaydoi(0);
-                    lichHenRong.setSolannhacnho(0);
-                    // Lưu vào bảng lichhen
-                    lichhenRepository.save(lichHenRong);
-                }
-            }
-            startDate = startDate.plusDays(1); // Chuyển sang ngày tiếp theo
-        }
+        return new TransactionTemplate(transactionManager).execute(status ->
+                sucChuaService.taoTheoKhoangNgay(startDate, startDate.plusDays(soNgayMoSucChua)));
     }
 
     @Scheduled(cron = "0 59 23 * * ?") // Chạy vào 23:59 mỗi ngày
-    @Transactional
-    public void xoaLichHenRongCuoiNgay() {
-        xoaLichHenRong();
-        System.out.println("Đã xóa lịch hẹn rỗng vào cuối ngày.");
+    public void xoaSucChuaCuCuoiNgay() {
+        xoaSucChuaCu();
     }
 
-    @EventListener(ContextRefreshedEvent.class) // Chạy khi ứng dụng khởi động
-    @Transactional
-    public void xoaLichHenRongKhiKhoiDong() {
-        xoaLichHenRong();
-        System.out.println("Đã xóa lịch hẹn rỗng khi khởi động.");
+    @Async
+    @EventListener(ApplicationReadyEvent.class) // Chạy nền khi ứng dụng khởi động
+    public void xoaSucChuaCuKhiKhoiDong() {
+        xoaSucChuaCu();
     }
 
-    private void xoaLichHenRong() {
+    // Xóa các bộ đếm trước ngày hôm nay bằng DELETE hàng loạt, không nạp entity; chỉ node giữ khóa xóa trong DB,
+    // còn chỉ mục ca trống trong bộ nhớ thì node nào cũng dọn.
+    // Nếu cấu hình kích thước lô > 0 thì xóa theo từng lô, mỗi lô một transaction.
+    private void xoaSucChuaCu() {
         LocalDate today = LocalDate.now();
-        // Tìm tất cả các bản ghi có email là "default-email@example.com" và ngày nhỏ hơn ngày hôm nay
-        List<Lichhen> danhSachLichHenRong = lichhenRepository.findByEmailNguoiDatAndDateBefore("default-email@example.com", today);
+        tacVuCumService.chay(TAC_VU_XOA_SUC_CHUA_CU, Duration.ofDays(1), () -> {
+            long batDau = System.currentTimeMillis();
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+            int soDongDaXoa = 0;
+            if (kichThuocLoXoa <= 0) {
+                soDongDaXoa = transactionTemplate.execute(status -> succhuangayRepository.xoaTruocNgay(today));
+            } else {
+                int daXoa;
+                do {
+                    daXoa = transactionTemplate.execute(status ->
+                            succhuangayRepository.xoaTruocNgayTheoLo(today, kichThuocLoXoa));
+                    soDongDaXoa += daXoa;
+                } while (daXoa == kichThuocLoXoa);
+            }
 
-        // Xóa tất cả các bản ghi tìm được
-        if (!danhSachLichHenRong.isEmpty()) {
-            lichhenRepository.deleteAll(danhSachLichHenRong);
-            System.out.println("Đã xóa " + danhSachLichHenRong.size() + " lịch hẹn rỗng.");
-        } else {
-            System.out.println("Không có lịch hẹn rỗng nào để xóa.");
-        }
+            System.out.println("Đã xóa " + soDongDaXoa + " bộ đếm sức chứa cũ trong "
+                    + (System.currentTimeMillis() - batDau) + " ms.");
+        });
+
+        slotAvailabilityIndex.xoaTruocNgay(today);
     }
 
     @Async
@@ -176,82 +367,10 @@ public class LichHenService {
         }
     }
 
-    private AtomicBoolean isCancelled = new AtomicBoolean(false);  // Biến flag để kiểm tra
-
-    public void cancelScheduleChange() {
-        isCancelled.set(true);  // Đặt flag hủy thành true
-    }
-
-    // Sau 20p tự động đổi trạng thái thành chờ thanh toán
-    @PersistenceContext
-    private EntityManager entityManager;
-
-    @Async
-    public void scheduleTrangThaiChange(Integer lichhenId) {
-        try {
-            if (isCancelled.get()) {
-                System.out.println("Tiến trình bị hủy.");
-                return;  // Nếu tiến trình bị hủy thì kết thúc
-            }
-            Thread.sleep( 2 * 60 * 1000); // Đợi
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            return; // Ngừng xử lý nếu bị gián đoạn
-        }
-
-        // Xóa cache Hibernate để chắc chắn lấy dữ liệu từ DB
-        entityManager.clear();
-
-        Optional<Lichhen> lichhenOptional = lichhenRepository.findById(lichhenId);
-        Lichhen lichhen = lichhenOptional.get();
-        if (lichhen == null) {
-            return;
-        }
-
-        if (lichhen.getTrangthai() == 4) {
-            lichhen.setTrangthai(3); // Cập nhật sang trạng thái 3 (Chờ thanh toán)
-            lichhenRepository.save(lichhen);
-            System.out.println("Đã cập nhật trạng thái của lịch hẹn ID: " + lichhenId + " thành 3 (Chờ thanh toán)");
-        } else {
-            System.out.println("Lịch hẹn"+ lichhenId +  " đã bị hủy hoặc thay đổi trạng thái, không cập nhật nữa.");
-        }
-    }
-
-    @Scheduled(fixedRate = 60000)  // Mỗi phút
-    public void checkAppointments() {
-        LocalDate currentDate = LocalDate.now();
-        LocalTime currentTime = LocalTime.now();
-
-        // Truy vấn các ca lịch hẹn trong cùng ngày và với giờ cụ thể
-        List<Lichhen> lichhens = lichhenRepository.findByDate(currentDate);
-
-        for (Lichhen lichhen : lichhens) {
-            LocalTime appointmentTime = lichhen.getIdcalichhen().getThoigianca();
-
-            // Tính toán sự chênh lệch giữa thời gian hiện tại và thời gian ca lịch hẹn
-            Duration duration = Duration.between(currentTime, appointmentTime);
-
-            //gửi thông báo
-            if (duration.toMinutes() <= 60 && duration.toMinutes() > 0 && lichhen.getSolannhacnho()<1) {
-                sendEmailNhacNho(lichhen,String.valueOf(duration.toMinutes()));
-                lichhen.setSolannhacnho(lichhen.getSolannhacnho()+1);
-                lichhenRepository.save(lichhen);
-            }
-        }
-    }
-
-    @Async
-    public void sendEmailNhacNho(Lichhen lichhen,String gio) {
-        try {
-            String message = "Chào bạn,\n\n"
-                    + "Cảm ơn bạn đã đặt lịch."
-                    + "Còn" + gio + " phút nữa là đến lịch hẹn của bạn "
-                    + "Xin hãy sắp xếp thời gian , lịch hẹn của bạn sẽ bắt đầu lúc: " + lichhen.getDate() + ' ' + lichhen.getIdcalichhen().getThoigianca();
-
-            emailService.sendEmail(lichhen.getEmailNguoiDat(),"Nhắc nhở lịch hẹn",message);
-            System.out.println("Email nhắc nhở đã được gửi thành công.");
-        } catch (Exception e) {
-            System.err.println("Gửi email thất bại: " + e.getMessage());
+    // Hủy tác vụ chuyển trạng thái đang chờ của riêng lịch hẹn này
+    public void cancelScheduleChange(Integer lichhenId) {
+        if (!tacVuHenGioService.huy(lichhenId)) {
+            System.out.println("Lịch hẹn " + lichhenId + " không có tác vụ nào đang chờ.");
         }
     }
 }
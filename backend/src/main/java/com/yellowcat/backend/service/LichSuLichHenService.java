@@ -0,0 +1,82 @@
+package com.yellowcat.backend.service;
+
+import com.yellowcat.backend.model.Lichhen;
+import com.yellowcat.backend.model.Lichhensukien;
+import com.yellowcat.backend.repository.LichhensukienRepository;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Nhật ký sự kiện của lịch hẹn (bảng lichhensukien), chỉ thêm mới.
+ * Các hàm ghi phải được gọi trong transaction thay đổi lịch để nhật ký và lịch luôn khớp nhau.
+ */
+@Service
+public class LichSuLichHenService {
+
+    public static final String DAT = "DAT";
+    public static final String HUY = "HUY";
+    public static final String DOI_LICH = "DOI_LICH";
+    public static final String DOI_TRANG_THAI = "DOI_TRANG_THAI";
+
+    // Người thực hiện của các thay đổi do tác vụ nền gây ra
+    public static final String HE_THONG = "he-thong";
+
+    private final LichhensukienRepository lichhensukienRepository;
+
+    public LichSuLichHenService(LichhensukienRepository lichhensukienRepository) {
+        this.lichhensukienRepository = lichhensukienRepository;
+    }
+
+    public void ghiDat(Lichhen lichhen) {
+        Lichhensukien suKien = taoSuKien(lichhen, DAT);
+        suKien.setNgaymoi(lichhen.getDate());
+        suKien.setIdcamoi(lichhen.getIdcalichhen().getId());
+        suKien.setTrangthaimoi(lichhen.getTrangthai());
+        lichhensukienRepository.save(suKien);
+    }
+
+    public void ghiDoiLich(Lichhen lichhen, LocalDate ngayCu, Integer idCaCu, Integer trangThaiCu) {
+        Lichhensukien suKien = taoSuKien(lichhen, DOI_LICH);
+        suKien.setNgaycu(ngayCu);
+        suKien.setIdcacu(idCaCu);
+        suKien.setTrangthaicu(trangThaiCu);
+        suKien.setNgaymoi(lichhen.getDate());
+        suKien.setIdcamoi(lichhen.getIdcalichhen().getId());
+        suKien.setTrangthaimoi(lichhen.getTrangthai());
+        lichhensukienRepository.save(suKien);
+    }
+
+    // Hủy lịch hoặc đổi trạng thái (loai là HUY hoặc DOI_TRANG_THAI)
+    public void ghiDoiTrangThai(Lichhen lichhen, String loai, Integer trangThaiCu) {
+        Lichhensukien suKien = taoSuKien(lichhen, loai);
+        suKien.setTrangthaicu(trangThaiCu);
+        suKien.setTrangthaimoi(lichhen.getTrangthai());
+        lichhensukienRepository.save(suKien);
+    }
+
+    public int ghiDoiTrangThaiTheoLo(Collection<Integer> idLichHen, int trangThaiCu, int trangThaiMoi) {
+        return lichhensukienRepository.ghiDoiTrangThaiTheoLo(idLichHen, trangThaiCu, trangThaiMoi, HE_THONG);
+    }
+
+    public List<Lichhensukien> getLichSu(Integer idLichHen) {
+        return lichhensukienRepository.findByIdlichhenOrderByIdAsc(idLichHen);
+    }
+
+    private Lichhensukien taoSuKien(Lichhen lichhen, String loai) {
+        Lichhensukien suKien = new Lichhensukien();
+        suKien.setIdlichhen(lichhen.getId());
+        suKien.setLoaisukien(loai);
+        suKien.setNguoithuchien(nguoiThucHien());
+        return suKien;
+    }
+
+    private String nguoiThucHien() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : HE_THONG;
+    }
+}
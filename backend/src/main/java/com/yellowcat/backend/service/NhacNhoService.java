@@ -0,0 +1,153 @@
+package com.yellowcat.backend.service;
+
+import com.yellowcat.backend.model.Lichhen;
+import com.yellowcat.backend.model.Nhacnho;
+import com.yellowcat.backend.repository.LichhenRepository;
+import com.yellowcat.backend.repository.NhacnhoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hàng đợi nhắc nhở lịch hẹn theo thời điểm đến hạn.
+ * Mỗi lịch được xác nhận có một dòng nhắc nhở; lượt quét chỉ đọc các dòng đến hạn qua index riêng
+ * và đánh dấu đã gửi theo lô, nên chi phí mỗi phút tỉ lệ với số nhắc nhở đến hạn chứ không với số lịch trong ngày.
+ */
+@Service
+@Slf4j
+public class NhacNhoService {
+
+    // Chỉ nhắc các lịch còn hiệu lực: thành công, chờ thanh toán, chờ xác nhận, đã thanh toán
+    private static final Set<Integer> TRANG_THAI_CAN_NHAC = Set.of(0, 3, 4, 6);
+
+    private final NhacnhoRepository nhacnhoRepository;
+    private final LichhenRepository lichhenRepository;
+    private final EmailService emailService;
+    private final TacVuCumService tacVuCumService;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration nhacTruoc;
+    private final int kichThuocLo;
+    private final Duration chuKyQuet;
+    private final int soPhan;
+
+    public NhacNhoService(NhacnhoRepository nhacnhoRepository,
+                          LichhenRepository lichhenRepository,
+                          EmailService emailService,
+                          TacVuCumService tacVuCumService,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${lichhen.nhac-nho.phut-truoc:60}") long phutTruoc,
+                          @Value("${lichhen.nhac-nho.kich-thuoc-lo:500}") int kichThuocLo,
+                          @Value("${lichhen.nhac-nho.quet-ms:60000}") long quetMs,
+                          @Value("${lichhen.nhac-nho.so-phan:4}") int soPhan) {
+        this.nhacnhoRepository = nhacnhoRepository;
+        this.lichhenRepository = lichhenRepository;
+        this.emailService = emailService;
+        this.tacVuCumService = tacVuCumService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.nhacTruoc = Duration.ofMinutes(phutTruoc);
+        this.kichThuocLo = kichThuocLo;
+        this.chuKyQuet = Duration.ofMillis(quetMs);
+        this.soPhan = soPhan;
+    }
+
+    // Thêm nhắc nhở cho lịch vừa được xác nhận hoặc đổi giờ, phải được gọi trong transaction đặt lịch.
+    // Nhắc nhở chưa gửi theo giờ cũ của lịch (nếu có) bị thay thế.
+    public void lenLich(Lichhen lichhen) {
+        nhacnhoRepository.xoaChuaGuiTheoLichHen(lichhen.getId());
+        LocalDateTime thoiDiemHen = LocalDateTime.of(lichhen.getDate(), lichhen.getIdcalichhen().getThoigianca());
+        if (!thoiDiemHen.isAfter(LocalDateTime.now())) {
+            return;
+        }
+        Nhacnho nhacNho = new Nhacnho();
+        nhacNho.setIdlichhen(lichhen.getId());
+        nhacNho.setThoidiemhen(thoiDiemHen);
+        nhacNho.setThoidiemnhac(thoiDiemHen.minus(nhacTruoc));
+        nhacnhoRepository.save(nhacNho);
+    }
+
+    // Lượt quét chia thành soPhan phần theo id % soPhan, các replica cùng kích hoạt chia nhau các phần (xem TacVuCumService)
+    @Scheduled(fixedDelayString = "${lichhen.nhac-nho.quet-ms:60000}")
+    public void guiNhacNhoDenHan() {
+        tacVuCumService.chayTheoPhan("gui-nhac-nho", soPhan, chuKyQuet, this::guiNhacNhoTheoPhan);
+    }
+
+    private void guiNhacNhoTheoPhan(int phan) {
+        int tong = 0;
+        int soDong;
+        do {
+            List<NhacNhoCanGui> canGui = new ArrayList<>();
+            soDong = transactionTemplate.execute(status -> khoaMotLo(LocalDateTime.now(), phan, canGui));
+            // Gửi email sau khi commit để không giữ khóa trong lúc chờ máy chủ mail
+            canGui.forEach(this::sendEmailNhacNho);
+            tong += canGui.size();
+        } while (soDong == kichThuocLo);
+
+        if (tong > 0) {
+            log.info("Đã gửi {} email nhắc nhở lịch hẹn (phần {}/{}).", tong, phan, soPhan);
+        }
+    }
+
+    // Xóa nhắc nhở đã gửi của các lịch đã qua
+    @Scheduled(cron = "0 30 0 * * ?") // Chạy vào 0:30 mỗi ngày
+    public void xoaNhacNhoDaGui() {
+        tacVuCumService.chay("xoa-nhac-nho-da-gui", Duration.ofDays(1), () -> {
+            Integer soDong = transactionTemplate.execute(status ->
+                    nhacnhoRepository.xoaDaGuiTruoc(LocalDateTime.now().minusDays(1)));
+            log.info("Đã xóa {} nhắc nhở đã gửi.", soDong);
+        });
+    }
+
+    private int khoaMotLo(LocalDateTime now, int phan, List<NhacNhoCanGui> canGui) {
+        List<Object[]> denHan = nhacnhoRepository.khoaNhacNhoDenHan(now, soPhan, phan, kichThuocLo);
+        if (denHan.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> ids = new ArrayList<>(denHan.size());
+        List<Integer> idLichDaNhac = new ArrayList<>();
+        for (Object[] dong : denHan) {
+            ids.add(((Number) dong[0]).longValue());
+            Integer idLichHen = ((Number) dong[1]).intValue();
+            int trangThai = ((Number) dong[3]).intValue();
+            LocalDateTime thoiDiemHen = dong[4] instanceof Timestamp ts ? ts.toLocalDateTime() : (LocalDateTime) dong[4];
+            // Lịch đã hủy, đã đổi hoặc đã qua giờ hẹn thì chỉ đánh dấu, không gửi
+            if (TRANG_THAI_CAN_NHAC.contains(trangThai) && thoiDiemHen.isAfter(now)) {
+                idLichDaNhac.add(idLichHen);
+                canGui.add(new NhacNhoCanGui((String) dong[2], thoiDiemHen,
+                        Duration.between(now, thoiDiemHen).toMinutes()));
+            }
+        }
+        nhacnhoRepository.danhDauDaGui(ids);
+        if (!idLichDaNhac.isEmpty()) {
+            lichhenRepository.tangSoLanNhacNho(idLichDaNhac);
+        }
+        return denHan.size();
+    }
+
+    private void sendEmailNhacNho(NhacNhoCanGui nhacNho) {
+        try {
+            String message = "Chào bạn,\n\n"
+                    + "Cảm ơn bạn đã đặt lịch."
+                    + "Còn " + nhacNho.soPhut() + " phút nữa là đến lịch hẹn của bạn "
+                    + "Xin hãy sắp xếp thời gian , lịch hẹn của bạn sẽ bắt đầu lúc: "
+                    + nhacNho.thoiDiemHen().toLocalDate() + ' ' + nhacNho.thoiDiemHen().toLocalTime();
+
+            emailService.sendEmail(nhacNho.email(), "Nhắc nhở lịch hẹn", message);
+        } catch (Exception e) {
+            log.error("Gửi email nhắc nhở thất bại: {}", e.getMessage());
+        }
+    }
+
+    private record NhacNhoCanGui(String email, LocalDateTime thoiDiemHen, long soPhut) {
+    }
+}
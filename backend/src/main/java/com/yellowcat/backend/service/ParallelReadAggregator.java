@@ -0,0 +1,154 @@
+package com.yellowcat.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Chạy song song các truy vấn đọc độc lập của một request với một hạn chót chung.
+ * Nguồn nào lỗi hoặc chưa xong khi hết hạn thì bị bỏ khỏi kết quả và tên của nó được ghi vào khóa "loi",
+ * nên thời gian phản hồi xấp xỉ nguồn chậm nhất chứ không phải tổng các nguồn.
+ * Các supplier không được dựa vào SecurityContext vì chạy trên luồng khác; hãy lấy idUser trước khi gọi.
+ * Mỗi nguồn chạy trong một transaction chỉ đọc có statement_timeout bằng thời gian còn lại tới hạn chót,
+ * và luồng của nguồn quá hạn bị ngắt, nên nguồn chậm không giữ luồng và kết nối DB sau hạn chót.
+ */
+@Service
+@Slf4j
+public class ParallelReadAggregator {
+
+    public static final String KHOA_LOI = "loi";
+
+    private final ExecutorService executor;
+    private final long hanChotMillis;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public ParallelReadAggregator(DataSource dataSource,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${tong-hop.so-luong:8}") int soLuong,
+                                  @Value("${tong-hop.hang-doi:200}") int hangDoi,
+                                  @Value("${tong-hop.han-chot-ms:2000}") long hanChotMillis) {
+        this(dataSource, transactionManager, taoExecutor(soLuong, hangDoi), hanChotMillis);
+    }
+
+    // Chạy nguồn trên executor cho trước, ví dụ executor chạy ngay trên luồng gọi để test đếm đủ câu SQL của request
+    public ParallelReadAggregator(DataSource dataSource, PlatformTransactionManager transactionManager,
+                                  ExecutorService executor, long hanChotMillis) {
+        this(new JdbcTemplate(dataSource), new TransactionTemplate(transactionManager), executor, hanChotMillis);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    // Không có DB: nguồn chạy trực tiếp, chỉ giới hạn bằng hạn chót và ngắt luồng
+    public ParallelReadAggregator(int soLuong, int hangDoi, long hanChotMillis) {
+        this((JdbcTemplate) null, (TransactionTemplate) null, taoExecutor(soLuong, hangDoi), hanChotMillis);
+    }
+
+    private ParallelReadAggregator(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                   ExecutorService executor, long hanChotMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.executor = executor;
+        this.hanChotMillis = hanChotMillis;
+    }
+
+    // Giới hạn số luồng để không vượt quá số kết nối trong pool DB; khi hàng đợi đầy thì chạy luôn trên luồng gọi
+    private static ExecutorService taoExecutor(int soLuong, int hangDoi) {
+        AtomicInteger dem = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(soLuong, soLuong, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(hangDoi),
+                r -> {
+                    Thread thread = new Thread(r, "tong-hop-" + dem.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @PreDestroy
+    public void dung() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Chạy tất cả nguồn song song và chờ tối đa đến hạn chót cấu hình.
+     * Mỗi nguồn thành công có một khóa cùng tên; nếu có nguồn thất bại thì có thêm khóa {@link #KHOA_LOI}.
+     */
+    public Map<String, Object> tongHop(Map<String, Supplier<?>> nguon) {
+        return tongHop(nguon, hanChotMillis);
+    }
+
+    public Map<String, Object> tongHop(Map<String, Supplier<?>> nguon, long hanChotMillis) {
+        long hanChot = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(hanChotMillis);
+
+        // Future của executor.submit (khác CompletableFuture) ngắt luồng đang chạy khi cancel(true)
+        Map<String, Future<?>> dangChay = new LinkedHashMap<>();
+        nguon.forEach((ten, supplier) -> dangChay.put(ten, executor.submit(() -> chay(supplier, hanChot))));
+
+        Map<String, Object> ketQua = new HashMap<>();
+        List<String> loi = new ArrayList<>();
+        for (Map.Entry<String, Future<?>> entry : dangChay.entrySet()) {
+            String ten = entry.getKey();
+            Future<?> future = entry.getValue();
+            try {
+                long conLai = Math.max(0, hanChot - System.nanoTime());
+                ketQua.put(ten, future.get(conLai, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                loi.add(ten);
+                log.warn("Nguồn '{}' không trả kết quả trước hạn chót {} ms.", ten, hanChotMillis);
+            } catch (ExecutionException e) {
+                loi.add(ten);
+                log.warn("Nguồn '{}' bị lỗi: {}", ten, e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                loi.add(ten);
+            }
+        }
+
+        if (!loi.isEmpty()) {
+            ketQua.put(KHOA_LOI, loi);
+        }
+        return ketQua;
+    }
+
+    private Object chay(Supplier<?> supplier, long hanChot) throws TimeoutException {
+        long conLaiMillis = TimeUnit.NANOSECONDS.toMillis(hanChot - System.nanoTime());
+        if (conLaiMillis <= 0) {
+            // Đã hết hạn khi còn nằm trong hàng đợi
+            throw new TimeoutException("Hết hạn chót trước khi chạy");
+        }
+        if (transactionTemplate == null) {
+            return supplier.get();
+        }
+        return transactionTemplate.execute(status -> {
+            // Chỉ áp dụng trong transaction này, kết nối trả về pool với timeout mặc định
+            jdbcTemplate.execute("SET LOCAL statement_timeout = " + conLaiMillis);
+            return supplier.get();
+        });
+    }
+}
@@ -0,0 +1,102 @@
+package com.yellowcat.backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Quản lý phân vùng theo tháng của LichHen (xem V11__Phan_vung_lich_hen.sql).
+ * Phân vùng của tháng hiện tại và vài tháng tới luôn được tạo trước; các tháng đã đóng quá số tháng giữ lại
+ * được tách khỏi LichHen và chuyển sang schema luu_tru cùng hóa đơn, đánh giá và nhật ký của chúng.
+ */
+@Service
+@Slf4j
+public class PhanVungLichHenService {
+
+    private static final DateTimeFormatter TEN_PHAN_VUNG = DateTimeFormatter.ofPattern("'lichhen_'yyyy_MM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TacVuCumService tacVuCumService;
+    private final TransactionTemplate transactionTemplate;
+    private final int soThangToi;
+    private final int soThangGiu;
+
+    public PhanVungLichHenService(JdbcTemplate jdbcTemplate,
+                                  TacVuCumService tacVuCumService,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${lichhen.phan-vung.so-thang-toi:3}") int soThangToi,
+                                  @Value("${lichhen.luu-tru.so-thang-giu:12}") int soThangGiu) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tacVuCumService = tacVuCumService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.soThangToi = soThangToi;
+        // Ít nhất giữ tháng hiện tại, chỉ tháng đã đóng mới được lưu trữ
+        this.soThangGiu = Math.max(1, soThangGiu);
+    }
+
+    // DDL chỉ một node chạy mỗi lượt (xem TacVuCumService)
+    @Scheduled(cron = "0 15 0 * * ?") // Chạy vào 0:15 mỗi ngày
+    public void taoPhanVungMoiNgay() {
+        tacVuCumService.chay("tao-phan-vung-lich-hen", Duration.ofDays(1), this::taoPhanVungToi);
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class) // Chạy nền khi ứng dụng khởi động
+    public void taoPhanVungKhiKhoiDong() {
+        tacVuCumService.chay("tao-phan-vung-lich-hen", Duration.ofDays(1), this::taoPhanVungToi);
+    }
+
+    // Tạo phân vùng còn thiếu từ tháng hiện tại tới soThangToi tháng sau, trả về số phân vùng mới
+    public int taoPhanVungToi() {
+        YearMonth thangNay = YearMonth.now();
+        int soMoi = 0;
+        for (int i = 0; i <= soThangToi; i++) {
+            YearMonth thang = thangNay.plusMonths(i);
+            Boolean daTao = transactionTemplate.execute(status -> jdbcTemplate.queryForObject(
+                    "SELECT tao_phan_vung_lichhen(?)", Boolean.class, thang.atDay(1)));
+            if (Boolean.TRUE.equals(daTao)) {
+                soMoi++;
+                log.info("Đã tạo phân vùng {}.", thang.format(TEN_PHAN_VUNG));
+            }
+        }
+        return soMoi;
+    }
+
+    @Scheduled(cron = "${lichhen.luu-tru.cron:0 0 2 1 * ?}") // Mặc định 2:00 ngày đầu mỗi tháng
+    public void luuTruDinhKy() {
+        tacVuCumService.chay("luu-tru-lich-hen", Duration.ofDays(28), this::luuTruThangDaDong);
+    }
+
+    // Lưu trữ các tháng đã đóng, mỗi tháng một transaction
+    public void luuTruThangDaDong() {
+        YearMonth giuTuThang = YearMonth.now().minusMonths(soThangGiu - 1L);
+        List<String> phanVung = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "WHERE i.inhparent = 'lichhen'::regclass AND c.relname ~ '^lichhen_[0-9]{4}_[0-9]{2}$' " +
+                        "ORDER BY c.relname", String.class);
+
+        for (String ten : phanVung) {
+            YearMonth thang = YearMonth.parse(ten, TEN_PHAN_VUNG);
+            if (!thang.isBefore(giuTuThang)) {
+                break;
+            }
+            long batDau = System.currentTimeMillis();
+            Long soLich = transactionTemplate.execute(status -> jdbcTemplate.queryForObject(
+                    "SELECT luu_tru_phan_vung_lichhen(?)", Long.class, thang.atDay(1)));
+            log.info("Đã chuyển {} ({} lịch hẹn) sang luu_tru trong {} ms.", ten, soLich,
+                    System.currentTimeMillis() - batDau);
+        }
+    }
+}
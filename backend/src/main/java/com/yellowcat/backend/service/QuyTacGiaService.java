@@ -0,0 +1,75 @@
+package com.yellowcat.backend.service;
+
+import com.yellowcat.backend.model.Quytacgia;
+import com.yellowcat.backend.repository.LichhenRepository;
+import com.yellowcat.backend.repository.QuytacgiaRepository;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+public class QuyTacGiaService {
+
+    private final QuytacgiaRepository quytacgiaRepository;
+    private final LichhenRepository lichhenRepository;
+    private final DanhMucCache danhMucCache;
+
+    public QuyTacGiaService(QuytacgiaRepository quytacgiaRepository, LichhenRepository lichhenRepository,
+                            DanhMucCache danhMucCache) {
+        this.quytacgiaRepository = quytacgiaRepository;
+        this.lichhenRepository = lichhenRepository;
+        this.danhMucCache = danhMucCache;
+    }
+
+    public List<Quytacgia> getAll() {
+        return quytacgiaRepository.findAll();
+    }
+
+    public Optional<Quytacgia> findById(Integer id) {
+        return quytacgiaRepository.findById(id);
+    }
+
+    public Quytacgia addOrUpdate(Quytacgia quytacgia) {
+        Quytacgia daLuu = quytacgiaRepository.save(quytacgia);
+        danhMucCache.xoaSauCommit(DanhMucCache.QUY_TAC_GIA, daLuu.getId());
+        return daLuu;
+    }
+
+    public void remove(Integer id) {
+        quytacgiaRepository.deleteById(id);
+        danhMucCache.xoaSauCommit(DanhMucCache.QUY_TAC_GIA, id);
+    }
+
+    // Bảng giá biên dịch từ các quy tắc đang bật. Quy tắc thay đổi ở node nào thì mục cache bị xóa qua kênh thông báo
+    // và request sau biên dịch bảng mới; request đang tính giá vẫn dùng trọn bảng cũ
+    public BangGia getBangGia() {
+        return danhMucCache.lay(DanhMucCache.QUY_TAC_GIA, "bang-gia",
+                () -> BangGia.bienDich(quytacgiaRepository.findByTrangthaiTrue()));
+    }
+
+    // Điền thông tin về khách mà bảng giá cần rồi tính giá. Số lịch đã đặt và dịch vụ cùng ngày chỉ được truy vấn
+    // khi đang có quy tắc hạng thân thiết / combo (cần cả hai thì gộp một câu), nên không có quy tắc nào thì tính giá
+    // không chạy câu SQL nào.
+    // Hai giá trị này cố ý không cache: chúng đổi ngay trong luồng vừa báo giá (lịch thứ hai cùng ngày phải thấy lịch
+    // thứ nhất mới được combo) và khi lịch của khách được thanh toán ở bất kỳ node nào, giá trị cũ là thu sai tiền.
+    // Báo giá chỉ chạy một lần cho mỗi lần đặt lịch, không nằm trên đường đọc.
+    public long baoGia(YeuCauBaoGia yeuCau, String idKhachHang, LocalDate ngay) {
+        BangGia bangGia = getBangGia();
+        boolean canSoLanDat = idKhachHang != null && bangGia.isCanSoLanDat();
+        boolean canDichVuCungNgay = idKhachHang != null && ngay != null && bangGia.isCanDichVuCungNgay();
+        if (canSoLanDat && canDichVuCungNgay) {
+            List<Object[]> dong = lichhenRepository.findThongTinBaoGia(idKhachHang, ngay);
+            yeuCau.setSoLanDat(((Number) dong.get(0)[0]).intValue());
+            yeuCau.setDichVuCungNgay(dong.stream().filter(d -> d[1] != null)
+                    .mapToInt(d -> ((Number) d[1]).intValue()).toArray());
+        } else if (canSoLanDat) {
+            yeuCau.setSoLanDat((int) lichhenRepository.countLichDaThanhToan(idKhachHang));
+        } else if (canDichVuCungNgay) {
+            yeuCau.setDichVuCungNgay(lichhenRepository.findIdDichVuTrongNgay(idKhachHang, ngay).stream()
+                    .mapToInt(Integer::intValue).toArray());
+        }
+        return bangGia.tinh(yeuCau);
+    }
+}
@@ -0,0 +1,303 @@
+package com.yellowcat.backend.service;
+
+import com.yellowcat.backend.model.Calichhen;
+import com.yellowcat.backend.repository.CalichhenRepository;
+import com.yellowcat.backend.repository.SucchuangayRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Chỉ mục ca trống trong bộ nhớ: mỗi ngày là một bitset theo id Calichhen (bit = 1 là ca còn trống).
+ * Được dựng lại từ DB khi khởi động, cập nhật sau mỗi lần đặt, hủy, đổi lịch trên node này,
+ * cập nhật theo thông báo khi node khác làm ca đổi giữa còn chỗ và hết chỗ (xem {@link KenhThayDoiDanhMuc})
+ * và định kỳ đối chiếu với DB để phát hiện và sửa sai lệch (ví dụ thông báo bị lỡ khi mất kênh).
+ * Chỉ mục chỉ dùng để hiển thị và gợi ý; chiếm chỗ luôn đi qua bộ đếm có điều kiện trong SucChuaNgay.
+ * Cập nhật bit của một ngày và việc sửa ngày đó khi đối chiếu giữ cùng một khóa theo ngày,
+ * để lượt đặt / hủy commit trong lúc đối chiếu không bị ghi đè bằng dữ liệu cũ.
+ * Khi dựng lại toàn bộ, các lần cập nhật bit trong lúc đọc DB được ghi lại và áp lên chỉ mục mới trước khi thay thế.
+ */
+@Service
+@Slf4j
+public class SlotAvailabilityIndex {
+
+    private final SucchuangayRepository succhuangayRepository;
+    private final CalichhenRepository calichhenRepository;
+
+    private volatile List<Calichhen> caTheoGio = List.of();
+    private volatile int soTu = 1;
+    private volatile ConcurrentHashMap<LocalDate, AtomicLongArray> theoNgay = new ConcurrentHashMap<>();
+    private volatile boolean sanSang;
+    // Khóa theo ngày (băm theo ngày), xem datBit và suaNgay
+    private final Object[] khoaTheoNgay = new Object[64];
+    // Khác null trong lúc napLai đọc DB: các lần cập nhật bit trong lúc đó, theo thứ tự
+    private volatile Queue<CapNhatBit> nhatKyKhiNap;
+
+    private final AtomicLong tongSoLech = new AtomicLong();
+    private volatile int soLechLanCuoi;
+    private volatile LocalDateTime lanKiemTraCuoi;
+
+    public SlotAvailabilityIndex(SucchuangayRepository succhuangayRepository, CalichhenRepository calichhenRepository) {
+        this.succhuangayRepository = succhuangayRepository;
+        this.calichhenRepository = calichhenRepository;
+        for (int i = 0; i < khoaTheoNgay.length; i++) {
+            khoaTheoNgay[i] = new Object();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void napKhiKhoiDong() {
+        napLai();
+    }
+
+    // Dựng lại toàn bộ chỉ mục từ DB rồi thay thế chỉ mục cũ. Lượt đặt / hủy commit sau khi bắt đầu đọc DB
+    // có thể không nằm trong ảnh chụp, nên được ghi vào nhật ký rồi áp lại lên chỉ mục mới; việc áp lại và thay thế
+    // giữ mọi khóa theo ngày để không lần cập nhật nào rơi vào chỉ mục cũ sau đó
+    public synchronized void napLai() {
+        Queue<CapNhatBit> nhatKy = new ConcurrentLinkedQueue<>();
+        nhatKyKhiNap = nhatKy;
+        List<Calichhen> danhSachCa = new ArrayList<>(calichhenRepository.findAll());
+        danhSachCa.sort(Comparator.comparing(Calichhen::getThoigianca));
+        int maxId = danhSachCa.stream().mapToInt(Calichhen::getId).max().orElse(0);
+        int tu = maxId / 64 + 1;
+
+        ConcurrentHashMap<LocalDate, AtomicLongArray> moi = docTuDb(tu);
+        giuMoiKhoa(0, () -> {
+            for (CapNhatBit capNhat : nhatKy) {
+                if (capNhat.idCa() / 64 < tu) {
+                    ganBit(moi.computeIfAbsent(capNhat.ngay(), d -> new AtomicLongArray(tu)), capNhat.idCa(), capNhat.trong());
+                }
+            }
+            caTheoGio = List.copyOf(danhSachCa);
+            soTu = tu;
+            theoNgay = moi;
+            nhatKyKhiNap = null;
+        });
+        sanSang = true;
+        log.info("Đã dựng chỉ mục ca trống cho {} ngày, {} ca.", moi.size(), danhSachCa.size());
+    }
+
+    public boolean isSanSang() {
+        return sanSang;
+    }
+
+    // Danh sách ca còn trống trong ngày, bỏ qua các ca đã qua nếu là hôm nay. Không truy vấn DB.
+    public List<Calichhen> getCaTrong(LocalDate ngay) {
+        AtomicLongArray bits = theoNgay.get(ngay);
+        if (bits == null) {
+            return List.of();
+        }
+        boolean homNay = ngay.equals(LocalDate.now());
+        LocalTime now = LocalTime.now();
+
+        List<Calichhen> ketQua = new ArrayList<>();
+        for (Calichhen ca : caTheoGio) {
+            if (laBitBat(bits, ca.getId()) && (!homNay || !ca.getThoigianca().isBefore(now))) {
+                ketQua.add(ca);
+            }
+        }
+        return ketQua;
+    }
+
+    // Id các ca còn trống cho từng ngày trong khoảng [tuNgay, denNgay], ngày không còn ca trống được bỏ qua
+    public Map<LocalDate, List<Integer>> getCaTrong(LocalDate tuNgay, LocalDate denNgay) {
+        Map<LocalDate, List<Integer>> ketQua = new LinkedHashMap<>();
+        for (LocalDate ngay = tuNgay; !ngay.isAfter(denNgay); ngay = ngay.plusDays(1)) {
+            List<Calichhen> caTrong = getCaTrong(ngay);
+            if (!caTrong.isEmpty()) {
+                ketQua.put(ngay, caTrong.stream().map(Calichhen::getId).toList());
+            }
+        }
+        return ketQua;
+    }
+
+    public boolean isTrong(LocalDate ngay, int idCa) {
+        AtomicLongArray bits = theoNgay.get(ngay);
+        return bits != null && laBitBat(bits, idCa);
+    }
+
+    // Đánh dấu ca đã có người đặt. Nếu đang trong transaction thì chỉ áp dụng sau khi commit.
+    public void danhDauDaDat(LocalDate ngay, int idCa) {
+        sauKhiCommit(() -> datBit(ngay, idCa, false));
+    }
+
+    // Đánh dấu ca trống trở lại. Nếu đang trong transaction thì chỉ áp dụng sau khi commit.
+    public void danhDauTrong(LocalDate ngay, int idCa) {
+        sauKhiCommit(() -> datBit(ngay, idCa, true));
+    }
+
+    public void napLaiSauCommit() {
+        sauKhiCommit(this::napLai);
+    }
+
+    public void xoaTruocNgay(LocalDate ngay) {
+        theoNgay.keySet().removeIf(d -> d.isBefore(ngay));
+    }
+
+    // Đối chiếu định kỳ với DB. Ảnh chụp DB chỉ dùng để tìm ngày có thể lệch; mỗi ngày đó được đọc lại
+    // từ bộ đếm và sửa dưới khóa của ngày, nên lượt đặt commit giữa lúc chụp và lúc sửa không bị hoàn tác
+    // và không bị đếm là lệch
+    @Scheduled(fixedDelayString = "${lichhen.chi-so-trong.kiem-tra-ms:300000}",
+            initialDelayString = "${lichhen.chi-so-trong.kiem-tra-ms:300000}")
+    public synchronized void kiemTraNhatQuan() {
+        if (!sanSang) {
+            return;
+        }
+        int tu = soTu;
+        LocalDate homNay = LocalDate.now();
+        ConcurrentHashMap<LocalDate, AtomicLongArray> db = docTuDb(tu);
+
+        int soLech = 0;
+        for (LocalDate ngay : hopNgay(theoNgay, db)) {
+            if (!ngay.isBefore(homNay) && khac(theoNgay.get(ngay), db.get(ngay), tu)) {
+                soLech += suaNgay(ngay, tu);
+            }
+        }
+
+        soLechLanCuoi = soLech;
+        lanKiemTraCuoi = LocalDateTime.now();
+        if (soLech > 0) {
+            tongSoLech.addAndGet(soLech);
+            log.warn("Chỉ mục ca trống lệch {} ca so với DB, đã sửa lại.", soLech);
+        }
+    }
+
+    // Đọc lại một ngày từ bộ đếm và ghi đè bit của ngày đó, trả về số ca thực sự lệch
+    private int suaNgay(LocalDate ngay, int tu) {
+        synchronized (khoaCua(ngay)) {
+            AtomicLongArray db = new AtomicLongArray(tu);
+            for (Integer idCa : succhuangayRepository.findIdCaConChoTheoNgay(ngay)) {
+                if (idCa / 64 < tu) {
+                    db.getAndUpdate(idCa / 64, w -> w | (1L << (idCa % 64)));
+                }
+            }
+            AtomicLongArray bits = theoNgay.computeIfAbsent(ngay, d -> new AtomicLongArray(tu));
+            int soLech = 0;
+            for (int i = 0; i < tu && i < bits.length(); i++) {
+                soLech += Long.bitCount(bits.getAndSet(i, db.get(i)) ^ db.get(i));
+            }
+            return soLech;
+        }
+    }
+
+    public Map<String, Object> thongKe() {
+        Map<String, Object> thongKe = new LinkedHashMap<>();
+        thongKe.put("sanSang", sanSang);
+        thongKe.put("soNgay", theoNgay.size());
+        thongKe.put("soCa", caTheoGio.size());
+        thongKe.put("soLechLanCuoi", soLechLanCuoi);
+        thongKe.put("tongSoLech", tongSoLech.get());
+        thongKe.put("lanKiemTraCuoi", lanKiemTraCuoi);
+        return thongKe;
+    }
+
+    private ConcurrentHashMap<LocalDate, AtomicLongArray> docTuDb(int tu) {
+        ConcurrentHashMap<LocalDate, AtomicLongArray> ketQua = new ConcurrentHashMap<>();
+        for (Object[] dong : succhuangayRepository.findConChoTuNgay(LocalDate.now())) {
+            LocalDate ngay = (LocalDate) dong[0];
+            int idCa = (Integer) dong[1];
+            if (idCa / 64 < tu) {
+                AtomicLongArray bits = ketQua.computeIfAbsent(ngay, d -> new AtomicLongArray(tu));
+                bits.getAndUpdate(idCa / 64, w -> w | (1L << (idCa % 64)));
+            }
+        }
+        return ketQua;
+    }
+
+    private void datBit(LocalDate ngay, int idCa, boolean trong) {
+        if (idCa / 64 >= soTu) {
+            // Ca mới thêm sau lần dựng cuối, dựng lại cả chỉ mục
+            napLai();
+            return;
+        }
+        synchronized (khoaCua(ngay)) {
+            ganBit(theoNgay.computeIfAbsent(ngay, d -> new AtomicLongArray(soTu)), idCa, trong);
+            Queue<CapNhatBit> nhatKy = nhatKyKhiNap;
+            if (nhatKy != null) {
+                nhatKy.add(new CapNhatBit(ngay, idCa, trong));
+            }
+        }
+    }
+
+    private static void ganBit(AtomicLongArray bits, int idCa, boolean trong) {
+        long mask = 1L << (idCa % 64);
+        if (trong) {
+            bits.getAndUpdate(idCa / 64, w -> w | mask);
+        } else {
+            bits.getAndUpdate(idCa / 64, w -> w & ~mask);
+        }
+    }
+
+    private Object khoaCua(LocalDate ngay) {
+        return khoaTheoNgay[Math.floorMod(ngay.hashCode(), khoaTheoNgay.length)];
+    }
+
+    // Chạy viec khi giữ mọi khóa theo ngày, luôn lấy theo cùng thứ tự. datBit và suaNgay chỉ giữ một khóa nên không khóa chéo
+    private void giuMoiKhoa(int i, Runnable viec) {
+        if (i == khoaTheoNgay.length) {
+            viec.run();
+            return;
+        }
+        synchronized (khoaTheoNgay[i]) {
+            giuMoiKhoa(i + 1, viec);
+        }
+    }
+
+    private static boolean khac(AtomicLongArray a, AtomicLongArray b, int tu) {
+        for (int i = 0; i < tu; i++) {
+            long x = a == null || i >= a.length() ? 0L : a.get(i);
+            long y = b == null ? 0L : b.get(i);
+            if (x != y) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean laBitBat(AtomicLongArray bits, int idCa) {
+        int tu = idCa / 64;
+        return tu < bits.length() && (bits.get(tu) & (1L << (idCa % 64))) != 0;
+    }
+
+    private static Iterable<LocalDate> hopNgay(Map<LocalDate, ?> a, Map<LocalDate, ?> b) {
+        Map<LocalDate, Boolean> hop = new HashMap<>();
+        a.keySet().forEach(d -> hop.put(d, true));
+        b.keySet().forEach(d -> hop.put(d, true));
+        return hop.keySet();
+    }
+
+    private record CapNhatBit(LocalDate ngay, int idCa, boolean trong) {
+    }
+
+    private static void sauKhiCommit(Runnable viec) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    viec.run();
+                }
+            });
+        } else {
+            viec.run();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.yellowcat.backend.service;
+
+import com.yellowcat.backend.repository.SucchuangayRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+
+/**
+ * Sức chứa theo (ngày, ca). Mỗi ca trong ngày có một bộ đếm DaDat / SucChua,
+ * chiếm chỗ là một lần tăng có điều kiện và trả chỗ là một lần giảm, không cần dòng lịch rỗng.
+ * Các hàm ghi phải được gọi bên trong transaction của nghiệp vụ gọi nó.
+ */
+@Service
+public class SucChuaService {
+
+    private final SucchuangayRepository succhuangayRepository;
+    private final SlotAvailabilityIndex slotAvailabilityIndex;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public SucChuaService(SucchuangayRepository succhuangayRepository,
+                          SlotAvailabilityIndex slotAvailabilityIndex,
+                          ApplicationEventPublisher eventPublisher) {
+        this.succhuangayRepository = succhuangayRepository;
+        this.slotAvailabilityIndex = slotAvailabilityIndex;
+        this.eventPublisher = eventPublisher;
+    }
+
+    // Chiếm một chỗ trong ca. Trả về false nếu ca đã đủ hoặc chưa mở cho ngày này.
+    public boolean chiemCho(LocalDate ngay, Integer idCa) {
+        if (succhuangayRepository.tangDaDat(ngay, idCa) == 0) {
+            return false;
+        }
+        if (!succhuangayRepository.conCho(ngay, idCa)) {
+            slotAvailabilityIndex.danhDauDaDat(ngay, idCa);
+        }
+        return true;
+    }
+
+    // Trả lại soLuong chỗ của ca; sau khi commit người đầu danh sách chờ được đề nghị
+    public void traCho(LocalDate ngay, Integer idCa, int soLuong) {
+        if (succhuangayRepository.giamDaDat(ngay, idCa, soLuong) > 0) {
+            slotAvailabilityIndex.danhDauTrong(ngay, idCa);
+            eventPublisher.publishEvent(new CaDuocTraLaiEvent(ngay, idCa));
+        }
+    }
+
+    public void traCho(LocalDate ngay, Integer idCa) {
+        traCho(ngay, idCa, 1);
+    }
+
+    public int taoTheoKhoangNgay(LocalDate tuNgay, LocalDate denNgay) {
+        int soDong = succhuangayRepository.taoTheoKhoangNgay(tuNgay, denNgay);
+        if (soDong > 0) {
+            slotAvailabilityIndex.napLaiSauCommit();
+        }
+        return soDong;
+    }
+
+    public void capNhatSucChua(LocalDate ngay, Integer idCa, int sucChua) {
+        succhuangayRepository.capNhatSucChua(ngay, idCa, sucChua);
+        slotAvailabilityIndex.napLaiSauCommit();
+        eventPublisher.publishEvent(new CaDuocTraLaiEvent(ngay, idCa));
+    }
+
+    public void capNhatSucChuaMacDinhTuNgay(Integer idCa, LocalDate tuNgay, int sucChuaCu, int sucChuaMoi) {
+        if (succhuangayRepository.capNhatSucChuaMacDinhTuNgay(idCa, tuNgay, sucChuaCu, sucChuaMoi) > 0) {
+            slotAvailabilityIndex.napLaiSauCommit();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.yellowcat.backend.service;
+
+import com.yellowcat.backend.model.Khoatacvu;
+import com.yellowcat.backend.repository.KhoatacvuRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Điều phối tác vụ định kỳ khi chạy nhiều node: mỗi tác vụ có một khóa tên riêng có thời hạn trong bảng KhoaTacVu,
+ * lượt chạy nào cũng chỉ một node nhận được khóa, các node còn lại bỏ qua.
+ * Khóa có hạn giuToiDa và được gia hạn thêm giuToiDa sau mỗi một phần ba khoảng đó trong lúc tác vụ còn chạy,
+ * nên tác vụ chạy lâu hơn giuToiDa vẫn giữ khóa; node chết thì thôi gia hạn và node khác nhận lại khóa sau tối đa giuToiDa.
+ * Chạy xong khóa vẫn được giữ tối thiểu giuToiThieu kể từ lúc bắt đầu, để node có cron kích hoạt trễ vài giây
+ * không chạy lại cùng lượt.
+ * Tác vụ chia phần ({@link #chayTheoPhan}) có một khóa cho mỗi phần, các node cùng kích hoạt chia nhau các phần.
+ */
+@Service
+@Slf4j
+public class TacVuCumService {
+
+    private final KhoatacvuRepository khoatacvuRepository;
+    private final String tenNode;
+    private final Duration giuToiDa;
+    private final Duration giuToiThieu;
+    private final Map<String, ThongKeTacVu> thongKe = new ConcurrentHashMap<>();
+    // Một luồng gia hạn khóa cho mọi tác vụ đang chạy trên node này
+    private final ScheduledExecutorService giaHan = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "gia-han-khoa-tac-vu");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public TacVuCumService(KhoatacvuRepository khoatacvuRepository,
+                           @Value("${tac-vu.ten-node:}") String tenNode,
+                           @Value("${tac-vu.giu-toi-da-phut:10}") long giuToiDaPhut,
+                           @Value("${tac-vu.giu-toi-thieu-giay:60}") long giuToiThieuGiay) {
+        this(khoatacvuRepository, tenNode, Duration.ofMinutes(giuToiDaPhut), Duration.ofSeconds(giuToiThieuGiay));
+    }
+
+    public TacVuCumService(KhoatacvuRepository khoatacvuRepository, String tenNode,
+                           Duration giuToiDa, Duration giuToiThieu) {
+        this.khoatacvuRepository = khoatacvuRepository;
+        // Mặc định là pid@hostname, khác nhau giữa các replica
+        this.tenNode = tenNode.isBlank() ? ManagementFactory.getRuntimeMXBean().getName() : tenNode;
+        this.giuToiDa = giuToiDa;
+        this.giuToiThieu = giuToiThieu;
+    }
+
+    @PreDestroy
+    public void dung() {
+        giaHan.shutdownNow();
+    }
+
+    /**
+     * Chạy tác vụ nếu node này nhận được khóa. chuKy là khoảng cách dự kiến giữa hai lần chạy,
+     * dùng để đếm số lượt bị lỡ trên cả cụm. Trả về false nếu node khác đang giữ khóa.
+     */
+    public boolean chay(String ten, Duration chuKy, Runnable tacVu) {
+        ThongKeTacVu thongKeTacVu = thongKe.computeIfAbsent(ten, k -> new ThongKeTacVu());
+        // Giữ tối thiểu không quá nửa chu kỳ để không chặn chính lượt kế tiếp
+        long giuToiThieuMs = Math.min(giuToiThieu.toMillis(), chuKy.toMillis() / 2);
+        long giuToiDaMs = Math.max(giuToiDa.toMillis(), giuToiThieuMs);
+
+        Optional<LocalDateTime> batDauTruoc = khoatacvuRepository.findBatDauCuoi(ten);
+        if (khoatacvuRepository.nhanKhoa(ten, tenNode, giuToiDaMs) == 0) {
+            thongKeTacVu.soLanBoQua.incrementAndGet();
+            return false;
+        }
+        demLuotBiLo(ten, chuKy, batDauTruoc.orElse(null), thongKeTacVu);
+
+        long chuKyGiaHanMs = Math.max(1, giuToiDaMs / 3);
+        ScheduledFuture<?> nhipGiaHan = giaHan.scheduleAtFixedRate(() -> giaHanKhoa(ten, giuToiDaMs),
+                chuKyGiaHanMs, chuKyGiaHanMs, TimeUnit.MILLISECONDS);
+        long batDau = System.currentTimeMillis();
+        try {
+            tacVu.run();
+            thongKeTacVu.soLanChay.incrementAndGet();
+        } catch (RuntimeException e) {
+            thongKeTacVu.soLanLoi.incrementAndGet();
+            log.error("Tác vụ {} lỗi: {}", ten, e.getMessage(), e);
+        } finally {
+            long thoiGian = System.currentTimeMillis() - batDau;
+            thongKeTacVu.thoiGianCuoiMs.set(thoiGian);
+            thongKeTacVu.tongThoiGianMs.addAndGet(thoiGian);
+            thongKeTacVu.thoiGianToiDaMs.accumulateAndGet(thoiGian, Math::max);
+            thongKeTacVu.lanChayCuoi = LocalDateTime.now();
+            // Lượt gia hạn đang chạy dở (nếu có) không kéo dài khóa đã trả, xem KhoatacvuRepository.giaHanKhoa
+            nhipGiaHan.cancel(false);
+            khoatacvuRepository.traKhoa(ten, tenNode, giuToiThieuMs);
+        }
+        return true;
+    }
+
+    /**
+     * Tác vụ chia thành soPhan phần, mỗi phần một khóa "ten#i". Node nhận từng phần còn trống và chạy xong mới nhận phần
+     * kế tiếp, nên các node cùng kích hoạt chia nhau các phần; node chết giữa chừng thì phần của nó được chạy lại ở lượt sau
+     * khi khóa hết hạn. Trả về số phần node này đã chạy.
+     */
+    public int chayTheoPhan(String ten, int soPhan, Duration chuKy, IntConsumer tacVuPhan) {
+        // Mỗi node bắt đầu từ một phần khác nhau để ít tranh khóa
+        int batDau = Math.floorMod(tenNode.hashCode(), soPhan);
+        int soPhanDaChay = 0;
+        for (int i = 0; i < soPhan; i++) {
+            int phan = (batDau + i) % soPhan;
+            if (chay(ten + "#" + phan, chuKy, () -> tacVuPhan.accept(phan))) {
+                soPhanDaChay++;
+            }
+        }
+        return soPhanDaChay;
+    }
+
+    private void giaHanKhoa(String ten, long giuToiDaMs) {
+        try {
+            if (khoatacvuRepository.giaHanKhoa(ten, tenNode, giuToiDaMs) == 0) {
+                log.warn("Không gia hạn được khóa tác vụ {}: khóa đã hết hạn hoặc đã được trả.", ten);
+            }
+        } catch (RuntimeException e) {
+            // Lượt sau thử lại, khóa vẫn còn hạn tới hai phần ba giuToiDa
+            log.warn("Gia hạn khóa tác vụ {} lỗi: {}", ten, e.getMessage());
+        }
+    }
+
+    // Lượt trước trên cả cụm bắt đầu cách lượt này quá 1,5 chu kỳ thì các chu kỳ ở giữa bị lỡ (mọi node đều tắt hoặc lỗi)
+    private void demLuotBiLo(String ten, Duration chuKy, LocalDateTime batDauTruoc, ThongKeTacVu thongKeTacVu) {
+        if (batDauTruoc == null) {
+            return;
+        }
+        Optional<LocalDateTime> batDauNay = khoatacvuRepository.findBatDauCuoi(ten);
+        if (batDauNay.isEmpty()) {
+            return;
+        }
+        long cachMs = Duration.between(batDauTruoc, batDauNay.get()).toMillis();
+        if (cachMs * 2 > chuKy.toMillis() * 3) {
+            long soLuotLo = Math.max(1, cachMs / chuKy.toMillis() - 1);
+            thongKeTacVu.soLanLo.addAndGet(soLuotLo);
+            log.warn("Tác vụ {} đã lỡ {} lượt, lần chạy trước bắt đầu lúc {}.", ten, soLuotLo, batDauTruoc);
+        }
+    }
+
+    public String getTenNode() {
+        return tenNode;
+    }
+
+    // Thống kê theo tác vụ: số lần chạy / bỏ qua / lỗi / lỡ và thời gian chạy trên node này,
+    // cùng trạng thái khóa dùng chung của cả cụm
+    public Map<String, Object> thongKe() {
+        Map<String, Object> ketQua = new LinkedHashMap<>();
+        ketQua.put("node", tenNode);
+        Map<String, Object> theoTacVu = new LinkedHashMap<>();
+        thongKe.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(e -> {
+            ThongKeTacVu t = e.getValue();
+            Map<String, Object> dong = new LinkedHashMap<>();
+            dong.put("soLanChay", t.soLanChay.get());
+            dong.put("soLanBoQua", t.soLanBoQua.get());
+            dong.put("soLanLoi", t.soLanLoi.get());
+            dong.put("soLanLo", t.soLanLo.get());
+            dong.put("thoiGianCuoiMs", t.thoiGianCuoiMs.get());
+            long soLan = t.soLanChay.get() + t.soLanLoi.get();
+            dong.put("thoiGianTrungBinhMs", soLan == 0 ? 0 : t.tongThoiGianMs.get() / soLan);
+            dong.put("thoiGianToiDaMs", t.thoiGianToiDaMs.get());
+            dong.put("lanChayCuoi", t.lanChayCuoi);
+            theoTacVu.put(e.getKey(), dong);
+        });
+        ketQua.put("tacVu", theoTacVu);
+
+        Map<String, Object> khoa = new LinkedHashMap<>();
+        for (Khoatacvu k : khoatacvuRepository.findAll()) {
+            Map<String, Object> dong = new LinkedHashMap<>();
+            dong.put("nguoiGiu", k.getNguoigiu());
+            dong.put("hetHan", k.getHethan());
+            dong.put("batDauCuoi", k.getBatdaucuoi());
+            dong.put("ketThucCuoi", k.getKetthuccuoi());
+            khoa.put(k.getTen(), dong);
+        }
+        ketQua.put("khoa", khoa);
+        return ketQua;
+    }
+
+    private static final class ThongKeTacVu {
+        final AtomicLong soLanChay = new AtomicLong();
+        final AtomicLong soLanBoQua = new AtomicLong();
+        final AtomicLong soLanLoi = new AtomicLong();
+        final AtomicLong soLanLo = new AtomicLong();
+        final AtomicLong thoiGianCuoiMs = new AtomicLong();
+        final AtomicLong tongThoiGianMs = new AtomicLong();
+        final AtomicLong thoiGianToiDaMs = new AtomicLong();
+        volatile LocalDateTime lanChayCuoi;
+    }
+}
@@ -0,0 +1,218 @@
+package com.yellowcat.backend.service;
+
+import com.yellowcat.backend.model.Tacvuhengio;
+import com.yellowcat.backend.repository.LichhenRepository;
+import com.yellowcat.backend.repository.TacvuhengioRepository;
+import com.yellowcat.backend.scheduler.CancellationRegistry;
+import com.yellowcat.backend.scheduler.HashedTimingWheel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hẹn giờ bền vững cho các lần chuyển trạng thái lịch hẹn.
+ * Thời điểm đến hạn được lưu trong bảng tacvuhengio để không mất khi khởi động lại,
+ * còn việc chờ được giao cho một bánh xe thời gian dùng chung một luồng.
+ * Khi chạy nhiều node, mỗi tác vụ do một node giữ (NguoiGiu, HetHanGiu) và chỉ node đó hẹn giờ;
+ * node chết thì hạn giữ hết và tác vụ được node khác nhận lại.
+ */
+@Service
+@Slf4j
+public class TacVuHenGioService {
+
+    public static final String CHO_THANH_TOAN = "CHO_THANH_TOAN";
+
+    // Khi xử lý lô lỗi, thử lại sau khoảng thời gian này
+    private static final long THU_LAI_MILLIS = 10_000;
+    // Số tác vụ nhận trong một transaction
+    private static final int LO_NHAN = 500;
+
+    private final TacvuhengioRepository tacvuhengioRepository;
+    private final LichhenRepository lichhenRepository;
+    private final LichSuLichHenService lichSuLichHenService;
+    private final String tenNode;
+    private final TransactionTemplate transactionTemplate;
+    private final HashedTimingWheel<Tacvuhengio> timingWheel;
+    // Tác vụ đang chờ của từng lịch hẹn, để hủy đúng lịch cần hủy
+    private final CancellationRegistry<Integer, Tacvuhengio> dangCho = new CancellationRegistry<>();
+    private final Duration thoiGianChoXacNhan;
+    private final Duration thoiGianGiu;
+
+    public TacVuHenGioService(TacvuhengioRepository tacvuhengioRepository,
+                              LichhenRepository lichhenRepository,
+                              LichSuLichHenService lichSuLichHenService,
+                              TacVuCumService tacVuCumService,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${lichhen.cho-xac-nhan.giay:120}") long giayChoXacNhan,
+                              @Value("${lichhen.hen-gio.tick-ms:1000}") long tickMillis,
+                              @Value("${lichhen.hen-gio.giu-giay:60}") long giayGiu) {
+        this.tacvuhengioRepository = tacvuhengioRepository;
+        this.lichhenRepository = lichhenRepository;
+        this.lichSuLichHenService = lichSuLichHenService;
+        this.tenNode = tacVuCumService.getTenNode();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.thoiGianChoXacNhan = Duration.ofSeconds(giayChoXacNhan);
+        this.thoiGianGiu = Duration.ofSeconds(giayGiu);
+        this.timingWheel = new HashedTimingWheel<>("tac-vu-hen-gio", tickMillis, 512, this::xuLyDenHan);
+    }
+
+    @PostConstruct
+    public void batDau() {
+        timingWheel.start();
+    }
+
+    @PreDestroy
+    public void dung() {
+        timingWheel.stop();
+    }
+
+    // Khi khởi động, nhận các tác vụ không còn node nào giữ (kể cả của lần chạy trước với cùng tên node).
+    // Tác vụ node khác đang giữ được để nguyên; tác vụ quá hạn được xử lý ngay theo lô.
+    @EventListener(ApplicationReadyEvent.class)
+    public void khoiPhucKhiKhoiDong() {
+        int soNhan = nhanTacVuChuaCoNguoiGiu(true);
+        log.info("Khôi phục tác vụ hẹn giờ: đã nhận {} tác vụ.", soNhan);
+    }
+
+    // Gia hạn các tác vụ node này đang giữ và nhận lại tác vụ của node đã chết
+    @Scheduled(fixedDelayString = "${lichhen.hen-gio.gia-han-ms:20000}",
+            initialDelayString = "${lichhen.hen-gio.gia-han-ms:20000}")
+    public void giaHanVaNhanLai() {
+        try {
+            tacvuhengioRepository.giaHanTacVu(tenNode, thoiGianGiu.toMillis());
+            int soNhan = nhanTacVuChuaCoNguoiGiu(false);
+            if (soNhan > 0) {
+                log.info("Đã nhận lại {} tác vụ hẹn giờ của node không còn gia hạn.", soNhan);
+            }
+        } catch (RuntimeException e) {
+            // Lượt sau thử lại, tác vụ vẫn còn hạn giữ tới hai phần ba thoiGianGiu với cấu hình mặc định
+            log.warn("Gia hạn tác vụ hẹn giờ lỗi: {}", e.getMessage());
+        }
+    }
+
+    // Hẹn giờ chuyển lịch từ chờ xác nhận (4) sang chờ thanh toán (3).
+    // Gọi trong transaction đặt lịch: lịch đã commit thì luôn có tác vụ, còn bánh xe chỉ nhận tác vụ sau khi commit.
+    public void henGioChoThanhToan(Integer idLichHen) {
+        LocalDateTime now = LocalDateTime.now();
+        Tacvuhengio tacVu = new Tacvuhengio();
+        tacVu.setIdlichhen(idLichHen);
+        tacVu.setLoaitacvu(CHO_THANH_TOAN);
+        tacVu.setThoigianden(now.plus(thoiGianChoXacNhan));
+        tacVu.setNguoigiu(tenNode);
+        tacVu.setHethangiu(now.plus(thoiGianGiu));
+        Tacvuhengio daLuu = tacvuhengioRepository.save(tacVu);
+        sauKhiCommit(() -> dangCho.register(idLichHen, timingWheel.schedule(daLuu, thoiGianChoXacNhan.toMillis())));
+    }
+
+    // Hủy tác vụ đang chờ của một lịch hẹn, không ảnh hưởng đến các lịch hẹn khác.
+    // Trả về false nếu lịch không có tác vụ nào đang chờ trên node này.
+    public boolean huy(Integer idLichHen) {
+        HashedTimingWheel.Timeout<Tacvuhengio> timeout = dangCho.cancel(idLichHen);
+        // Xóa cả bản ghi để tác vụ không được khôi phục khi khởi động lại
+        tacvuhengioRepository.deleteByIdlichhenAndLoaitacvu(idLichHen, CHO_THANH_TOAN);
+        return timeout != null;
+    }
+
+    public int soTacVuDangCho() {
+        return dangCho.size();
+    }
+
+    // Nhận theo lô các tác vụ chưa có node nào giữ, hẹn giờ trên node này và xử lý ngay tác vụ đã quá hạn.
+    // Trả về số tác vụ đã nhận.
+    private int nhanTacVuChuaCoNguoiGiu(boolean gomCuaNode) {
+        int soNhan = 0;
+        long sauId = 0;
+        List<Tacvuhengio> lo;
+        do {
+            long tuId = sauId;
+            lo = transactionTemplate.execute(status -> {
+                List<Tacvuhengio> khoa = tacvuhengioRepository.khoaTacVuChuaCoNguoiGiu(
+                        CHO_THANH_TOAN, tenNode, gomCuaNode, tuId, LO_NHAN);
+                if (!khoa.isEmpty()) {
+                    tacvuhengioRepository.nhanTacVu(khoa.stream().map(Tacvuhengio::getId).toList(),
+                            tenNode, thoiGianGiu.toMillis());
+                }
+                return khoa;
+            });
+            if (lo.isEmpty()) {
+                break;
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            List<Tacvuhengio> quaHan = new ArrayList<>();
+            for (Tacvuhengio tacVu : lo) {
+                if (tacVu.getThoigianden().isAfter(now)) {
+                    dangCho.register(tacVu.getIdlichhen(),
+                            timingWheel.schedule(tacVu, Duration.between(now, tacVu.getThoigianden()).toMillis()));
+                } else {
+                    quaHan.add(tacVu);
+                }
+            }
+            if (!quaHan.isEmpty()) {
+                xuLyDenHan(quaHan);
+            }
+            soNhan += lo.size();
+            sauId = lo.get(lo.size() - 1).getId();
+        } while (lo.size() == LO_NHAN);
+        return soNhan;
+    }
+
+    private void xuLyDenHan(List<Tacvuhengio> lo) {
+        Map<Long, Integer> lichTheoTacVu = new HashMap<>(lo.size() * 2);
+        for (Tacvuhengio tacVu : lo) {
+            lichTheoTacVu.put(tacVu.getId(), tacVu.getIdlichhen());
+            dangCho.complete(tacVu.getIdlichhen(), tacVu);
+        }
+
+        try {
+            Integer soLich = transactionTemplate.execute(status -> {
+                // Chỉ xử lý tác vụ node này còn giữ, tác vụ đã được node khác nhận lại thì để node đó xử lý
+                List<Long> idTacVu = tacvuhengioRepository.khoaTacVuCuaNode(lichTheoTacVu.keySet(), tenNode);
+                if (idTacVu.isEmpty()) {
+                    return 0;
+                }
+                List<Integer> idLichHen = idTacVu.stream().map(lichTheoTacVu::get).toList();
+                lichSuLichHenService.ghiDoiTrangThaiTheoLo(idLichHen, 4, 3);
+                int capNhat = lichhenRepository.chuyenSangChoThanhToan(idLichHen);
+                tacvuhengioRepository.deleteByIdIn(idTacVu);
+                return capNhat;
+            });
+            log.info("Đã chuyển {} / {} lịch hẹn sang trạng thái 3 (Chờ thanh toán).", soLich, lo.size());
+        } catch (RuntimeException e) {
+            log.error("Không thể xử lý {} tác vụ đến hạn, thử lại sau: {}", lo.size(), e.getMessage());
+            // Không đăng ký lại: nếu lịch đã bị hủy trong lúc chờ thì câu UPDATE có điều kiện sẽ bỏ qua
+            for (Tacvuhengio tacVu : lo) {
+                timingWheel.schedule(tacVu, THU_LAI_MILLIS);
+            }
+        }
+    }
+
+    private static void sauKhiCommit(Runnable viec) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    viec.run();
+                }
+            });
+        } else {
+            viec.run();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.yellowcat.backend.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Xuất hóa đơn theo luồng: đọc bằng con trỏ JDBC chỉ-tiến với fetch size cấu hình và ghi thẳng từng dòng
+ * ra response (NDJSON hoặc CSV), nên bộ nhớ không phụ thuộc số hóa đơn.
+ * Mỗi dòng là một bản phẳng của hóa đơn cùng lịch hẹn, dịch vụ, thú cưng và ca, không dựng entity.
+ */
+@Service
+public class XuatHoaDonService {
+
+    public enum DinhDang { NDJSON, CSV }
+
+    private static final String SQL_XUAT = "SELECT h.id, h.date, h.sotien, h.ngaythanhtoan, h.phuongthucthanhtoan, " +
+            "h.trangthai, h.nguoithanhtoan, h.magiaodich, g.phantramgiam, " +
+            "l.id AS idlichhen, l.date AS ngayhen, c.thoigianca, l.emailnguoidat, " +
+            "d.tendichvu, t.ten AS tenthucung " +
+            "FROM hoadon h " +
+            "LEFT JOIN giamgia g ON g.id = h.idgiamgia " +
+            "LEFT JOIN lichhen l ON l.id = h.idlichhen " +
+            "LEFT JOIN calichhen c ON c.id = l.idcalichhen " +
+            "LEFT JOIN dichvu d ON d.id = l.iddichvu " +
+            "LEFT JOIN thucung t ON t.id = l.idthucung ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    public XuatHoaDonService(DataSource dataSource,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             @Value("${hoa-don.xuat.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // PostgreSQL chỉ dùng con trỏ phía server (đọc theo fetch size) khi tắt autocommit
+        this.transactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    // tuNgay, denNgay (tính cả hai đầu) và trangThai đều có thể null
+    public void xuat(OutputStream out, DinhDang dinhDang, LocalDate tuNgay, LocalDate denNgay, Integer trangThai) throws IOException {
+        StringBuilder sql = new StringBuilder(SQL_XUAT).append("WHERE 1 = 1");
+        List<Object> thamSo = new ArrayList<>();
+        if (tuNgay != null) {
+            sql.append(" AND h.date >= ?");
+            thamSo.add(tuNgay.atStartOfDay());
+        }
+        if (denNgay != null) {
+            sql.append(" AND h.date < ?");
+            thamSo.add(denNgay.plusDays(1).atStartOfDay());
+        }
+        if (trangThai != null) {
+            sql.append(" AND h.trangthai = ?");
+            thamSo.add(trangThai);
+        }
+        sql.append(" ORDER BY h.id");
+
+        try {
+            if (dinhDang == DinhDang.CSV) {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                doc(sql.toString(), thamSo, new GhiCsv(writer));
+                writer.flush();
+            } else {
+                try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+                    // Mỗi dòng tự kết thúc bằng '\n', bỏ dấu cách Jackson chèn giữa các giá trị gốc
+                    gen.setRootValueSeparator(null);
+                    doc(sql.toString(), thamSo, new GhiNdjson(gen));
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void doc(String sql, List<Object> thamSo, GhiDong ghiDong) {
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(sql, (ResultSetExtractor<Void>) rs -> {
+            // Gọi cả khi không có dòng nào: phần đầu (tiêu đề CSV) lấy từ metadata của kết quả
+            ghiDong.batDau(rs.getMetaData());
+            while (rs.next()) {
+                ghiDong.processRow(rs);
+            }
+            return null;
+        }, thamSo.toArray()));
+    }
+
+    // Ngày giờ ghi theo ISO giống cách Jackson ghi các trường LocalDate / LocalDateTime của entity
+    private static Object giaTri(ResultSet rs, int cot) throws SQLException {
+        Object giaTri = rs.getObject(cot);
+        if (giaTri instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime().toString();
+        }
+        if (giaTri instanceof java.sql.Date date) {
+            return date.toLocalDate().toString();
+        }
+        if (giaTri instanceof Time time) {
+            return time.toLocalTime().toString();
+        }
+        return giaTri;
+    }
+
+    private interface GhiDong extends RowCallbackHandler {
+        default void batDau(ResultSetMetaData meta) throws SQLException {
+        }
+    }
+
+    private static final class GhiNdjson implements GhiDong {
+        private final JsonGenerator gen;
+
+        GhiNdjson(JsonGenerator gen) {
+            this.gen = gen;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            ResultSetMetaData meta = rs.getMetaData();
+            try {
+                gen.writeStartObject();
+                for (int cot = 1; cot <= meta.getColumnCount(); cot++) {
+                    gen.writeObjectField(meta.getColumnLabel(cot), giaTri(rs, cot));
+                }
+                gen.writeEndObject();
+                gen.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static final class GhiCsv implements GhiDong {
+        private final Writer writer;
+
+        GhiCsv(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void batDau(ResultSetMetaData meta) throws SQLException {
+            try {
+                for (int cot = 1; cot <= meta.getColumnCount(); cot++) {
+                    ghiO(cot, meta.getColumnLabel(cot));
+                }
+                writer.write("\r\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            ResultSetMetaData meta = rs.getMetaData();
+            try {
+                for (int cot = 1; cot <= meta.getColumnCount(); cot++) {
+                    ghiO(cot, giaTri(rs, cot));
+                }
+                writer.write("\r\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void ghiO(int cot, Object giaTri) throws IOException {
+            if (cot > 1) {
+                writer.write(',');
+            }
+            if (giaTri == null) {
+                return;
+            }
+            String chuoi = giaTri.toString();
+            if (chuoi.indexOf(',') >= 0 || chuoi.indexOf('"') >= 0 || chuoi.indexOf('\n') >= 0 || chuoi.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(chuoi.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(chuoi);
+            }
+        }
+    }
+}
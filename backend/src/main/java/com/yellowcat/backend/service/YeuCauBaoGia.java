@@ -0,0 +1,68 @@
+package com.yellowcat.backend.service;
+
+/**
+ * Đầu vào của một lần tính giá bằng {@link BangGia}. Đối tượng có thể đặt lại và dùng cho nhiều lần tính liên tiếp
+ * trên cùng một luồng, để việc tính giá không cấp phát bộ nhớ.
+ */
+public final class YeuCauBaoGia {
+
+    private static final int[] KHONG_CO = new int[0];
+
+    private int idDichVu;
+    private double giaNiemYet;
+    // NaN là không biết cân nặng, không tính phụ phí cân nặng
+    private double canNang = Double.NaN;
+    private int soLanDat;
+    private int[] dichVuCungNgay = KHONG_CO;
+    private int phanTramGiamDot;
+
+    // Đưa về trạng thái ban đầu cho dịch vụ và giá niêm yết mới
+    public void datLai(int idDichVu, double giaNiemYet) {
+        this.idDichVu = idDichVu;
+        this.giaNiemYet = giaNiemYet;
+        this.canNang = Double.NaN;
+        this.soLanDat = 0;
+        this.dichVuCungNgay = KHONG_CO;
+        this.phanTramGiamDot = 0;
+    }
+
+    public int getIdDichVu() {
+        return idDichVu;
+    }
+
+    public double getGiaNiemYet() {
+        return giaNiemYet;
+    }
+
+    public double getCanNang() {
+        return canNang;
+    }
+
+    public void setCanNang(double canNang) {
+        this.canNang = canNang;
+    }
+
+    public int getSoLanDat() {
+        return soLanDat;
+    }
+
+    public void setSoLanDat(int soLanDat) {
+        this.soLanDat = soLanDat;
+    }
+
+    public int[] getDichVuCungNgay() {
+        return dichVuCungNgay;
+    }
+
+    public void setDichVuCungNgay(int[] dichVuCungNgay) {
+        this.dichVuCungNgay = dichVuCungNgay == null ? KHONG_CO : dichVuCungNgay;
+    }
+
+    public int getPhanTramGiamDot() {
+        return phanTramGiamDot;
+    }
+
+    public void setPhanTramGiamDot(int phanTramGiamDot) {
+        this.phanTramGiamDot = phanTramGiamDot;
+    }
+}
@@ -0,0 +1,10 @@
+-- Index cho các finder hay gọi của LichHen và HoaDon.
+-- findByIdkhachhang và findByEmailNguoiDatAndDateBefore đã có idx_lichhen_khachhang_date_id và idx_lichhen_email_date_id (V9),
+-- findByMagiaodich dùng index của ràng buộc UNIQUE trên MaGiaoDich.
+
+-- existsByDateAndIdcalichhen_Id và findGiuChoCuaKhach: tìm theo (ngày, ca).
+-- INCLUDE để lọc trạng thái và lấy ID ngay trên index, kiểm tra ca đã có lịch không cần đọc bảng
+CREATE INDEX idx_lichhen_date_ca ON LichHen (Date, idCaLichHen) INCLUDE (TrangThai, ID);
+
+-- findByIdlichhen_IdAndTrangthai: hóa đơn của một lịch hẹn; khóa ngoại idLichHen trước đây chưa có index
+CREATE INDEX idx_hoadon_lichhen_trangthai ON HoaDon (idLichHen, TrangThai);
@@ -0,0 +1,174 @@
+-- Chia LichHen theo tháng của Date (range partitioning): truy vấn theo ngày chỉ đọc phân vùng của tháng đó,
+-- các tháng đã đóng được tách khỏi bảng và chuyển sang schema luu_tru cùng hóa đơn của chúng.
+--
+-- Khóa chính của bảng phân vùng phải chứa cột phân vùng nên là (ID, Date); ID vẫn lấy từ lichhen_id_seq nên vẫn duy nhất.
+-- Khóa ngoại tới bảng phân vùng cũng phải chứa Date, nên các khóa ngoại tới LichHen (ID) được bỏ
+-- và hành vi ON DELETE của chúng do trigger trg_lichhen_xoa đảm nhận.
+
+ALTER TABLE HoaDon DROP CONSTRAINT hoadon_idlichhen_fkey;
+ALTER TABLE TacVuHenGio DROP CONSTRAINT tacvuhengio_idlichhen_fkey;
+ALTER TABLE DanhSachCho DROP CONSTRAINT danhsachcho_idlichhen_fkey;
+ALTER TABLE NhacNho DROP CONSTRAINT nhacnho_idlichhen_fkey;
+ALTER TABLE LichHenSuKien DROP CONSTRAINT lichhensukien_idlichhen_fkey;
+
+ALTER TABLE LichHen RENAME TO LichHen_cu;
+ALTER TABLE LichHen_cu RENAME CONSTRAINT lichhen_pkey TO lichhen_cu_pkey;
+
+CREATE TABLE LichHen
+(
+    ID              INT          NOT NULL DEFAULT nextval('lichhen_id_seq'),
+    idKhachHang     VARCHAR(255) NOT NULL,
+    idThuCung       INT REFERENCES ThuCung (ID),
+    idDichVu        INT REFERENCES DichVu (ID),
+    Date            DATE         NOT NULL,
+    TrangThai       INT          NOT NULL,
+    EmailNguoiDat   VARCHAR(255) NOT NULL DEFAULT '123@gmail.com',
+    idCaLichHen     INT REFERENCES CaLichHen (ID),
+    TrangThaiCa     BOOLEAN,
+    ThoiGianHuy     TIMESTAMP,
+    ThoiGianThayDoi TIMESTAMP,
+    SoLanThayDoi    INT          NOT NULL DEFAULT 0,
+    SoLanNhacNho    INT          NOT NULL DEFAULT 0,
+    NguoiGiu        VARCHAR(255),
+    HetHanGiu       TIMESTAMP,
+    PRIMARY KEY (ID, Date)
+) PARTITION BY RANGE (Date);
+
+ALTER SEQUENCE lichhen_id_seq OWNED BY LichHen.ID;
+
+-- Lịch thuộc tháng chưa có phân vùng (thường không có) nằm tạm ở đây cho tới khi phân vùng của tháng được tạo
+CREATE TABLE LichHen_mac_dinh PARTITION OF LichHen DEFAULT;
+
+-- Tạo phân vùng lichhen_YYYY_MM cho tháng chứa ngày truyền vào, chuyển sang đó các lịch của tháng đang nằm ở phân vùng mặc định.
+-- Trả về FALSE nếu phân vùng đã có.
+CREATE FUNCTION tao_phan_vung_lichhen(thang DATE) RETURNS BOOLEAN AS
+$$
+DECLARE
+    tu  DATE := date_trunc('month', thang)::DATE;
+    den DATE := (date_trunc('month', thang) + INTERVAL '1 month')::DATE;
+    ten TEXT := 'lichhen_' || to_char(thang, 'YYYY_MM');
+BEGIN
+    IF to_regclass(ten) IS NOT NULL OR to_regclass('luu_tru.' || ten) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I (LIKE LichHen INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', ten);
+    -- Chỉ là chuyển dòng giữa hai phân vùng, trigger xóa không được dọn dữ liệu liên quan
+    PERFORM set_config('lichhen.chuyen_phan_vung', 'on', TRUE);
+    EXECUTE format('WITH chuyen AS (DELETE FROM LichHen_mac_dinh WHERE Date >= %L AND Date < %L RETURNING *) '
+                       'INSERT INTO %I SELECT * FROM chuyen', tu, den, ten);
+    PERFORM set_config('lichhen.chuyen_phan_vung', 'off', TRUE);
+    EXECUTE format('ALTER TABLE LichHen ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)', ten, tu, den);
+    RETURN TRUE;
+END
+$$ LANGUAGE plpgsql;
+
+SELECT tao_phan_vung_lichhen(thang::DATE)
+FROM generate_series(date_trunc('month', LEAST((SELECT min(Date) FROM LichHen_cu), CURRENT_DATE)),
+                     date_trunc('month', CURRENT_DATE) + INTERVAL '3 month',
+                     INTERVAL '1 month') thang;
+
+INSERT INTO LichHen (ID, idKhachHang, idThuCung, idDichVu, Date, TrangThai, EmailNguoiDat, idCaLichHen, TrangThaiCa,
+                     ThoiGianHuy, ThoiGianThayDoi, SoLanThayDoi, SoLanNhacNho, NguoiGiu, HetHanGiu)
+SELECT ID, idKhachHang, idThuCung, idDichVu, Date, TrangThai, EmailNguoiDat, idCaLichHen, TrangThaiCa,
+       ThoiGianHuy, ThoiGianThayDoi, SoLanThayDoi, SoLanNhacNho, NguoiGiu, HetHanGiu
+FROM LichHen_cu;
+
+DROP TABLE LichHen_cu;
+
+-- Index tạo trên bảng cha được tạo cho mọi phân vùng, kể cả phân vùng gắn sau này
+CREATE INDEX idx_lichhen_giucho_hethan ON LichHen (HetHanGiu) WHERE TrangThai = 7;
+CREATE INDEX idx_lichhen_date_id ON LichHen (Date, ID);
+CREATE INDEX idx_lichhen_khachhang_date_id ON LichHen (idKhachHang, Date, ID);
+CREATE INDEX idx_lichhen_email_date_id ON LichHen (EmailNguoiDat, Date, ID);
+CREATE INDEX idx_lichhen_date_ca ON LichHen (Date, idCaLichHen) INCLUDE (TrangThai, ID);
+
+-- Trigger xóa dọn các bảng liên quan thay cho khóa ngoại
+CREATE INDEX idx_tacvuhengio_lichhen ON TacVuHenGio (idLichHen);
+CREATE INDEX idx_danhsachcho_idlichhen ON DanhSachCho (idLichHen);
+
+-- Giữ hành vi của các khóa ngoại đã bỏ: hóa đơn chặn xóa lịch, tác vụ hẹn giờ / nhắc nhở / nhật ký bị xóa theo,
+-- lượt chờ chỉ bỏ liên kết
+CREATE FUNCTION xoa_lien_quan_lichhen() RETURNS TRIGGER AS
+$$
+BEGIN
+    -- Đổi Date sang tháng khác là xóa khỏi phân vùng cũ rồi thêm vào phân vùng mới: lịch vẫn còn nên không dọn gì
+    IF current_setting('lichhen.chuyen_phan_vung', TRUE) = 'on'
+        OR EXISTS (SELECT 1 FROM LichHen WHERE ID = OLD.ID) THEN
+        RETURN NULL;
+    END IF;
+
+    IF EXISTS (SELECT 1 FROM HoaDon WHERE idLichHen = OLD.ID) THEN
+        RAISE EXCEPTION 'Lịch hẹn % vẫn còn hóa đơn', OLD.ID USING ERRCODE = 'foreign_key_violation';
+    END IF;
+    DELETE FROM TacVuHenGio WHERE idLichHen = OLD.ID;
+    DELETE FROM NhacNho WHERE idLichHen = OLD.ID;
+    DELETE FROM LichHenSuKien WHERE idLichHen = OLD.ID;
+    UPDATE DanhSachCho SET idLichHen = NULL WHERE idLichHen = OLD.ID;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_lichhen_xoa
+    AFTER DELETE
+    ON LichHen
+    FOR EACH ROW
+EXECUTE FUNCTION xoa_lien_quan_lichhen();
+
+-- Dữ liệu của các tháng đã đóng: phân vùng lichhen_YYYY_MM được chuyển nguyên sang đây,
+-- hóa đơn, đánh giá và nhật ký của các lịch đó được chuyển theo
+CREATE SCHEMA luu_tru;
+CREATE TABLE luu_tru.HoaDon (LIKE HoaDon);
+CREATE TABLE luu_tru.DanhGia (LIKE DanhGia);
+CREATE TABLE luu_tru.LichHenSuKien (LIKE LichHenSuKien);
+
+-- Tách phân vùng của tháng chứa ngày truyền vào khỏi LichHen và chuyển sang luu_tru cùng dữ liệu liên quan.
+-- Trả về số lịch đã chuyển, NULL nếu tháng không có phân vùng.
+CREATE FUNCTION luu_tru_phan_vung_lichhen(thang DATE) RETURNS BIGINT AS
+$$
+DECLARE
+    ten     TEXT := 'lichhen_' || to_char(thang, 'YYYY_MM');
+    so_lich BIGINT;
+BEGIN
+    IF to_regclass(ten) IS NULL THEN
+        RETURN NULL;
+    END IF;
+
+    -- Tách phân vùng không chạy trigger xóa, các bảng liên quan được xử lý ngay bên dưới
+    EXECUTE format('ALTER TABLE LichHen DETACH PARTITION %I', ten);
+    EXECUTE format('CREATE TEMP TABLE luu_tru_id ON COMMIT DROP AS SELECT ID FROM %I', ten);
+    so_lich := (SELECT count(*) FROM luu_tru_id);
+
+    CREATE TEMP TABLE luu_tru_hoadon ON COMMIT DROP AS
+    SELECT h.ID FROM HoaDon h JOIN luu_tru_id l ON l.ID = h.idLichHen;
+
+    -- Liệt kê cột tường minh để bảng gốc thêm cột (hoặc đổi thứ tự cột) không chép lệch cột sang luu_tru
+    INSERT INTO luu_tru.DanhGia (ID, idTaiKhoan, SoSao, MoTa, Date, TrangThai, idHoaDon)
+    SELECT ID, idTaiKhoan, SoSao, MoTa, Date, TrangThai, idHoaDon
+    FROM DanhGia
+    WHERE idHoaDon IN (SELECT ID FROM luu_tru_hoadon);
+    DELETE FROM DanhGia WHERE idHoaDon IN (SELECT ID FROM luu_tru_hoadon);
+    INSERT INTO luu_tru.HoaDon (ID, MaGiaoDich, idLichHen, Date, SoTien, NgayThanhToan, PhuongThucThanhToan,
+                                TrangThai, NguoiThanhToan, idGiamGia)
+    SELECT ID, MaGiaoDich, idLichHen, Date, SoTien, NgayThanhToan, PhuongThucThanhToan,
+           TrangThai, NguoiThanhToan, idGiamGia
+    FROM HoaDon
+    WHERE ID IN (SELECT ID FROM luu_tru_hoadon);
+    DELETE FROM HoaDon WHERE ID IN (SELECT ID FROM luu_tru_hoadon);
+    INSERT INTO luu_tru.LichHenSuKien (ID, idLichHen, LoaiSuKien, NgayCu, idCaCu, NgayMoi, idCaMoi,
+                                       TrangThaiCu, TrangThaiMoi, NguoiThucHien, ThoiGian)
+    SELECT ID, idLichHen, LoaiSuKien, NgayCu, idCaCu, NgayMoi, idCaMoi,
+           TrangThaiCu, TrangThaiMoi, NguoiThucHien, ThoiGian
+    FROM LichHenSuKien
+    WHERE idLichHen IN (SELECT ID FROM luu_tru_id);
+    DELETE FROM LichHenSuKien WHERE idLichHen IN (SELECT ID FROM luu_tru_id);
+    DELETE FROM TacVuHenGio WHERE idLichHen IN (SELECT ID FROM luu_tru_id);
+    DELETE FROM NhacNho WHERE idLichHen IN (SELECT ID FROM luu_tru_id);
+    UPDATE DanhSachCho SET idLichHen = NULL WHERE idLichHen IN (SELECT ID FROM luu_tru_id);
+
+    EXECUTE format('ALTER TABLE %I SET SCHEMA luu_tru', ten);
+    DROP TABLE luu_tru_hoadon;
+    DROP TABLE luu_tru_id;
+    RETURN so_lich;
+END
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,10 @@
+-- Khóa có thời hạn (lease) cho các tác vụ định kỳ khi chạy nhiều node: mỗi lượt chạy chỉ một node giữ khóa.
+-- Node chết giữa chừng thì khóa tự hết hạn ở HetHan; BatDauCuoi / KetThucCuoi là lần chạy gần nhất trên cả cụm.
+CREATE TABLE KhoaTacVu
+(
+    Ten         VARCHAR(100) PRIMARY KEY,
+    NguoiGiu    VARCHAR(255) NOT NULL,
+    HetHan      TIMESTAMP    NOT NULL,
+    BatDauCuoi  TIMESTAMP,
+    KetThucCuoi TIMESTAMP
+);
@@ -0,0 +1,36 @@
+-- Báo thay đổi dữ liệu danh mục cho các node qua kênh thay_doi_danh_muc, payload là "bảng:id".
+-- NOTIFY chỉ được gửi khi transaction commit (rollback thì không gửi) và các payload trùng trong cùng transaction được gộp,
+-- nên cập nhật hàng loạt như UPDATE CaLichHen SET TrangThai = ... chỉ gửi mỗi dòng một lần.
+-- Bắt bằng trigger để cả các câu UPDATE viết tay cũng được báo, không chỉ các lần lưu qua JPA.
+CREATE FUNCTION thong_bao_thay_doi_danh_muc() RETURNS TRIGGER AS
+$$
+DECLARE
+    id INT;
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        id := OLD.ID;
+    ELSE
+        id := NEW.ID;
+    END IF;
+    PERFORM pg_notify('thay_doi_danh_muc', lower(TG_TABLE_NAME) || ':' || id);
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_dichvu_thong_bao
+    AFTER INSERT OR UPDATE OR DELETE
+    ON DichVu
+    FOR EACH ROW
+EXECUTE FUNCTION thong_bao_thay_doi_danh_muc();
+
+CREATE TRIGGER trg_giamgia_thong_bao
+    AFTER INSERT OR UPDATE OR DELETE
+    ON GiamGia
+    FOR EACH ROW
+EXECUTE FUNCTION thong_bao_thay_doi_danh_muc();
+
+CREATE TRIGGER trg_calichhen_thong_bao
+    AFTER INSERT OR UPDATE OR DELETE
+    ON CaLichHen
+    FOR EACH ROW
+EXECUTE FUNCTION thong_bao_thay_doi_danh_muc();
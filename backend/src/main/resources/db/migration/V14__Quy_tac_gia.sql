@@ -0,0 +1,27 @@
+-- Quy tắc tính giá, được biên dịch thành bảng giá trong bộ nhớ (xem BangGia.java). Loai:
+--   GIAM_DICH_VU      giảm PhanTram cho dịch vụ idDichVu
+--   COMBO             giảm PhanTram cho dịch vụ idDichVu khi khách có lịch idDichVuKem cùng ngày
+--   PHU_PHI_CAN_NANG  cộng SoTien và PhanTram giá niêm yết khi thú cưng nặng trong [CanNangTu, CanNangDen) kg,
+--                     idDichVu NULL là áp dụng cho mọi dịch vụ, CanNangDen NULL là không giới hạn trên
+--   HANG_THAN_THIET   giảm PhanTram khi khách đã có ít nhất SoLanDat lịch thành công
+CREATE TABLE QuyTacGia
+(
+    ID          SERIAL PRIMARY KEY,
+    Loai        VARCHAR(30) NOT NULL
+        CHECK (Loai IN ('GIAM_DICH_VU', 'COMBO', 'PHU_PHI_CAN_NANG', 'HANG_THAN_THIET')),
+    idDichVu    INT REFERENCES DichVu (ID) ON DELETE CASCADE,
+    idDichVuKem INT REFERENCES DichVu (ID) ON DELETE CASCADE,
+    CanNangTu   DOUBLE PRECISION,
+    CanNangDen  DOUBLE PRECISION,
+    SoLanDat    INT,
+    PhanTram    INT         NOT NULL DEFAULT 0 CHECK (PhanTram BETWEEN 0 AND 100),
+    SoTien      INT         NOT NULL DEFAULT 0 CHECK (SoTien >= 0),
+    TrangThai   BOOLEAN     NOT NULL DEFAULT TRUE
+);
+
+-- Đổi quy tắc ở node nào thì mọi node biên dịch lại bảng giá (xem V13__Thong_bao_thay_doi_danh_muc.sql)
+CREATE TRIGGER trg_quytacgia_thong_bao
+    AFTER INSERT OR UPDATE OR DELETE
+    ON QuyTacGia
+    FOR EACH ROW
+EXECUTE FUNCTION thong_bao_thay_doi_danh_muc();
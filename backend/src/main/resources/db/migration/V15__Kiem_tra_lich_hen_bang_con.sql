@@ -0,0 +1,67 @@
+-- V11 bỏ các khóa ngoại tới LichHen (ID) vì LichHen chia phân vùng có khóa chính (ID, Date). Trigger xóa trg_lichhen_xoa
+-- chỉ thay cho phần ON DELETE; trigger dưới đây thay cho phần còn lại của khóa ngoại: dòng con thêm mới hoặc đổi idLichHen
+-- phải trỏ tới một lịch đang có. Dòng lịch được khóa FOR KEY SHARE như khóa ngoại làm, nên không thể bị xóa
+-- giữa lúc kiểm tra và lúc transaction thêm dòng con commit.
+-- Chỉ chạy khi idLichHen nằm trong danh sách SET, các câu UPDATE trạng thái (ví dụ hết hạn đề nghị) không phải tra LichHen.
+--
+-- Tra theo ID không loại được phân vùng nào: mỗi lần kiểm tra dò index khóa chính của mọi phân vùng còn gắn
+-- (khoảng so-thang-giu + so-thang-toi phân vùng, mặc định 16). Bảng con biết ngày hẹn thì truyền tên cột đó làm tham số
+-- trigger để chỉ dò phân vùng của ngày đó; nếu ngày của dòng con không khớp ngày lịch (lịch đã đổi ngày, hoặc nhắc nhở
+-- có giờ hẹn qua nửa đêm) thì tra lại theo ID. HoaDon (Date là ngày lập hóa đơn), TacVuHenGio và LichHenSuKien
+-- không có ngày hẹn nên chấp nhận dò mọi phân vùng; các bảng này chỉ được thêm một vài dòng cho mỗi lịch.
+--
+-- Lưu ý cho các migration sau: luu_tru.HoaDon / DanhGia / LichHenSuKien được tạo bằng LIKE nên không tự theo cột mới
+-- của bảng gốc: ALTER bảng gốc thì phải ALTER cả bảng trong luu_tru và thêm cột vào luu_tru_phan_vung_lichhen.
+CREATE FUNCTION kiem_tra_lichhen_ton_tai() RETURNS TRIGGER AS
+$$
+DECLARE
+    ngay DATE;
+BEGIN
+    IF NEW.idLichHen IS NULL THEN
+        RETURN NEW;
+    END IF;
+    IF TG_NARGS > 0 THEN
+        ngay := (to_jsonb(NEW) ->> TG_ARGV[0])::DATE;
+        PERFORM 1 FROM LichHen WHERE ID = NEW.idLichHen AND Date = ngay FOR KEY SHARE;
+        IF FOUND THEN
+            RETURN NEW;
+        END IF;
+    END IF;
+    PERFORM 1 FROM LichHen WHERE ID = NEW.idLichHen FOR KEY SHARE;
+    IF NOT FOUND THEN
+        RAISE EXCEPTION 'Lịch hẹn % không tồn tại (%.idLichHen)', NEW.idLichHen, TG_TABLE_NAME
+            USING ERRCODE = 'foreign_key_violation';
+    END IF;
+    RETURN NEW;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_hoadon_lichhen
+    BEFORE INSERT OR UPDATE OF idLichHen
+    ON HoaDon
+    FOR EACH ROW
+EXECUTE FUNCTION kiem_tra_lichhen_ton_tai();
+
+CREATE TRIGGER trg_tacvuhengio_lichhen
+    BEFORE INSERT OR UPDATE OF idLichHen
+    ON TacVuHenGio
+    FOR EACH ROW
+EXECUTE FUNCTION kiem_tra_lichhen_ton_tai();
+
+CREATE TRIGGER trg_danhsachcho_lichhen
+    BEFORE INSERT OR UPDATE OF idLichHen
+    ON DanhSachCho
+    FOR EACH ROW
+EXECUTE FUNCTION kiem_tra_lichhen_ton_tai('date');
+
+CREATE TRIGGER trg_nhacnho_lichhen
+    BEFORE INSERT OR UPDATE OF idLichHen
+    ON NhacNho
+    FOR EACH ROW
+EXECUTE FUNCTION kiem_tra_lichhen_ton_tai('thoidiemhen');
+
+CREATE TRIGGER trg_lichhensukien_lichhen
+    BEFORE INSERT OR UPDATE OF idLichHen
+    ON LichHenSuKien
+    FOR EACH ROW
+EXECUTE FUNCTION kiem_tra_lichhen_ton_tai();
@@ -0,0 +1,26 @@
+-- Báo các node qua kênh thay_doi_danh_muc (V13) khi một ca trong ngày chuyển giữa còn chỗ và hết chỗ,
+-- payload "succhuangay:ngày:idCa:1" (còn chỗ) hoặc ":0" (hết chỗ), kèm thời điểm để NOTIFY không gộp hai lần đổi
+-- giống nhau trong cùng transaction (còn -> hết -> còn). Các lần đổi của cùng (ngày, ca) khóa cùng một dòng nên
+-- thông báo đến các node theo đúng thứ tự đổi. Lượt đặt / hủy không làm đổi trạng thái còn chỗ thì không gửi gì.
+CREATE FUNCTION thong_bao_suc_chua_ngay() RETURNS TRIGGER AS
+$$
+BEGIN
+    PERFORM pg_notify('thay_doi_danh_muc', 'succhuangay:' || NEW.Date || ':' || NEW.idCaLichHen || ':'
+        || CASE WHEN NEW.DaDat < NEW.SucChua THEN '1' ELSE '0' END || ':' || clock_timestamp());
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_succhuangay_thong_bao
+    AFTER UPDATE OF DaDat, SucChua
+    ON SucChuaNgay
+    FOR EACH ROW
+    WHEN ((OLD.DaDat < OLD.SucChua) IS DISTINCT FROM (NEW.DaDat < NEW.SucChua))
+EXECUTE FUNCTION thong_bao_suc_chua_ngay();
+
+-- Ngày mới mở (tác vụ tạo sức chứa chỉ chạy trên một node)
+CREATE TRIGGER trg_succhuangay_them_thong_bao
+    AFTER INSERT
+    ON SucChuaNgay
+    FOR EACH ROW
+EXECUTE FUNCTION thong_bao_suc_chua_ngay();
@@ -0,0 +1,16 @@
+CREATE TABLE TacVuHenGio
+(
+    ID          BIGSERIAL PRIMARY KEY,
+    idLichHen   INT REFERENCES LichHen (ID) ON DELETE CASCADE,
+    LoaiTacVu   VARCHAR(50) NOT NULL,
+    ThoiGianDen TIMESTAMP   NOT NULL,
+    NgayTao     TIMESTAMP   NOT NULL DEFAULT now(),
+    -- Node đang hẹn giờ tác vụ và hạn giữ của nó. Node giữ gia hạn định kỳ; node chết thì hết hạn
+    -- và tác vụ được một node khác nhận lại, nên mỗi tác vụ chỉ được hẹn trên một node.
+    NguoiGiu    VARCHAR(255),
+    HetHanGiu   TIMESTAMP
+);
+-- quy ước loại tác vụ:
+-- CHO_THANH_TOAN : chuyển lịch từ 4 (chờ xác nhận) sang 3 (chờ thanh toán)
+
+CREATE INDEX idx_tacvuhengio_loai_thoigianden ON TacVuHenGio (LoaiTacVu, ThoiGianDen);
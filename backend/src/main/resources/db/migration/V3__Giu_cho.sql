@@ -0,0 +1,7 @@
+-- Giữ chỗ tạm thời: lịch ở trạng thái 7 (Đang giữ chỗ) thuộc về NguoiGiu đến thời điểm HetHanGiu
+ALTER TABLE LichHen
+    ADD COLUMN NguoiGiu  VARCHAR(255),
+    ADD COLUMN HetHanGiu TIMESTAMP;
+
+-- Chỉ các lịch đang giữ chỗ mới cần quét hết hạn nên dùng index một phần
+CREATE INDEX idx_lichhen_giucho_hethan ON LichHen (HetHanGiu) WHERE TrangThai = 7;
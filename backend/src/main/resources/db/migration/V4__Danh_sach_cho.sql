@@ -0,0 +1,25 @@
+CREATE TABLE DanhSachCho
+(
+    ID           BIGSERIAL PRIMARY KEY,
+    idKhachHang  VARCHAR(255) NOT NULL,
+    Email        VARCHAR(255) NOT NULL,
+    Date         DATE         NOT NULL,
+    idCaLichHen  INT          NOT NULL REFERENCES CaLichHen (ID),
+    TrangThai    INT          NOT NULL DEFAULT 0,
+    idLichHen    INT REFERENCES LichHen (ID) ON DELETE SET NULL,
+    HetHanDeNghi TIMESTAMP,
+    NgayTao      TIMESTAMP    NOT NULL DEFAULT now()
+);
+-- quy ước trạng thái:
+-- 0 : đang chờ
+-- 1 : đã được đề nghị (lịch đang được giữ chỗ cho khách đến HetHanDeNghi)
+-- 2 : hết hạn hoặc đã rời danh sách
+-- 3 : đã nhận lịch
+
+-- Người chờ đầu tiên của một (ngày, ca) được lấy bằng một lần tìm trên index, thứ tự FIFO theo ID
+CREATE INDEX idx_danhsachcho_hang_doi ON DanhSachCho (Date, idCaLichHen, ID) WHERE TrangThai = 0;
+
+-- Mỗi khách chỉ có một lượt chờ còn hiệu lực cho mỗi (ngày, ca)
+CREATE UNIQUE INDEX uq_danhsachcho_khach_ca ON DanhSachCho (idKhachHang, Date, idCaLichHen) WHERE TrangThai IN (0, 1);
+
+CREATE INDEX idx_danhsachcho_lichhen ON DanhSachCho (idLichHen) WHERE TrangThai = 1;
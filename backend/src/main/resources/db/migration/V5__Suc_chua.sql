@@ -0,0 +1,31 @@
+-- Sức chứa mặc định của mỗi ca (số lịch hẹn tối đa trong một ngày, ví dụ theo số nhân viên)
+ALTER TABLE CaLichHen
+    ADD COLUMN SucChua INT NOT NULL DEFAULT 1 CHECK (SucChua >= 0);
+
+-- Bộ đếm theo (ngày, ca): đặt lịch là một lần tăng DaDat có điều kiện, thay cho các dòng lịch rỗng
+CREATE TABLE SucChuaNgay
+(
+    ID          BIGSERIAL PRIMARY KEY,
+    Date        DATE NOT NULL,
+    idCaLichHen INT  NOT NULL REFERENCES CaLichHen (ID),
+    SucChua     INT  NOT NULL,
+    DaDat       INT  NOT NULL DEFAULT 0,
+    CONSTRAINT uq_succhuangay_ngay_ca UNIQUE (Date, idCaLichHen),
+    CONSTRAINT ck_succhuangay_dadat CHECK (DaDat >= 0 AND DaDat <= SucChua)
+);
+
+-- Chuyển dữ liệu cũ: mỗi (ngày, ca) còn dòng lịch từ hôm nay trở đi thành một bộ đếm,
+-- DaDat là số lịch đang chiếm ca (0, 3, 4, 6: đã đặt; 7: đang giữ chỗ)
+INSERT INTO SucChuaNgay (Date, idCaLichHen, SucChua, DaDat)
+SELECT l.Date,
+       l.idCaLichHen,
+       GREATEST(c.SucChua, COUNT(*) FILTER (WHERE l.TrangThai IN (0, 3, 4, 6, 7))),
+       COUNT(*) FILTER (WHERE l.TrangThai IN (0, 3, 4, 6, 7))
+FROM LichHen l
+         JOIN CaLichHen c ON c.ID = l.idCaLichHen
+WHERE l.Date >= CURRENT_DATE
+  AND l.TrangThai IN (0, 3, 4, 5, 6, 7)
+GROUP BY l.Date, l.idCaLichHen, c.SucChua;
+
+-- Lịch rỗng (5) không còn được dùng
+DELETE FROM LichHen WHERE TrangThai = 5;
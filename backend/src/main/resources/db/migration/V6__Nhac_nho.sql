@@ -0,0 +1,22 @@
+CREATE TABLE NhacNho
+(
+    ID           BIGSERIAL PRIMARY KEY,
+    idLichHen    INT       NOT NULL REFERENCES LichHen (ID) ON DELETE CASCADE,
+    ThoiDiemNhac TIMESTAMP NOT NULL,
+    ThoiDiemHen  TIMESTAMP NOT NULL,
+    DaGui        BOOLEAN   NOT NULL DEFAULT FALSE
+);
+
+-- Mỗi lần quét chỉ đọc các nhắc nhở đến hạn chưa gửi, index không chứa nhắc nhở đã gửi
+CREATE INDEX idx_nhacnho_den_han ON NhacNho (ThoiDiemNhac) WHERE DaGui = FALSE;
+
+CREATE INDEX idx_nhacnho_lichhen ON NhacNho (idLichHen);
+
+-- Nhắc nhở cho các lịch còn hiệu lực chưa được nhắc, nhắc trước giờ hẹn 60 phút
+INSERT INTO NhacNho (idLichHen, ThoiDiemNhac, ThoiDiemHen)
+SELECT l.ID, l.Date + c.ThoiGianCa - INTERVAL '60 minutes', l.Date + c.ThoiGianCa
+FROM LichHen l
+         JOIN CaLichHen c ON c.ID = l.idCaLichHen
+WHERE l.TrangThai IN (0, 3, 4, 6)
+  AND l.SoLanNhacNho < 1
+  AND l.Date + c.ThoiGianCa > now();
@@ -0,0 +1,16 @@
+-- Phản hồi đầu tiên của các yêu cầu ghi có header Idempotency-Key, dùng để trả lại khi client gửi lại
+CREATE TABLE KhoaIdempotency
+(
+    Khoa         VARCHAR(64) PRIMARY KEY,
+    TrangThai    SMALLINT    NOT NULL DEFAULT 0,
+    MaHttp       INT,
+    LoaiNoiDung  VARCHAR(255),
+    NoiDung      BYTEA,
+    NgayTao      TIMESTAMP   NOT NULL DEFAULT now(),
+    HetHan       TIMESTAMP   NOT NULL
+);
+-- quy ước trạng thái:
+-- 0 : đang xử lý
+-- 1 : đã có phản hồi
+
+CREATE INDEX idx_khoaidempotency_hethan ON KhoaIdempotency (HetHan);
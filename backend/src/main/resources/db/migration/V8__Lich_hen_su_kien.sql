@@ -0,0 +1,22 @@
+-- Nhật ký thay đổi của lịch hẹn, chỉ thêm mới. Thay cho việc chép cả dòng LichHen mỗi lần hủy hoặc đổi lịch.
+CREATE TABLE LichHenSuKien
+(
+    ID            BIGSERIAL PRIMARY KEY,
+    idLichHen     INT         NOT NULL REFERENCES LichHen (ID) ON DELETE CASCADE,
+    LoaiSuKien    VARCHAR(30) NOT NULL,
+    NgayCu        DATE,
+    idCaCu        INT,
+    NgayMoi       DATE,
+    idCaMoi       INT,
+    TrangThaiCu   INT,
+    TrangThaiMoi  INT,
+    NguoiThucHien VARCHAR(255),
+    ThoiGian      TIMESTAMP   NOT NULL DEFAULT now()
+);
+-- quy ước loại sự kiện:
+-- DAT            : khách xác nhận đặt lịch
+-- HUY            : lịch bị hủy
+-- DOI_LICH       : đổi sang ngày / ca khác
+-- DOI_TRANG_THAI : trạng thái thay đổi (chờ thanh toán, đã thanh toán, thành công, ...)
+
+CREATE INDEX idx_lichhensukien_lichhen ON LichHenSuKien (idLichHen, ID);
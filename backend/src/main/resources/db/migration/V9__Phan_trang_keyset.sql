@@ -0,0 +1,7 @@
+-- Index cho phân trang keyset: mỗi trang là một lần quét ngắn trên index theo (khóa lọc, Date, ID)
+CREATE INDEX idx_lichhen_date_id ON LichHen (Date, ID);
+CREATE INDEX idx_lichhen_khachhang_date_id ON LichHen (idKhachHang, Date, ID);
+CREATE INDEX idx_lichhen_email_date_id ON LichHen (EmailNguoiDat, Date, ID);
+
+CREATE INDEX idx_hoadon_trangthai_id ON HoaDon (TrangThai, ID);
+CREATE INDEX idx_hoadon_nguoithanhtoan_id ON HoaDon (NguoiThanhToan, PhuongThucThanhToan, ID);
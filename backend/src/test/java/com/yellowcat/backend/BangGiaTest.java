@@ -0,0 +1,127 @@
+package com.yellowcat.backend;
+
+import com.yellowcat.backend.model.Quytacgia;
+import com.yellowcat.backend.service.BangGia;
+import com.yellowcat.backend.service.YeuCauBaoGia;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BangGiaTest {
+
+    // Bộ quy tắc của giá mẫu trong gia-mau.csv
+    private static final List<Quytacgia> QUY_TAC = List.of(
+            quyTac(1, Quytacgia.GIAM_DICH_VU, 1, null, null, null, null, 10, 0),
+            quyTac(2, Quytacgia.GIAM_DICH_VU, 1, null, null, null, null, 20, 0),
+            tat(quyTac(3, Quytacgia.GIAM_DICH_VU, 3, null, null, null, null, 50, 0)),
+            quyTac(4, Quytacgia.COMBO, 2, 3, null, null, null, 15, 0),
+            quyTac(5, Quytacgia.COMBO, 2, 4, null, null, null, 25, 0),
+            quyTac(6, Quytacgia.PHU_PHI_CAN_NANG, null, null, 10.0, 25.0, null, 0, 20_000),
+            quyTac(7, Quytacgia.PHU_PHI_CAN_NANG, null, null, 25.0, null, null, 0, 50_000),
+            quyTac(8, Quytacgia.PHU_PHI_CAN_NANG, 1, null, 5.0, 15.0, null, 10, 0),
+            quyTac(9, Quytacgia.HANG_THAN_THIET, null, null, null, null, 5, 5, 0),
+            quyTac(10, Quytacgia.HANG_THAN_THIET, null, null, null, null, 10, 10, 0),
+            quyTac(11, Quytacgia.HANG_THAN_THIET, null, null, null, null, 20, 8, 0));
+
+    @Test
+    public void giaMau() throws IOException {
+        BangGia bangGia = BangGia.bienDich(QUY_TAC);
+        YeuCauBaoGia yeuCau = new YeuCauBaoGia();
+        int soTruongHop = 0;
+        try (BufferedReader doc = new BufferedReader(new InputStreamReader(
+                Objects.requireNonNull(getClass().getResourceAsStream("/gia-mau.csv")), StandardCharsets.UTF_8))) {
+            String dong;
+            while ((dong = doc.readLine()) != null) {
+                if (dong.isBlank() || dong.startsWith("#")) {
+                    continue;
+                }
+                String[] cot = dong.split(",", -1);
+                yeuCau.datLai(Integer.parseInt(cot[1]), Double.parseDouble(cot[2]));
+                if (!cot[3].isEmpty()) {
+                    yeuCau.setCanNang(Double.parseDouble(cot[3]));
+                }
+                yeuCau.setSoLanDat(Integer.parseInt(cot[4]));
+                if (!cot[5].isEmpty()) {
+                    yeuCau.setDichVuCungNgay(Arrays.stream(cot[5].split(" ")).mapToInt(Integer::parseInt).toArray());
+                }
+                yeuCau.setPhanTramGiamDot(Integer.parseInt(cot[6]));
+
+                assertEquals(Long.parseLong(cot[7]), bangGia.tinh(yeuCau), cot[0]);
+                soTruongHop++;
+            }
+        }
+        assertTrue(soTruongHop > 0);
+    }
+
+    @Test
+    public void khongCoQuyTacThiGiongCongThucCu() {
+        BangGia bangGia = BangGia.bienDich(List.of());
+        YeuCauBaoGia yeuCau = new YeuCauBaoGia();
+        yeuCau.datLai(1, 150_000);
+        yeuCau.setCanNang(40);
+        yeuCau.setSoLanDat(100);
+        yeuCau.setPhanTramGiamDot(15);
+
+        assertEquals(127_500, bangGia.tinh(yeuCau));
+        assertFalse(bangGia.isCanSoLanDat());
+        assertFalse(bangGia.isCanDichVuCungNgay());
+    }
+
+    @Test
+    public void boQuaQuyTacThieuThongTin() {
+        BangGia bangGia = BangGia.bienDich(List.of(
+                quyTac(1, Quytacgia.COMBO, 2, null, null, null, null, 30, 0),
+                quyTac(2, Quytacgia.PHU_PHI_CAN_NANG, null, null, 20.0, 10.0, null, 0, 10_000),
+                quyTac(3, Quytacgia.HANG_THAN_THIET, null, null, null, null, null, 10, 0),
+                quyTac(4, Quytacgia.GIAM_DICH_VU, 2, null, null, null, null, 10, 0)));
+
+        assertEquals(1, bangGia.getSoQuyTac());
+        assertFalse(bangGia.isCanDichVuCungNgay());
+        assertFalse(bangGia.isCanSoLanDat());
+    }
+
+    @Test
+    public void phuPhiKhongLamGiaAmVaDotGiamTinhSauCung() {
+        BangGia bangGia = BangGia.bienDich(List.of(
+                quyTac(1, Quytacgia.GIAM_DICH_VU, 1, null, null, null, null, 100, 0),
+                quyTac(2, Quytacgia.PHU_PHI_CAN_NANG, null, null, 0.0, null, null, 0, 30_000)));
+        YeuCauBaoGia yeuCau = new YeuCauBaoGia();
+        yeuCau.datLai(1, 100_000);
+        assertEquals(0, bangGia.tinh(yeuCau));
+
+        // Dịch vụ miễn phí vẫn chịu phụ phí cân nặng, đợt giảm giá trừ trên tổng
+        yeuCau.setCanNang(3);
+        yeuCau.setPhanTramGiamDot(50);
+        assertEquals(15_000, bangGia.tinh(yeuCau));
+    }
+
+    private static Quytacgia quyTac(int id, String loai, Integer idDichVu, Integer idDichVuKem, Double canNangTu,
+                                    Double canNangDen, Integer soLanDat, int phanTram, int soTien) {
+        Quytacgia q = new Quytacgia();
+        q.setId(id);
+        q.setLoai(loai);
+        q.setIddichvu(idDichVu);
+        q.setIddichvukem(idDichVuKem);
+        q.setCannangtu(canNangTu);
+        q.setCannangden(canNangDen);
+        q.setSolandat(soLanDat);
+        q.setPhantram(phanTram);
+        q.setSotien(soTien);
+        return q;
+    }
+
+    private static Quytacgia tat(Quytacgia q) {
+        q.setTrangthai(false);
+        return q;
+    }
+}
@@ -0,0 +1,132 @@
+package com.yellowcat.backend;
+
+import com.yellowcat.backend.model.Dichvu;
+import com.yellowcat.backend.service.DanhMucCache;
+import com.yellowcat.backend.service.DichVuService;
+import com.yellowcat.backend.service.KenhThayDoiDanhMuc;
+import com.yellowcat.backend.service.LichHenService;
+import com.yellowcat.backend.service.SlotAvailabilityIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cache danh mục và chỉ mục ca trống được cập nhật qua NOTIFY khi dữ liệu đổi ngoài node này (ở đây là câu UPDATE
+ * chạy thẳng trên DB, không qua service), và kênh tự kết nối lại khi bị ngắt.
+ */
+@SpringBootTest
+class DanhMucCacheTest extends PostgresTestBase {
+
+    @Autowired
+    private DichVuService dichVuService;
+
+    @Autowired
+    private DanhMucCache danhMucCache;
+
+    @Autowired
+    private KenhThayDoiDanhMuc kenhThayDoiDanhMuc;
+
+    @Autowired
+    private SlotAvailabilityIndex slotAvailabilityIndex;
+
+    @Autowired
+    private LichHenService lichHenService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void choKenhSanSang() {
+        choDen(danhMucCache::isKenhHoatDong, "kênh thay đổi danh mục chưa kết nối");
+    }
+
+    @Test
+    void thayDoiTrenDbXoaCache() {
+        float giaCu = dichVuService.findByIdTuCache(1).orElseThrow().getGiatien();
+        // Lần đọc sau lấy từ cache
+        long trungTruoc = (Long) danhMucCache.thongKe().get("soLanTrung");
+        dichVuService.findByIdTuCache(1);
+        assertEquals(trungTruoc + 1, danhMucCache.thongKe().get("soLanTrung"));
+
+        jdbcTemplate.update("UPDATE DichVu SET GiaTien = GiaTien + 1000 WHERE ID = 1");
+
+        choDen(() -> dichVuService.findByIdTuCache(1).orElseThrow().getGiatien() == giaCu + 1000,
+                "cache dịch vụ không được xóa sau khi DB đổi");
+        jdbcTemplate.update("UPDATE DichVu SET GiaTien = GiaTien - 1000 WHERE ID = 1");
+    }
+
+    @Test
+    void caDoiConChoTrenDbCapNhatChiMucCaTrong() {
+        choDen(slotAvailabilityIndex::isSanSang, "chỉ mục ca trống chưa dựng");
+        lichHenService.moSucChua();
+        LocalDate ngay = LocalDate.now().plusDays(3);
+        choDen(() -> slotAvailabilityIndex.isTrong(ngay, 1), "chỉ mục không thấy ca của ngày vừa mở");
+
+        // Node khác đặt kín ca
+        jdbcTemplate.update("UPDATE SucChuaNgay SET DaDat = SucChua WHERE Date = ? AND idCaLichHen = 1", ngay);
+        choDen(() -> !slotAvailabilityIndex.isTrong(ngay, 1), "chỉ mục không cập nhật khi ca hết chỗ");
+
+        jdbcTemplate.update("UPDATE SucChuaNgay SET DaDat = 0 WHERE Date = ? AND idCaLichHen = 1", ngay);
+        choDen(() -> slotAvailabilityIndex.isTrong(ngay, 1), "chỉ mục không cập nhật khi ca có chỗ lại");
+    }
+
+    @Test
+    void rollbackKhongGuiThongBao() throws InterruptedException {
+        Dichvu dichvu = dichVuService.findByIdTuCache(1).orElseThrow();
+        long thongBaoTruoc = (Long) danhMucCache.thongKe().get("soThongBao");
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.update("UPDATE DichVu SET GiaTien = GiaTien + 1 WHERE ID = 1");
+            status.setRollbackOnly();
+        });
+
+        Thread.sleep(500);
+        assertEquals(thongBaoTruoc, danhMucCache.thongKe().get("soThongBao"));
+        assertEquals(dichvu.getGiatien(), dichVuService.findByIdTuCache(1).orElseThrow().getGiatien());
+    }
+
+    @Test
+    void matKenhThiKetNoiLai() {
+        long soLanKetNoi = kenhThayDoiDanhMuc.getSoLanKetNoi();
+        dichVuService.getListTrangThaiTrue();
+
+        jdbcTemplate.queryForList("SELECT pg_terminate_backend(pid) FROM pg_stat_activity " +
+                "WHERE application_name = 'kenh-thay-doi-danh-muc'");
+
+        choDen(() -> kenhThayDoiDanhMuc.getSoLanKetNoi() > soLanKetNoi && danhMucCache.isKenhHoatDong(),
+                "kênh không kết nối lại");
+        // Đổi trạng thái kênh là bỏ cache
+        assertEquals(0, danhMucCache.thongKe().get("soMuc"));
+
+        long thongBaoTruoc = (Long) danhMucCache.thongKe().get("soThongBao");
+        jdbcTemplate.update("UPDATE DichVu SET TrangThai = TrangThai WHERE ID = 1");
+        choDen(() -> (Long) danhMucCache.thongKe().get("soThongBao") > thongBaoTruoc,
+                "không nhận được thông báo sau khi kết nối lại");
+    }
+
+    private static void choDen(BooleanSupplier dieuKien, String loi) {
+        long hetHan = System.currentTimeMillis() + 10_000;
+        while (!dieuKien.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < hetHan, loi);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(loi, e);
+            }
+        }
+    }
+}
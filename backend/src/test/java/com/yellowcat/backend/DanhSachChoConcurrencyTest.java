@@ -0,0 +1,196 @@
+package com.yellowcat.backend;
+
+import com.yellowcat.backend.model.Danhsachcho;
+import com.yellowcat.backend.model.Lichhen;
+import com.yellowcat.backend.repository.DanhsachchoRepository;
+import com.yellowcat.backend.service.DanhSachChoService;
+import com.yellowcat.backend.service.EmailService;
+import com.yellowcat.backend.service.GiuChoService;
+import com.yellowcat.backend.service.LichHenService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+class DanhSachChoConcurrencyTest extends PostgresTestBase {
+
+    private static final int SO_LUONG = 16;
+    private static final int SO_NGUOI_CHO = 5;
+
+    @MockBean
+    private EmailService emailService;
+
+    @Autowired
+    private LichHenService lichHenService;
+
+    @Autowired
+    private GiuChoService giuChoService;
+
+    @Autowired
+    private DanhSachChoService danhSachChoService;
+
+    @Autowired
+    private DanhsachchoRepository danhsachchoRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void huyDongThoiKhongDeNghiTrung() throws Exception {
+        lichHenService.moSucChua();
+        LocalDate ngay = LocalDate.now().plusDays(4);
+        Lichhen lich = giuChoService.giuCho(ngay, 2, "chu-cu", "chu-cu@example.com").orElseThrow();
+
+        for (int i = 0; i < SO_NGUOI_CHO; i++) {
+            assertTrue(danhSachChoService.dangKy(ngay, 2, "cho-" + i, "cho" + i + "@example.com").isPresent());
+        }
+
+        // Nhiều luồng cùng trả ca và cùng kích hoạt đề nghị
+        ExecutorService executor = Executors.newFixedThreadPool(SO_LUONG);
+        CountDownLatch batDau = new CountDownLatch(1);
+        List<Future<?>> ketQua = new ArrayList<>();
+        for (int i = 0; i < SO_LUONG; i++) {
+            ketQua.add(executor.submit(() -> {
+                batDau.await();
+                giuChoService.boGiuCho(lich.getId(), "chu-cu");
+                return danhSachChoService.deNghiChoNguoiDauTien(ngay, 2);
+            }));
+        }
+        batDau.countDown();
+        for (Future<?> future : ketQua) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // Đợi cả đề nghị chạy nền từ sự kiện trả ca
+        verify(emailService, after(2000).times(1)).sendEmail(anyString(), anyString(), anyString());
+        verify(emailService).sendEmail(eq("cho0@example.com"), anyString(), anyString());
+
+        List<Danhsachcho> daDeNghi = danhsachchoRepository.findAll().stream()
+                .filter(d -> d.getTrangthai() == DanhSachChoService.DA_DE_NGHI)
+                .toList();
+        assertEquals(1, daDeNghi.size(), "Chỉ một người chờ được đề nghị");
+        assertEquals("cho-0", daDeNghi.get(0).getIdkhachhang());
+
+        // Lượt giữ cũ đã bị xóa, người chờ đầu tiên có lượt giữ mới cho cùng ca
+        assertNull(lichHenService.findById(lich.getId()));
+        Lichhen lichSauDeNghi = lichHenService.findById(daDeNghi.get(0).getIdlichhen());
+        assertEquals(7, lichSauDeNghi.getTrangthai());
+        assertEquals("cho-0", lichSauDeNghi.getNguoigiu());
+    }
+
+    @Test
+    void traNhieuChoCungLucMoiChoMotDeNghi() throws Exception {
+        lichHenService.moSucChua();
+        LocalDate ngay = LocalDate.now().plusDays(6);
+        jdbcTemplate.update("UPDATE SucChuaNgay SET SucChua = 2 WHERE Date = ? AND idCaLichHen = 4", ngay);
+        Lichhen lichA = giuChoService.giuCho(ngay, 4, "chu-a", "chu-a@example.com").orElseThrow();
+        Lichhen lichB = giuChoService.giuCho(ngay, 4, "chu-b", "chu-b@example.com").orElseThrow();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(danhSachChoService.dangKy(ngay, 4, "cho-" + i, "cho" + i + "@example.com").isPresent());
+        }
+
+        // Trả cả hai chỗ thẳng trong DB, không phát sự kiện trả ca: chỉ hai lượt đề nghị dưới đây tranh nhau người đầu hàng
+        jdbcTemplate.update("DELETE FROM LichHen WHERE ID IN (?, ?)", lichA.getId(), lichB.getId());
+        jdbcTemplate.update("UPDATE SucChuaNgay SET DaDat = 0 WHERE Date = ? AND idCaLichHen = 4", ngay);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch batDau = new CountDownLatch(1);
+        List<Future<Optional<Danhsachcho>>> ketQua = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            ketQua.add(executor.submit(() -> {
+                batDau.await();
+                return danhSachChoService.deNghiChoNguoiDauTien(ngay, 4);
+            }));
+        }
+        batDau.countDown();
+        for (Future<Optional<Danhsachcho>> future : ketQua) {
+            assertTrue(future.get().isPresent(), "Mỗi chỗ được trả có một đề nghị");
+        }
+        executor.shutdown();
+
+        Map<String, Integer> trangThai = danhsachchoRepository.findAll().stream()
+                .filter(d -> ngay.equals(d.getDate()))
+                .collect(Collectors.toMap(Danhsachcho::getIdkhachhang, Danhsachcho::getTrangthai));
+        assertEquals(Map.of("cho-0", DanhSachChoService.DA_DE_NGHI, "cho-1", DanhSachChoService.DA_DE_NGHI,
+                "cho-2", DanhSachChoService.DANG_CHO), trangThai);
+    }
+
+    @Test
+    void nguoiDangKySauKhiDoiKhoaVanDuocDeNghi() throws Exception {
+        lichHenService.moSucChua();
+        LocalDate ngay = LocalDate.now().plusDays(7);
+        Lichhen lich = giuChoService.giuCho(ngay, 5, "chu-cu", "chu-cu@example.com").orElseThrow();
+        Danhsachcho dauHang = danhSachChoService.dangKy(ngay, 5, "cho-0", "cho0@example.com").orElseThrow();
+        jdbcTemplate.update("DELETE FROM LichHen WHERE ID = ?", lich.getId());
+        jdbcTemplate.update("UPDATE SucChuaNgay SET DaDat = 0 WHERE Date = ? AND idCaLichHen = 5", ngay);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (Connection ketNoi = dataSource.getConnection()) {
+            // Giao dịch khác đang giữ dòng người đầu hàng, lượt đề nghị phải đợi
+            ketNoi.setAutoCommit(false);
+            ketNoi.createStatement().execute("SELECT * FROM DanhSachCho WHERE ID = " + dauHang.getId() + " FOR UPDATE");
+            Future<Optional<Danhsachcho>> deNghi = executor.submit(() -> danhSachChoService.deNghiChoNguoiDauTien(ngay, 5));
+            Thread.sleep(500);
+
+            // Trong lúc đợi: có người đăng ký thêm và người đầu hàng rời danh sách. Ca đã trống nên dangKy từ chối,
+            // lượt chờ được thêm thẳng trong DB như một lượt đăng ký commit ngay trước khi chỗ được trả
+            jdbcTemplate.update("INSERT INTO DanhSachCho (idKhachHang, Email, Date, idCaLichHen, TrangThai) " +
+                    "VALUES ('cho-1', 'cho1@example.com', ?, 5, ?)", ngay, DanhSachChoService.DANG_CHO);
+            ketNoi.createStatement().execute("UPDATE DanhSachCho SET TrangThai = 2 WHERE ID = " + dauHang.getId());
+            ketNoi.commit();
+
+            assertEquals("cho-1", deNghi.get(10, TimeUnit.SECONDS).orElseThrow().getIdkhachhang());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void nguoiKhacKhongBoDuocGiuChoCuaDeNghi() {
+        lichHenService.moSucChua();
+        LocalDate ngay = LocalDate.now().plusDays(5);
+        Lichhen lich = giuChoService.giuCho(ngay, 3, "chu-cu", "chu-cu@example.com").orElseThrow();
+        Danhsachcho luotCho = danhSachChoService.dangKy(ngay, 3, "cho", "cho@example.com").orElseThrow();
+        assertTrue(giuChoService.boGiuCho(lich.getId(), "chu-cu"));
+        // Đề nghị chạy nền sau khi ca được trả lại
+        verify(emailService, timeout(2000)).sendEmail(eq("cho@example.com"), anyString(), anyString());
+        Danhsachcho deNghi = danhsachchoRepository.findById(luotCho.getId()).orElseThrow();
+        assertEquals(DanhSachChoService.DA_DE_NGHI, deNghi.getTrangthai());
+
+        // Người khác biết id lượt giữ của đề nghị cũng không làm đề nghị hết hạn
+        assertFalse(giuChoService.boGiuCho(deNghi.getIdlichhen(), "ke-khac"));
+
+        assertEquals(DanhSachChoService.DA_DE_NGHI, danhsachchoRepository.findById(luotCho.getId()).orElseThrow().getTrangthai());
+        assertEquals("cho", lichHenService.findById(deNghi.getIdlichhen()).getNguoigiu());
+    }
+}
@@ -0,0 +1,179 @@
+package com.yellowcat.backend;
+
+import com.yellowcat.backend.model.Calichhen;
+import com.yellowcat.backend.model.Dichvu;
+import com.yellowcat.backend.model.Hoadon;
+import com.yellowcat.backend.model.Lichhen;
+import com.yellowcat.backend.model.Lichhensukien;
+import com.yellowcat.backend.model.Thucung;
+import com.yellowcat.backend.repository.CalichhenRepository;
+import com.yellowcat.backend.repository.HoadonRepository;
+import com.yellowcat.backend.repository.LichhenRepository;
+import com.yellowcat.backend.repository.SucchuangayRepository;
+import com.yellowcat.backend.service.CaLichHenService;
+import com.yellowcat.backend.service.DichVuService;
+import com.yellowcat.backend.service.HoaDonService;
+import com.yellowcat.backend.service.LichHenService;
+import com.yellowcat.backend.service.LichSuLichHenService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class DatLichConcurrencyTest extends PostgresTestBase {
+
+    private static final int SO_YEU_CAU = 32;
+
+    @Autowired
+    private LichHenService lichHenService;
+
+    @Autowired
+    private DichVuService dichVuService;
+
+    @Autowired
+    private HoadonRepository hoadonRepository;
+
+    @Autowired
+    private CaLichHenService caLichHenService;
+
+    @Autowired
+    private SucchuangayRepository succhuangayRepository;
+
+    @Autowired
+    private LichhenRepository lichhenRepository;
+
+    @Autowired
+    private CalichhenRepository calichhenRepository;
+
+    @Test
+    void chiMotYeuCauDatCungCaThanhCong() throws Exception {
+        // Bộ đếm sức chứa khi khởi động được tạo nền, gọi trực tiếp để không phụ thuộc thời điểm
+        lichHenService.moSucChua();
+        LocalDate ngay = LocalDate.now().plusDays(3);
+
+        List<Lichhen> daDat = datDongThoi(ngay, 1);
+
+        assertEquals(1, daDat.size(), "Chỉ một yêu cầu được giữ chỗ");
+        Lichhen lich = lichHenService.findById(daDat.get(0).getId());
+        assertEquals(4, lich.getTrangthai());
+        assertTrue(lich.getTrangthaica());
+        assertEquals(1, hoadonRepository.findAll().stream()
+                .filter(hd -> hd.getIdlichhen() != null && hd.getIdlichhen().getId().equals(lich.getId()))
+                .count(), "Chỉ một hóa đơn được tạo cho lịch");
+        assertEquals(1, succhuangayRepository.findByDateAndIdcalichhen(ngay, 1).orElseThrow().getDadat());
+    }
+
+    @Test
+    void soLichDatDuocBangSucChuaCuaCa() throws Exception {
+        lichHenService.moSucChua();
+        LocalDate ngay = LocalDate.now().plusDays(5);
+        caLichHenService.capNhatSucChuaNgay(2, ngay, 3);
+
+        List<Lichhen> daDat = datDongThoi(ngay, 2);
+
+        assertEquals(3, daDat.size(), "Số lịch đặt được bằng sức chứa của ca");
+        assertEquals(3, daDat.stream().map(Lichhen::getIdkhachhang).distinct().count());
+        assertEquals(3, succhuangayRepository.findByDateAndIdcalichhen(ngay, 2).orElseThrow().getDadat());
+    }
+
+    @Test
+    void luuCaKhongGhiDeSucChuaDaChinhTheoNgay() {
+        lichHenService.moSucChua();
+        LocalDate ngayChinhRieng = LocalDate.now().plusDays(2);
+        LocalDate ngayMacDinh = LocalDate.now().plusDays(3);
+        caLichHenService.capNhatSucChuaNgay(6, ngayChinhRieng, 5);
+        Calichhen ca = calichhenRepository.findById(6).orElseThrow();
+        int sucChuaCu = ca.getSucchua();
+
+        // Lưu ca mà không đổi sức chứa: không ngày nào bị đụng tới
+        caLichHenService.addOrUpdate(ca);
+        assertEquals(5, succhuangayRepository.findByDateAndIdcalichhen(ngayChinhRieng, 6).orElseThrow().getSucchua());
+
+        // Đổi sức chứa mặc định: chỉ ngày còn giữ mặc định cũ theo mặc định mới
+        ca.setSucchua(sucChuaCu + 1);
+        caLichHenService.addOrUpdate(ca);
+        assertEquals(5, succhuangayRepository.findByDateAndIdcalichhen(ngayChinhRieng, 6).orElseThrow().getSucchua());
+        assertEquals(sucChuaCu + 1, succhuangayRepository.findByDateAndIdcalichhen(ngayMacDinh, 6).orElseThrow().getSucchua());
+
+        ca.setSucchua(sucChuaCu);
+        caLichHenService.addOrUpdate(ca);
+    }
+
+    @Test
+    void doiLichGhiNhatKyKhongChepDongLich() {
+        lichHenService.moSucChua();
+        LocalDate ngay = LocalDate.now().plusDays(6);
+        Dichvu dichvu = dichVuService.findById(1).orElseThrow();
+        Lichhen lich = lichHenService.xacNhanDatLich(ngay, 3, "user-doi", "user-doi@example.com",
+                taoThuCung("user-doi"), dichvu, taoHoaDon()).orElseThrow();
+        long soDongTruoc = lichhenRepository.count();
+
+        Lichhen lichDoi = lichHenService.doiLich(lich, ngay.plusDays(1), 4).orElseThrow();
+
+        assertEquals(lich.getId(), lichDoi.getId());
+        assertEquals(soDongTruoc, lichhenRepository.count(), "Đổi lịch không tạo thêm dòng lịch");
+        assertEquals(0, succhuangayRepository.findByDateAndIdcalichhen(ngay, 3).orElseThrow().getDadat());
+        assertEquals(1, succhuangayRepository.findByDateAndIdcalichhen(ngay.plusDays(1), 4).orElseThrow().getDadat());
+
+        List<Lichhensukien> lichSu = lichHenService.getLichSu(lich.getId());
+        assertEquals(List.of(LichSuLichHenService.DAT, LichSuLichHenService.DOI_LICH),
+                lichSu.stream().map(Lichhensukien::getLoaisukien).toList());
+        assertEquals(ngay, lichSu.get(1).getNgaycu());
+        assertEquals(3, lichSu.get(1).getIdcacu());
+        assertEquals(4, lichSu.get(1).getIdcamoi());
+    }
+
+    private List<Lichhen> datDongThoi(LocalDate ngay, int idCa) throws Exception {
+        Dichvu dichvu = dichVuService.findById(1).orElseThrow();
+
+        ExecutorService executor = Executors.newFixedThreadPool(SO_YEU_CAU);
+        CountDownLatch batDau = new CountDownLatch(1);
+        List<Future<Optional<Lichhen>>> ketQua = new ArrayList<>();
+        for (int i = 0; i < SO_YEU_CAU; i++) {
+            String idUser = "user-" + idCa + "-" + i;
+            ketQua.add(executor.submit(() -> {
+                batDau.await();
+                return lichHenService.xacNhanDatLich(ngay, idCa, idUser, idUser + "@example.com",
+                        taoThuCung(idUser), dichvu, taoHoaDon());
+            }));
+        }
+        batDau.countDown();
+
+        List<Lichhen> daDat = new ArrayList<>();
+        for (Future<Optional<Lichhen>> future : ketQua) {
+            future.get().ifPresent(daDat::add);
+        }
+        executor.shutdown();
+        return daDat;
+    }
+
+    private Thucung taoThuCung(String idUser) {
+        Thucung thucung = new Thucung();
+        thucung.setTen("Mèo " + idUser);
+        thucung.setIdtaikhoan(idUser);
+        return thucung;
+    }
+
+    private Hoadon taoHoaDon() {
+        Hoadon hoadon = new Hoadon();
+        hoadon.setDate(LocalDateTime.now());
+        hoadon.setPhuongthucthanhtoan("Offline");
+        hoadon.setTrangthai(1);
+        hoadon.setSotien(100000.0);
+        hoadon.setMagiaodich(HoaDonService.MaGiaoDichRandom());
+        return hoadon;
+    }
+}
@@ -0,0 +1,95 @@
+package com.yellowcat.backend;
+
+import com.yellowcat.backend.model.Dichvu;
+import com.yellowcat.backend.service.DichVuService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Danh mục dịch vụ đọc từ ảnh chụp trong bộ nhớ: ETag mạnh, 304 khi client gửi lại ETag còn đúng
+ * (không câu SQL nào, không body), ETag đổi khi danh mục đổi.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(SqlCountConfig.class)
+class DichVuCatalogTest extends PostgresTestBase {
+
+    @DynamicPropertySource
+    static void tatViecDinhKy(DynamicPropertyRegistry registry) {
+        SqlCountConfig.tatViecDinhKy(registry);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DichVuService dichVuService;
+
+    @Test
+    void etagKhopThi304KhongTruyVan() throws Exception {
+        MockHttpServletResponse lanDau = mockMvc.perform(get("/api/dich-vu/all")).andReturn().getResponse();
+        assertEquals(200, lanDau.getStatus());
+        String etag = lanDau.getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        assertTrue(etag.startsWith("\""), "ETag phải là ETag mạnh: " + etag);
+        assertTrue(lanDau.getHeader(HttpHeaders.CACHE_CONTROL).contains("no-cache"));
+
+        SqlCountAssert.reset();
+        MockHttpServletResponse lanSau = mockMvc.perform(get("/api/dich-vu/all")
+                .header(HttpHeaders.IF_NONE_MATCH, etag)).andReturn().getResponse();
+        assertEquals(304, lanSau.getStatus());
+        assertEquals(0, lanSau.getContentLength());
+        assertEquals(etag, lanSau.getHeader(HttpHeaders.ETAG));
+        SqlCountAssert.assertTotalCount(0);
+    }
+
+    @Test
+    void doiTrangThaiDichVuDoiEtag() throws Exception {
+        String etagCu = mockMvc.perform(get("/api/dich-vu/all")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        Dichvu dichvu = dichVuService.findById(1).orElseThrow();
+        dichvu.setTrangthai(!dichvu.getTrangthai());
+        dichVuService.addOrUpdateDichVu(dichvu);
+        try {
+            MockHttpServletResponse sauKhiDoi = mockMvc.perform(get("/api/dich-vu/all")
+                    .header(HttpHeaders.IF_NONE_MATCH, etagCu)).andReturn().getResponse();
+            assertEquals(200, sauKhiDoi.getStatus());
+            assertNotEquals(etagCu, sauKhiDoi.getHeader(HttpHeaders.ETAG));
+            assertEquals(dichvu.getTrangthai(), dichVuService.getListTrangThaiTrue().stream()
+                    .anyMatch(d -> d.getId().equals(dichvu.getId())));
+        } finally {
+            dichvu.setTrangthai(!dichvu.getTrangthai());
+            dichVuService.addOrUpdateDichVu(dichvu);
+        }
+    }
+
+    @Test
+    void timKiemCoEtagRiengTheoTuKhoa() throws Exception {
+        Dichvu dichvu = dichVuService.findById(1).orElseThrow();
+        String tuKhoa = dichvu.getTendichvu().substring(0, 2).toUpperCase();
+
+        MockHttpServletResponse ketQua = mockMvc.perform(get("/api/dich-vu/find").param("namedv", tuKhoa).with(jwt()))
+                .andReturn().getResponse();
+        assertEquals(200, ketQua.getStatus());
+        assertTrue(ketQua.getContentAsString().contains("\"id\":" + dichvu.getId()));
+
+        String etagKhac = mockMvc.perform(get("/api/dich-vu/find").param("namedv", "khong-co-dich-vu-nay").with(jwt()))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(ketQua.getHeader(HttpHeaders.ETAG), etagKhac);
+    }
+}
@@ -0,0 +1,167 @@
+package com.yellowcat.backend;
+
+import com.yellowcat.backend.repository.HoadonRepository;
+import com.yellowcat.backend.repository.LichhenRepository;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Chạy EXPLAIN đúng câu SQL mà từng finder sinh ra trên một bộ dữ liệu lớn và kiểm tra kế hoạch dùng index,
+ * không quét tuần tự LichHen / HoaDon.
+ * Dữ liệu được thêm trong transaction của test và rollback khi xong nên không ảnh hưởng các test khác.
+ */
+@SpringBootTest
+@Import(FinderIndexPlanTest.GhiCauSqlConfig.class)
+@Transactional
+class FinderIndexPlanTest extends PostgresTestBase {
+
+    private static final int SO_LICH = 200_000;
+    private static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on ((?:lichhen|hoadon)\\w*)");
+
+    // Các câu SQL đã chạy trên luồng test kể từ lần xóa gần nhất
+    private static final ThreadLocal<List<QueryInfo>> cauDaChay = ThreadLocal.withInitial(ArrayList::new);
+
+    @TestConfiguration
+    static class GhiCauSqlConfig {
+
+        @Bean
+        static BeanPostProcessor ghiCauSqlDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                        return ProxyDataSourceBuilder.create(dataSource)
+                                .name("ghi-cau-sql")
+                                .afterQuery((execInfo, queryInfoList) -> cauDaChay.get().addAll(queryInfoList))
+                                .build();
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+
+    @Autowired
+    private LichhenRepository lichhenRepository;
+
+    @Autowired
+    private HoadonRepository hoadonRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void themDuLieuLon() {
+        // Mỗi khách khoảng 40 lịch, mỗi (ngày, ca) khoảng 28 lịch, khoảng 200 lượt giữ chỗ (7) rải rác
+        jdbcTemplate.update("INSERT INTO LichHen (idKhachHang, idDichVu, Date, TrangThai, EmailNguoiDat, idCaLichHen, TrangThaiCa, " +
+                "NguoiGiu, HetHanGiu) " +
+                "SELECT 'kh-' || (g % 5000), 1 + g % 3, CURRENT_DATE - 500 + (g % 1000), " +
+                "CASE WHEN g % 997 = 0 THEN 7 ELSE (ARRAY[0, 2, 3, 4, 6])[1 + g % 5] END, " +
+                "'kh-' || (g % 5000) || '@example.com', 1 + g % 7, TRUE, " +
+                "CASE WHEN g % 997 = 0 THEN 'kh-' || (g % 5000) END, CASE WHEN g % 997 = 0 THEN now() END " +
+                "FROM generate_series(1, ?) g", SO_LICH);
+        jdbcTemplate.update("INSERT INTO HoaDon (MaGiaoDich, idLichHen, Date, SoTien, TrangThai) " +
+                "SELECT 'MGD-' || l.ID, l.ID, now(), 100000, 1 + l.ID % 3 FROM LichHen l");
+        jdbcTemplate.execute("ANALYZE LichHen");
+        jdbcTemplate.execute("ANALYZE HoaDon");
+    }
+
+    @Test
+    void finderLichHenDungIndex() {
+        LocalDate ngay = LocalDate.now().minusDays(100);
+        Map<String, Object> giuCho = jdbcTemplate.queryForMap("SELECT Date, idCaLichHen, NguoiGiu FROM LichHen " +
+                "WHERE TrangThai = 7 LIMIT 1");
+        LocalDate ngayGiu = ((java.sql.Date) giuCho.get("date")).toLocalDate();
+        int idCaGiu = (Integer) giuCho.get("idcalichhen");
+        String nguoiGiu = (String) giuCho.get("nguoigiu");
+
+        assertDungIndex("findGiuChoCuaKhach",
+                () -> lichhenRepository.findGiuChoCuaKhach(ngayGiu, idCaGiu, nguoiGiu));
+        assertDungIndex("existsByDateAndIdcalichhen_Id",
+                () -> lichhenRepository.existsByDateAndIdcalichhen_Id(ngay, 3));
+        assertDungIndex("findByIdkhachhang",
+                () -> lichhenRepository.findByIdkhachhang("kh-42", PageRequest.of(0, 10)));
+        assertDungIndex("findByEmailNguoiDatAndDateBefore",
+                () -> lichhenRepository.findByEmailNguoiDatAndDateBefore("kh-42@example.com", ngay));
+    }
+
+    @Test
+    void finderHoaDonDungIndex() {
+        Integer idLichHen = jdbcTemplate.queryForObject("SELECT max(ID) FROM LichHen", Integer.class);
+
+        assertDungIndex("findByIdlichhen_IdAndTrangthai",
+                () -> hoadonRepository.findByIdlichhen_IdAndTrangthai(idLichHen, 1));
+        assertDungIndex("findByMagiaodich",
+                () -> hoadonRepository.findByMagiaodich("MGD-" + idLichHen));
+    }
+
+    // Gọi finder, lấy câu SELECT đầu tiên nó chạy (với Page là câu lấy dữ liệu, trước câu đếm) rồi EXPLAIN với đúng tham số
+    private void assertDungIndex(String finder, Runnable goiFinder) {
+        cauDaChay.get().clear();
+        goiFinder.run();
+        QueryInfo cau = cauDaChay.get().stream()
+                .filter(q -> q.getQuery().stripLeading().toLowerCase().startsWith("select"))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError(finder + " không chạy câu SELECT nào"));
+
+        String plan = explain(cau);
+        // LichHen chia phân vùng theo tháng: phân vùng gần như rỗng thì quét tuần tự là bình thường
+        Matcher quetTuanTu = SEQ_SCAN.matcher(plan);
+        while (quetTuanTu.find()) {
+            Float soDong = jdbcTemplate.queryForObject("SELECT reltuples FROM pg_class WHERE relname = ?",
+                    Float.class, quetTuanTu.group(1));
+            assertTrue(soDong == null || soDong < 1000, finder + " quét tuần tự " + quetTuanTu.group(1) + ":\n" + plan);
+        }
+        assertTrue(plan.contains("Index"), finder + " không dùng index:\n" + plan);
+    }
+
+    private String explain(QueryInfo cau) {
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement("EXPLAIN " + cau.getQuery())) {
+                if (!cau.getParametersList().isEmpty()) {
+                    for (ParameterSetOperation thamSo : cau.getParametersList().get(0)) {
+                        Object[] args = thamSo.getArgs();
+                        if ("setNull".equals(thamSo.getMethod().getName())) {
+                            ps.setNull((Integer) args[0], (Integer) args[1]);
+                        } else {
+                            ps.setObject((Integer) args[0], args[1]);
+                        }
+                    }
+                }
+                StringBuilder plan = new StringBuilder();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        plan.append(rs.getString(1)).append('\n');
+                    }
+                }
+                return plan.toString();
+            }
+        });
+    }
+}
@@ -0,0 +1,80 @@
+package com.yellowcat.backend;
+
+import com.yellowcat.backend.model.Giamgia;
+import com.yellowcat.backend.service.GiamGiaIndex;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GiamGiaIndexTest {
+
+    private static final LocalDate NGAY = LocalDate.of(2024, 11, 10);
+
+    @Test
+    public void ngayBienNamTrongDot() {
+        GiamGiaIndex chiMuc = GiamGiaIndex.tao(List.of(dot(1, 10, NGAY, NGAY.plusDays(4), true)));
+
+        assertTrue(chiMuc.apDung(NGAY.minusDays(1)).isEmpty());
+        assertEquals(1, id(chiMuc.apDung(NGAY)));
+        assertEquals(1, id(chiMuc.apDung(NGAY.plusDays(4))));
+        assertTrue(chiMuc.apDung(NGAY.plusDays(5)).isEmpty());
+    }
+
+    @Test
+    public void dotChongNhauApDungDotGiamNhieuNhat() {
+        GiamGiaIndex chiMuc = GiamGiaIndex.tao(List.of(
+                dot(1, 10, NGAY, NGAY.plusDays(30), true),
+                dot(2, 25, NGAY.plusDays(5), NGAY.plusDays(9), true),
+                dot(3, 25, NGAY.plusDays(7), NGAY.plusDays(8), true)));
+
+        assertEquals(1, id(chiMuc.apDung(NGAY.plusDays(4))));
+        assertEquals(2, id(chiMuc.apDung(NGAY.plusDays(5))));
+        // Cùng mức giảm: đợt bắt đầu muộn hơn
+        assertEquals(3, id(chiMuc.apDung(NGAY.plusDays(7))));
+        assertEquals(List.of(3, 2, 1), chiMuc.hieuLuc(NGAY.plusDays(8)).stream().map(Giamgia::getId).toList());
+        assertEquals(2, id(chiMuc.apDung(NGAY.plusDays(9))));
+        assertEquals(1, id(chiMuc.apDung(NGAY.plusDays(10))));
+    }
+
+    @Test
+    public void cungMucCungNgayBatDauThiDotTaoSau() {
+        GiamGiaIndex chiMuc = GiamGiaIndex.tao(List.of(
+                dot(4, 15, NGAY, NGAY.plusDays(3), true),
+                dot(7, 15, NGAY, NGAY.plusDays(1), true)));
+
+        assertEquals(7, id(chiMuc.apDung(NGAY)));
+        assertEquals(4, id(chiMuc.apDung(NGAY.plusDays(2))));
+    }
+
+    @Test
+    public void boQuaDotTatVaDotSaiNgay() {
+        GiamGiaIndex chiMuc = GiamGiaIndex.tao(List.of(
+                dot(1, 50, NGAY, NGAY.plusDays(3), false),
+                dot(2, 40, NGAY.plusDays(3), NGAY, true),
+                dot(3, 5, NGAY.plusDays(1), NGAY.plusDays(1), true)));
+
+        assertTrue(chiMuc.apDung(NGAY).isEmpty());
+        assertEquals(3, id(chiMuc.apDung(NGAY.plusDays(1))));
+        assertTrue(GiamGiaIndex.tao(List.of()).hieuLuc(NGAY).isEmpty());
+    }
+
+    private static Giamgia dot(int id, int phanTram, LocalDate batDau, LocalDate ketThuc, boolean trangThai) {
+        Giamgia giamgia = new Giamgia();
+        giamgia.setId(id);
+        giamgia.setPhantramgiam(phanTram);
+        giamgia.setNgaybatdau(batDau);
+        giamgia.setNgayketthuc(ketThuc);
+        giamgia.setMota("Đợt " + id);
+        giamgia.setTrangthai(trangThai);
+        return giamgia;
+    }
+
+    private static int id(Optional<Giamgia> giamgia) {
+        return giamgia.orElseThrow().getId();
+    }
+}
@@ -0,0 +1,180 @@
+package com.yellowcat.backend;
+
+import com.yellowcat.backend.model.Lichhen;
+import com.yellowcat.backend.repository.LichhenRepository;
+import com.yellowcat.backend.repository.SucchuangayRepository;
+import com.yellowcat.backend.service.CaLichHenService;
+import com.yellowcat.backend.service.GiuChoService;
+import com.yellowcat.backend.service.LichHenService;
+import com.yellowcat.backend.service.SucChuaService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Giữ chỗ tạm thời: số lượt giữ không vượt sức chứa khi nhiều khách giữ cùng lúc, và lượt quét hết hạn
+ * trả chỗ đúng một lần, mỗi (ngày, ca) một lần giảm bộ đếm.
+ */
+@SpringBootTest
+class GiuChoServiceTest extends PostgresTestBase {
+
+    private static final int SO_KHACH = 16;
+
+    @DynamicPropertySource
+    static void tatQuetDinhKy(DynamicPropertyRegistry registry) {
+        // Các ngày dùng trong test nằm ngoài 7 ngày mặc định để không đụng bộ đếm của các test khác
+        registry.add("lichhen.suc-chua.so-ngay", () -> "30");
+        SqlCountConfig.tatViecDinhKy(registry);
+    }
+
+    @Autowired
+    private GiuChoService giuChoService;
+
+    @Autowired
+    private LichHenService lichHenService;
+
+    @Autowired
+    private CaLichHenService caLichHenService;
+
+    @Autowired
+    private LichhenRepository lichhenRepository;
+
+    @Autowired
+    private SucchuangayRepository succhuangayRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @SpyBean
+    private SucChuaService sucChuaService;
+
+    @Test
+    void giuChoDongThoiKhongVuotSucChua() throws Exception {
+        lichHenService.moSucChua();
+        LocalDate ngay = LocalDate.now().plusDays(20);
+        caLichHenService.capNhatSucChuaNgay(1, ngay, 3);
+
+        List<Callable<Optional<Lichhen>>> luotGiu = new ArrayList<>();
+        for (int i = 0; i < SO_KHACH; i++) {
+            String idUser = "giu-" + i;
+            luotGiu.add(() -> giuChoService.giuCho(ngay, 1, idUser, idUser + "@example.com"));
+        }
+        List<Lichhen> daGiu = chayDongThoi(luotGiu).stream().flatMap(Optional::stream).toList();
+
+        assertEquals(3, daGiu.size(), "Số lượt giữ bằng sức chứa của ca");
+        assertEquals(3, daGiu.stream().map(Lichhen::getNguoigiu).distinct().count());
+        assertEquals(3, dadat(ngay, 1));
+
+        // Khách đang giữ giữ lại thì chỉ gia hạn, không chiếm thêm chỗ
+        Lichhen giuLai = giuChoService.giuCho(ngay, 1, daGiu.get(0).getNguoigiu(), "lai@example.com").orElseThrow();
+        assertEquals(daGiu.get(0).getId(), giuLai.getId());
+        assertEquals(3, dadat(ngay, 1));
+    }
+
+    @Test
+    void quetDongThoiTraMoiLuotGiuHetHanMotLan() throws Exception {
+        lichHenService.moSucChua();
+        LocalDate ngay = LocalDate.now().plusDays(21);
+        caLichHenService.capNhatSucChuaNgay(2, ngay, 5);
+        List<Integer> hetHan = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            hetHan.add(giuChoService.giuCho(ngay, 2, "het-han-" + i, "het-han@example.com").orElseThrow().getId());
+        }
+        Lichhen conHan = giuChoService.giuCho(ngay, 2, "con-han", "con-han@example.com").orElseThrow();
+        datHetHan(hetHan);
+
+        // Hai node quét cùng lúc: mỗi lượt giữ chỉ được một node khóa và trả chỗ
+        List<Callable<Void>> luotQuet = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            luotQuet.add(() -> {
+                giuChoService.quetGiuChoHetHan();
+                return null;
+            });
+        }
+        chayDongThoi(luotQuet);
+
+        assertEquals(1, dadat(ngay, 2), "Chỉ còn chỗ của lượt giữ chưa hết hạn");
+        assertTrue(hetHan.stream().noneMatch(lichhenRepository::existsById));
+        assertTrue(lichhenRepository.existsById(conHan.getId()));
+    }
+
+    @Test
+    void quetGiamBoDemMotLanChoMoiNgayVaCa() {
+        lichHenService.moSucChua();
+        LocalDate ngay = LocalDate.now().plusDays(22);
+        caLichHenService.capNhatSucChuaNgay(3, ngay, 3);
+        caLichHenService.capNhatSucChuaNgay(4, ngay, 2);
+        List<Integer> hetHan = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            hetHan.add(giuChoService.giuCho(ngay, 3, "lo-a-" + i, "lo@example.com").orElseThrow().getId());
+        }
+        for (int i = 0; i < 2; i++) {
+            hetHan.add(giuChoService.giuCho(ngay, 4, "lo-b-" + i, "lo@example.com").orElseThrow().getId());
+        }
+        datHetHan(hetHan);
+        clearInvocations(sucChuaService);
+
+        giuChoService.quetGiuChoHetHan();
+
+        verify(sucChuaService, times(1)).traCho(eq(ngay), eq(3), anyInt());
+        verify(sucChuaService).traCho(ngay, 3, 3);
+        verify(sucChuaService, times(1)).traCho(eq(ngay), eq(4), anyInt());
+        verify(sucChuaService).traCho(ngay, 4, 2);
+        assertEquals(0, dadat(ngay, 3));
+        assertEquals(0, dadat(ngay, 4));
+    }
+
+    private void datHetHan(List<Integer> ids) {
+        for (Integer id : ids) {
+            jdbcTemplate.update("UPDATE LichHen SET HetHanGiu = LOCALTIMESTAMP - INTERVAL '1 minute' WHERE ID = ?", id);
+        }
+    }
+
+    private int dadat(LocalDate ngay, int idCa) {
+        return succhuangayRepository.findByDateAndIdcalichhen(ngay, idCa).orElseThrow().getDadat();
+    }
+
+    private static <T> List<T> chayDongThoi(List<Callable<T>> viec) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(viec.size());
+        CountDownLatch batDau = new CountDownLatch(1);
+        try {
+            List<Future<T>> ketQua = new ArrayList<>();
+            for (Callable<T> v : viec) {
+                ketQua.add(executor.submit(() -> {
+                    batDau.await();
+                    return v.call();
+                }));
+            }
+            batDau.countDown();
+            List<T> ds = new ArrayList<>();
+            for (Future<T> f : ketQua) {
+                ds.add(f.get());
+            }
+            return ds;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
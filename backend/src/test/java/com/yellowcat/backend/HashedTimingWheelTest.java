@@ -0,0 +1,115 @@
+package com.yellowcat.backend;
+
+import com.yellowcat.backend.scheduler.CancellationRegistry;
+import com.yellowcat.backend.scheduler.HashedTimingWheel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedTimingWheelTest {
+
+    private static final int SO_TAC_VU = 10_000;
+
+    @Test
+    void henGioMuoiNghinTacVuChiDungMotLuong() throws Exception {
+        CountDownLatch xong = new CountDownLatch(SO_TAC_VU);
+        Set<String> luongXuLy = ConcurrentHashMap.newKeySet();
+        AtomicInteger soLo = new AtomicInteger();
+
+        HashedTimingWheel<Integer> wheel = new HashedTimingWheel<>("test-wheel", 10, 64, lo -> {
+            luongXuLy.add(Thread.currentThread().getName());
+            soLo.incrementAndGet();
+            lo.forEach(id -> xong.countDown());
+        });
+
+        int soLuongTruoc = Thread.activeCount();
+        wheel.start();
+        for (int i = 0; i < SO_TAC_VU; i++) {
+            wheel.schedule(i, ThreadLocalRandom.current().nextLong(0, 1_500));
+        }
+        int soLuongSau = Thread.activeCount();
+
+        assertTrue(xong.await(10, TimeUnit.SECONDS), "Tất cả tác vụ phải đến hạn");
+        wheel.stop();
+
+        assertEquals(Set.of("test-wheel"), luongXuLy, "Chỉ luồng tick xử lý tác vụ");
+        assertTrue(soLuongSau - soLuongTruoc <= 1, "Hẹn giờ không được tạo thêm luồng cho mỗi tác vụ");
+        assertTrue(soLo.get() < SO_TAC_VU, "Tác vụ đến hạn cùng tick phải được gom lô");
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void tacVuDaHuyKhongDuocXuLy() throws Exception {
+        List<Integer> daXuLy = new ArrayList<>();
+        CountDownLatch xong = new CountDownLatch(50);
+        HashedTimingWheel<Integer> wheel = new HashedTimingWheel<>("test-wheel-huy", 10, 16, lo -> {
+            synchronized (daXuLy) {
+                daXuLy.addAll(lo);
+            }
+            lo.forEach(id -> xong.countDown());
+        });
+        wheel.start();
+
+        List<HashedTimingWheel.Timeout<Integer>> timeouts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            timeouts.add(wheel.schedule(i, 200));
+        }
+        for (int i = 0; i < 100; i += 2) {
+            assertTrue(timeouts.get(i).cancel());
+        }
+
+        assertTrue(xong.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        wheel.stop();
+
+        synchronized (daXuLy) {
+            assertEquals(50, daXuLy.size());
+            assertTrue(daXuLy.stream().allMatch(id -> id % 2 == 1));
+        }
+        assertTrue(timeouts.get(1).isExpired());
+        assertTrue(timeouts.get(0).isCancelled());
+    }
+
+    @Test
+    void huyTheoIdChiHuyTacVuCuaIdDo() throws Exception {
+        // Như TacVuHenGioService: mỗi id lịch hẹn một tác vụ, hủy qua sổ đăng ký theo id
+        CancellationRegistry<Integer, Integer> dangCho = new CancellationRegistry<>();
+        Set<Integer> daXuLy = ConcurrentHashMap.newKeySet();
+        CountDownLatch xong = new CountDownLatch(9);
+        HashedTimingWheel<Integer> wheel = new HashedTimingWheel<>("test-wheel-huy-id", 10, 16, lo -> {
+            for (Integer id : lo) {
+                dangCho.complete(id, id);
+                daXuLy.add(id);
+                xong.countDown();
+            }
+        });
+        wheel.start();
+
+        for (int id = 0; id < 10; id++) {
+            dangCho.register(id, wheel.schedule(id, 200));
+        }
+        assertNotNull(dangCho.cancel(7));
+        assertNull(dangCho.cancel(7), "Id đã hủy không còn tác vụ nào để hủy");
+
+        assertTrue(xong.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        wheel.stop();
+
+        assertEquals(IntStream.range(0, 10).filter(id -> id != 7).boxed().collect(Collectors.toSet()), daXuLy);
+        assertEquals(0, dangCho.size(), "Tác vụ đến hạn được gỡ khỏi sổ đăng ký");
+    }
+}
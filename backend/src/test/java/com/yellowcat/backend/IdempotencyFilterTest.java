@@ -0,0 +1,108 @@
+package com.yellowcat.backend;
+
+import com.yellowcat.backend.config.IdempotencyFilter;
+import com.yellowcat.backend.repository.KhoaidempotencyRepository;
+import com.yellowcat.backend.service.IdempotencyService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdempotencyFilterTest {
+
+    private KhoaidempotencyRepository repository;
+    private IdempotencyFilter filter;
+    private final AtomicInteger soLanChay = new AtomicInteger();
+
+    private final FilterChain datLich = (request, response) -> {
+        soLanChay.incrementAndGet();
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        httpResponse.setStatus(201);
+        httpResponse.setContentType("application/json");
+        httpResponse.getOutputStream().write(("{\"id\":" + soLanChay.get() + "}").getBytes(StandardCharsets.UTF_8));
+    };
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(KhoaidempotencyRepository.class);
+        when(repository.findPhanHoi(anyString(), any())).thenReturn(Optional.empty());
+        when(repository.luuPhanHoi(anyString(), anyInt(), any(), any())).thenReturn(1);
+        IdempotencyService service = new IdempotencyService(repository, 24, 60, 100, 1000);
+        filter = new IdempotencyFilter(service, List.of("PUT /api/dat-lich/xac-nhan-dat"));
+    }
+
+    @Test
+    void guiLaiTraVePhanHoiCuKhongChayLaiController() throws Exception {
+        when(repository.nhanXuLy(anyString(), any(), any(), any())).thenReturn(1, 0);
+
+        MockHttpServletResponse lan1 = new MockHttpServletResponse();
+        filter.doFilter(yeuCau("abc"), lan1, datLich);
+        MockHttpServletResponse lan2 = new MockHttpServletResponse();
+        filter.doFilter(yeuCau("abc"), lan2, datLich);
+
+        assertEquals(1, soLanChay.get());
+        assertEquals(201, lan2.getStatus());
+        assertEquals("{\"id\":1}", lan2.getContentAsString());
+        assertEquals("true", lan2.getHeader(IdempotencyFilter.HEADER_TRA_LAI));
+        assertNull(lan1.getHeader(IdempotencyFilter.HEADER_TRA_LAI));
+        // Lần gửi lại được trả từ LRU, không đọc DB thêm
+        verify(repository, times(1)).findPhanHoi(anyString(), any());
+    }
+
+    @Test
+    void khoaDangXuLyTraVe409() throws Exception {
+        when(repository.nhanXuLy(anyString(), any(), any(), any())).thenReturn(0);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(yeuCau("dang-chay"), response, datLich);
+
+        assertEquals(409, response.getStatus());
+        assertEquals(0, soLanChay.get());
+    }
+
+    @Test
+    void loiServerKhongDuocLuu() throws Exception {
+        when(repository.nhanXuLy(anyString(), any(), any(), any())).thenReturn(1);
+
+        filter.doFilter(yeuCau("loi"), new MockHttpServletResponse(),
+                (request, response) -> ((HttpServletResponse) response).setStatus(500));
+
+        verify(repository, never()).luuPhanHoi(anyString(), anyInt(), any(), any());
+        verify(repository).huyXuLy(anyString());
+    }
+
+    @Test
+    void khongCoHeaderThiBoQua() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/api/dat-lich/xac-nhan-dat");
+
+        filter.doFilter(request, new MockHttpServletResponse(), datLich);
+        filter.doFilter(request, new MockHttpServletResponse(), datLich);
+
+        assertEquals(2, soLanChay.get());
+        verify(repository, never()).nhanXuLy(anyString(), any(), any(), any());
+    }
+
+    private MockHttpServletRequest yeuCau(String khoa) {
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/api/dat-lich/xac-nhan-dat");
+        request.addHeader(IdempotencyFilter.HEADER, khoa);
+        return request;
+    }
+}
@@ -0,0 +1,49 @@
+package com.yellowcat.backend;
+
+import com.yellowcat.backend.DTO.response.TrangCuonResponse;
+import com.yellowcat.backend.exception.ConTroKhongHopLeException;
+import com.yellowcat.backend.service.KeysetCursor;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class KeysetCursorTest {
+
+    @Test
+    public void conTroGiaiMaDungKhoaVaId() {
+        String conTro = KeysetCursor.encode(LocalDate.of(2024, 11, 2), 42);
+
+        KeysetCursor viTri = KeysetCursor.decode(conTro);
+
+        assertEquals(LocalDate.of(2024, 11, 2), viTri.khoaNgay());
+        assertEquals(42, viTri.id());
+    }
+
+    @Test
+    public void conTroSaiBaoLoi() {
+        assertThrows(ConTroKhongHopLeException.class, () -> KeysetCursor.decode("khong-phai-con-tro!"));
+        assertThrows(ConTroKhongHopLeException.class,
+                () -> KeysetCursor.decode(KeysetCursor.encode("abc", 1)).khoaNgay());
+    }
+
+    @Test
+    public void trangChiCoConTroKhiConDongPhiaSau() {
+        TrangCuonResponse<Integer> trangDau = TrangCuonResponse.tu(List.of(5, 4, 3), 2,
+                id -> KeysetCursor.encode("", id), null);
+        assertEquals(List.of(5, 4), trangDau.getNoiDung());
+        assertNotNull(trangDau.getConTroTiep());
+        assertEquals(4, KeysetCursor.decode(trangDau.getConTroTiep()).id());
+
+        TrangCuonResponse<Integer> trangCuoi = TrangCuonResponse.tu(List.of(3), 2,
+                id -> KeysetCursor.encode("", id), 3L);
+        assertEquals(List.of(3), trangCuoi.getNoiDung());
+        assertNull(trangCuoi.getConTroTiep());
+        assertEquals(3L, trangCuoi.getTongSo());
+    }
+}
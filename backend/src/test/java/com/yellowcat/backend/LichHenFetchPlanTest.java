@@ -0,0 +1,163 @@
+package com.yellowcat.backend;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yellowcat.backend.model.Dichvu;
+import com.yellowcat.backend.model.Hoadon;
+import com.yellowcat.backend.model.Lichhen;
+import com.yellowcat.backend.model.Thucung;
+import com.yellowcat.backend.service.DichVuService;
+import com.yellowcat.backend.service.GiuChoService;
+import com.yellowcat.backend.service.HoaDonService;
+import com.yellowcat.backend.service.LichHenService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Đếm số câu SQL mà mỗi đường đọc lịch hẹn chạy, tính cả lúc ghi JSON như controller trả về.
+ * Số câu không được tăng theo số dòng trong trang.
+ */
+@SpringBootTest
+class LichHenFetchPlanTest extends PostgresTestBase {
+
+    @DynamicPropertySource
+    static void thongKeVaSucChua(DynamicPropertyRegistry registry) {
+        registry.add("spring.jpa.properties.hibernate.generate_statistics", () -> "true");
+        registry.add("lichhen.suc-chua.so-ngay", () -> "60");
+    }
+
+    private static final int SO_LICH = 5;
+
+    @Autowired
+    private LichHenService lichHenService;
+
+    @Autowired
+    private HoaDonService hoaDonService;
+
+    @Autowired
+    private GiuChoService giuChoService;
+
+    @Autowired
+    private DichVuService dichVuService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void trangLichCuaKhachChiMotCauSql() {
+        datLich("user-trang", 31);
+
+        assertEquals(1, demSoCau(() -> lichHenService.findByIdUser(PageRequest.of(0, 10), "user-trang")));
+    }
+
+    @Test
+    void trangCuonTheoKhachChiMotCauSql() {
+        datLich("user-cuon", 36);
+
+        assertEquals(1, demSoCau(() -> lichHenService.cuonTheoIdUser("user-cuon", null, 10, false)));
+        assertEquals(2, demSoCau(() -> lichHenService.cuonTheoIdUser("user-cuon", null, 10, true)));
+    }
+
+    @Test
+    void chiTietLichMotCauSqlConKiemTraTrangThaiKhongNapLienKet() {
+        Integer id = datLich("user-chi-tiet", 41).get(0);
+
+        assertEquals(1, demSoCau(() -> lichHenService.findChiTietById(id)));
+        assertEquals(1, demSoCau(() -> {
+            Lichhen lichhen = lichHenService.findById(id);
+            assertFalse(Hibernate.isInitialized(lichhen.getDichvu()));
+            assertFalse(Hibernate.isInitialized(lichhen.getThucung()));
+            return lichhen.getTrangthai();
+        }));
+    }
+
+    @Test
+    void xacNhanGiuChoTraLichDungDuocNgoaiTransaction() {
+        lichHenService.moSucChua();
+        LocalDate ngay = LocalDate.now().plusDays(55);
+        giuChoService.giuCho(ngay, 1, "user-giu", "user-giu@example.com").orElseThrow();
+
+        // Lịch trả về được gửi email bất đồng bộ sau khi session của request đã đóng
+        Lichhen lichhen = lichHenService.xacNhanDatLich(ngay, 1, "user-giu", "user-giu@example.com",
+                taoThuCung("user-giu"), dichVuService.findById(1).orElseThrow(), taoHoaDon()).orElseThrow();
+
+        assertTrue(Hibernate.isInitialized(lichhen.getIdcalichhen()));
+        assertNotNull(lichhen.getIdcalichhen().getThoigianca());
+    }
+
+    @Test
+    void danhSachHoaDonChuaThanhToanMotCauSql() {
+        datLich("user-hoa-don", 46);
+
+        assertEquals(1, demSoCau(() -> hoaDonService.getAllHoaDonChuaThanhToan(1)));
+    }
+
+    // Chạy và ghi JSON trong cùng một session như một request có open-in-view, trả về số câu SQL đã chạy
+    private long demSoCau(Supplier<?> docDuLieu) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            statistics.clear();
+            try {
+                objectMapper.writeValueAsString(docDuLieu.get());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        return statistics.getPrepareStatementCount();
+    }
+
+    private List<Integer> datLich(String idUser, int tuNgayThu) {
+        lichHenService.moSucChua();
+        Dichvu dichvu = dichVuService.findById(1).orElseThrow();
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < SO_LICH; i++) {
+            LocalDate ngay = LocalDate.now().plusDays(tuNgayThu + i);
+            ids.add(lichHenService.xacNhanDatLich(ngay, 1, idUser, idUser + "@example.com",
+                    taoThuCung(idUser), dichvu, taoHoaDon()).orElseThrow().getId());
+        }
+        return ids;
+    }
+
+    private Thucung taoThuCung(String idUser) {
+        Thucung thucung = new Thucung();
+        thucung.setTen("Mèo " + idUser);
+        thucung.setIdtaikhoan(idUser);
+        return thucung;
+    }
+
+    private Hoadon taoHoaDon() {
+        Hoadon hoadon = new Hoadon();
+        hoadon.setDate(LocalDateTime.now());
+        hoadon.setPhuongthucthanhtoan("Offline");
+        hoadon.setTrangthai(1);
+        hoadon.setSotien(100000.0);
+        hoadon.setMagiaodich(HoaDonService.MaGiaoDichRandom());
+        return hoadon;
+    }
+}
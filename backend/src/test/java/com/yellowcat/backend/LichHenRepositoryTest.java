@@ -3,6 +3,8 @@ package com.yellowcat.backend;
 import com.yellowcat.backend.model.Calichhen;
 import com.yellowcat.backend.repository.CalichhenRepository;
 import com.yellowcat.backend.repository.LichhenRepository;
+import com.yellowcat.backend.service.LichHenService;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -16,7 +18,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 @SpringBootTest
 @Transactional
-public class LichHenRepositoryTest {
+public class LichHenRepositoryTest extends PostgresTestBase {
 
     @Autowired
     private LichhenRepository lichHenRepository;
@@ -24,13 +26,20 @@ public class LichHenRepositoryTest {
     @Autowired
     private CalichhenRepository calichhenRepository;
 
+    @Autowired
+    private LichHenService lichHenService;
+
+    // Sức chứa của các ngày tới được mở nền khi ứng dụng khởi động, gọi trực tiếp để không phụ thuộc thời điểm
+    @BeforeEach
+    void moSucChua() {
+        lichHenService.moSucChua();
+    }
 
     @Test
     public void testFindAllCaAndStatusByDate() {
-        // Giả sử bạn đã có dữ liệu trong cơ sở dữ liệu
-        LocalDate testDate = LocalDate.of(2024, 11, 2);
+        LocalDate testDate = LocalDate.now().plusDays(1);
 
-        List<Calichhen> results = calichhenRepository.findAllCaAndStatusByDate(testDate);
+        List<Calichhen> results = calichhenRepository.findAllCaAndStatusByDateaAndTrangthaiFalse(testDate);
 
         // Kiểm tra kết quả
         assertNotNull(results);
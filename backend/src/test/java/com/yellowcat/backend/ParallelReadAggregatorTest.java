@@ -0,0 +1,89 @@
+package com.yellowcat.backend;
+
+import com.yellowcat.backend.service.ParallelReadAggregator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelReadAggregatorTest {
+
+    private final ParallelReadAggregator aggregator = new ParallelReadAggregator(8, 100, 500);
+
+    @AfterEach
+    void tearDown() {
+        aggregator.dung();
+    }
+
+    @Test
+    void thoiGianBangNguonChamNhatKhongPhaiTong() {
+        Map<String, Supplier<?>> nguon = new LinkedHashMap<>();
+        nguon.put("a", () -> ngu(200, "a"));
+        nguon.put("b", () -> ngu(200, "b"));
+        nguon.put("c", () -> ngu(200, "c"));
+
+        long batDau = System.currentTimeMillis();
+        Map<String, Object> ketQua = aggregator.tongHop(nguon);
+        long thoiGian = System.currentTimeMillis() - batDau;
+
+        assertEquals("a", ketQua.get("a"));
+        assertEquals("c", ketQua.get("c"));
+        assertFalse(ketQua.containsKey(ParallelReadAggregator.KHOA_LOI));
+        assertTrue(thoiGian < 450, "Chạy tuần tự sẽ mất ít nhất 600 ms, thực tế " + thoiGian + " ms");
+    }
+
+    @Test
+    void nguonChamHoacLoiTraVeKetQuaMotPhan() {
+        Map<String, Supplier<?>> nguon = new LinkedHashMap<>();
+        nguon.put("nhanh", () -> "ok");
+        nguon.put("cham", () -> ngu(5_000, "cham"));
+        nguon.put("hong", () -> {
+            throw new IllegalStateException("DB lỗi");
+        });
+
+        long batDau = System.currentTimeMillis();
+        Map<String, Object> ketQua = aggregator.tongHop(nguon);
+
+        assertTrue(System.currentTimeMillis() - batDau < 1_500);
+        assertEquals("ok", ketQua.get("nhanh"));
+        assertFalse(ketQua.containsKey("cham"));
+        assertEquals(List.of("cham", "hong"), ketQua.get(ParallelReadAggregator.KHOA_LOI));
+    }
+
+    @Test
+    void nguonQuaHanBiNgatVaTraLuong() throws InterruptedException {
+        CountDownLatch biNgat = new CountDownLatch(1);
+        Map<String, Supplier<?>> nguon = new LinkedHashMap<>();
+        nguon.put("cham", () -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                biNgat.countDown();
+            }
+            return "cham";
+        });
+
+        Map<String, Object> ketQua = aggregator.tongHop(nguon);
+
+        assertEquals(List.of("cham"), ketQua.get(ParallelReadAggregator.KHOA_LOI));
+        assertTrue(biNgat.await(1, TimeUnit.SECONDS), "Luồng của nguồn quá hạn phải bị ngắt");
+    }
+
+    private static String ngu(long millis, String giaTri) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return giaTri;
+    }
+}
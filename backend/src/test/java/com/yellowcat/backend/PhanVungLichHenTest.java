@@ -0,0 +1,165 @@
+package com.yellowcat.backend;
+
+import com.yellowcat.backend.service.PhanVungLichHenService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Phân vùng theo tháng của LichHen và việc lưu trữ tháng đã đóng.
+ * Mỗi test chạy trong transaction và rollback, kể cả các lệnh tách / chuyển phân vùng.
+ */
+@SpringBootTest
+@Transactional
+class PhanVungLichHenTest extends PostgresTestBase {
+
+    @Autowired
+    private PhanVungLichHenService phanVungLichHenService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void phanVungCacThangToiDaDuocTao() {
+        phanVungLichHenService.taoPhanVungToi();
+
+        for (int i = 0; i <= 3; i++) {
+            assertNotNull(jdbcTemplate.queryForObject("SELECT to_regclass(?)::TEXT", String.class,
+                    tenPhanVung(YearMonth.now().plusMonths(i))));
+        }
+    }
+
+    @Test
+    void truyVanTuanNayChiDocMotHaiPhanVung() {
+        LocalDate homNay = LocalDate.now();
+        String plan = String.join("\n", jdbcTemplate.queryForList(
+                "EXPLAIN SELECT * FROM LichHen WHERE Date >= ? AND Date < ?", String.class, homNay, homNay.plusDays(7)));
+
+        Set<String> phanVung = new HashSet<>();
+        Matcher matcher = Pattern.compile("lichhen_(\\d{4}_\\d{2}|mac_dinh)").matcher(plan);
+        while (matcher.find()) {
+            phanVung.add(matcher.group());
+        }
+        assertFalse(phanVung.isEmpty(), plan);
+        assertTrue(phanVung.size() <= 2, plan);
+        assertFalse(phanVung.contains("lichhen_mac_dinh"), plan);
+    }
+
+    @Test
+    void doiNgaySangThangKhacKhongMatNhatKy() {
+        Integer id = themLich(LocalDate.now());
+        jdbcTemplate.update("INSERT INTO LichHenSuKien (idLichHen, LoaiSuKien) VALUES (?, 'DAT')", id);
+
+        jdbcTemplate.update("UPDATE LichHen SET Date = ? WHERE ID = ?", LocalDate.now().plusMonths(2), id);
+
+        assertEquals(1, dem("SELECT count(*) FROM LichHenSuKien WHERE idLichHen = ?", id));
+    }
+
+    @Test
+    void xoaLichDonNhatKyVaNhacNho() {
+        Integer id = themLich(LocalDate.now());
+        jdbcTemplate.update("INSERT INTO LichHenSuKien (idLichHen, LoaiSuKien) VALUES (?, 'DAT')", id);
+        jdbcTemplate.update("INSERT INTO NhacNho (idLichHen, ThoiDiemNhac, ThoiDiemHen) VALUES (?, now(), now())", id);
+
+        jdbcTemplate.update("DELETE FROM LichHen WHERE ID = ?", id);
+
+        assertEquals(0, dem("SELECT count(*) FROM LichHenSuKien WHERE idLichHen = ?", id));
+        assertEquals(0, dem("SELECT count(*) FROM NhacNho WHERE idLichHen = ?", id));
+    }
+
+    @Test
+    void bangConKhongTroToiLichKhongTonTai() {
+        Integer id = themLich(LocalDate.now());
+        jdbcTemplate.update("DELETE FROM LichHen WHERE ID = ?", id);
+
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+                "INSERT INTO NhacNho (idLichHen, ThoiDiemNhac, ThoiDiemHen) VALUES (?, now(), now())", id));
+    }
+
+    @Test
+    void bangConCoNgayHenTraLichTheoNgay() {
+        LocalDate ngay = LocalDate.now().plusDays(1);
+        Integer id = themLich(ngay);
+
+        jdbcTemplate.update("INSERT INTO DanhSachCho (idKhachHang, Email, Date, idCaLichHen, TrangThai, idLichHen) " +
+                "VALUES ('user-phan-vung', 'user-phan-vung@example.com', ?, 1, 3, ?)", ngay, id);
+        jdbcTemplate.update("INSERT INTO NhacNho (idLichHen, ThoiDiemNhac, ThoiDiemHen) VALUES (?, ?, ?)",
+                id, ngay.atTime(8, 0), ngay.atTime(9, 0));
+
+        assertEquals(1, dem("SELECT count(*) FROM DanhSachCho WHERE idLichHen = ?", id));
+        assertEquals(1, dem("SELECT count(*) FROM NhacNho WHERE idLichHen = ?", id));
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+                "INSERT INTO DanhSachCho (idKhachHang, Email, Date, idCaLichHen, TrangThai, idLichHen) " +
+                        "VALUES ('user-phan-vung', 'user-phan-vung@example.com', ?, 1, 3, -1)", ngay));
+    }
+
+    @Test
+    void doiHoaDonSangLichKhongTonTaiBiChan() {
+        Integer id = themLich(LocalDate.now());
+        jdbcTemplate.update("INSERT INTO HoaDon (MaGiaoDich, idLichHen, SoTien, TrangThai) VALUES (?, ?, 100000, 1)",
+                "KIEM-TRA-" + id, id);
+        // Đổi cột khác không cần tra LichHen, đổi idLichHen sang lịch không có thì bị chặn
+        jdbcTemplate.update("UPDATE HoaDon SET TrangThai = 2 WHERE idLichHen = ?", id);
+
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+                "UPDATE HoaDon SET idLichHen = -1 WHERE idLichHen = ?", id));
+    }
+
+    @Test
+    void luuTruChuyenThangDaDongCungHoaDon() {
+        YearMonth thangCu = YearMonth.now().minusYears(5);
+        jdbcTemplate.queryForObject("SELECT tao_phan_vung_lichhen(?)", Boolean.class, thangCu.atDay(1));
+        Integer id = themLich(thangCu.atDay(10));
+        Integer idHoaDon = jdbcTemplate.queryForObject("INSERT INTO HoaDon (MaGiaoDich, idLichHen, SoTien, TrangThai) " +
+                "VALUES (?, ?, 100000, 2) RETURNING ID", Integer.class, "LUU-TRU-" + id, id);
+        jdbcTemplate.update("INSERT INTO DanhGia (idTaiKhoan, SoSao, MoTa, idHoaDon) VALUES ('user-phan-vung', 5, 'Tốt', ?)",
+                idHoaDon);
+        jdbcTemplate.update("INSERT INTO LichHenSuKien (idLichHen, LoaiSuKien) VALUES (?, 'DAT')", id);
+        jdbcTemplate.update("INSERT INTO NhacNho (idLichHen, ThoiDiemNhac, ThoiDiemHen) VALUES (?, now(), now())", id);
+
+        phanVungLichHenService.luuTruThangDaDong();
+
+        assertNull(jdbcTemplate.queryForObject("SELECT to_regclass(?)::TEXT", String.class, tenPhanVung(thangCu)));
+        assertEquals(0, dem("SELECT count(*) FROM LichHen WHERE ID = ?", id));
+        assertEquals(1, dem("SELECT count(*) FROM luu_tru." + tenPhanVung(thangCu) + " WHERE ID = ?", id));
+        assertEquals(0, dem("SELECT count(*) FROM HoaDon WHERE idLichHen = ?", id));
+        assertEquals(1, dem("SELECT count(*) FROM luu_tru.HoaDon WHERE idLichHen = ?", id));
+        assertEquals(1, dem("SELECT count(*) FROM luu_tru.LichHenSuKien WHERE idLichHen = ? AND LoaiSuKien = 'DAT'", id));
+        assertEquals(1, dem("SELECT count(*) FROM luu_tru.DanhGia WHERE idHoaDon = ? AND SoSao = 5", idHoaDon));
+        assertEquals(0, dem("SELECT count(*) FROM DanhGia WHERE idHoaDon = ?", idHoaDon));
+        assertEquals(0, dem("SELECT count(*) FROM NhacNho WHERE idLichHen = ?", id));
+        // Tháng hiện tại không bị lưu trữ
+        assertNotNull(jdbcTemplate.queryForObject("SELECT to_regclass(?)::TEXT", String.class,
+                tenPhanVung(YearMonth.now())));
+    }
+
+    private Integer themLich(LocalDate ngay) {
+        return jdbcTemplate.queryForObject("INSERT INTO LichHen (idKhachHang, Date, TrangThai, idCaLichHen, TrangThaiCa) " +
+                "VALUES ('user-phan-vung', ?, 0, 1, TRUE) RETURNING ID", Integer.class, ngay);
+    }
+
+    private long dem(String sql, Object... thamSo) {
+        return jdbcTemplate.queryForObject(sql, Long.class, thamSo);
+    }
+
+    private static String tenPhanVung(YearMonth thang) {
+        return String.format("lichhen_%d_%02d", thang.getYear(), thang.getMonthValue());
+    }
+}
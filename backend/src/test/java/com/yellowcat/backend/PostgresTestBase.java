@@ -0,0 +1,34 @@
+package com.yellowcat.backend;
+
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Nền chung cho các test cần PostgreSQL thật: một container dùng chung cho cả lần chạy test,
+ * schema và dữ liệu mẫu được Flyway tạo như môi trường thật.
+ */
+public abstract class PostgresTestBase {
+
+    protected static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16");
+
+    static {
+        postgres.start();
+    }
+
+    @MockBean
+    protected JwtDecoder jwtDecoder;
+
+    @DynamicPropertySource
+    static void setupPostgres(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+
+        registry.add("spring.flyway.url", postgres::getJdbcUrl);
+        registry.add("spring.flyway.user", postgres::getUsername);
+        registry.add("spring.flyway.password", postgres::getPassword);
+    }
+}
@@ -0,0 +1,121 @@
+package com.yellowcat.backend;
+
+import com.yellowcat.backend.model.Calichhen;
+import com.yellowcat.backend.repository.CalichhenRepository;
+import com.yellowcat.backend.repository.SucchuangayRepository;
+import com.yellowcat.backend.service.SlotAvailabilityIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SlotAvailabilityIndexTest {
+
+    private final LocalDate ngayMai = LocalDate.now().plusDays(1);
+    private final List<Object[]> caTrongTrongDb = new ArrayList<>();
+    // Chạy ngay sau khi chụp DB, giả lập lượt đặt commit giữa lúc chụp và lúc sửa
+    private Runnable truocKhiSua;
+
+    private SlotAvailabilityIndex index;
+
+    @BeforeEach
+    void setUp() {
+        SucchuangayRepository succhuangayRepository = mock(SucchuangayRepository.class);
+        CalichhenRepository calichhenRepository = mock(CalichhenRepository.class);
+        when(calichhenRepository.findAll()).thenReturn(List.of(taoCa(1, 8), taoCa(2, 9), taoCa(70, 10)));
+        when(succhuangayRepository.findConChoTuNgay(any())).thenAnswer(invocation -> {
+            List<Object[]> anhChup = new ArrayList<>(caTrongTrongDb);
+            if (truocKhiSua != null) {
+                truocKhiSua.run();
+            }
+            return anhChup;
+        });
+        when(succhuangayRepository.findIdCaConChoTheoNgay(any())).thenAnswer(invocation -> caTrongTrongDb.stream()
+                .filter(dong -> dong[0].equals(invocation.getArgument(0)))
+                .map(dong -> (Integer) dong[1])
+                .toList());
+
+        caTrongTrongDb.add(new Object[]{ngayMai, 1});
+        caTrongTrongDb.add(new Object[]{ngayMai, 70});
+        index = new SlotAvailabilityIndex(succhuangayRepository, calichhenRepository);
+        index.napLai();
+    }
+
+    @Test
+    void docCaTrongTheoNgay() {
+        assertEquals(List.of(1, 70), index.getCaTrong(ngayMai).stream().map(Calichhen::getId).toList());
+        assertTrue(index.getCaTrong(ngayMai.plusDays(1)).isEmpty());
+    }
+
+    @Test
+    void capNhatKhiDatVaHuy() {
+        index.danhDauDaDat(ngayMai, 1);
+        assertFalse(index.isTrong(ngayMai, 1));
+
+        index.danhDauTrong(ngayMai, 2);
+        assertTrue(index.isTrong(ngayMai, 2));
+    }
+
+    @Test
+    void kiemTraNhatQuanDemVaSuaSaiLech() {
+        // Ca 70 bị đặt trực tiếp trong DB mà chỉ mục không biết
+        caTrongTrongDb.remove(1);
+        index.kiemTraNhatQuan();
+
+        assertEquals(1, index.thongKe().get("soLechLanCuoi"));
+        assertEquals(1L, index.thongKe().get("tongSoLech"));
+        assertFalse(index.isTrong(ngayMai, 70));
+
+        index.kiemTraNhatQuan();
+        assertEquals(0, index.thongKe().get("soLechLanCuoi"));
+    }
+
+    @Test
+    void kiemTraNhatQuanKhongHoanTacLuotDatCommitGiuaChung() {
+        // Ca 2 trống trong DB mà chỉ mục không biết: ngày này bị lệch thật và được đọc lại
+        caTrongTrongDb.add(new Object[]{ngayMai, 2});
+        truocKhiSua = () -> {
+            // Ca 1 được đặt và commit sau khi đã chụp DB
+            caTrongTrongDb.remove(0);
+            index.danhDauDaDat(ngayMai, 1);
+        };
+        index.kiemTraNhatQuan();
+
+        assertFalse(index.isTrong(ngayMai, 1));
+        assertTrue(index.isTrong(ngayMai, 2));
+        assertEquals(1, index.thongKe().get("soLechLanCuoi"));
+    }
+
+    @Test
+    void napLaiKhongMatLuotDatHuyCommitGiuaChung() {
+        truocKhiSua = () -> {
+            // Sau khi napLai đã chụp DB: ca 1 được đặt, ca 2 được trả lại
+            caTrongTrongDb.remove(0);
+            index.danhDauDaDat(ngayMai, 1);
+            caTrongTrongDb.add(new Object[]{ngayMai, 2});
+            index.danhDauTrong(ngayMai, 2);
+        };
+        index.napLai();
+
+        assertFalse(index.isTrong(ngayMai, 1));
+        assertTrue(index.isTrong(ngayMai, 2));
+        assertTrue(index.isTrong(ngayMai, 70));
+    }
+
+    private Calichhen taoCa(int id, int gio) {
+        Calichhen ca = new Calichhen();
+        ca.setId(id);
+        ca.setThoigianca(LocalTime.of(gio, 0));
+        return ca;
+    }
+}
@@ -0,0 +1,353 @@
+package com.yellowcat.backend;
+
+import com.yellowcat.backend.model.Dichvu;
+import com.yellowcat.backend.model.Giamgia;
+import com.yellowcat.backend.model.Hoadon;
+import com.yellowcat.backend.model.Lichhen;
+import com.yellowcat.backend.model.Thucung;
+import com.yellowcat.backend.service.DanhMucCache;
+import com.yellowcat.backend.service.DanhSachChoService;
+import com.yellowcat.backend.service.DichVuService;
+import com.yellowcat.backend.service.GiamGiaService;
+import com.yellowcat.backend.service.GiuChoService;
+import com.yellowcat.backend.service.HoaDonService;
+import com.yellowcat.backend.service.LichHenService;
+import com.yellowcat.backend.service.SlotAvailabilityIndex;
+import net.ttddyy.dsproxy.QueryCount;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+/**
+ * Đếm số câu SQL của từng endpoint trong DatLichController, LichHenController, HoaDonController và DichVuController
+ * rồi so với baseline trong src/test/resources/sql-baseline.txt. Endpoint nào chạy nhiều câu hơn baseline
+ * (ví dụ vừa thêm một vòng N+1) thì test lỗi. Số đếm gồm cả câu SQL của các việc request đẩy sang luồng khác
+ * (ParallelReadAggregator, @Async, StreamingResponseBody), xem {@link SqlCountConfig}.
+ * Các kịch bản chạy theo thứ tự khai báo: các endpoint đọc chạy trước các endpoint ghi để số dòng trong trang cố định.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(SqlCountConfig.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SqlBaselineTest extends PostgresTestBase {
+
+    private static final String BASELINE = "/sql-baseline.txt";
+    private static final String ID_USER = "user-sql";
+    private static final String EMAIL = "user-sql@example.com";
+    private static final String ID_USER_TRANG = "user-sql-trang";
+    private static final int KICH_THUOC_TRANG = 10;
+
+    @DynamicPropertySource
+    static void moSucChua(DynamicPropertyRegistry registry) {
+        registry.add("lichhen.suc-chua.so-ngay", () -> "60");
+        SqlCountConfig.tatViecDinhKy(registry);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LichHenService lichHenService;
+
+    @Autowired
+    private DichVuService dichVuService;
+
+    @Autowired
+    private GiamGiaService giamGiaService;
+
+    @Autowired
+    private GiuChoService giuChoService;
+
+    @Autowired
+    private DanhSachChoService danhSachChoService;
+
+    @Autowired
+    private SlotAvailabilityIndex slotAvailabilityIndex;
+
+    @Autowired
+    private DanhMucCache danhMucCache;
+
+    private final Map<String, long[]> daDo = new LinkedHashMap<>();
+
+    private Map<String, long[]> baseline;
+    private Lichhen lichDoc;
+    private Hoadon hoaDonDoc;
+
+    private record KichBan(String khoa, Supplier<MockHttpServletRequestBuilder> chuanBi) {
+    }
+
+    @BeforeAll
+    void chuanBiDuLieu() throws Exception {
+        baseline = docBaseline();
+        lichHenService.moSucChua();
+        choChiMucCaTrong();
+
+        // TinhGiaTien cần một đợt giảm giá đang áp dụng
+        Giamgia giamgia = new Giamgia();
+        giamgia.setPhantramgiam(10);
+        giamgia.setNgaybatdau(LocalDate.now().minusDays(1));
+        giamgia.setNgayketthuc(LocalDate.now().plusDays(60));
+        giamgia.setMota("Giảm giá test");
+        giamgia.setTrangthai(true);
+        giamGiaService.addOrUpdate(giamgia);
+
+        Hoadon hoadon = taoHoaDon();
+        hoadon.setNgaythanhtoan(LocalDateTime.now());
+        lichDoc = datLich(ID_USER, 1, hoadon);
+        hoaDonDoc = hoadon;
+        datLich(ID_USER, 2, taoHoaDon());
+
+        // CSDL dùng chung với các lớp test khác: đặt sẵn đủ một trang để endpoint phân trang luôn chạy câu đếm,
+        // số đo không phụ thuộc thứ tự chạy
+        for (int i = 0; i < KICH_THUOC_TRANG; i++) {
+            datLich(ID_USER_TRANG, i < KICH_THUOC_TRANG / 2 ? 15 + i : 20 + i, taoHoaDon());
+        }
+    }
+
+    @TestFactory
+    Stream<DynamicTest> soCauSqlKhongVuotBaseline() {
+        return kichBan().stream().map(kichBan -> DynamicTest.dynamicTest(kichBan.khoa(), () -> {
+            MockHttpServletRequestBuilder request = kichBan.chuanBi().get();
+
+            // Mỗi kịch bản bắt đầu với cache danh mục rỗng, số đo không phụ thuộc kịch bản nào chạy trước
+            danhMucCache.xoaTatCa();
+            SqlCountAssert.reset();
+            MvcResult ketQua = mockMvc.perform(request.with(nguoiDung()).with(csrf())).andReturn();
+            if (ketQua.getRequest().isAsyncStarted()) {
+                // StreamingResponseBody: đợi ghi xong response để đếm cả câu SQL lúc ghi
+                ketQua = mockMvc.perform(asyncDispatch(ketQua)).andReturn();
+            }
+            int status = ketQua.getResponse().getStatus();
+            QueryCount dem = SqlCountAssert.current();
+
+            assertTrue(status < 500, kichBan.khoa() + " trả về " + status + ", kịch bản không còn hợp lệ");
+            daDo.put(kichBan.khoa(), new long[]{dem.getSelect(), dem.getTotal()});
+
+            long[] toiDa = baseline.get(kichBan.khoa());
+            assertNotNull(toiDa, "Chưa có baseline cho " + kichBan.khoa() + ", số đo: select=" + dem.getSelect()
+                    + " tong=" + dem.getTotal());
+            assertTrue(dem.getSelect() <= toiDa[0], kichBan.khoa() + " chạy " + dem.getSelect()
+                    + " câu SELECT, baseline là " + toiDa[0]);
+            assertTrue(dem.getTotal() <= toiDa[1], kichBan.khoa() + " chạy " + dem.getTotal()
+                    + " câu SQL, baseline là " + toiDa[1]);
+            if (dem.getSelect() < toiDa[0] || dem.getTotal() < toiDa[1]) {
+                System.out.println(kichBan.khoa() + " đã giảm còn select=" + dem.getSelect() + " tong=" + dem.getTotal()
+                        + ", có thể hạ baseline.");
+            }
+        }));
+    }
+
+    // Baseline và danh sách kịch bản phải khớp nhau, endpoint mới cần có baseline
+    @Test
+    void moiBaselineDeuCoKichBan() {
+        assertEquals(baseline.keySet(), kichBan().stream().map(KichBan::khoa)
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+    }
+
+    @AfterAll
+    void ghiSoDo() throws IOException {
+        if (!Boolean.getBoolean("sql.baseline.ghi")) {
+            return;
+        }
+        List<String> dong = new ArrayList<>();
+        daDo.forEach((khoa, dem) -> dong.add(khoa + " select=" + dem[0] + " tong=" + dem[1]));
+        Path file = Path.of("build", "sql-baseline.txt");
+        Files.createDirectories(file.getParent());
+        Files.write(file, dong, StandardCharsets.UTF_8);
+        System.out.println("Đã ghi số đo vào " + file.toAbsolutePath());
+    }
+
+    private List<KichBan> kichBan() {
+        LocalDate homNay = LocalDate.now();
+        List<KichBan> ds = new ArrayList<>();
+
+        // Đọc
+        ds.add(new KichBan("GET /api/lich-hen/all", () -> get("/api/lich-hen/all")));
+        ds.add(new KichBan("GET /api/lich-hen/findByIdUser", () -> get("/api/lich-hen/findByIdUser")));
+        ds.add(new KichBan("GET /api/lich-hen/findByUserEmail",
+                () -> get("/api/lich-hen/findByUserEmail").param("email", EMAIL)));
+        ds.add(new KichBan("GET /api/lich-hen/getListDoiTrangThai", () -> get("/api/lich-hen/getListDoiTrangThai")));
+        ds.add(new KichBan("GET /api/lich-hen/cuon/all", () -> get("/api/lich-hen/cuon/all")));
+        ds.add(new KichBan("GET /api/lich-hen/cuon/findByIdUser", () -> get("/api/lich-hen/cuon/findByIdUser")));
+        ds.add(new KichBan("GET /api/lich-hen/cuon/findByUserEmail",
+                () -> get("/api/lich-hen/cuon/findByUserEmail").param("email", EMAIL)));
+        ds.add(new KichBan("GET /api/lich-hen/cuon/getListDoiTrangThai",
+                () -> get("/api/lich-hen/cuon/getListDoiTrangThai")));
+        ds.add(new KichBan("GET /api/lich-hen/lich-su/{id}", () -> get("/api/lich-hen/lich-su/{id}", lichDoc.getId())));
+        ds.add(new KichBan("GET /api/lich-hen/findById/{id}", () -> get("/api/lich-hen/findById/{id}", lichDoc.getId())));
+        ds.add(new KichBan("GET /api/lich-hen/lich-hom-nay", () -> get("/api/lich-hen/lich-hom-nay")));
+
+        ds.add(new KichBan("GET /api/hoa-don/all-chuaTT", () -> get("/api/hoa-don/all-chuaTT")));
+        ds.add(new KichBan("GET /api/hoa-don/all", () -> get("/api/hoa-don/all")));
+        ds.add(new KichBan("GET /api/hoa-don/all/xuat", () -> get("/api/hoa-don/all/xuat")));
+        ds.add(new KichBan("GET /api/hoa-don/Lich-su-thanh-toan-nhan-vien",
+                () -> get("/api/hoa-don/Lich-su-thanh-toan-nhan-vien")));
+        ds.add(new KichBan("GET /api/hoa-don/cuon/all-chuaTT", () -> get("/api/hoa-don/cuon/all-chuaTT")));
+        ds.add(new KichBan("GET /api/hoa-don/cuon/all", () -> get("/api/hoa-don/cuon/all")));
+        ds.add(new KichBan("GET /api/hoa-don/cuon/Lich-su-thanh-toan-nhan-vien",
+                () -> get("/api/hoa-don/cuon/Lich-su-thanh-toan-nhan-vien")));
+        ds.add(new KichBan("GET /api/hoa-don/chi-tiet-hd",
+                () -> get("/api/hoa-don/chi-tiet-hd").param("id", hoaDonDoc.getId().toString())));
+        ds.add(new KichBan("GET /api/hoa-don/in-hoa-don",
+                () -> get("/api/hoa-don/in-hoa-don").param("id", hoaDonDoc.getId().toString())));
+
+        ds.add(new KichBan("GET /api/dich-vu/all", () -> get("/api/dich-vu/all")));
+        ds.add(new KichBan("GET /api/dich-vu/find", () -> get("/api/dich-vu/find").param("namedv", "vụ")));
+
+        ds.add(new KichBan("GET /api/dat-lich/dat-lich-info",
+                () -> get("/api/dat-lich/dat-lich-info").param("ngay", homNay.plusDays(1).toString())));
+        ds.add(new KichBan("GET /api/dat-lich/lich-trong", () -> get("/api/dat-lich/lich-trong")
+                .param("tuNgay", homNay.toString()).param("denNgay", homNay.plusDays(30).toString())));
+        ds.add(new KichBan("GET /api/dat-lich/danh-sach-cho", () -> get("/api/dat-lich/danh-sach-cho")));
+
+        // Ghi: mỗi kịch bản tự chuẩn bị lịch riêng ở một ngày riêng (sức chứa mặc định của ca là 1)
+        ds.add(new KichBan("PUT /api/lich-hen/updateTrangThai/{id}/{idTT}", () ->
+                put("/api/lich-hen/updateTrangThai/{id}/{idTT}", datLich(ID_USER, 11, taoHoaDon()).getId(), 3)));
+        ds.add(new KichBan("PUT /api/lich-hen/update-time/{id}", () ->
+                put("/api/lich-hen/update-time/{id}", datLich(ID_USER, 12, taoHoaDon()).getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(doiLichJson(homNay.plusDays(13)))));
+        ds.add(new KichBan("GET /api/lich-hen/thanh-toan/{id}", () ->
+                get("/api/lich-hen/thanh-toan/{id}", datLich(ID_USER, 14, taoHoaDon()).getId())));
+
+        ds.add(new KichBan("POST /api/dich-vu/add", () -> post("/api/dich-vu/add")
+                .param("tenDichVu", "Dịch vụ mới").param("moTa", "Mô tả").param("giaTien", "120000")
+                .param("trangThai", "true")));
+        ds.add(new KichBan("PUT /api/dich-vu/update/{id}", () -> put("/api/dich-vu/update/{id}", 2)
+                .param("tenDichVu", "Dịch vụ 2 mới").param("moTa", "Mô tả mới").param("giaTien", "160000")));
+        ds.add(new KichBan("PUT /api/dich-vu/update-trang-thai/{id}", () -> put("/api/dich-vu/update-trang-thai/{id}", 3)));
+        ds.add(new KichBan("DELETE /api/dich-vu/delete/{id}", () -> {
+            Dichvu dichvu = new Dichvu();
+            dichvu.setTendichvu("Dịch vụ xóa");
+            dichvu.setMota("Mô tả");
+            dichvu.setGiatien(1000f);
+            dichvu.setTrangthai(false);
+            return delete("/api/dich-vu/delete/{id}", dichVuService.addOrUpdateDichVu(dichvu).getId());
+        }));
+
+        ds.add(new KichBan("PUT /api/dat-lich/giu-cho", () -> put("/api/dat-lich/giu-cho")
+                .param("ngay", homNay.plusDays(3).toString()).param("idCaLichHen", "1")));
+        ds.add(new KichBan("PUT /api/dat-lich/bo-giu-cho/{id}", () -> put("/api/dat-lich/bo-giu-cho/{id}",
+                giuChoService.giuCho(homNay.plusDays(4), 1, ID_USER, EMAIL).orElseThrow().getId())));
+        ds.add(new KichBan("POST /api/dat-lich/danh-sach-cho", () -> {
+            datLich("user-khac", 5, taoHoaDon());
+            return post("/api/dat-lich/danh-sach-cho")
+                    .param("ngay", homNay.plusDays(5).toString()).param("idCaLichHen", "1");
+        }));
+        ds.add(new KichBan("DELETE /api/dat-lich/danh-sach-cho/{id}", () -> {
+            datLich("user-khac", 6, taoHoaDon());
+            Long id = danhSachChoService.dangKy(homNay.plusDays(6), 1, ID_USER, EMAIL).orElseThrow().getId();
+            return delete("/api/dat-lich/danh-sach-cho/{id}", id);
+        }));
+        ds.add(new KichBan("PUT /api/dat-lich/xac-nhan-dat", () -> put("/api/dat-lich/xac-nhan-dat")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"idThuCung\":{\"ten\":\"Mèo\"},\"date\":\"" + homNay.plusDays(7)
+                        + "\",\"idcalichhen\":1,\"idDichVu\":1}")));
+        ds.add(new KichBan("PUT /api/dat-lich/huy-lich/{id}", () ->
+                put("/api/dat-lich/huy-lich/{id}", datLich(ID_USER, 8, taoHoaDon()).getId())));
+        ds.add(new KichBan("PUT /api/dat-lich/thay-doi-thoi-gian/{id}", () ->
+                put("/api/dat-lich/thay-doi-thoi-gian/{id}", datLich(ID_USER, 9, taoHoaDon()).getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(doiLichJson(homNay.plusDays(10)))));
+        return ds;
+    }
+
+    private Map<String, long[]> docBaseline() throws IOException {
+        Map<String, long[]> ketQua = new LinkedHashMap<>();
+        try (InputStream in = getClass().getResourceAsStream(BASELINE)) {
+            assertNotNull(in, "Không tìm thấy " + BASELINE);
+            for (String dong : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                dong = dong.strip();
+                if (dong.isEmpty() || dong.startsWith("#")) {
+                    continue;
+                }
+                String[] phan = dong.split("\\s+");
+                ketQua.put(phan[0] + " " + phan[1], new long[]{
+                        Long.parseLong(phan[2].substring("select=".length())),
+                        Long.parseLong(phan[3].substring("tong=".length()))});
+            }
+        }
+        return ketQua;
+    }
+
+    // Chỉ mục ca trống được dựng nền khi khởi động; chờ dựng xong để số câu không phụ thuộc thời điểm
+    private void choChiMucCaTrong() throws InterruptedException {
+        long hanChot = System.currentTimeMillis() + 30_000;
+        while (!slotAvailabilityIndex.isSanSang() && System.currentTimeMillis() < hanChot) {
+            Thread.sleep(100);
+        }
+        assertTrue(slotAvailabilityIndex.isSanSang(), "Chỉ mục ca trống chưa sẵn sàng");
+    }
+
+    private static RequestPostProcessor nguoiDung() {
+        return jwt().jwt(j -> j.subject(ID_USER).claim("email", EMAIL))
+                .authorities(new SimpleGrantedAuthority("ROLE_admin"),
+                        new SimpleGrantedAuthority("ROLE_manager"),
+                        new SimpleGrantedAuthority("ROLE_user"));
+    }
+
+    private static String doiLichJson(LocalDate ngay) {
+        return "{\"date\":\"" + ngay + "\",\"idcalichhen\":\"1\"}";
+    }
+
+    private Lichhen datLich(String idUser, int sauSoNgay, Hoadon hoadon) {
+        Dichvu dichvu = dichVuService.findById(1).orElseThrow();
+        Thucung thucung = new Thucung();
+        thucung.setTen("Mèo " + idUser);
+        thucung.setIdtaikhoan(idUser);
+        return lichHenService.xacNhanDatLich(LocalDate.now().plusDays(sauSoNgay), 1, idUser, idUser + "@example.com",
+                thucung, dichvu, hoadon).orElseThrow();
+    }
+
+    private Hoadon taoHoaDon() {
+        Hoadon hoadon = new Hoadon();
+        hoadon.setDate(LocalDateTime.now());
+        hoadon.setPhuongthucthanhtoan("Offline");
+        hoadon.setTrangthai(1);
+        hoadon.setSotien(100000.0);
+        hoadon.setMagiaodich(HoaDonService.MaGiaoDichRandom());
+        return hoadon;
+    }
+}
@@ -0,0 +1,49 @@
+package com.yellowcat.backend;
+
+import net.ttddyy.dsproxy.QueryCount;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Kiểm tra số câu SQL đã chạy (trên mọi luồng) kể từ lần {@link #reset()} gần nhất.
+ * Cần {@link SqlCountConfig} trong context của test.
+ *
+ * <pre>
+ * SqlCountAssert.reset();
+ * mockMvc.perform(get("/api/lich-hen/findByIdUser"));
+ * SqlCountAssert.assertSelectCount(1);
+ * </pre>
+ */
+public final class SqlCountAssert {
+
+    private SqlCountAssert() {
+    }
+
+    public static void reset() {
+        SqlCountConfig.DEM.clear();
+    }
+
+    public static QueryCount current() {
+        return SqlCountConfig.DEM.getQueryCountMap().getOrDefault(SqlCountConfig.TEN_NGUON, new QueryCount());
+    }
+
+    public static void assertSelectCount(long expected) {
+        assertEquals(expected, current().getSelect(), "Số câu SELECT");
+    }
+
+    public static void assertInsertCount(long expected) {
+        assertEquals(expected, current().getInsert(), "Số câu INSERT");
+    }
+
+    public static void assertUpdateCount(long expected) {
+        assertEquals(expected, current().getUpdate(), "Số câu UPDATE");
+    }
+
+    public static void assertDeleteCount(long expected) {
+        assertEquals(expected, current().getDelete(), "Số câu DELETE");
+    }
+
+    public static void assertTotalCount(long expected) {
+        assertEquals(expected, current().getTotal(), "Tổng số câu SQL");
+    }
+}
@@ -0,0 +1,117 @@
+package com.yellowcat.backend;
+
+import com.yellowcat.backend.service.ParallelReadAggregator;
+import net.ttddyy.dsproxy.listener.SingleQueryCountHolder;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bọc DataSource của ứng dụng bằng datasource-proxy để đếm câu SQL theo loại (xem {@link SqlCountAssert}).
+ * Số đếm là chung cho mọi luồng, nên các việc mà request đẩy sang luồng khác cũng phải chạy đồng bộ
+ * trên luồng request (executor của {@link ParallelReadAggregator}, {@code @Async}) hoặc được đợi xong trước khi đọc số đếm.
+ * Việc định kỳ cũng chạy SQL trên luồng riêng; test dùng cấu hình này nên gọi {@link #tatViecDinhKy} để dời chúng đi.
+ */
+@TestConfiguration
+public class SqlCountConfig {
+
+    static final String TEN_NGUON = "dem-cau-sql";
+    static final SingleQueryCountHolder DEM = new SingleQueryCountHolder();
+
+    static {
+        DEM.setPopulateQueryCountHolder(false);
+    }
+
+    @Bean
+    public static BeanPostProcessor demCauSqlDataSource() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                    return ProxyDataSourceBuilder.create(dataSource)
+                            .name(TEN_NGUON)
+                            .countQuery(DEM)
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+
+    // Các nguồn của một request chạy lần lượt trên luồng request
+    @Bean
+    @Primary
+    public ParallelReadAggregator parallelReadAggregatorDongBo(DataSource dataSource,
+                                                               PlatformTransactionManager transactionManager,
+                                                               @Value("${tong-hop.han-chot-ms:2000}") long hanChotMillis) {
+        return new ParallelReadAggregator(dataSource, transactionManager, new ExecutorDongBo(), hanChotMillis);
+    }
+
+    // Executor mặc định của @Async. StreamingResponseBody vẫn chạy trên luồng riêng của Spring MVC
+    // (chạy trên luồng request thì đụng EntityManager của open-in-view), test đợi nó bằng asyncDispatch
+    @Bean(name = "taskExecutor")
+    public AsyncTaskExecutor viecNenDongBo() {
+        return new TaskExecutorAdapter(new SyncTaskExecutor());
+    }
+
+    // Dời các việc định kỳ và tác vụ hẹn giờ ra ngoài thời gian chạy test
+    public static void tatViecDinhKy(DynamicPropertyRegistry registry) {
+        String motNgay = String.valueOf(TimeUnit.DAYS.toMillis(1));
+        registry.add("lichhen.giu-cho.quet-ms", () -> motNgay);
+        registry.add("lichhen.nhac-nho.quet-ms", () -> motNgay);
+        registry.add("lichhen.chi-so-trong.kiem-tra-ms", () -> motNgay);
+        registry.add("idempotency.don-dep-ms", () -> motNgay);
+        registry.add("lichhen.hen-gio.gia-han-ms", () -> motNgay);
+        registry.add("lichhen.cho-xac-nhan.giay", () -> String.valueOf(TimeUnit.DAYS.toSeconds(1)));
+    }
+
+    private static class ExecutorDongBo extends AbstractExecutorService {
+
+        private volatile boolean daDung;
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+            daDung = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            daDung = true;
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return daDung;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return daDung;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
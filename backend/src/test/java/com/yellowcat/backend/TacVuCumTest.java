@@ -0,0 +1,184 @@
+package com.yellowcat.backend;
+
+import com.yellowcat.backend.repository.KhoatacvuRepository;
+import com.yellowcat.backend.service.TacVuCumService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Khóa tác vụ giữa nhiều node: mỗi node là một TacVuCumService có tên riêng dùng chung bảng KhoaTacVu.
+ */
+@SpringBootTest
+class TacVuCumTest extends PostgresTestBase {
+
+    @Autowired
+    private KhoatacvuRepository khoatacvuRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void chiMotNodeChayMoiLuot() throws Exception {
+        TacVuCumService nodeA = node("node-a");
+        TacVuCumService nodeB = node("node-b");
+        CountDownLatch daBatDau = new CountDownLatch(1);
+        CountDownLatch choPhepXong = new CountDownLatch(1);
+        AtomicInteger soLanChay = new AtomicInteger();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> luotA = executor.submit(() -> nodeA.chay("test-mot-node", Duration.ofHours(1), () -> {
+                soLanChay.incrementAndGet();
+                daBatDau.countDown();
+                try {
+                    choPhepXong.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(daBatDau.await(10, TimeUnit.SECONDS));
+
+            // Node A đang chạy
+            assertFalse(nodeB.chay("test-mot-node", Duration.ofHours(1), soLanChay::incrementAndGet));
+            choPhepXong.countDown();
+            assertTrue(luotA.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Node A đã xong nhưng khóa còn giữ tối thiểu, node có cron trễ vài giây không chạy lại cùng lượt
+        assertFalse(nodeB.chay("test-mot-node", Duration.ofHours(1), soLanChay::incrementAndGet));
+        assertEquals(1, soLanChay.get());
+        assertEquals(2L, thongKe(nodeB, "test-mot-node").get("soLanBoQua"));
+        assertEquals(1L, thongKe(nodeA, "test-mot-node").get("soLanChay"));
+    }
+
+    @Test
+    void khoaHetHanThiNodeKhacChayVaDemLuotBiLo() {
+        TacVuCumService nodeA = node("node-a");
+        TacVuCumService nodeB = node("node-b");
+        assertTrue(nodeA.chay("test-het-han", Duration.ofMinutes(1), () -> { }));
+
+        // Giả lập node A chết và không node nào chạy trong 10 phút
+        jdbcTemplate.update("UPDATE KhoaTacVu SET HetHan = LOCALTIMESTAMP - INTERVAL '1 second', " +
+                "BatDauCuoi = BatDauCuoi - INTERVAL '10 minute' WHERE Ten = 'test-het-han'");
+
+        assertTrue(nodeB.chay("test-het-han", Duration.ofMinutes(1), () -> { }));
+        assertEquals("node-b", jdbcTemplate.queryForObject(
+                "SELECT NguoiGiu FROM KhoaTacVu WHERE Ten = 'test-het-han'", String.class));
+        assertEquals(9L, thongKe(nodeB, "test-het-han").get("soLanLo"));
+    }
+
+    @Test
+    void tacVuLoiVanTraKhoa() {
+        TacVuCumService nodeA = node("node-a");
+        assertTrue(nodeA.chay("test-loi", Duration.ofMillis(200), () -> {
+            throw new IllegalStateException("lỗi thử");
+        }));
+        assertEquals(1L, thongKe(nodeA, "test-loi").get("soLanLoi"));
+
+        // Chu kỳ ngắn nên chỉ giữ tối thiểu 100 ms, lượt sau chạy được
+        jdbcTemplate.update("UPDATE KhoaTacVu SET HetHan = LOCALTIMESTAMP WHERE Ten = 'test-loi'");
+        assertTrue(nodeA.chay("test-loi", Duration.ofMillis(200), () -> { }));
+    }
+
+    @Test
+    void tacVuChayLauHonHanKhoaVanGiuKhoa() throws Exception {
+        // Khóa hạn 1 giây, được gia hạn khoảng mỗi 333 ms trong lúc node A còn chạy
+        TacVuCumService nodeA = new TacVuCumService(khoatacvuRepository, "node-a", Duration.ofSeconds(1), Duration.ZERO);
+        TacVuCumService nodeB = node("node-b");
+        CountDownLatch daBatDau = new CountDownLatch(1);
+        CountDownLatch choPhepXong = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> luotA = executor.submit(() -> nodeA.chay("test-gia-han", Duration.ofHours(1), () -> {
+                daBatDau.countDown();
+                try {
+                    choPhepXong.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(daBatDau.await(10, TimeUnit.SECONDS));
+
+            // Đã quá hạn ban đầu hơn hai lần mà node A vẫn giữ khóa
+            Thread.sleep(2500);
+            assertFalse(nodeB.chay("test-gia-han", Duration.ofHours(1), () -> { }));
+            choPhepXong.countDown();
+            assertTrue(luotA.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+            nodeA.dung();
+        }
+
+        // Trả khóa rồi thì không còn gia hạn: khóa hết hạn ngay (giữ tối thiểu 0) và không bị kéo dài về sau
+        Thread.sleep(700);
+        assertTrue(nodeB.chay("test-gia-han", Duration.ofHours(1), () -> { }));
+    }
+
+    @Test
+    void haiNodeChiaNhauCacPhan() throws Exception {
+        int soPhan = 8;
+        List<TacVuCumService> cacNode = List.of(node("node-a"), node("node-b"));
+        Map<Integer, AtomicInteger> soLanMoiPhan = new ConcurrentHashMap<>();
+        Set<String> nodeDaChay = ConcurrentHashMap.newKeySet();
+        CountDownLatch batDau = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(cacNode.size());
+        try {
+            List<Future<Integer>> ketQua = cacNode.stream().map(n -> executor.submit(() -> {
+                batDau.await();
+                return n.chayTheoPhan("test-chia-phan", soPhan, Duration.ofHours(1), phan -> {
+                    soLanMoiPhan.computeIfAbsent(phan, k -> new AtomicInteger()).incrementAndGet();
+                    nodeDaChay.add(n.getTenNode());
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            })).toList();
+            batDau.countDown();
+
+            int tong = 0;
+            for (Future<Integer> f : ketQua) {
+                tong += f.get(30, TimeUnit.SECONDS);
+            }
+            assertEquals(soPhan, tong);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(soPhan, soLanMoiPhan.size());
+        soLanMoiPhan.values().forEach(dem -> assertEquals(1, dem.get()));
+        assertEquals(2, nodeDaChay.size());
+    }
+
+    private TacVuCumService node(String ten) {
+        return new TacVuCumService(khoatacvuRepository, ten, 10, 60);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> thongKe(TacVuCumService node, String tacVu) {
+        return (Map<String, Object>) ((Map<String, Object>) node.thongKe().get("tacVu")).get(tacVu);
+    }
+}
@@ -0,0 +1,121 @@
+package com.yellowcat.backend;
+
+import com.yellowcat.backend.model.Dichvu;
+import com.yellowcat.backend.model.Hoadon;
+import com.yellowcat.backend.model.Lichhen;
+import com.yellowcat.backend.model.Thucung;
+import com.yellowcat.backend.service.DichVuService;
+import com.yellowcat.backend.service.HoaDonService;
+import com.yellowcat.backend.service.LichHenService;
+import com.yellowcat.backend.service.TacVuCumService;
+import com.yellowcat.backend.service.TacVuHenGioService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tác vụ chuyển lịch sang chờ thanh toán: ghi cùng transaction đặt lịch và mỗi tác vụ chỉ do một node giữ.
+ */
+@SpringBootTest
+class TacVuHenGioTest extends PostgresTestBase {
+
+    @DynamicPropertySource
+    static void moSucChua(DynamicPropertyRegistry registry) {
+        registry.add("lichhen.suc-chua.so-ngay", () -> "30");
+    }
+
+    @Autowired
+    private TacVuHenGioService tacVuHenGioService;
+
+    @Autowired
+    private TacVuCumService tacVuCumService;
+
+    @Autowired
+    private LichHenService lichHenService;
+
+    @Autowired
+    private DichVuService dichVuService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void tacVuGhiCungTransactionDatLich() {
+        lichHenService.moSucChua();
+        LocalDate ngay = LocalDate.now().plusDays(23);
+        int dangChoTruoc = tacVuHenGioService.soTacVuDangCho();
+
+        Lichhen lich = datLich(ngay, 1, "user-tacvu-1");
+        assertEquals(tacVuCumService.getTenNode(), jdbcTemplate.queryForObject(
+                "SELECT nguoigiu FROM tacvuhengio WHERE idlichhen = ?", String.class, lich.getId()));
+        assertEquals(dangChoTruoc + 1, tacVuHenGioService.soTacVuDangCho());
+
+        // Transaction đặt lịch rollback thì không còn tác vụ nào, kể cả trên bánh xe thời gian
+        long soTacVuTruoc = demTacVu();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            datLich(ngay, 2, "user-tacvu-2");
+            status.setRollbackOnly();
+        });
+        assertEquals(soTacVuTruoc, demTacVu());
+        assertEquals(dangChoTruoc + 1, tacVuHenGioService.soTacVuDangCho());
+    }
+
+    @Test
+    void chiNhanLaiTacVuCuaNodeKhongConGiaHan() {
+        lichHenService.moSucChua();
+        LocalDate ngay = LocalDate.now().plusDays(24);
+        Lichhen cuaNodeChet = datLich(ngay, 3, "user-tacvu-3");
+        Lichhen cuaNodeSong = datLich(ngay, 4, "user-tacvu-4");
+
+        // Tác vụ đầu do một node đã chết giữ và đã quá hạn, tác vụ sau do một node khác vẫn đang gia hạn
+        jdbcTemplate.update("UPDATE tacvuhengio SET nguoigiu = 'node-chet', hethangiu = LOCALTIMESTAMP - INTERVAL '1 minute', " +
+                "thoigianden = LOCALTIMESTAMP - INTERVAL '1 second' WHERE idlichhen = ?", cuaNodeChet.getId());
+        jdbcTemplate.update("UPDATE tacvuhengio SET nguoigiu = 'node-song', hethangiu = LOCALTIMESTAMP + INTERVAL '1 hour' " +
+                "WHERE idlichhen = ?", cuaNodeSong.getId());
+
+        tacVuHenGioService.giaHanVaNhanLai();
+
+        assertEquals(3, trangThai(cuaNodeChet));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM tacvuhengio WHERE idlichhen = ?", Long.class, cuaNodeChet.getId()));
+        assertEquals(4, trangThai(cuaNodeSong));
+        assertEquals("node-song", jdbcTemplate.queryForObject(
+                "SELECT nguoigiu FROM tacvuhengio WHERE idlichhen = ?", String.class, cuaNodeSong.getId()));
+    }
+
+    private Lichhen datLich(LocalDate ngay, int idCa, String idUser) {
+        Dichvu dichvu = dichVuService.findById(1).orElseThrow();
+        Thucung thucung = new Thucung();
+        thucung.setTen("Mèo " + idUser);
+        thucung.setIdtaikhoan(idUser);
+        Hoadon hoadon = new Hoadon();
+        hoadon.setDate(LocalDateTime.now());
+        hoadon.setPhuongthucthanhtoan("Offline");
+        hoadon.setTrangthai(1);
+        hoadon.setSotien(100000.0);
+        hoadon.setMagiaodich(HoaDonService.MaGiaoDichRandom());
+        return lichHenService.xacNhanDatLich(ngay, idCa, idUser, idUser + "@example.com", thucung, dichvu, hoadon)
+                .orElseThrow();
+    }
+
+    private long demTacVu() {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM tacvuhengio", Long.class);
+    }
+
+    private int trangThai(Lichhen lich) {
+        return jdbcTemplate.queryForObject("SELECT trangthai FROM lichhen WHERE id = ?", Integer.class, lich.getId());
+    }
+}
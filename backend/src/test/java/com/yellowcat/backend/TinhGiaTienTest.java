@@ -0,0 +1,203 @@
+package com.yellowcat.backend;
+
+import com.yellowcat.backend.model.Giamgia;
+import com.yellowcat.backend.model.Hoadon;
+import com.yellowcat.backend.model.Lichhen;
+import com.yellowcat.backend.model.Quytacgia;
+import com.yellowcat.backend.model.Thucung;
+import com.yellowcat.backend.repository.CalichhenRepository;
+import com.yellowcat.backend.repository.LichhenRepository;
+import com.yellowcat.backend.repository.ThucungRepository;
+import com.yellowcat.backend.service.DanhMucCache;
+import com.yellowcat.backend.service.DichVuService;
+import com.yellowcat.backend.service.GiamGiaService;
+import com.yellowcat.backend.service.HoaDonService;
+import com.yellowcat.backend.service.QuyTacGiaService;
+import com.yellowcat.backend.service.YeuCauBaoGia;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tính giá khi đặt lịch: đợt giảm giá chồng nhau không làm lỗi, và khi dữ liệu đã nạp vào bộ nhớ thì không chạy câu SQL nào.
+ * Hạng thân thiết đếm cả lịch thanh toán tại quầy lẫn qua PayPal; cần cả hạng thân thiết và combo thì chỉ chạy một câu.
+ */
+@SpringBootTest
+@Import(SqlCountConfig.class)
+class TinhGiaTienTest extends PostgresTestBase {
+
+    @DynamicPropertySource
+    static void tatViecDinhKy(DynamicPropertyRegistry registry) {
+        SqlCountConfig.tatViecDinhKy(registry);
+    }
+
+    @Autowired
+    private HoaDonService hoaDonService;
+
+    @Autowired
+    private GiamGiaService giamGiaService;
+
+    @Autowired
+    private DichVuService dichVuService;
+
+    @Autowired
+    private DanhMucCache danhMucCache;
+
+    @Autowired
+    private QuyTacGiaService quyTacGiaService;
+
+    @Autowired
+    private LichhenRepository lichhenRepository;
+
+    @Autowired
+    private ThucungRepository thucungRepository;
+
+    @Autowired
+    private CalichhenRepository calichhenRepository;
+
+    @Test
+    void dotChongNhauApDungDotGiamNhieuNhatVaKhongTruyVan() throws InterruptedException {
+        long thongBaoTruoc = soThongBao();
+        Giamgia dot80 = giamGiaService.addOrUpdate(dot(80));
+        Giamgia dot90 = giamGiaService.addOrUpdate(dot(90));
+        try {
+            // Chờ thông báo thay đổi của hai lần thêm quay về, để cache không bị xóa giữa lúc đo
+            long hetHan = System.currentTimeMillis() + 10_000;
+            while (soThongBao() < thongBaoTruoc + 2 && System.currentTimeMillis() < hetHan) {
+                Thread.sleep(20);
+            }
+            float gia = dichVuService.findById(1).orElseThrow().getGiatien();
+            hoaDonService.TinhGiaTien(1, new Hoadon());
+
+            SqlCountAssert.reset();
+            Hoadon hoadon = new Hoadon();
+            Double giaTien = hoaDonService.TinhGiaTien(1, hoadon);
+            SqlCountAssert.assertTotalCount(0);
+
+            assertEquals(gia * 0.1, giaTien, 1.0);
+            assertEquals(dot90.getId(), hoadon.getIdgiamgia().getId());
+        } finally {
+            giamGiaService.removeGiamgia(dot80.getId());
+            giamGiaService.removeGiamgia(dot90.getId());
+        }
+    }
+
+    // 3 lịch trả tại quầy (0) + 2 lịch trả qua PayPal (6) = 5 lần đặt, đủ hạng giảm 5%; lịch hủy và lịch chờ không tính
+    @Test
+    void hangThanThietTinhCaLichThanhToanPayPal() {
+        String idKhachHang = "khach-than-thiet";
+        Quytacgia hang = new Quytacgia();
+        hang.setLoai(Quytacgia.HANG_THAN_THIET);
+        hang.setSolandat(5);
+        hang.setPhantram(5);
+        hang = quyTacGiaService.addOrUpdate(hang);
+
+        Thucung thucung = new Thucung();
+        thucung.setTen("Mèo");
+        thucung.setIdtaikhoan(idKhachHang);
+        thucung = thucungRepository.save(thucung);
+        List<Lichhen> daTao = new ArrayList<>();
+        try {
+            int sauSoNgay = 0;
+            for (int trangThai : new int[]{0, 0, 0, 6, 6, 2, 4}) {
+                daTao.add(lichhenRepository.save(lich(idKhachHang, thucung, LocalDate.now().minusDays(++sauSoNgay), trangThai)));
+            }
+
+            YeuCauBaoGia yeuCau = new YeuCauBaoGia();
+            yeuCau.datLai(1, 100_000);
+            assertEquals(95_000, quyTacGiaService.baoGia(yeuCau, idKhachHang, LocalDate.now()));
+        } finally {
+            lichhenRepository.deleteAll(daTao);
+            thucungRepository.delete(thucung);
+            quyTacGiaService.remove(hang.getId());
+        }
+    }
+
+    // Có cả quy tắc hạng thân thiết lẫn combo: số lịch đã thanh toán và dịch vụ cùng ngày lấy bằng một câu
+    @Test
+    void hangThanThietVaComboLayBangMotCau() throws InterruptedException {
+        String idKhachHang = "khach-combo";
+        Quytacgia hang = new Quytacgia();
+        hang.setLoai(Quytacgia.HANG_THAN_THIET);
+        hang.setSolandat(2);
+        hang.setPhantram(5);
+        Quytacgia combo = new Quytacgia();
+        combo.setLoai(Quytacgia.COMBO);
+        combo.setIddichvu(1);
+        combo.setIddichvukem(2);
+        combo.setPhantram(10);
+
+        long thongBaoTruoc = soThongBao();
+        hang = quyTacGiaService.addOrUpdate(hang);
+        combo = quyTacGiaService.addOrUpdate(combo);
+
+        Thucung thucung = new Thucung();
+        thucung.setTen("Mèo");
+        thucung.setIdtaikhoan(idKhachHang);
+        thucung = thucungRepository.save(thucung);
+        List<Lichhen> daTao = new ArrayList<>();
+        try {
+            daTao.add(lichhenRepository.save(lich(idKhachHang, thucung, LocalDate.now().minusDays(1), 0)));
+            daTao.add(lichhenRepository.save(lich(idKhachHang, thucung, LocalDate.now().minusDays(2), 6)));
+            Lichhen cungNgay = lich(idKhachHang, thucung, LocalDate.now(), 4);
+            cungNgay.setDichvu(dichVuService.findById(2).orElseThrow());
+            daTao.add(lichhenRepository.save(cungNgay));
+
+            long hetHan = System.currentTimeMillis() + 10_000;
+            while (soThongBao() < thongBaoTruoc + 2 && System.currentTimeMillis() < hetHan) {
+                Thread.sleep(20);
+            }
+            quyTacGiaService.getBangGia();
+
+            SqlCountAssert.reset();
+            YeuCauBaoGia yeuCau = new YeuCauBaoGia();
+            yeuCau.datLai(1, 100_000);
+            // 100.000 - 10% combo = 90.000, rồi - 5% hạng thân thiết = 85.500
+            assertEquals(85_500, quyTacGiaService.baoGia(yeuCau, idKhachHang, LocalDate.now()));
+            SqlCountAssert.assertSelectCount(1);
+        } finally {
+            lichhenRepository.deleteAll(daTao);
+            thucungRepository.delete(thucung);
+            quyTacGiaService.remove(hang.getId());
+            quyTacGiaService.remove(combo.getId());
+        }
+    }
+
+    private Lichhen lich(String idKhachHang, Thucung thucung, LocalDate ngay, int trangThai) {
+        Lichhen lichhen = new Lichhen();
+        lichhen.setIdkhachhang(idKhachHang);
+        lichhen.setEmailNguoiDat(idKhachHang + "@example.com");
+        lichhen.setThucung(thucung);
+        lichhen.setDichvu(dichVuService.findById(1).orElseThrow());
+        lichhen.setIdcalichhen(calichhenRepository.findById(1).orElseThrow());
+        lichhen.setDate(ngay);
+        lichhen.setTrangthai(trangThai);
+        lichhen.setTrangthaica(true);
+        lichhen.setSolanthaydoi(0);
+        lichhen.setSolannhacnho(0);
+        return lichhen;
+    }
+
+    private long soThongBao() {
+        return (Long) danhMucCache.thongKe().get("soThongBao");
+    }
+
+    private static Giamgia dot(int phanTram) {
+        Giamgia giamgia = new Giamgia();
+        giamgia.setPhantramgiam(phanTram);
+        giamgia.setNgaybatdau(LocalDate.now().minusDays(1));
+        giamgia.setNgayketthuc(LocalDate.now().plusDays(1));
+        giamgia.setMota("Giảm " + phanTram + "%");
+        giamgia.setTrangthai(true);
+        return giamgia;
+    }
+}
@@ -0,0 +1,123 @@
+package com.yellowcat.backend;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Xuất hóa đơn theo luồng qua GET /api/hoa-don/all/xuat. Hóa đơn mẫu nằm ở năm 2001 để bộ lọc ngày
+ * tách chúng khỏi hóa đơn của các test khác dùng chung DB.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class XuatHoaDonTest extends PostgresTestBase {
+
+    private static final String TIEU_DE = "id,date,sotien,ngaythanhtoan,phuongthucthanhtoan,trangthai,nguoithanhtoan,"
+            + "magiaodich,phantramgiam,idlichhen,ngayhen,thoigianca,emailnguoidat,tendichvu,tenthucung";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeAll
+    void themHoaDon() {
+        themHoaDon("XUAT-1", LocalDateTime.of(2001, 3, 5, 9, 0), 2);
+        themHoaDon("XUAT-2", LocalDateTime.of(2001, 3, 6, 9, 0), 1);
+        themHoaDon("XUAT-3", LocalDateTime.of(2001, 4, 1, 9, 0), 2);
+        themHoaDon("XUAT-\"4\",a", LocalDateTime.of(2001, 5, 1, 9, 0), 2);
+    }
+
+    @Test
+    void ndjsonMoiDongMotHoaDonTheoBoLoc() throws Exception {
+        List<String> dong = xuat("?tuNgay=2001-03-01&denNgay=2001-04-01").lines().toList();
+
+        assertEquals(3, dong.size());
+        for (String d : dong) {
+            assertTrue(d.startsWith("{"), "Dòng NDJSON không được bắt đầu bằng dấu cách: " + d);
+        }
+        assertEquals(List.of("XUAT-1", "XUAT-2", "XUAT-3"),
+                dong.stream().map(this::docJson).map(j -> j.get("magiaodich").asText()).toList());
+        assertEquals("2001-03-05T09:00", docJson(dong.get(0)).get("date").asText());
+
+        // denNgay tính cả ngày đó, trangThai lọc thêm trên cùng khoảng ngày
+        List<String> daThanhToan = xuat("?tuNgay=2001-03-01&denNgay=2001-03-31&trangThai=2").lines().toList();
+        assertEquals(1, daThanhToan.size());
+        assertEquals("XUAT-1", docJson(daThanhToan.get(0)).get("magiaodich").asText());
+    }
+
+    @Test
+    void csvCoTieuDeVaThoatKyTuDacBiet() throws Exception {
+        String[] dong = xuat("?dinhDang=CSV&tuNgay=2001-05-01&denNgay=2001-05-01").split("\r\n");
+
+        assertEquals(2, dong.length);
+        assertEquals(TIEU_DE, dong[0]);
+        assertTrue(dong[1].contains(",\"XUAT-\"\"4\"\",a\","), dong[1]);
+        assertTrue(dong[1].contains(",2001-05-01T09:00,"), dong[1]);
+    }
+
+    @Test
+    void csvKhongCoHoaDonVanCoTieuDe() throws Exception {
+        assertEquals(TIEU_DE + "\r\n", xuat("?dinhDang=CSV&tuNgay=1990-01-01&denNgay=1990-12-31"));
+        assertEquals("", xuat("?tuNgay=1990-01-01&denNgay=1990-12-31"));
+    }
+
+    @Test
+    void xuatDungHanChoRieng() throws Exception {
+        MvcResult ketQua = mockMvc.perform(get("/api/hoa-don/all/xuat?tuNgay=1990-01-01&denNgay=1990-12-31")
+                .with(quanTri())).andReturn();
+
+        assertTrue(ketQua.getRequest().isAsyncStarted());
+        assertEquals(1_800_000L, ketQua.getRequest().getAsyncContext().getTimeout());
+        mockMvc.perform(asyncDispatch(ketQua));
+    }
+
+    private String xuat(String thamSo) throws Exception {
+        MvcResult ketQua = mockMvc.perform(get("/api/hoa-don/all/xuat" + thamSo).with(quanTri())).andReturn();
+        ketQua = mockMvc.perform(asyncDispatch(ketQua)).andReturn();
+        assertEquals(200, ketQua.getResponse().getStatus());
+        return ketQua.getResponse().getContentAsString(StandardCharsets.UTF_8);
+    }
+
+    private JsonNode docJson(String dong) {
+        try {
+            return objectMapper.readTree(dong);
+        } catch (Exception e) {
+            throw new IllegalStateException(dong, e);
+        }
+    }
+
+    private void themHoaDon(String maGiaoDich, LocalDateTime ngay, int trangThai) {
+        jdbcTemplate.update("INSERT INTO HoaDon (MaGiaoDich, Date, SoTien, PhuongThucThanhToan, TrangThai) " +
+                "VALUES (?, ?, 100000, 'Offline', ?)", maGiaoDich, ngay, trangThai);
+    }
+
+    private static RequestPostProcessor quanTri() {
+        return jwt().authorities(new SimpleGrantedAuthority("ROLE_admin"));
+    }
+}